@@ -1,7 +1,21 @@
 package com.punto.de.venta.mcp;
 
+import com.punto.de.venta.mcp.admission.AdmissionController;
+import com.punto.de.venta.mcp.admission.AdmissionToolCallback;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punto.de.venta.mcp.context.RequestDataToolCallback;
+import com.punto.de.venta.mcp.metrics.InstrumentedToolCallback;
+import com.punto.de.venta.mcp.operation.OperationRegistry;
+import com.punto.de.venta.mcp.operation.OperationToolCallback;
+import com.punto.de.venta.mcp.output.OutputModeToolCallback;
+import com.punto.de.venta.mcp.output.OutputPreferences;
+import com.punto.de.venta.mcp.ratelimit.RateLimitToolCallback;
+import com.punto.de.venta.mcp.ratelimit.RateLimiter;
+import com.punto.de.venta.mcp.toolschema.PrecomputedToolCallbacks;
 import com.punto.de.venta.mcp.tools.*;
-import org.springframework.ai.support.ToolCallbacks;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -9,10 +23,28 @@ import org.springframework.context.annotation.Configuration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
+@Slf4j
 public class ToolsConfigs {
 
+    /**
+     * Tools que publican su resultado con {@code ToolOutput.structured}; solo ellas anuncian
+     * {@code formatoSalida}.
+     */
+    private static final Set<String> TOOLS_CON_FORMATO = Set.of("listarTransacciones", "listarAlertas",
+        "listarTarjetasCredito", "listarPagosTarjetaCredito", "listarTransaccionesRecurrentes", BatchTools.TOOL_NAME);
+
+    /**
+     * Tools que devuelven un listado acotable con {@code ResultBudget.elementos}; solo ellas
+     * anuncian {@code maxElementos}.
+     */
+    private static final Set<String> TOOLS_CON_ELEMENTOS = Set.of("listarTransacciones", "listarAlertas",
+        "listarTarjetasCredito", "listarPagosTarjetaCredito", "listarTransaccionesRecurrentes",
+        "analizarGastosMonedaExtranjera", "generateMonthlyReport");
+
     @Bean
     public List<ToolCallback> findTools(
             EstadoCuentaTools estadoCuentaTools,
@@ -27,23 +59,67 @@ public class ToolsConfigs {
             OptimizationTools optimizationTools,
             CurrencyTools currencyTools,
             CreditCardTools creditCardTools,
-            CreditCardPaymentTools creditCardPaymentTools) {
+            CreditCardPaymentTools creditCardPaymentTools,
+            ImportTools importTools,
+            ExportTools exportTools,
+            OperationTools operationTools,
+            BatchTools batchTools,
+            MeterRegistry meterRegistry,
+            AdmissionController admissionController,
+            ObjectMapper objectMapper,
+            OutputPreferences outputPreferences,
+            OperationRegistry operationRegistry,
+            RateLimiter rateLimiter,
+            PrecomputedToolCallbacks precomputedToolCallbacks) {
         
+        long start = System.nanoTime();
         List<ToolCallback> allTools = new ArrayList<>();
         
-        allTools.addAll(Arrays.asList(ToolCallbacks.from(estadoCuentaTools)));
-        allTools.addAll(Arrays.asList(ToolCallbacks.from(userTools)));
-        allTools.addAll(Arrays.asList(ToolCallbacks.from(transactionTools)));
-        allTools.addAll(Arrays.asList(ToolCallbacks.from(recurringTransactionTools)));
-        allTools.addAll(Arrays.asList(ToolCallbacks.from(loanTools)));
-        allTools.addAll(Arrays.asList(ToolCallbacks.from(budgetTools)));
-        allTools.addAll(Arrays.asList(ToolCallbacks.from(savingGoalTools)));
-        allTools.addAll(Arrays.asList(ToolCallbacks.from(alertTools)));
-        allTools.addAll(Arrays.asList(ToolCallbacks.from(analyticsTools)));
-        allTools.addAll(Arrays.asList(ToolCallbacks.from(optimizationTools)));
-        allTools.addAll(Arrays.asList(ToolCallbacks.from(currencyTools)));
-        allTools.addAll(Arrays.asList(ToolCallbacks.from(creditCardTools)));
-        allTools.addAll(Arrays.asList(ToolCallbacks.from(creditCardPaymentTools)));
+        allTools.addAll(Arrays.asList(precomputedToolCallbacks.from(estadoCuentaTools)));
+        allTools.addAll(Arrays.asList(precomputedToolCallbacks.from(userTools)));
+        allTools.addAll(Arrays.asList(precomputedToolCallbacks.from(transactionTools)));
+        allTools.addAll(Arrays.asList(precomputedToolCallbacks.from(recurringTransactionTools)));
+        allTools.addAll(Arrays.asList(precomputedToolCallbacks.from(loanTools)));
+        allTools.addAll(Arrays.asList(precomputedToolCallbacks.from(budgetTools)));
+        allTools.addAll(Arrays.asList(precomputedToolCallbacks.from(savingGoalTools)));
+        allTools.addAll(Arrays.asList(precomputedToolCallbacks.from(alertTools)));
+        allTools.addAll(Arrays.asList(precomputedToolCallbacks.from(analyticsTools)));
+        allTools.addAll(Arrays.asList(precomputedToolCallbacks.from(optimizationTools)));
+        allTools.addAll(Arrays.asList(precomputedToolCallbacks.from(currencyTools)));
+        allTools.addAll(Arrays.asList(precomputedToolCallbacks.from(creditCardTools)));
+        allTools.addAll(Arrays.asList(precomputedToolCallbacks.from(creditCardPaymentTools)));
+        allTools.addAll(Arrays.asList(precomputedToolCallbacks.from(importTools)));
+        allTools.addAll(Arrays.asList(precomputedToolCallbacks.from(exportTools)));
+        allTools.addAll(Arrays.asList(precomputedToolCallbacks.from(operationTools)));
+        allTools.addAll(Arrays.asList(precomputedToolCallbacks.from(batchTools)));
+        
+        // Cada tool pasa por el rate limiting y el control de admisión y se mide incluyendo la espera en
+        // cola; el contexto de datos, la operación cancelable y el formato de salida van más adentro para que
+        // la tool los vea en su hilo. El lote no gasta tokens ni ocupa permiso propio: cada invocación que
+        // contiene pasa por los límites de su tool
+        allTools.replaceAll(tool -> {
+            String name = tool.getToolDefinition().name();
+            ToolCallback inner = new RequestDataToolCallback(new OperationToolCallback(
+                new OutputModeToolCallback(tool, objectMapper, outputPreferences,
+                    TOOLS_CON_FORMATO.contains(name), TOOLS_CON_ELEMENTOS.contains(name)),
+                operationRegistry, objectMapper));
+            if (!BatchTools.TOOL_NAME.equals(name)) {
+                inner = new RateLimitToolCallback(new AdmissionToolCallback(inner, admissionController),
+                    rateLimiter, objectMapper, outputPreferences);
+            }
+            return new InstrumentedToolCallback(inner, meterRegistry);
+        });
+        batchTools.register(allTools);
+        
+        long elapsed = System.nanoTime() - start;
+        Timer.builder("mcp.tools.registration.duration")
+            .description("Tiempo de registro de las tools al arrancar")
+            .tag("source", precomputedToolCallbacks.getReflected() == 0 ? "precomputed" : "reflection")
+            .register(meterRegistry)
+            .record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Registradas {} tools en {} ms ({} con definiciones del build, {} por reflexión)",
+            allTools.size(), TimeUnit.NANOSECONDS.toMillis(elapsed),
+            precomputedToolCallbacks.getPrecomputed(), precomputedToolCallbacks.getReflected());
         
         return allTools;
     }
@@ -0,0 +1,200 @@
+package com.punto.de.venta.mcp.admission;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Control de admisión de invocaciones de tools. Cada grupo tiene un máximo de
+ * invocaciones en curso y una cola acotada; además hay un máximo global. Cuando se
+ * libera un hueco se atiende primero la espera de mayor prioridad (menor número) y,
+ * dentro de la misma prioridad, la más antigua. Si la cola del grupo está llena o la
+ * espera supera {@code maxWait}, la invocación se rechaza con un tiempo de reintento.
+ */
+@Component
+@Slf4j
+public class AdmissionController {
+
+    private static final double DURATION_ALPHA = 0.2;
+
+    private final AdmissionProperties properties;
+    private final LongSupplier nanoClock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TreeSet<Waiter> waiters = new TreeSet<>(
+        Comparator.comparingInt((Waiter w) -> w.group.config.getPriority()).thenComparingLong(w -> w.sequence));
+    private final Map<String, GroupState> groups = new HashMap<>();
+    private final Map<String, GroupState> groupByTool = new HashMap<>();
+    private final GroupState defaultGroup;
+
+    private int running;
+    private long sequence;
+
+    @Autowired
+    public AdmissionController(AdmissionProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    AdmissionController(AdmissionProperties properties, LongSupplier nanoClock) {
+        this.properties = properties;
+        this.nanoClock = nanoClock;
+        for (Map.Entry<String, AdmissionGroup> entry : properties.getGroups().entrySet()) {
+            GroupState state = new GroupState(entry.getKey(), entry.getValue());
+            groups.put(entry.getKey(), state);
+            for (String tool : entry.getValue().getTools()) {
+                groupByTool.put(tool.trim(), state);
+            }
+        }
+        GroupState fallback = groups.get(properties.getDefaultGroup());
+        if (fallback == null) {
+            fallback = new GroupState(properties.getDefaultGroup(), new AdmissionGroup());
+            groups.put(fallback.name, fallback);
+        }
+        this.defaultGroup = fallback;
+    }
+
+    /**
+     * Espera un hueco para la tool. Devuelve el permiso que debe liberarse al terminar,
+     * o lanza {@link AdmissionRejectedException} si no se admite.
+     */
+    public Permit acquire(String toolName) throws InterruptedException {
+        GroupState group = groupByTool.getOrDefault(toolName, defaultGroup);
+        if (!properties.isEnabled()) {
+            return new Permit(null, 0);
+        }
+
+        lock.lock();
+        try {
+            // Tras cada liberación los que esperan ya no caben, así que si hay hueco se entra directo
+            if (running < properties.getMaxConcurrent() && group.running < group.config.getMaxConcurrent()) {
+                return grant(group);
+            }
+            if (group.queued >= group.config.getMaxQueue()) {
+                throw rejected(group, "la cola está llena");
+            }
+
+            Waiter waiter = new Waiter(group, sequence++, lock.newCondition());
+            waiters.add(waiter);
+            group.queued++;
+            long remaining = group.config.getMaxWait().toNanos();
+            try {
+                while (!waiter.granted && remaining > 0) {
+                    remaining = waiter.condition.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    // El hueco llegó junto con la interrupción: se devuelve para el siguiente
+                    group.running--;
+                    running--;
+                    dispatch();
+                }
+                throw e;
+            } finally {
+                if (!waiter.granted) {
+                    waiters.remove(waiter);
+                    group.queued--;
+                }
+            }
+            if (!waiter.granted) {
+                throw rejected(group, "se agotó el tiempo de espera");
+            }
+            return new Permit(group, nanoClock.getAsLong());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(Permit permit) {
+        if (permit.group == null) {
+            return;
+        }
+        long elapsed = nanoClock.getAsLong() - permit.startedAt;
+        lock.lock();
+        try {
+            permit.group.running--;
+            running--;
+            permit.group.averageNanos = permit.group.averageNanos == 0
+                ? elapsed
+                : DURATION_ALPHA * elapsed + (1 - DURATION_ALPHA) * permit.group.averageNanos;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dispatch() {
+        Iterator<Waiter> it = waiters.iterator();
+        while (running < properties.getMaxConcurrent() && it.hasNext()) {
+            Waiter waiter = it.next();
+            if (waiter.group.running < waiter.group.config.getMaxConcurrent()) {
+                it.remove();
+                waiter.group.queued--;
+                waiter.group.running++;
+                running++;
+                waiter.granted = true;
+                waiter.condition.signal();
+            }
+        }
+    }
+
+    private Permit grant(GroupState group) {
+        group.running++;
+        running++;
+        return new Permit(group, nanoClock.getAsLong());
+    }
+
+    private AdmissionRejectedException rejected(GroupState group, String reason) {
+        // Estimación: lo que tardan en vaciarse la cola y las ejecuciones en curso del grupo
+        double average = group.averageNanos > 0 ? group.averageNanos : TimeUnit.SECONDS.toNanos(1);
+        double slots = Math.max(1, group.config.getMaxConcurrent());
+        long retryAfterSeconds = Math.max(1, (long) Math.ceil(average * (group.queued + 1) / slots / 1e9));
+        log.warn("Invocación rechazada en grupo {}: {} (en curso: {}, en cola: {})",
+            group.name, reason, group.running, group.queued);
+        return new AdmissionRejectedException(group.name, reason, retryAfterSeconds);
+    }
+
+    public static final class Permit {
+        private final GroupState group;
+        private final long startedAt;
+
+        private Permit(GroupState group, long startedAt) {
+            this.group = group;
+            this.startedAt = startedAt;
+        }
+    }
+
+    private static final class GroupState {
+        private final String name;
+        private final AdmissionGroup config;
+        private int running;
+        private int queued;
+        private double averageNanos;
+
+        private GroupState(String name, AdmissionGroup config) {
+            this.name = name;
+            this.config = config;
+        }
+    }
+
+    private static final class Waiter {
+        private final GroupState group;
+        private final long sequence;
+        private final Condition condition;
+        private boolean granted;
+
+        private Waiter(GroupState group, long sequence, Condition condition) {
+            this.group = group;
+            this.sequence = sequence;
+            this.condition = condition;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.punto.de.venta.mcp.admission;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Clase de tools que comparte límite de concurrencia y cola. A menor {@code priority},
+ * antes se atienden sus invocaciones en espera.
+ */
+@Data
+@NoArgsConstructor
+public class AdmissionGroup {
+
+    private int priority = 1;
+    private int maxConcurrent = 8;
+    private int maxQueue = 32;
+    private Duration maxWait = Duration.ofSeconds(10);
+    private List<String> tools = new ArrayList<>();
+}
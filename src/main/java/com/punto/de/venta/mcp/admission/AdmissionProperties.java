@@ -0,0 +1,26 @@
+package com.punto.de.venta.mcp.admission;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configuración de {@code mcp.admission}: límite global de invocaciones simultáneas y
+ * grupos de tools con su propio límite, cola y prioridad. Las tools que no aparecen
+ * en ningún grupo usan {@code defaultGroup}.
+ */
+@Component
+@ConfigurationProperties(prefix = "mcp.admission")
+@Data
+@NoArgsConstructor
+public class AdmissionProperties {
+
+    private boolean enabled = true;
+    private int maxConcurrent = 16;
+    private String defaultGroup = "standard";
+    private Map<String, AdmissionGroup> groups = new LinkedHashMap<>();
+}
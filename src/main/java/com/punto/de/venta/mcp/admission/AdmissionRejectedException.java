@@ -0,0 +1,24 @@
+package com.punto.de.venta.mcp.admission;
+
+/**
+ * La invocación no se admitió porque el grupo de la tool está saturado.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final String group;
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String group, String reason, long retryAfterSeconds) {
+        super("Grupo " + group + ": " + reason);
+        this.group = group;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,58 @@
+package com.punto.de.venta.mcp.admission;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+/**
+ * Decorador que pasa cada invocación por el {@link AdmissionController}. Un rechazo se
+ * devuelve como texto "Error: ..." con el tiempo sugerido de reintento, igual que el
+ * resto de errores de las tools.
+ */
+public class AdmissionToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final AdmissionController admissionController;
+    private final String toolName;
+
+    public AdmissionToolCallback(ToolCallback delegate, AdmissionController admissionController) {
+        this.delegate = delegate;
+        this.admissionController = admissionController;
+        this.toolName = delegate.getToolDefinition().name();
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        AdmissionController.Permit permit;
+        try {
+            permit = admissionController.acquire(toolName);
+        } catch (AdmissionRejectedException e) {
+            return String.format("Error: El servidor está ocupado (%s). Intenta de nuevo en %d segundos.",
+                e.getMessage(), e.getRetryAfterSeconds());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Error: La operación fue interrumpida mientras esperaba turno";
+        }
+        try {
+            return toolContext != null ? delegate.call(toolInput, toolContext) : delegate.call(toolInput);
+        } finally {
+            admissionController.release(permit);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.punto.de.venta.mcp.anomaly;
+
+/**
+ * Estadísticas en línea de los gastos de un usuario en una categoría: media y varianza de
+ * Welford sobre toda la historia, media y varianza exponenciales (EWMA) para el nivel
+ * reciente y el cuantil alto con {@link P2Quantile}. Cada observación cuesta O(1).
+ *
+ * <p>Un monto es atípico solo si supera los tres criterios a la vez: lo está respecto a la
+ * historia completa, respecto al nivel reciente (así un cambio sostenido de hábitos deja de
+ * alertar) y por encima del cuantil, que no se deja arrastrar por pocos valores extremos.
+ */
+final class CategoryStats {
+
+    /**
+     * Desviación mínima como fracción de la media: en categorías de monto casi fijo la
+     * varianza es cero y cualquier diferencia de centavos daría un z infinito.
+     */
+    private static final double PISO_DESVIACION = 0.1;
+
+    private final double alfa;
+    private final P2Quantile cuantil;
+    private long n;
+    private double media;
+    private double m2;
+    private double ewma;
+    private double ewmVarianza;
+
+    CategoryStats(double alfa, double cuantil) {
+        this.alfa = alfa;
+        this.cuantil = new P2Quantile(cuantil);
+    }
+
+    void add(double x) {
+        n++;
+        double delta = x - media;
+        media += delta / n;
+        m2 += delta * (x - media);
+        if (n == 1) {
+            ewma = x;
+        } else {
+            double d = x - ewma;
+            ewma += alfa * d;
+            ewmVarianza = (1 - alfa) * (ewmVarianza + alfa * d * d);
+        }
+        cuantil.add(x);
+    }
+
+    /**
+     * Puntaje z de {@code x} frente a la historia si es atípico según los tres criterios, o
+     * {@code NaN} si no lo es o aún no hay {@code minMuestras} observaciones.
+     */
+    double score(double x, int minMuestras, double umbralZ) {
+        if (n < minMuestras) {
+            return Double.NaN;
+        }
+        double z = (x - media) / Math.max(desviacion(), Math.abs(media) * PISO_DESVIACION);
+        double zReciente = (x - ewma) / Math.max(Math.sqrt(ewmVarianza), Math.abs(ewma) * PISO_DESVIACION);
+        return z >= umbralZ && zReciente >= umbralZ && x > cuantil.value() ? z : Double.NaN;
+    }
+
+    long count() {
+        return n;
+    }
+
+    double mean() {
+        return media;
+    }
+
+    double desviacion() {
+        return n > 1 ? Math.sqrt(m2 / (n - 1)) : 0;
+    }
+
+    double recentMean() {
+        return ewma;
+    }
+
+    double quantile() {
+        return cuantil.value();
+    }
+}
@@ -0,0 +1,106 @@
+package com.punto.de.venta.mcp.anomaly;
+
+import java.util.Arrays;
+
+/**
+ * Estimador P² (Jain y Chlamtac) de un cuantil: cinco marcadores cuyas alturas se ajustan
+ * con interpolación parabólica en cada observación, sin guardar la serie. Memoria y costo
+ * por observación constantes.
+ */
+final class P2Quantile {
+
+    private final double p;
+    private final double[] alturas = new double[5];
+    private final double[] posiciones = new double[5];
+    private final double[] deseadas = new double[5];
+    private final double[] incrementos;
+    private long cuenta;
+
+    P2Quantile(double p) {
+        if (p <= 0 || p >= 1) {
+            throw new IllegalArgumentException("El cuantil debe estar entre 0 y 1: " + p);
+        }
+        this.p = p;
+        this.incrementos = new double[]{0, p / 2, p, (1 + p) / 2, 1};
+    }
+
+    void add(double x) {
+        if (cuenta < 5) {
+            alturas[(int) cuenta++] = x;
+            if (cuenta == 5) {
+                Arrays.sort(alturas);
+                for (int i = 0; i < 5; i++) {
+                    posiciones[i] = i + 1;
+                }
+                deseadas[0] = 1;
+                deseadas[1] = 1 + 2 * p;
+                deseadas[2] = 1 + 4 * p;
+                deseadas[3] = 3 + 2 * p;
+                deseadas[4] = 5;
+            }
+            return;
+        }
+        cuenta++;
+
+        int k;
+        if (x < alturas[0]) {
+            alturas[0] = x;
+            k = 0;
+        } else if (x >= alturas[4]) {
+            alturas[4] = x;
+            k = 3;
+        } else {
+            k = 0;
+            while (x >= alturas[k + 1]) {
+                k++;
+            }
+        }
+        for (int i = k + 1; i < 5; i++) {
+            posiciones[i]++;
+        }
+        for (int i = 0; i < 5; i++) {
+            deseadas[i] += incrementos[i];
+        }
+
+        for (int i = 1; i <= 3; i++) {
+            double d = deseadas[i] - posiciones[i];
+            if ((d >= 1 && posiciones[i + 1] - posiciones[i] > 1) || (d <= -1 && posiciones[i - 1] - posiciones[i] < -1)) {
+                int s = d >= 0 ? 1 : -1;
+                double candidata = parabolica(i, s);
+                alturas[i] = alturas[i - 1] < candidata && candidata < alturas[i + 1] ? candidata : lineal(i, s);
+                posiciones[i] += s;
+            }
+        }
+    }
+
+    /**
+     * Cuantil estimado; con menos de cinco observaciones, el cuantil exacto de las que hay.
+     */
+    double value() {
+        if (cuenta == 0) {
+            return Double.NaN;
+        }
+        if (cuenta < 5) {
+            double[] vistas = Arrays.copyOf(alturas, (int) cuenta);
+            Arrays.sort(vistas);
+            return vistas[Math.min(vistas.length - 1, (int) Math.ceil(p * vistas.length) - 1)];
+        }
+        return alturas[2];
+    }
+
+    long count() {
+        return cuenta;
+    }
+
+    private double parabolica(int i, int s) {
+        double anterior = posiciones[i] - posiciones[i - 1];
+        double siguiente = posiciones[i + 1] - posiciones[i];
+        return alturas[i] + s / (posiciones[i + 1] - posiciones[i - 1])
+            * ((anterior + s) * (alturas[i + 1] - alturas[i]) / siguiente
+            + (siguiente - s) * (alturas[i] - alturas[i - 1]) / anterior);
+    }
+
+    private double lineal(int i, int s) {
+        return alturas[i] + s * (alturas[i + s] - alturas[i]) / (posiciones[i + s] - posiciones[i]);
+    }
+}
@@ -0,0 +1,11 @@
+package com.punto.de.venta.mcp.anomaly;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Gasto marcado como atípico, con las estadísticas de su categoría justo antes de sumarlo.
+ */
+public record SpendingAnomaly(Long transactionId, String categoria, String descripcion, BigDecimal monto,
+                              LocalDate fecha, BigDecimal media, BigDecimal cuantil, double z) {
+}
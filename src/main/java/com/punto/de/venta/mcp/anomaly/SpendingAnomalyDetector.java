@@ -0,0 +1,258 @@
+package com.punto.de.venta.mcp.anomaly;
+
+import com.punto.de.venta.mcp.model.Alert;
+import com.punto.de.venta.mcp.model.Transaction;
+import com.punto.de.venta.mcp.model.User;
+import com.punto.de.venta.mcp.service.AlertWriteBehindQueue;
+import com.punto.de.venta.mcp.service.TransactionChangedEvent;
+import com.punto.de.venta.mcp.service.TransactionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Detector en línea de gastos inusuales por usuario y categoría. Cada gasto registrado se
+ * evalúa contra las {@link CategoryStats} de su categoría y después se suma a ellas; si es
+ * atípico se crea una alerta {@code GASTO_INUSUAL}.
+ *
+ * <p>La historia del usuario se lee la primera vez que se le ve; a partir de ahí las
+ * estadísticas se mantienen con cada {@link TransactionChangedEvent}: las altas de cualquier
+ * camino (registro, importación, pagos de tarjeta) se suman, y un cambio o una baja descarta
+ * el estado del usuario para releer su historia en el siguiente uso. Solo las tools que
+ * llaman a {@link #observe} crean alertas. Se guardan como mucho {@code max-users} usuarios,
+ * descartando el usado hace más tiempo. El estado vive en memoria: tras un reinicio se
+ * reconstruye igual, y los gastos inusuales recientes se pierden.
+ */
+@Component
+@Slf4j
+public class SpendingAnomalyDetector {
+
+    public static final String ALERT_TYPE = "GASTO_INUSUAL";
+    private static final String SIN_CATEGORIA = "Sin categoría";
+
+    @Value("${ai.finance.anomaly.min-samples:10}")
+    private int minMuestras = 10;
+
+    @Value("${ai.finance.anomaly.z-threshold:3.0}")
+    private double umbralZ = 3.0;
+
+    @Value("${ai.finance.anomaly.ewma-alpha:0.1}")
+    private double alfa = 0.1;
+
+    @Value("${ai.finance.anomaly.quantile:0.95}")
+    private double cuantil = 0.95;
+
+    @Value("${ai.finance.anomaly.max-users:4096}")
+    private int maxUsers = 4096;
+
+    @Value("${ai.finance.anomaly.recent-max:20}")
+    private int maxRecientes = 20;
+
+    private final TransactionService transactionService;
+    private final AlertWriteBehindQueue alertQueue;
+    private final Map<Long, UserStats> usuarios = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, UserStats> eldest) {
+            return size() > maxUsers;
+        }
+    });
+
+    public SpendingAnomalyDetector(TransactionService transactionService, AlertWriteBehindQueue alertQueue) {
+        this.transactionService = transactionService;
+        this.alertQueue = alertQueue;
+    }
+
+    /**
+     * Evalúa un gasto recién creado y lo suma a las estadísticas. Nunca falla: un error aquí
+     * no debe deshacer el registro del gasto.
+     */
+    public Optional<SpendingAnomaly> observe(User user, Transaction transaccion) {
+        if (user == null || user.getId() == null || transaccion == null || !esGasto(transaccion)) {
+            return Optional.empty();
+        }
+        try {
+            Optional<SpendingAnomaly> anomalia = usuario(user.getId()).observe(transaccion, historial(user.getId()));
+            anomalia.ifPresent(a -> alertar(user, a));
+            return anomalia;
+        } catch (Exception e) {
+            log.warn("No se pudo evaluar si el gasto {} es inusual: {}", transaccion.getId(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public SpendingProfile profile(Long userId) {
+        return usuario(userId).snapshot(historial(userId));
+    }
+
+    @EventListener
+    public void onTransactionChanged(TransactionChangedEvent event) {
+        if (event.userId() == null) {
+            usuarios.clear();
+            return;
+        }
+        if (event.created() == null) {
+            usuarios.remove(event.userId());
+            return;
+        }
+        UserStats stats = usuarios.get(event.userId());
+        if (stats != null && esGasto(event.created())) {
+            stats.record(event.created());
+        }
+    }
+
+    private UserStats usuario(Long userId) {
+        return usuarios.computeIfAbsent(userId, id -> new UserStats(this));
+    }
+
+    private Supplier<List<Transaction>> historial(Long userId) {
+        return () -> transactionService.getTransactionsByUserId(userId);
+    }
+
+    private void alertar(User user, SpendingAnomaly anomalia) {
+        Alert alert = new Alert();
+        alert.setUser(user);
+        alert.setAlertType(ALERT_TYPE);
+        alert.setMessage(String.format("Gasto inusual en %s: %s %s (%s) el %s; lo habitual es %s %s. Revisa si es correcto.",
+            anomalia.categoria(), anomalia.monto(), user.getCurrency(), anomalia.descripcion(), anomalia.fecha(),
+            anomalia.media(), user.getCurrency()));
+        alert.setStatus("PENDING");
+        alert.setScheduledAt(LocalDateTime.now());
+        alertQueue.submit(alert);
+        log.info("Gasto inusual para usuario {} en {}: {} (z={})", user.getId(), anomalia.categoria(),
+            anomalia.monto(), String.format("%.1f", anomalia.z()));
+    }
+
+    static boolean esGasto(Transaction transaccion) {
+        return "EXPENSE".equals(transaccion.getType()) && transaccion.getAmount() != null
+            && transaccion.getAmount().signum() > 0;
+    }
+
+    static String categoria(Transaction transaccion) {
+        if (transaccion.getTransactionCategory() == null || transaccion.getTransactionCategory().getCategoryName() == null
+            || transaccion.getTransactionCategory().getCategoryName().isBlank()) {
+            return SIN_CATEGORIA;
+        }
+        return transaccion.getTransactionCategory().getCategoryName().trim();
+    }
+
+    private static BigDecimal monto(double valor) {
+        return BigDecimal.valueOf(valor).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Estado de un usuario. Se carga con su historia la primera vez que se usa; los gastos con
+     * id menor o igual al último cargado ya están contados y se ignoran. Los gastos sumados
+     * por evento recuerdan su resultado para que {@link #observe} no los cuente dos veces.
+     */
+    static final class UserStats {
+
+        private static final int MAX_EVALUADOS = 256;
+
+        private final SpendingAnomalyDetector detector;
+        private final Map<String, CategoryStats> categorias = new HashMap<>();
+        private final ArrayDeque<SpendingAnomaly> recientes = new ArrayDeque<>();
+        private final Map<Long, Optional<SpendingAnomaly>> evaluados = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Optional<SpendingAnomaly>> eldest) {
+                return size() > MAX_EVALUADOS;
+            }
+        };
+        private boolean cargado;
+        private long ultimoIdCargado = Long.MIN_VALUE;
+
+        UserStats(SpendingAnomalyDetector detector) {
+            this.detector = detector;
+        }
+
+        synchronized Optional<SpendingAnomaly> observe(Transaction transaccion, Supplier<List<Transaction>> historial) {
+            if (!cargado) {
+                cargar(historial.get(), transaccion.getId());
+            } else if (transaccion.getId() != null && evaluados.containsKey(transaccion.getId())) {
+                return evaluados.get(transaccion.getId());
+            } else if (transaccion.getId() != null && transaccion.getId() <= ultimoIdCargado) {
+                return Optional.empty();
+            }
+            return evaluar(transaccion);
+        }
+
+        /**
+         * Suma un gasto creado fuera de {@link #observe}. Sin historia cargada no hace nada:
+         * el gasto se leerá con ella.
+         */
+        synchronized void record(Transaction transaccion) {
+            if (!cargado || transaccion.getId() == null || transaccion.getId() <= ultimoIdCargado
+                    || evaluados.containsKey(transaccion.getId())) {
+                return;
+            }
+            evaluados.put(transaccion.getId(), evaluar(transaccion));
+        }
+
+        private Optional<SpendingAnomaly> evaluar(Transaction transaccion) {
+            String nombre = categoria(transaccion);
+            CategoryStats stats = categorias.computeIfAbsent(nombre, c -> new CategoryStats(detector.alfa, detector.cuantil));
+            double monto = transaccion.getAmount().doubleValue();
+            double z = stats.score(monto, detector.minMuestras, detector.umbralZ);
+            SpendingAnomaly anomalia = null;
+            if (!Double.isNaN(z)) {
+                anomalia = new SpendingAnomaly(transaccion.getId(), nombre, transaccion.getDescription(),
+                    transaccion.getAmount(), transaccion.getTransactionDate(), monto(stats.mean()), monto(stats.quantile()), z);
+                recientes.addFirst(anomalia);
+                while (recientes.size() > detector.maxRecientes) {
+                    recientes.removeLast();
+                }
+            }
+            stats.add(monto);
+            return Optional.ofNullable(anomalia);
+        }
+
+        synchronized SpendingProfile snapshot(Supplier<List<Transaction>> historial) {
+            if (!cargado) {
+                cargar(historial.get(), null);
+            }
+            List<SpendingProfile.Categoria> resumen = new ArrayList<>(categorias.size());
+            categorias.forEach((nombre, stats) -> resumen.add(new SpendingProfile.Categoria(nombre, stats.count(),
+                monto(stats.mean()), monto(stats.recentMean()), monto(stats.quantile()))));
+            resumen.sort(Comparator.comparing(SpendingProfile.Categoria::muestras).reversed());
+            return new SpendingProfile(resumen, List.copyOf(recientes));
+        }
+
+        /**
+         * Suma la historia en orden cronológico, para que la media exponencial refleje lo más
+         * reciente. No genera alertas: lo que ya pasó no se vuelve a avisar.
+         */
+        private void cargar(List<Transaction> transacciones, Long excluir) {
+            List<Transaction> gastos = new ArrayList<>();
+            for (Transaction t : transacciones) {
+                if (esGasto(t) && (excluir == null || !excluir.equals(t.getId()))) {
+                    gastos.add(t);
+                }
+                if (t.getId() != null && !t.getId().equals(excluir)) {
+                    ultimoIdCargado = Math.max(ultimoIdCargado, t.getId());
+                }
+            }
+            gastos.sort(Comparator.comparing(Transaction::getTransactionDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(Transaction::getId, Comparator.nullsFirst(Comparator.naturalOrder())));
+            for (Transaction t : gastos) {
+                categorias.computeIfAbsent(categoria(t), c -> new CategoryStats(detector.alfa, detector.cuantil))
+                    .add(t.getAmount().doubleValue());
+            }
+            cargado = true;
+            log.debug("Cargados {} gastos históricos en {} categorías", gastos.size(), categorias.size());
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.punto.de.venta.mcp.anomaly;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Copia del estado del detector para un usuario: sus categorías y los últimos gastos inusuales.
+ */
+public record SpendingProfile(List<Categoria> categorias, List<SpendingAnomaly> recientes) {
+
+    public record Categoria(String nombre, long muestras, BigDecimal media, BigDecimal mediaReciente, BigDecimal cuantil) {
+    }
+}
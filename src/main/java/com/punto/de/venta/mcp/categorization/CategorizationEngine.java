@@ -0,0 +1,217 @@
+package com.punto.de.venta.mcp.categorization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punto.de.venta.mcp.text.TextNormalizer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reglas de categorización automática compiladas en un {@link KeywordAutomaton}. Las reglas
+ * globales son las predeterminadas más las del archivo {@code rules-file}; cada usuario puede
+ * agregar las suyas, que siempre ganan a las globales.
+ *
+ * <p>El autómata global se compila una vez y lo comparten todos los usuarios sin reglas
+ * propias; el de cada usuario con reglas se compila al primer uso y se guarda hasta que
+ * cambie alguna regla. El archivo se relee cuando cambia su fecha de modificación,
+ * revisándola como mucho una vez por {@code reload-interval}, así las reglas se pueden editar
+ * sin reiniciar.
+ */
+@Component
+@Slf4j
+public class CategorizationEngine {
+
+    /**
+     * Se suma a la prioridad de las reglas de usuario para que queden por encima de cualquier
+     * regla global.
+     */
+    static final int PRIORIDAD_USUARIO = 1000;
+
+    /**
+     * Los comercios concretos van antes que las palabras genéricas: "Uber Eats" es comida
+     * aunque contenga "uber" y "Cafetería del hospital" es comida aunque diga "hospital".
+     */
+    static final List<CategoryRule> PREDETERMINADAS = List.of(
+        new CategoryRule("uber", "Transporte", 20),
+        new CategoryRule("didi", "Transporte", 20),
+        new CategoryRule("taxi", "Transporte", 10),
+        new CategoryRule("gasolina", "Transporte", 10),
+        new CategoryRule("estacionamiento", "Transporte", 10),
+        new CategoryRule("netflix", "Entretenimiento", 20),
+        new CategoryRule("spotify", "Entretenimiento", 20),
+        new CategoryRule("youtube", "Entretenimiento", 20),
+        new CategoryRule("amazon", "Compras", 20),
+        new CategoryRule("walmart", "Compras", 20),
+        new CategoryRule("soriana", "Compras", 20),
+        new CategoryRule("restaurante", "Comida", 10),
+        new CategoryRule("cafe", "Comida", 10),
+        new CategoryRule("starbucks", "Comida", 20),
+        new CategoryRule("mcdonalds", "Comida", 20),
+        new CategoryRule("uber eats", "Comida", 20),
+        new CategoryRule("didi food", "Comida", 20),
+        new CategoryRule("banco", "Servicios", 5),
+        new CategoryRule("electricidad", "Servicios", 10),
+        new CategoryRule("agua", "Servicios", 10),
+        new CategoryRule("internet", "Servicios", 10),
+        new CategoryRule("telefono", "Servicios", 10),
+        new CategoryRule("farmacia", "Salud", 10),
+        new CategoryRule("medico", "Salud", 10),
+        new CategoryRule("hospital", "Salud", 5));
+
+    @Value("${ai.finance.categorization.rules-file:data/categorization/rules.json}")
+    private String rulesFile = "data/categorization/rules.json";
+
+    @Value("${ai.finance.categorization.reload-interval:PT10S}")
+    private Duration reloadInterval = Duration.ofSeconds(10);
+
+    private final ObjectMapper objectMapper;
+    private volatile Estado estado = new Estado(List.of(), Map.of(), KeywordAutomaton.compile(PREDETERMINADAS), null);
+    private volatile long proximaRevision = System.nanoTime();
+
+    public CategorizationEngine(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void start() {
+        recargar();
+    }
+
+    /**
+     * Autómata con las reglas globales y las del usuario. Para categorizar muchas
+     * transacciones se pide una vez y se reutiliza.
+     */
+    public KeywordAutomaton automaton(Long userId) {
+        recargarSiCambio();
+        Estado actual = estado;
+        List<CategoryRule> propias = userId != null ? actual.usuarios().get(userId) : null;
+        if (propias == null || propias.isEmpty()) {
+            return actual.global();
+        }
+        return actual.porUsuario().computeIfAbsent(userId, id -> {
+            List<CategoryRule> reglas = new ArrayList<>(actual.global().rules());
+            for (CategoryRule regla : propias) {
+                reglas.add(new CategoryRule(regla.palabra(), regla.categoria(), PRIORIDAD_USUARIO + regla.prioridad()));
+            }
+            return KeywordAutomaton.compile(reglas);
+        });
+    }
+
+    public CategoryRule categorize(Long userId, String descripcion) {
+        return automaton(userId).match(descripcion);
+    }
+
+    public List<CategoryRule> userRules(Long userId) {
+        recargarSiCambio();
+        return estado.usuarios().getOrDefault(userId, List.of());
+    }
+
+    public List<CategoryRule> globalRules() {
+        recargarSiCambio();
+        return estado.global().rules();
+    }
+
+    /**
+     * Agrega o reemplaza la regla del usuario con la misma palabra y guarda el archivo.
+     */
+    public synchronized void addUserRule(Long userId, CategoryRule regla) throws IOException {
+        List<CategoryRule> propias = new ArrayList<>(estado.usuarios().getOrDefault(userId, List.of()));
+        String palabra = TextNormalizer.fold(regla.palabra());
+        propias.removeIf(r -> TextNormalizer.fold(r.palabra()).equals(palabra));
+        propias.add(regla);
+        guardarUsuario(userId, propias);
+    }
+
+    public synchronized boolean removeUserRule(Long userId, String palabra) throws IOException {
+        List<CategoryRule> propias = new ArrayList<>(estado.usuarios().getOrDefault(userId, List.of()));
+        String buscada = TextNormalizer.fold(palabra);
+        if (!propias.removeIf(r -> TextNormalizer.fold(r.palabra()).equals(buscada))) {
+            return false;
+        }
+        guardarUsuario(userId, propias);
+        return true;
+    }
+
+    private void guardarUsuario(Long userId, List<CategoryRule> propias) throws IOException {
+        Map<Long, List<CategoryRule>> usuarios = new HashMap<>(estado.usuarios());
+        if (propias.isEmpty()) {
+            usuarios.remove(userId);
+        } else {
+            usuarios.put(userId, List.copyOf(propias));
+        }
+        Path path = Paths.get(rulesFile);
+        if (path.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        objectMapper.writeValue(temp.toFile(), new RulesFile(estado.archivo(), usuarios));
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        estado = new Estado(estado.archivo(), usuarios, estado.global(), Files.getLastModifiedTime(path));
+        log.info("Guardadas {} reglas de categorización del usuario {}", propias.size(), userId);
+    }
+
+    private void recargarSiCambio() {
+        long ahora = System.nanoTime();
+        if (ahora - proximaRevision < 0) {
+            return;
+        }
+        proximaRevision = ahora + reloadInterval.toNanos();
+        recargar();
+    }
+
+    private synchronized void recargar() {
+        Path path = Paths.get(rulesFile);
+        try {
+            FileTime modificado = Files.isRegularFile(path) ? Files.getLastModifiedTime(path) : null;
+            if (modificado == null || modificado.equals(estado.modificado())) {
+                return;
+            }
+            RulesFile leido = objectMapper.readValue(path.toFile(), RulesFile.class);
+            List<CategoryRule> archivo = leido.global() != null ? List.copyOf(leido.global()) : List.of();
+            Map<Long, List<CategoryRule>> usuarios = new HashMap<>();
+            if (leido.usuarios() != null) {
+                leido.usuarios().forEach((id, reglas) -> usuarios.put(id, List.copyOf(reglas)));
+            }
+            List<CategoryRule> global = new ArrayList<>(PREDETERMINADAS);
+            global.addAll(archivo);
+            estado = new Estado(archivo, usuarios, KeywordAutomaton.compile(global), modificado);
+            log.info("Cargadas {} reglas globales y reglas de {} usuarios desde {}", estado.global().size(),
+                usuarios.size(), path.toAbsolutePath());
+        } catch (IOException | RuntimeException e) {
+            // Se conservan las reglas anteriores: un archivo a medio editar no debe dejar sin reglas
+            log.warn("No se pudieron cargar las reglas de categorización de {}: {}", path.toAbsolutePath(), e.getMessage());
+        }
+    }
+
+    /**
+     * Contenido del archivo de reglas: reglas globales adicionales y reglas por id de usuario.
+     */
+    record RulesFile(List<CategoryRule> global, Map<Long, List<CategoryRule>> usuarios) {
+    }
+
+    /**
+     * Reglas vigentes. Se reemplaza completo en cada cambio, y con él los autómatas de usuario
+     * compilados para las reglas anteriores.
+     */
+    private record Estado(List<CategoryRule> archivo, Map<Long, List<CategoryRule>> usuarios,
+                          KeywordAutomaton global, FileTime modificado, ConcurrentHashMap<Long, KeywordAutomaton> porUsuario) {
+
+        private Estado(List<CategoryRule> archivo, Map<Long, List<CategoryRule>> usuarios, KeywordAutomaton global, FileTime modificado) {
+            this(archivo, usuarios, global, modificado, new ConcurrentHashMap<>());
+        }
+    }
+}
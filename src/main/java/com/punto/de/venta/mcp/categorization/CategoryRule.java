@@ -0,0 +1,9 @@
+package com.punto.de.venta.mcp.categorization;
+
+/**
+ * Regla de categorización: si la descripción contiene {@code palabra} (sin acentos ni
+ * mayúsculas), el gasto va a {@code categoria}. Cuando varias reglas coinciden gana la de
+ * mayor prioridad, luego la palabra más larga y luego la que aparece antes en el texto.
+ */
+public record CategoryRule(String palabra, String categoria, int prioridad) {
+}
@@ -0,0 +1,166 @@
+package com.punto.de.venta.mcp.categorization;
+
+import com.punto.de.venta.mcp.text.TextNormalizer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Autómata de Aho-Corasick sobre las palabras de un conjunto de reglas, compilado a una tabla
+ * de transiciones completa: categorizar una descripción es una sola pasada con una búsqueda
+ * en arreglo por carácter, sin importar cuántas reglas haya. Es inmutable y se comparte entre
+ * hilos.
+ *
+ * <p>Cada estado guarda la mejor regla que termina en él o en alguno de sus sufijos, así que
+ * durante la pasada solo se compara contra la mejor encontrada hasta el momento.
+ */
+public final class KeywordAutomaton {
+
+    /**
+     * Letras a-z, dígitos, espacio y un símbolo para cualquier otro carácter.
+     */
+    private static final int ALFABETO = 38;
+    private static final int OTRO = ALFABETO - 1;
+    private static final int ESPACIO = 36;
+
+    private final int[][] transiciones;
+    private final int[] salida;
+    private final CategoryRule[] reglas;
+    private final int[] longitudes;
+
+    private KeywordAutomaton(int[][] transiciones, int[] salida, CategoryRule[] reglas, int[] longitudes) {
+        this.transiciones = transiciones;
+        this.salida = salida;
+        this.reglas = reglas;
+        this.longitudes = longitudes;
+    }
+
+    /**
+     * Compila las reglas. Si dos reglas tienen la misma palabra queda la última, así las
+     * reglas posteriores (archivo, usuario) reemplazan a las anteriores.
+     */
+    public static KeywordAutomaton compile(List<CategoryRule> reglas) {
+        Map<String, CategoryRule> porPalabra = new LinkedHashMap<>();
+        for (CategoryRule regla : reglas) {
+            String palabra = TextNormalizer.fold(regla.palabra());
+            if (!palabra.isEmpty() && regla.categoria() != null && !regla.categoria().isBlank()) {
+                porPalabra.remove(palabra);
+                porPalabra.put(palabra, regla);
+            }
+        }
+        CategoryRule[] compiladas = porPalabra.values().toArray(new CategoryRule[0]);
+        int[] longitudes = new int[compiladas.length];
+
+        List<int[]> trie = new ArrayList<>();
+        List<Integer> propia = new ArrayList<>();
+        trie.add(nuevoNodo());
+        propia.add(-1);
+        int indice = 0;
+        for (String palabra : porPalabra.keySet()) {
+            int estado = 0;
+            for (int i = 0; i < palabra.length(); i++) {
+                int c = simbolo(palabra.charAt(i));
+                if (trie.get(estado)[c] < 0) {
+                    trie.get(estado)[c] = trie.size();
+                    trie.add(nuevoNodo());
+                    propia.add(-1);
+                }
+                estado = trie.get(estado)[c];
+            }
+            propia.set(estado, indice);
+            longitudes[indice++] = palabra.length();
+        }
+
+        int[][] transiciones = trie.toArray(new int[0][]);
+        int[] fallo = new int[transiciones.length];
+        int[] salida = new int[transiciones.length];
+        for (int i = 0; i < salida.length; i++) {
+            salida[i] = propia.get(i);
+        }
+        // Recorrido en anchura: el fallo de cada nodo ya está resuelto cuando se visitan sus hijos
+        ArrayDeque<Integer> cola = new ArrayDeque<>();
+        for (int c = 0; c < ALFABETO; c++) {
+            if (transiciones[0][c] < 0) {
+                transiciones[0][c] = 0;
+            } else {
+                cola.add(transiciones[0][c]);
+            }
+        }
+        while (!cola.isEmpty()) {
+            int estado = cola.poll();
+            salida[estado] = mejor(compiladas, longitudes, salida[estado], salida[fallo[estado]]);
+            for (int c = 0; c < ALFABETO; c++) {
+                int hijo = transiciones[estado][c];
+                if (hijo < 0) {
+                    transiciones[estado][c] = transiciones[fallo[estado]][c];
+                } else {
+                    fallo[hijo] = transiciones[fallo[estado]][c];
+                    cola.add(hijo);
+                }
+            }
+        }
+        return new KeywordAutomaton(transiciones, salida, compiladas, longitudes);
+    }
+
+    /**
+     * Mejor regla que coincide con la descripción, o {@code null}.
+     */
+    public CategoryRule match(String descripcion) {
+        String texto = TextNormalizer.fold(descripcion);
+        int estado = 0;
+        int encontrada = -1;
+        for (int i = 0; i < texto.length(); i++) {
+            estado = transiciones[estado][simbolo(texto.charAt(i))];
+            int candidata = salida[estado];
+            // Con la misma prioridad y longitud gana la que terminó antes, es decir, la primera
+            if (candidata >= 0 && (encontrada < 0 || compara(reglas, longitudes, candidata, encontrada) > 0)) {
+                encontrada = candidata;
+            }
+        }
+        return encontrada >= 0 ? reglas[encontrada] : null;
+    }
+
+    public int size() {
+        return reglas.length;
+    }
+
+    public List<CategoryRule> rules() {
+        return List.of(reglas);
+    }
+
+    private static int mejor(CategoryRule[] reglas, int[] longitudes, int a, int b) {
+        if (a < 0) {
+            return b;
+        }
+        if (b < 0) {
+            return a;
+        }
+        int cmp = compara(reglas, longitudes, a, b);
+        return cmp > 0 || (cmp == 0 && a < b) ? a : b;
+    }
+
+    private static int compara(CategoryRule[] reglas, int[] longitudes, int a, int b) {
+        int cmp = Integer.compare(reglas[a].prioridad(), reglas[b].prioridad());
+        return cmp != 0 ? cmp : Integer.compare(longitudes[a], longitudes[b]);
+    }
+
+    private static int simbolo(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        }
+        if (c >= '0' && c <= '9') {
+            return 26 + (c - '0');
+        }
+        return c == ' ' ? ESPACIO : OTRO;
+    }
+
+    private static int[] nuevoNodo() {
+        int[] nodo = new int[ALFABETO];
+        Arrays.fill(nodo, -1);
+        return nodo;
+    }
+}
@@ -0,0 +1,66 @@
+package com.punto.de.venta.mcp.config;
+
+import com.punto.de.venta.mcp.context.RequestDataContext;
+import com.punto.de.venta.mcp.metrics.ToolInvocationContext;
+import com.punto.de.venta.mcp.operation.OperationHandle;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class ExecutorConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService bulkExecutor(@Value("${ai.finance.bulk.parallelism:8}") int parallelism,
+                                        @Value("${ai.finance.bulk.queue-capacity:256}") int queueCapacity) {
+        return contextPropagating("bulk-", parallelism, queueCapacity);
+    }
+
+    /**
+     * Pool propio para las invocaciones de un lote: esas tareas esperan a su vez al pool bulk,
+     * y compartirlo podría dejarlo sin hilos libres. Cada invocación pasa además por el rate
+     * limiting y la admisión de su tool, que son los que acotan la concurrencia real.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService batchExecutor(@Value("${ai.finance.batch.parallelism:6}") int parallelism,
+                                         @Value("${ai.finance.batch.queue-capacity:48}") int queueCapacity) {
+        return contextPropagating("batch-", parallelism, queueCapacity);
+    }
+
+    /**
+     * Pool de cálculo para las simulaciones: solo CPU, sin llamadas a la API, así que no
+     * necesita propagar el contexto de la tool. 0 usa un hilo por procesador.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool simulationPool(@Value("${ai.finance.simulation.parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Con la cola llena la tarea se ejecuta en el hilo que la envía, que de todos modos iba a
+     * quedarse esperando el resultado: la cola no crece sin límite bajo carga y quien envía
+     * de más se frena solo.
+     */
+    private static ExecutorService contextPropagating(String prefix, int parallelism, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        // Las tareas heredan la tool que las envía: sus llamadas a la API cuentan en sus métricas,
+        // comparten los datos ya leídos en la petición y dejan de hacerse si la operación se cancela
+        return new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy()) {
+            @Override
+            public void execute(Runnable command) {
+                super.execute(ToolInvocationContext.wrap(RequestDataContext.wrap(OperationHandle.wrap(command))));
+            }
+        };
+    }
+}
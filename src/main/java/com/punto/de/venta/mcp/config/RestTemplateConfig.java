@@ -1,5 +1,8 @@
 package com.punto.de.venta.mcp.config;
 
+import com.punto.de.venta.mcp.context.RequestDataInterceptor;
+import com.punto.de.venta.mcp.metrics.DownstreamMetricsInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestTemplate;
@@ -8,7 +11,10 @@ import org.springframework.web.client.RestTemplate;
 public class RestTemplateConfig {
     
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(MeterRegistry meterRegistry) {
+        RestTemplate restTemplate = new RestTemplate();
+        restTemplate.getInterceptors().add(new RequestDataInterceptor(meterRegistry));
+        restTemplate.getInterceptors().add(new DownstreamMetricsInterceptor(meterRegistry));
+        return restTemplate;
     }
 }
@@ -0,0 +1,63 @@
+package com.punto.de.venta.mcp.context;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Respuesta leída completa a memoria; cada lector obtiene su propio stream del cuerpo.
+ */
+final class BufferedResponse implements ClientHttpResponse {
+
+    private final HttpStatusCode statusCode;
+    private final String statusText;
+    private final HttpHeaders headers;
+    private final byte[] body;
+
+    private BufferedResponse(HttpStatusCode statusCode, String statusText, HttpHeaders headers, byte[] body) {
+        this.statusCode = statusCode;
+        this.statusText = statusText;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    static BufferedResponse of(ClientHttpResponse response) throws IOException {
+        try (response) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.putAll(response.getHeaders());
+            byte[] body;
+            try (InputStream in = response.getBody()) {
+                body = in.readAllBytes();
+            }
+            return new BufferedResponse(response.getStatusCode(), response.getStatusText(), headers, body);
+        }
+    }
+
+    @Override
+    public HttpStatusCode getStatusCode() {
+        return statusCode;
+    }
+
+    @Override
+    public String getStatusText() {
+        return statusText;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public InputStream getBody() {
+        return new ByteArrayInputStream(body);
+    }
+
+    @Override
+    public void close() {
+    }
+}
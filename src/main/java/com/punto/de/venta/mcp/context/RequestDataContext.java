@@ -0,0 +1,129 @@
+package com.punto.de.venta.mcp.context;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Respuestas GET de la API de finanzas compartidas durante una petición. Mientras está
+ * abierto, {@link RequestDataInterceptor} sirve cada recurso desde aquí y solo la primera
+ * llamada llega a la API; las concurrentes al mismo recurso esperan esa misma respuesta.
+ * Solo se guardan las respuestas 2xx. Cualquier escritura lo vacía al empezar y al
+ * terminar, para no servir datos anteriores al cambio.
+ *
+ * <p>{@link RequestDataToolCallback} abre uno por cada invocación de tool; un lote abre uno
+ * solo y sus invocaciones lo comparten.
+ */
+public final class RequestDataContext {
+
+    private static final ThreadLocal<RequestDataContext> CURRENT = new ThreadLocal<>();
+
+    private final ConcurrentHashMap<String, CompletableFuture<BufferedResponse>> responses = new ConcurrentHashMap<>();
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final AtomicInteger hits = new AtomicInteger();
+
+    /**
+     * Abre un contexto nuevo en el hilo actual y devuelve el anterior para
+     * {@link #restore(RequestDataContext)}.
+     */
+    public static RequestDataContext open() {
+        RequestDataContext previous = CURRENT.get();
+        CURRENT.set(new RequestDataContext());
+        return previous;
+    }
+
+    /**
+     * Deja el hilo sin contexto hasta {@link #restore(RequestDataContext)}. Lo usan las
+     * lecturas en streaming, cuyo cuerpo no debe quedar entero en memoria.
+     */
+    public static RequestDataContext suspend() {
+        RequestDataContext previous = CURRENT.get();
+        CURRENT.remove();
+        return previous;
+    }
+
+    public static void restore(RequestDataContext previous) {
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    public static RequestDataContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Envuelve la tarea para que comparta el contexto del hilo que la envía.
+     */
+    public static Runnable wrap(Runnable task) {
+        RequestDataContext context = CURRENT.get();
+        if (context == null) {
+            return task;
+        }
+        return () -> {
+            RequestDataContext previous = CURRENT.get();
+            CURRENT.set(context);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    BufferedResponse fetch(String key, ResponseLoader loader) throws IOException {
+        CompletableFuture<BufferedResponse> pending = new CompletableFuture<>();
+        CompletableFuture<BufferedResponse> existing = responses.putIfAbsent(key, pending);
+        if (existing == null) {
+            try {
+                BufferedResponse response = loader.load();
+                fetches.incrementAndGet();
+                if (!response.getStatusCode().is2xxSuccessful()) {
+                    // Un error solo se comparte con las peticiones que ya lo esperaban
+                    responses.remove(key, pending);
+                }
+                pending.complete(response);
+                return response;
+            } catch (IOException | RuntimeException e) {
+                // Un fallo no se comparte con peticiones posteriores: se reintenta
+                responses.remove(key, pending);
+                pending.completeExceptionally(e);
+                throw e;
+            }
+        }
+        hits.incrementAndGet();
+        try {
+            return existing.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new UncheckedIOException(new IOException(e.getCause()));
+        }
+    }
+
+    void invalidate() {
+        responses.clear();
+    }
+
+    public int getFetches() {
+        return fetches.get();
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    @FunctionalInterface
+    interface ResponseLoader {
+        BufferedResponse load() throws IOException;
+    }
+}
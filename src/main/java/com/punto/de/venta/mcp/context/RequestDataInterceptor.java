@@ -0,0 +1,54 @@
+package com.punto.de.venta.mcp.context;
+
+import com.punto.de.venta.mcp.metrics.DownstreamMetricsInterceptor;
+import com.punto.de.venta.mcp.metrics.ToolInvocationContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+
+/**
+ * Sirve los GET desde el {@link RequestDataContext} abierto en el hilo, si lo hay. Va antes
+ * que el interceptor de métricas, así que solo se miden las llamadas que llegan a la API.
+ *
+ * <p>Cada lectura, venga de la API o del contexto, se cuenta en {@code mcp.tool.resource.reads}
+ * por tool y recurso: comparado con {@code mcp.downstream.duration} muestra qué datos usa
+ * cada tool y cuánto ahorra el contexto.
+ */
+public class RequestDataInterceptor implements ClientHttpRequestInterceptor {
+
+    private final MeterRegistry registry;
+
+    public RequestDataInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        RequestDataContext context = RequestDataContext.current();
+        if (context == null) {
+            return execution.execute(request, body);
+        }
+        if (!HttpMethod.GET.equals(request.getMethod())) {
+            context.invalidate();
+            try {
+                return execution.execute(request, body);
+            } finally {
+                // Un GET concurrente pudo guardar datos anteriores a la escritura
+                context.invalidate();
+            }
+        }
+        Counter.builder("mcp.tool.resource.reads")
+            .description("Lecturas de recursos de la API de finanzas hechas por las tools")
+            .tag("tool", ToolInvocationContext.currentToolName())
+            .tag("resource", DownstreamMetricsInterceptor.normalize(request.getURI().getPath()))
+            .register(registry)
+            .increment();
+        return context.fetch(request.getURI().toString(), () -> BufferedResponse.of(execution.execute(request, body)));
+    }
+}
@@ -0,0 +1,59 @@
+package com.punto.de.venta.mcp.context;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+/**
+ * Decorador que abre un {@link RequestDataContext} por invocación, de modo que una tool
+ * nunca repite un GET a la API aunque sus servicios pidan el mismo recurso varias veces.
+ * Si ya hay uno abierto (invocación dentro de un lote) se une a ese.
+ */
+@Slf4j
+public class RequestDataToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final String toolName;
+
+    public RequestDataToolCallback(ToolCallback delegate) {
+        this.delegate = delegate;
+        this.toolName = delegate.getToolDefinition().name();
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        if (RequestDataContext.current() != null) {
+            return invoke(toolInput, toolContext);
+        }
+        RequestDataContext previous = RequestDataContext.open();
+        RequestDataContext context = RequestDataContext.current();
+        try {
+            return invoke(toolInput, toolContext);
+        } finally {
+            log.debug("Tool {}: {} lecturas a la API, {} servidas desde el contexto de la petición",
+                toolName, context.getFetches(), context.getHits());
+            RequestDataContext.restore(previous);
+        }
+    }
+
+    private String invoke(String toolInput, ToolContext toolContext) {
+        return toolContext != null ? delegate.call(toolInput, toolContext) : delegate.call(toolInput);
+    }
+}
@@ -0,0 +1,136 @@
+package com.punto.de.venta.mcp.exporter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punto.de.venta.mcp.model.Transaction;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Escribe transacciones una por una en NDJSON o CSV. No guarda estado por fila, así
+ * que la memoria no depende del número de transacciones exportadas.
+ */
+public abstract class TransactionExportWriter {
+
+    static final String[] COLUMNS = {"id", "fecha", "tipo", "descripcion", "categoria", "monto", "origen", "tarjeta", "recurrente"};
+
+    protected final Writer out;
+
+    protected TransactionExportWriter(Writer out) {
+        this.out = out;
+    }
+
+    public static TransactionExportWriter create(String format, Writer out, ObjectMapper objectMapper) throws IOException {
+        String normalized = format == null || format.isBlank() ? "NDJSON" : format.trim().toUpperCase(Locale.ROOT);
+        return switch (normalized) {
+            case "NDJSON", "JSONL", "JSON" -> new Ndjson(out, objectMapper);
+            case "CSV" -> new Csv(out);
+            default -> throw new IllegalArgumentException("Formato de exportación no soportado: " + format + ". Use NDJSON o CSV");
+        };
+    }
+
+    public static String extension(String format) {
+        return format != null && format.trim().equalsIgnoreCase("CSV") ? "csv" : "ndjson";
+    }
+
+    public abstract void writeHeader() throws IOException;
+
+    public abstract void write(Transaction transaction) throws IOException;
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    static String[] values(Transaction t) {
+        return new String[]{
+            t.getId() != null ? t.getId().toString() : null,
+            t.getTransactionDate() != null ? t.getTransactionDate().toString() : null,
+            t.getType(),
+            t.getDescription(),
+            t.getTransactionCategory() != null ? t.getTransactionCategory().getCategoryName() : null,
+            t.getAmount() != null ? t.getAmount().toPlainString() : null,
+            t.getSource(),
+            t.getCreditCardId(),
+            t.getRecurringRef()
+        };
+    }
+
+    private static final class Ndjson extends TransactionExportWriter {
+
+        private final JsonGenerator generator;
+
+        Ndjson(Writer out, ObjectMapper objectMapper) throws IOException {
+            super(out);
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        @Override
+        public void writeHeader() {
+            // NDJSON no lleva encabezado
+        }
+
+        @Override
+        public void write(Transaction transaction) throws IOException {
+            String[] values = values(transaction);
+            generator.writeStartObject();
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (values[i] == null) {
+                    continue;
+                }
+                if (i == 0 || COLUMNS[i].equals("monto")) {
+                    generator.writeFieldName(COLUMNS[i]);
+                    generator.writeNumber(values[i]);
+                } else {
+                    generator.writeStringField(COLUMNS[i], values[i]);
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+    }
+
+    private static final class Csv extends TransactionExportWriter {
+
+        Csv(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void writeHeader() throws IOException {
+            writeRow(COLUMNS);
+        }
+
+        @Override
+        public void write(Transaction transaction) throws IOException {
+            writeRow(values(transaction));
+        }
+
+        private void writeRow(String[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                String value = values[i];
+                if (value == null) {
+                    continue;
+                }
+                if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                    out.write('"');
+                    out.write(value.replace("\"", "\"\""));
+                    out.write('"');
+                } else {
+                    out.write(value);
+                }
+            }
+            out.write('\n');
+        }
+    }
+}
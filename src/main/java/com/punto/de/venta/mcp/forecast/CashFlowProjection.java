@@ -0,0 +1,89 @@
+package com.punto.de.venta.mcp.forecast;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Saldo proyectado al cierre de cada día, en centavos, calculado como suma acumulada sobre
+ * un arreglo de primitivos: un horizonte de varios años son unos pocos miles de posiciones.
+ */
+public final class CashFlowProjection {
+
+    private final LocalDate desde;
+    private final long[] saldo;
+    private final long ingresos;
+    private final long gastos;
+    private final long pagosPrestamos;
+
+    CashFlowProjection(LocalDate desde, long[] saldo, long ingresos, long gastos, long pagosPrestamos) {
+        this.desde = desde;
+        this.saldo = saldo;
+        this.ingresos = ingresos;
+        this.gastos = gastos;
+        this.pagosPrestamos = pagosPrestamos;
+    }
+
+    public static long aCentavos(BigDecimal monto) {
+        return monto != null ? monto.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact() : 0;
+    }
+
+    public static BigDecimal aMonto(long centavos) {
+        return BigDecimal.valueOf(centavos, 2);
+    }
+
+    /**
+     * Saldo al cierre de {@code dia}; después del horizonte se mantiene el último.
+     */
+    public long saldoAl(LocalDate dia) {
+        long i = ChronoUnit.DAYS.between(desde, dia);
+        return saldo[(int) Math.max(0, Math.min(saldo.length - 1, i))];
+    }
+
+    public LocalDate diaSaldoMinimo() {
+        int minimo = 0;
+        for (int i = 1; i < saldo.length; i++) {
+            if (saldo[i] < saldo[minimo]) {
+                minimo = i;
+            }
+        }
+        return desde.plusDays(minimo);
+    }
+
+    /**
+     * Primer día con saldo negativo, o {@code null} si no lo hay en el horizonte.
+     */
+    public LocalDate primerDiaNegativo() {
+        for (int i = 0; i < saldo.length; i++) {
+            if (saldo[i] < 0) {
+                return desde.plusDays(i);
+            }
+        }
+        return null;
+    }
+
+    long saldoDia(int dia) {
+        return saldo[dia];
+    }
+
+    public LocalDate getDesde() {
+        return desde;
+    }
+
+    public long getIngresos() {
+        return ingresos;
+    }
+
+    public long getGastos() {
+        return gastos;
+    }
+
+    public long getPagosPrestamos() {
+        return pagosPrestamos;
+    }
+
+    public int getDias() {
+        return saldo.length;
+    }
+}
@@ -0,0 +1,63 @@
+package com.punto.de.venta.mcp.forecast;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+
+/**
+ * Frecuencias de {@code RecurringTransaction}. Cada ocurrencia se calcula desde la fecha de
+ * inicio (la n-ésima, no sumando sobre la anterior), así un cargo del 31 cae el 28 o 29 de
+ * febrero y vuelve al 31 en marzo.
+ */
+public enum Frequency {
+    DAILY,
+    WEEKLY,
+    MONTHLY,
+    YEARLY;
+
+    /**
+     * Acepta los nombres en inglés y en español; lo vacío o desconocido se toma como mensual,
+     * igual que al registrar la recurrencia.
+     */
+    public static Frequency parse(String value) {
+        if (value == null) {
+            return MONTHLY;
+        }
+        return switch (value.trim().toUpperCase(Locale.ROOT)) {
+            case "DAILY", "DIARIO" -> DAILY;
+            case "WEEKLY", "SEMANAL" -> WEEKLY;
+            case "YEARLY", "ANUAL" -> YEARLY;
+            default -> MONTHLY;
+        };
+    }
+
+    LocalDate occurrence(LocalDate start, long n) {
+        return switch (this) {
+            case DAILY -> start.plusDays(n);
+            case WEEKLY -> start.plusWeeks(n);
+            case MONTHLY -> start.plusMonths(n);
+            case YEARLY -> start.plusYears(n);
+        };
+    }
+
+    /**
+     * Índice de la primera ocurrencia en o después de {@code from}, para no recorrer
+     * las ocurrencias pasadas de recurrencias antiguas.
+     */
+    long firstIndexFrom(LocalDate start, LocalDate from) {
+        if (!from.isAfter(start)) {
+            return 0;
+        }
+        long n = switch (this) {
+            case DAILY -> ChronoUnit.DAYS.between(start, from);
+            case WEEKLY -> ChronoUnit.WEEKS.between(start, from);
+            case MONTHLY -> ChronoUnit.MONTHS.between(start, from);
+            case YEARLY -> ChronoUnit.YEARS.between(start, from);
+        };
+        // El recorte a fin de mes puede dejar la ocurrencia n un día antes de from
+        while (occurrence(start, n).isBefore(from)) {
+            n++;
+        }
+        return n;
+    }
+}
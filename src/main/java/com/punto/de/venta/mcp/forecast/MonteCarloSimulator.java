@@ -0,0 +1,140 @@
+package com.punto.de.venta.mcp.forecast;
+
+import com.punto.de.venta.mcp.operation.OperationHandle;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Simulación Monte Carlo del saldo diario. Cada trayectoria parte de la proyección programada
+ * (recurrencias y préstamos) y le suma, día por día y para cada categoría, un día elegido al
+ * azar del historial de esa categoría.
+ *
+ * <p>Las trayectorias se reparten en un {@link ForkJoinPool} dividiendo rangos; cada subrango
+ * recibe un {@link SplittableRandom} separado del de su padre, así que con la misma semilla el
+ * resultado es idéntico sin importar cuántos hilos lo ejecuten. La memoria es una matriz de
+ * cortes por trayectorias reservada al inicio; las trayectorias no asignan nada.
+ */
+@Component
+@Slf4j
+public class MonteCarloSimulator {
+
+    /**
+     * Tamaño fijo de las hojas: si dependiera del paralelismo del pool, cambiaría el árbol de
+     * divisiones del generador y con él el resultado para una misma semilla.
+     */
+    private static final int TRAYECTORIAS_POR_TAREA = 128;
+    private static final double[] PERCENTILES = {0.10, 0.25, 0.50, 0.75, 0.90};
+
+    private final ForkJoinPool pool;
+
+    public MonteCarloSimulator(@Qualifier("simulationPool") ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param cortes       días (índices desde el inicio de la proyección) en los que se reportan bandas, ordenados
+     * @param diaIngreso   índice del próximo ingreso programado, o -1 si no hay
+     */
+    public SimulationResult simulate(CashFlowProjection base, SpendingDistribution distribucion, int trayectorias,
+                                     long semilla, int[] cortes, int diaIngreso) {
+        long[][] saldos = new long[cortes.length][trayectorias];
+        Simulacion simulacion = new Simulacion(base, distribucion, cortes, diaIngreso, saldos, OperationHandle.current());
+        long inicio = System.nanoTime();
+        int[] negativos = pool.invoke(new Tramo(simulacion, 0, trayectorias, new SplittableRandom(semilla)));
+        log.debug("Simuladas {} trayectorias de {} días en {} ms", trayectorias, base.getDias(),
+            (System.nanoTime() - inicio) / 1_000_000);
+
+        List<SimulationResult.Banda> bandas = new ArrayList<>(cortes.length);
+        for (int c = 0; c < cortes.length; c++) {
+            long[] fila = saldos[c];
+            Arrays.sort(fila);
+            bandas.add(new SimulationResult.Banda(base.getDesde().plusDays(cortes[c]),
+                percentil(fila, PERCENTILES[0]), percentil(fila, PERCENTILES[1]), percentil(fila, PERCENTILES[2]),
+                percentil(fila, PERCENTILES[3]), percentil(fila, PERCENTILES[4])));
+        }
+        LocalDate proximoIngreso = diaIngreso >= 0 ? base.getDesde().plusDays(diaIngreso) : null;
+        return new SimulationResult(trayectorias, (double) negativos[0] / trayectorias,
+            (double) negativos[1] / trayectorias, proximoIngreso, bandas);
+    }
+
+    private static long percentil(long[] ordenados, double q) {
+        return ordenados[(int) Math.round(q * (ordenados.length - 1))];
+    }
+
+    private record Simulacion(CashFlowProjection base, SpendingDistribution distribucion, int[] cortes, int diaIngreso,
+                              long[][] saldos, OperationHandle operacion) {
+
+        /**
+         * Recorre una trayectoria y deja su saldo en cada corte. Devuelve 0, 1 (negativo en el
+         * horizonte) o 3 (además, antes del próximo ingreso).
+         */
+        int run(int trayectoria, SplittableRandom rng) {
+            int categorias = distribucion.categorias();
+            int dias = base.getDias();
+            long acumulado = 0;
+            int resultado = 0;
+            int corte = 0;
+            for (int d = 0; d < dias; d++) {
+                for (int c = 0; c < categorias; c++) {
+                    long[] historial = distribucion.dias(c);
+                    acumulado += historial[rng.nextInt(historial.length)];
+                }
+                long saldo = base.saldoDia(d) + acumulado;
+                if (saldo < 0) {
+                    resultado |= d < diaIngreso ? 3 : 1;
+                }
+                if (corte < cortes.length && cortes[corte] == d) {
+                    saldos[corte++][trayectoria] = saldo;
+                }
+            }
+            return resultado;
+        }
+    }
+
+    private static final class Tramo extends RecursiveTask<int[]> {
+
+        private final Simulacion simulacion;
+        private final int desde;
+        private final int hasta;
+        private final SplittableRandom rng;
+
+        private Tramo(Simulacion simulacion, int desde, int hasta, SplittableRandom rng) {
+            this.simulacion = simulacion;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.rng = rng;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (hasta - desde > TRAYECTORIAS_POR_TAREA) {
+                int medio = (desde + hasta) >>> 1;
+                Tramo izquierdo = new Tramo(simulacion, desde, medio, rng.split());
+                Tramo derecho = new Tramo(simulacion, medio, hasta, rng);
+                izquierdo.fork();
+                int[] b = derecho.compute();
+                int[] a = izquierdo.join();
+                return new int[]{a[0] + b[0], a[1] + b[1]};
+            }
+            int[] negativos = new int[2];
+            for (int t = desde; t < hasta; t++) {
+                if (simulacion.operacion() != null) {
+                    simulacion.operacion().throwIfCancelled();
+                }
+                int resultado = simulacion.run(t, rng);
+                negativos[0] += resultado & 1;
+                negativos[1] += resultado >> 1;
+            }
+            return negativos;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.punto.de.venta.mcp.forecast;
+
+import com.punto.de.venta.mcp.model.Loan;
+import com.punto.de.venta.mcp.model.RecurringTransaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Expande las transacciones recurrentes (DAILY, WEEKLY, MONTHLY, YEARLY, con su fecha de
+ * inicio y fin) en ocurrencias fechadas y proyecta con ellas el saldo día por día.
+ *
+ * <p>La expansión se guarda por usuario junto con una huella de sus recurrencias: mientras
+ * no cambien y el horizonte pedido quede dentro del expandido se reutiliza. Se expande al
+ * menos {@code minHorizon} para que las proyecciones más cortas la aprovechen.
+ */
+@Component
+@Slf4j
+public class RecurringScheduleEngine {
+
+    @Value("${ai.finance.forecast.min-horizon:P24M}")
+    private Period minHorizon = Period.ofMonths(24);
+
+    @Value("${ai.finance.forecast.cache-max-users:1024}")
+    private int maxUsers = 1024;
+
+    private final ConcurrentHashMap<Long, ScheduleExpansion> cache = new ConcurrentHashMap<>();
+
+    public ScheduleExpansion expand(Long userId, List<RecurringTransaction> recurrencias, LocalDate desde, LocalDate hasta) {
+        long huella = huella(recurrencias);
+        ScheduleExpansion cached = userId != null ? cache.get(userId) : null;
+        if (cached != null && cached.cubre(huella, desde, hasta)) {
+            return cached;
+        }
+        LocalDate minimo = desde.plus(minHorizon);
+        ScheduleExpansion expansion = expandir(recurrencias, desde, hasta.isBefore(minimo) ? minimo : hasta, huella);
+        if (userId != null) {
+            if (cache.size() >= maxUsers && !cache.containsKey(userId)) {
+                Iterator<Long> it = cache.keySet().iterator();
+                if (it.hasNext()) {
+                    cache.remove(it.next());
+                }
+            }
+            cache.put(userId, expansion);
+        }
+        log.debug("Expandidas {} ocurrencias para usuario {} entre {} y {}",
+            expansion.getOcurrencias(), userId, expansion.getDesde(), expansion.getHasta());
+        return expansion;
+    }
+
+    /**
+     * Saldo de cada día de {@code [desde, hasta]} partiendo de {@code saldoInicial} centavos, con
+     * las ocurrencias de la expansión y el pago mensual de cada préstamo en su día de pago.
+     */
+    public CashFlowProjection project(long saldoInicial, ScheduleExpansion expansion, List<Loan> prestamos,
+                                      LocalDate desde, LocalDate hasta) {
+        int dias = (int) ChronoUnit.DAYS.between(desde, hasta) + 1;
+        long[] saldo = new long[dias];
+        long ingresos = 0;
+        long gastos = 0;
+        for (int i = 0; i < dias; i++) {
+            LocalDate dia = desde.plusDays(i);
+            long entrada = expansion.ingresos(dia);
+            long salida = expansion.gastos(dia);
+            ingresos += entrada;
+            gastos += salida;
+            saldo[i] = entrada - salida;
+        }
+
+        long pagosPrestamos = 0;
+        for (Loan prestamo : prestamos) {
+            long pago = CashFlowProjection.aCentavos(prestamo.getMonthlyPayment());
+            if (pago == 0) {
+                continue;
+            }
+            LocalDate inicio = prestamo.getStartDate() != null && prestamo.getStartDate().isAfter(desde) ? prestamo.getStartDate() : desde;
+            int diaPago = prestamo.getPaymentDay() != null ? prestamo.getPaymentDay() : inicio.getDayOfMonth();
+            for (LocalDate mes = inicio.withDayOfMonth(1); !mes.isAfter(hasta); mes = mes.plusMonths(1)) {
+                LocalDate fecha = mes.withDayOfMonth(Math.max(1, Math.min(diaPago, mes.lengthOfMonth())));
+                if (!fecha.isBefore(inicio) && !fecha.isAfter(hasta)) {
+                    saldo[(int) ChronoUnit.DAYS.between(desde, fecha)] -= pago;
+                    pagosPrestamos += pago;
+                }
+            }
+        }
+
+        long acumulado = saldoInicial;
+        for (int i = 0; i < dias; i++) {
+            acumulado += saldo[i];
+            saldo[i] = acumulado;
+        }
+        return new CashFlowProjection(desde, saldo, ingresos, gastos, pagosPrestamos);
+    }
+
+    static ScheduleExpansion expandir(List<RecurringTransaction> recurrencias, LocalDate desde, LocalDate hasta, long huella) {
+        int dias = (int) ChronoUnit.DAYS.between(desde, hasta) + 1;
+        long[] ingresos = new long[dias];
+        long[] gastos = new long[dias];
+        int ocurrencias = 0;
+        for (RecurringTransaction recurrencia : recurrencias) {
+            long monto = CashFlowProjection.aCentavos(recurrencia.getAmount());
+            boolean ingreso = "INCOME".equals(recurrencia.getType());
+            if (monto == 0 || (!ingreso && !"EXPENSE".equals(recurrencia.getType()))) {
+                continue;
+            }
+            Frequency frecuencia = Frequency.parse(recurrencia.getFrequency());
+            LocalDate inicio = recurrencia.getStartDate() != null ? recurrencia.getStartDate() : desde;
+            LocalDate fin = recurrencia.getEndDate() != null && recurrencia.getEndDate().isBefore(hasta) ? recurrencia.getEndDate() : hasta;
+            long[] destino = ingreso ? ingresos : gastos;
+            for (long n = frecuencia.firstIndexFrom(inicio, desde); ; n++) {
+                LocalDate fecha = frecuencia.occurrence(inicio, n);
+                if (fecha.isAfter(fin)) {
+                    break;
+                }
+                destino[(int) ChronoUnit.DAYS.between(desde, fecha)] += monto;
+                ocurrencias++;
+            }
+        }
+        return new ScheduleExpansion(huella, desde, hasta, ingresos, gastos, ocurrencias);
+    }
+
+    /**
+     * Resume los campos que afectan a la expansión; cualquier alta, baja o cambio de monto,
+     * frecuencia o fechas produce otra huella. No depende del orden en que llegan de la API.
+     */
+    static long huella(List<RecurringTransaction> recurrencias) {
+        long huella = recurrencias.size();
+        for (RecurringTransaction r : recurrencias) {
+            huella += 0x9E3779B97F4A7C15L * Objects.hash(r.getId(), r.getType(), r.getAmount() != null ? r.getAmount().stripTrailingZeros() : null,
+                r.getFrequency(), r.getStartDate(), r.getEndDate());
+        }
+        return huella;
+    }
+}
@@ -0,0 +1,74 @@
+package com.punto.de.venta.mcp.forecast;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Ocurrencias de las recurrencias de un usuario en {@code [desde, hasta]}, acumuladas por día
+ * en centavos. Es inmutable una vez construida, así que se comparte desde la caché.
+ */
+public final class ScheduleExpansion {
+
+    private final long huella;
+    private final LocalDate desde;
+    private final LocalDate hasta;
+    private final long[] ingresos;
+    private final long[] gastos;
+    private final int ocurrencias;
+
+    ScheduleExpansion(long huella, LocalDate desde, LocalDate hasta, long[] ingresos, long[] gastos, int ocurrencias) {
+        this.huella = huella;
+        this.desde = desde;
+        this.hasta = hasta;
+        this.ingresos = ingresos;
+        this.gastos = gastos;
+        this.ocurrencias = ocurrencias;
+    }
+
+    boolean cubre(long huella, LocalDate desde, LocalDate hasta) {
+        return this.huella == huella && !desde.isBefore(this.desde) && !hasta.isAfter(this.hasta);
+    }
+
+    /**
+     * Ingresos programados del día en centavos; 0 fuera del rango expandido.
+     */
+    public long ingresos(LocalDate dia) {
+        int i = indice(dia);
+        return i >= 0 ? ingresos[i] : 0;
+    }
+
+    public long gastos(LocalDate dia) {
+        int i = indice(dia);
+        return i >= 0 ? gastos[i] : 0;
+    }
+
+    /**
+     * Primer día desde {@code desde} con un ingreso programado, o {@code null} si no hay
+     * ninguno dentro de la expansión.
+     */
+    public LocalDate proximoIngreso(LocalDate desde) {
+        for (long i = Math.max(0, ChronoUnit.DAYS.between(this.desde, desde)); i < ingresos.length; i++) {
+            if (ingresos[(int) i] > 0) {
+                return this.desde.plusDays(i);
+            }
+        }
+        return null;
+    }
+
+    public int getOcurrencias() {
+        return ocurrencias;
+    }
+
+    public LocalDate getDesde() {
+        return desde;
+    }
+
+    public LocalDate getHasta() {
+        return hasta;
+    }
+
+    private int indice(LocalDate dia) {
+        long i = ChronoUnit.DAYS.between(desde, dia);
+        return i >= 0 && i < ingresos.length ? (int) i : -1;
+    }
+}
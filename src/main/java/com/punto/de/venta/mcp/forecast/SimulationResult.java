@@ -0,0 +1,15 @@
+package com.punto.de.venta.mcp.forecast;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Resultado de {@link MonteCarloSimulator}: probabilidades de saldo negativo y bandas de
+ * percentiles del saldo (en centavos) en cada fecha de corte.
+ */
+public record SimulationResult(int trayectorias, double probabilidadNegativo, double probabilidadNegativoAntesDePago,
+                               LocalDate proximoIngreso, List<Banda> bandas) {
+
+    public record Banda(LocalDate fecha, long p10, long p25, long p50, long p75, long p90) {
+    }
+}
@@ -0,0 +1,89 @@
+package com.punto.de.venta.mcp.forecast;
+
+import com.punto.de.venta.mcp.model.Transaction;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Distribución empírica del movimiento diario no programado por categoría: para cada
+ * categoría, el total en centavos de cada día del historial (gastos negativos, ingresos
+ * positivos, días sin movimiento en 0). Las transacciones ligadas a una recurrencia se
+ * excluyen porque ya las aporta la expansión de recurrencias.
+ */
+public final class SpendingDistribution {
+
+    static final String INGRESOS_VARIABLES = "Ingresos variables";
+
+    private final String[] categorias;
+    private final long[][] dias;
+
+    private SpendingDistribution(String[] categorias, long[][] dias) {
+        this.categorias = categorias;
+        this.dias = dias;
+    }
+
+    /**
+     * Usa el historial de {@code [desde, hasta]}; si el usuario tiene menos historia, la ventana
+     * empieza en su primera transacción para no diluir el gasto con días vacíos.
+     */
+    public static SpendingDistribution from(List<Transaction> transacciones, LocalDate desde, LocalDate hasta) {
+        LocalDate primera = null;
+        for (Transaction t : transacciones) {
+            LocalDate fecha = t.getTransactionDate();
+            if (fecha != null && !fecha.isBefore(desde) && !fecha.isAfter(hasta) && (primera == null || fecha.isBefore(primera))) {
+                primera = fecha;
+            }
+        }
+        if (primera == null) {
+            return new SpendingDistribution(new String[0], new long[0][]);
+        }
+
+        int largo = (int) ChronoUnit.DAYS.between(primera, hasta) + 1;
+        Map<String, long[]> porCategoria = new LinkedHashMap<>();
+        for (Transaction t : transacciones) {
+            LocalDate fecha = t.getTransactionDate();
+            if (t.getRecurringRef() != null || fecha == null || fecha.isBefore(primera) || fecha.isAfter(hasta)) {
+                continue;
+            }
+            long monto = CashFlowProjection.aCentavos(t.getAmount());
+            String categoria;
+            if ("INCOME".equals(t.getType())) {
+                categoria = INGRESOS_VARIABLES;
+            } else if ("EXPENSE".equals(t.getType())) {
+                categoria = t.getTransactionCategory() != null ? t.getTransactionCategory().getCategoryName() : "Sin categoría";
+                monto = -monto;
+            } else {
+                continue;
+            }
+            porCategoria.computeIfAbsent(categoria, c -> new long[largo])[(int) ChronoUnit.DAYS.between(primera, fecha)] += monto;
+        }
+        return new SpendingDistribution(porCategoria.keySet().toArray(new String[0]), porCategoria.values().toArray(new long[0][]));
+    }
+
+    public int categorias() {
+        return categorias.length;
+    }
+
+    long[] dias(int categoria) {
+        return dias[categoria];
+    }
+
+    /**
+     * Media diaria en centavos, para reportar junto a la simulación.
+     */
+    public long mediaDiaria() {
+        long total = 0;
+        int largo = 0;
+        for (long[] categoria : dias) {
+            for (long monto : categoria) {
+                total += monto;
+            }
+            largo = categoria.length;
+        }
+        return largo > 0 ? total / largo : 0;
+    }
+}
@@ -0,0 +1,263 @@
+package com.punto.de.venta.mcp.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * CSV con encabezado. Reconoce columnas en español o inglés (fecha, descripción,
+ * monto o cargo/abono, tipo, categoría, referencia) y separador coma, punto y coma
+ * o tabulador. Un monto negativo sin columna de tipo se interpreta como gasto.
+ *
+ * <p>El separador decimal y el orden día/mes se deducen de las primeras filas del archivo
+ * (ver {@link StatementConventions}); si ninguna los aclara, las filas ambiguas se rechazan.
+ */
+class CsvStatementReader implements StatementReader {
+
+    /**
+     * Caracteres que se leen por adelantado tras el encabezado para deducir las convenciones.
+     */
+    private static final int MUESTRA = 1 << 16;
+
+    private final BufferedReader reader;
+    private final StatementConventions conventions = new StatementConventions();
+    private char delimiter;
+    private int dateColumn = -1;
+    private int descriptionColumn = -1;
+    private int amountColumn = -1;
+    private int debitColumn = -1;
+    private int creditColumn = -1;
+    private int typeColumn = -1;
+    private int categoryColumn = -1;
+    private int idColumn = -1;
+    private long line;
+    private boolean headerRead;
+
+    CsvStatementReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public StatementRecord next() throws IOException {
+        if (!headerRead) {
+            readHeader();
+        }
+        while (true) {
+            List<String> fields = readRow();
+            if (fields == null) {
+                return null;
+            }
+            if (fields.stream().allMatch(String::isBlank)) {
+                continue;
+            }
+            try {
+                return toRecord(fields);
+            } catch (StatementFormatException e) {
+                throw new StatementFormatException("Línea " + line + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void readHeader() throws IOException {
+        headerRead = true;
+        String header = reader.readLine();
+        line++;
+        while (header != null && header.isBlank()) {
+            header = reader.readLine();
+            line++;
+        }
+        if (header == null) {
+            return;
+        }
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+        delimiter = detectDelimiter(header);
+        List<String> columns = split(header);
+        for (int i = 0; i < columns.size(); i++) {
+            String name = normalize(columns.get(i));
+            if (dateColumn < 0 && (name.contains("fecha") || name.contains("date"))) {
+                dateColumn = i;
+            } else if (descriptionColumn < 0 && (name.contains("descripcion") || name.contains("concepto")
+                    || name.contains("description") || name.contains("detalle") || name.equals("memo") || name.equals("name"))) {
+                descriptionColumn = i;
+            } else if (amountColumn < 0 && (name.contains("monto") || name.contains("importe")
+                    || name.contains("amount") || name.contains("cantidad"))) {
+                amountColumn = i;
+            } else if (debitColumn < 0 && (name.contains("cargo") || name.contains("retiro") || name.contains("debit") || name.equals("debe"))) {
+                debitColumn = i;
+            } else if (creditColumn < 0 && (name.contains("abono") || name.contains("deposito") || name.contains("credit") || name.equals("haber"))) {
+                creditColumn = i;
+            } else if (typeColumn < 0 && (name.equals("tipo") || name.equals("type"))) {
+                typeColumn = i;
+            } else if (categoryColumn < 0 && (name.contains("categoria") || name.contains("category"))) {
+                categoryColumn = i;
+            } else if (idColumn < 0 && (name.equals("id") || name.contains("referencia") || name.contains("reference") || name.equals("fitid"))) {
+                idColumn = i;
+            }
+        }
+        if (dateColumn < 0 || descriptionColumn < 0 || (amountColumn < 0 && debitColumn < 0 && creditColumn < 0)) {
+            throw new IllegalArgumentException("El encabezado del CSV debe incluir fecha, descripción y monto (o cargo/abono)");
+        }
+        sampleConventions();
+    }
+
+    /**
+     * Lee por adelantado hasta {@link #MUESTRA} caracteres y aprende las convenciones de los
+     * valores sin ambigüedad; después vuelve al inicio de los datos.
+     */
+    private void sampleConventions() throws IOException {
+        // Holgura para la última línea leída, que puede pasar del límite de la muestra
+        reader.mark(MUESTRA * 4);
+        long leidos = 0;
+        String text;
+        while ((text = reader.readLine()) != null) {
+            leidos += text.length() + 2;
+            if (leidos >= MUESTRA) {
+                break;
+            }
+            List<String> fields = split(text);
+            for (int column : new int[]{amountColumn, debitColumn, creditColumn}) {
+                if (!field(fields, column).isBlank()) {
+                    conventions.observeAmount(field(fields, column));
+                }
+            }
+            if (!field(fields, dateColumn).isBlank()) {
+                conventions.observeDate(field(fields, dateColumn));
+            }
+            if (conventions.decimal() != 0 && conventions.diaPrimero() != null) {
+                break;
+            }
+        }
+        reader.reset();
+    }
+
+    private StatementRecord toRecord(List<String> fields) {
+        String description = field(fields, descriptionColumn);
+        if (description.isBlank()) {
+            throw new StatementFormatException("Descripción vacía");
+        }
+        BigDecimal amount;
+        String type = null;
+        if (amountColumn >= 0 && !field(fields, amountColumn).isBlank()) {
+            amount = conventions.amount(field(fields, amountColumn));
+        } else {
+            String debit = field(fields, debitColumn);
+            String credit = field(fields, creditColumn);
+            if (!debit.isBlank()) {
+                amount = conventions.amount(debit).abs();
+                type = "EXPENSE";
+            } else if (!credit.isBlank()) {
+                amount = conventions.amount(credit).abs();
+                type = "INCOME";
+            } else {
+                throw new StatementFormatException("Monto vacío");
+            }
+        }
+        String declaredType = normalize(field(fields, typeColumn));
+        if (!declaredType.isEmpty()) {
+            type = switch (declaredType) {
+                case "income", "ingreso", "abono", "credit", "deposito" -> "INCOME";
+                case "expense", "gasto", "cargo", "debit", "retiro" -> "EXPENSE";
+                default -> type;
+            };
+        }
+        if (type == null) {
+            type = amount.signum() < 0 ? "EXPENSE" : "INCOME";
+        }
+        if (amount.signum() == 0) {
+            throw new StatementFormatException("Monto en cero");
+        }
+        String category = field(fields, categoryColumn);
+        String id = field(fields, idColumn);
+        return new StatementRecord(line, conventions.date(field(fields, dateColumn)), description.trim(),
+            amount.abs(), type, category.isBlank() ? null : category.trim(), id.isBlank() ? null : id.trim());
+    }
+
+    /**
+     * Lee una fila respetando comillas; un campo entre comillas puede abarcar varias líneas.
+     */
+    private List<String> readRow() throws IOException {
+        String text = reader.readLine();
+        if (text == null) {
+            return null;
+        }
+        line++;
+        StringBuilder row = new StringBuilder(text);
+        while (countQuotes(row) % 2 != 0) {
+            String continuation = reader.readLine();
+            if (continuation == null) {
+                break;
+            }
+            line++;
+            row.append('\n').append(continuation);
+        }
+        return split(row.toString());
+    }
+
+    private List<String> split(String row) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < row.length(); i++) {
+            char c = row.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < row.length() && row.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == delimiter && !quoted) {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    private static int countQuotes(CharSequence text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static char detectDelimiter(String header) {
+        char[] candidates = {';', '\t', ','};
+        char best = ',';
+        long bestCount = 0;
+        for (char candidate : candidates) {
+            long count = header.chars().filter(c -> c == candidate).count();
+            if (count > bestCount) {
+                best = candidate;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    private static String field(List<String> fields, int column) {
+        return column >= 0 && column < fields.size() ? fields.get(column) : "";
+    }
+
+    private static String normalize(String value) {
+        String folded = Normalizer.normalize(value.trim(), Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return folded.toLowerCase(Locale.ROOT);
+    }
+}
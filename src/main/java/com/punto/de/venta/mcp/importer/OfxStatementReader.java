@@ -0,0 +1,156 @@
+package com.punto.de.venta.mcp.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * OFX 1.x (SGML) y 2.x (XML). Recorre las etiquetas de forma secuencial y emite un
+ * movimiento por cada bloque STMTTRN; las hojas sin etiqueta de cierre del formato
+ * SGML se aceptan igual que las del XML.
+ */
+class OfxStatementReader implements StatementReader {
+
+    private final BufferedReader reader;
+    private final StringBuilder token = new StringBuilder();
+    private long line = 1;
+    private long recordLine;
+    private boolean inTransaction;
+    private String currentTag;
+    private String trnType;
+    private String posted;
+    private String amount;
+    private String name;
+    private String memo;
+    private String fitId;
+
+    OfxStatementReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public StatementRecord next() throws IOException {
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '\n') {
+                line++;
+            }
+            if (c != '<') {
+                if (currentTag != null) {
+                    token.append((char) c);
+                }
+                continue;
+            }
+            assignValue();
+            String tag = readTag();
+            if (tag.equals("STMTTRN")) {
+                startTransaction();
+            } else if (tag.equals("/STMTTRN")) {
+                inTransaction = false;
+                return buildRecord();
+            } else if (!tag.startsWith("/") && inTransaction) {
+                currentTag = tag;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String readTag() throws IOException {
+        StringBuilder tag = new StringBuilder();
+        int c;
+        while ((c = reader.read()) != -1 && c != '>') {
+            if (c == '\n') {
+                line++;
+            }
+            tag.append((char) c);
+        }
+        return tag.toString().trim().toUpperCase(Locale.ROOT);
+    }
+
+    private void startTransaction() {
+        inTransaction = true;
+        recordLine = line;
+        trnType = null;
+        posted = null;
+        amount = null;
+        name = null;
+        memo = null;
+        fitId = null;
+    }
+
+    private void assignValue() {
+        if (currentTag == null) {
+            return;
+        }
+        String value = token.toString().trim();
+        token.setLength(0);
+        switch (currentTag) {
+            case "TRNTYPE" -> trnType = value;
+            case "DTPOSTED" -> posted = value;
+            case "TRNAMT" -> amount = value;
+            case "NAME" -> name = value;
+            case "MEMO" -> memo = value;
+            case "FITID" -> fitId = value;
+            default -> {
+                // Etiqueta que no se usa
+            }
+        }
+        currentTag = null;
+    }
+
+    private StatementRecord buildRecord() {
+        try {
+            if (posted == null || posted.length() < 8) {
+                throw new StatementFormatException("DTPOSTED inválido");
+            }
+            if (amount == null) {
+                throw new StatementFormatException("TRNAMT vacío");
+            }
+            BigDecimal value = parseAmount(amount);
+            if (value.signum() == 0) {
+                throw new StatementFormatException("Monto en cero");
+            }
+            String description = name != null && !name.isBlank() ? name : memo;
+            if (description == null || description.isBlank()) {
+                description = trnType != null ? trnType : "Movimiento";
+            }
+            String type = value.signum() < 0 || "DEBIT".equalsIgnoreCase(trnType) ? "EXPENSE" : "INCOME";
+            return new StatementRecord(recordLine, parseDate(posted.substring(0, 8)),
+                unescape(description.trim()), value.abs(), type, null, fitId);
+        } catch (StatementFormatException e) {
+            throw new StatementFormatException("Movimiento en línea " + recordLine + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * OFX no usa separador de miles: una coma solo puede ser el separador decimal.
+     */
+    private static BigDecimal parseAmount(String value) {
+        try {
+            return new BigDecimal(value.trim().replace(',', '.'));
+        } catch (NumberFormatException e) {
+            throw new StatementFormatException("TRNAMT inválido: " + value);
+        }
+    }
+
+    private static LocalDate parseDate(String value) {
+        try {
+            return LocalDate.parse(value, DateTimeFormatter.BASIC_ISO_DATE);
+        } catch (DateTimeParseException e) {
+            throw new StatementFormatException("DTPOSTED inválido: " + value);
+        }
+    }
+
+    private static String unescape(String text) {
+        return text.replace("&amp;", "&").replace("&lt;", "<").replace("&gt;", ">");
+    }
+}
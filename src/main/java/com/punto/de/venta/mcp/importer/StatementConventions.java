@@ -0,0 +1,167 @@
+package com.punto.de.venta.mcp.importer;
+
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Convenciones de un archivo que no se deducen de un valor aislado: qué separador es el
+ * decimal en los montos ("1,500" son mil quinientos o uno y medio) y si las fechas con
+ * barras van día/mes o mes/día ("03/04/2025"). Se aprenden de los valores sin ambigüedad y
+ * se aplican al resto del archivo; un valor ambiguo cuando aún no se conoce la convención,
+ * o uno que la contradice, se rechaza en lugar de adivinar.
+ */
+final class StatementConventions {
+
+    private static final Pattern ISO = Pattern.compile("(\\d{4})[-/](\\d{1,2})[-/](\\d{1,2})");
+    private static final Pattern COMPACTA = Pattern.compile("(\\d{4})(\\d{2})(\\d{2})");
+    private static final Pattern DIA_MES = Pattern.compile("(\\d{1,2})[-/.](\\d{1,2})[-/.](\\d{4})");
+
+    /**
+     * Separador decimal aprendido; 0 mientras no se conoce.
+     */
+    private char decimal;
+    private Boolean diaPrimero;
+
+    char decimal() {
+        return decimal;
+    }
+
+    Boolean diaPrimero() {
+        return diaPrimero;
+    }
+
+    /**
+     * Aprende de un valor sin interpretarlo; los valores ambiguos o inválidos se ignoran.
+     */
+    void observeAmount(String value) {
+        char separador = separadorDecimal(limpiar(value));
+        if (decimal == 0 && separador != 0) {
+            decimal = separador;
+        }
+    }
+
+    void observeDate(String value) {
+        Matcher m = DIA_MES.matcher(value.trim());
+        if (diaPrimero == null && m.matches()) {
+            diaPrimero = ordenDe(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)));
+        }
+    }
+
+    BigDecimal amount(String value) {
+        String text = limpiar(value);
+        boolean negative = text.startsWith("(") && text.endsWith(")");
+        if (negative) {
+            text = text.substring(1, text.length() - 1);
+        }
+        boolean conSeparador = text.indexOf(',') >= 0 || text.indexOf('.') >= 0;
+        char separador = separadorDecimal(text);
+        if (conSeparador && separador == 0) {
+            if (decimal == 0) {
+                throw new StatementFormatException("Monto ambiguo: " + value.trim()
+                    + " (no se sabe si el separador es de miles o de decimales)");
+            }
+            separador = decimal;
+        } else if (separador != 0 && decimal != 0 && separador != decimal) {
+            throw new StatementFormatException("Monto inválido: " + value.trim() + " (el archivo usa '" + decimal + "' como decimal)");
+        } else if (separador != 0) {
+            decimal = separador;
+        }
+
+        char agrupador = separador == ',' ? '.' : ',';
+        String normalized = text.replace(String.valueOf(agrupador), "");
+        if (separador != 0) {
+            normalized = normalized.replace(separador, '.');
+        }
+        try {
+            BigDecimal amount = new BigDecimal(normalized);
+            return negative ? amount.negate() : amount;
+        } catch (NumberFormatException e) {
+            throw new StatementFormatException("Monto inválido: " + value.trim());
+        }
+    }
+
+    LocalDate date(String value) {
+        String text = value.trim();
+        try {
+            Matcher m = ISO.matcher(text);
+            if (m.matches()) {
+                return LocalDate.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)), Integer.parseInt(m.group(3)));
+            }
+            m = COMPACTA.matcher(text);
+            if (m.matches()) {
+                return LocalDate.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)), Integer.parseInt(m.group(3)));
+            }
+            m = DIA_MES.matcher(text);
+            if (!m.matches()) {
+                throw new StatementFormatException("Fecha inválida: " + value);
+            }
+            int a = Integer.parseInt(m.group(1));
+            int b = Integer.parseInt(m.group(2));
+            int year = Integer.parseInt(m.group(3));
+            Boolean orden = ordenDe(a, b);
+            if (orden == null && a != b) {
+                if (diaPrimero == null) {
+                    throw new StatementFormatException("Fecha ambigua: " + value + " (no se sabe si es día/mes o mes/día)");
+                }
+                orden = diaPrimero;
+            } else if (orden != null && diaPrimero != null && !orden.equals(diaPrimero)) {
+                throw new StatementFormatException("Fecha inválida: " + value + " (el archivo usa "
+                    + (diaPrimero ? "día/mes" : "mes/día") + ")");
+            } else if (orden != null) {
+                diaPrimero = orden;
+            }
+            return Boolean.FALSE.equals(orden) ? LocalDate.of(year, a, b) : LocalDate.of(year, b, a);
+        } catch (DateTimeException e) {
+            throw new StatementFormatException("Fecha inválida: " + value);
+        }
+    }
+
+    /**
+     * {@code true} si el primer número solo puede ser el día, {@code false} si solo puede
+     * ser el mes y {@code null} si ambos pueden ser mes.
+     */
+    private static Boolean ordenDe(int a, int b) {
+        if (a > 12 && b <= 12) {
+            return true;
+        }
+        if (b > 12 && a <= 12) {
+            return false;
+        }
+        return null;
+    }
+
+    /**
+     * Separador decimal que se deduce del propio valor, o 0 si no tiene separadores o es
+     * ambiguo. Con coma y punto el decimal es el último; un separador repetido es de miles;
+     * uno solo es decimal salvo que le sigan exactamente tres dígitos tras una parte entera
+     * de uno a tres dígitos distinta de cero, que es el caso ambiguo.
+     */
+    private static char separadorDecimal(String text) {
+        int lastComma = text.lastIndexOf(',');
+        int lastDot = text.lastIndexOf('.');
+        if (lastComma >= 0 && lastDot >= 0) {
+            return lastComma > lastDot ? ',' : '.';
+        }
+        int posicion = Math.max(lastComma, lastDot);
+        if (posicion < 0) {
+            return 0;
+        }
+        char separador = text.charAt(posicion);
+        if (text.indexOf(separador) != posicion) {
+            return separador == ',' ? '.' : ',';
+        }
+        String entera = text.substring(0, posicion).replace("-", "").replace("+", "").replace("(", "");
+        int decimales = text.length() - posicion - 1 - (text.endsWith(")") ? 1 : 0);
+        if (decimales == 3 && !entera.isEmpty() && entera.length() <= 3 && !entera.equals("0")) {
+            return 0;
+        }
+        return separador;
+    }
+
+    private static String limpiar(String value) {
+        return value.trim().replace("$", "").replace(" ", "");
+    }
+}
@@ -0,0 +1,8 @@
+package com.punto.de.venta.mcp.importer;
+
+public class StatementFormatException extends RuntimeException {
+
+    public StatementFormatException(String message) {
+        super(message);
+    }
+}
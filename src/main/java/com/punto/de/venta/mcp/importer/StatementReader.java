@@ -0,0 +1,41 @@
+package com.punto.de.venta.mcp.importer;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Locale;
+
+/**
+ * Lector incremental de estados de cuenta: entrega un movimiento por llamada sin
+ * cargar el archivo completo en memoria.
+ */
+public interface StatementReader extends Closeable {
+
+    /**
+     * Devuelve el siguiente movimiento o {@code null} al terminar.
+     *
+     * @throws StatementFormatException si la fila actual no se puede interpretar;
+     *         el lector queda posicionado en la siguiente fila.
+     */
+    StatementRecord next() throws IOException;
+
+    static StatementReader open(String format, Reader source) throws IOException {
+        BufferedReader reader = source instanceof BufferedReader buffered ? buffered : new BufferedReader(source, 1 << 16);
+        String detected = format != null && !format.isBlank() ? format.trim().toUpperCase(Locale.ROOT) : detect(reader);
+        return switch (detected) {
+            case "OFX", "QFX" -> new OfxStatementReader(reader);
+            case "CSV" -> new CsvStatementReader(reader);
+            default -> throw new IllegalArgumentException("Formato no soportado: " + format + ". Use CSV u OFX");
+        };
+    }
+
+    private static String detect(BufferedReader reader) throws IOException {
+        reader.mark(4096);
+        char[] head = new char[4096];
+        int read = reader.read(head);
+        reader.reset();
+        String text = read > 0 ? new String(head, 0, read).toUpperCase(Locale.ROOT) : "";
+        return text.contains("OFXHEADER") || text.contains("<OFX>") ? "OFX" : "CSV";
+    }
+}
@@ -0,0 +1,17 @@
+package com.punto.de.venta.mcp.importer;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Movimiento leído de un estado de cuenta. El monto siempre es positivo; el tipo
+ * (INCOME/EXPENSE) indica el sentido.
+ */
+public record StatementRecord(long line,
+                              LocalDate date,
+                              String description,
+                              BigDecimal amount,
+                              String type,
+                              String category,
+                              String externalId) {
+}
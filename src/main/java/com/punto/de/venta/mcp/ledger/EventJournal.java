@@ -0,0 +1,352 @@
+package com.punto.de.venta.mcp.ledger;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Journal local de solo-anexado dividido en segmentos. Cada registro es
+ * [longitud][crc32][payload]; al abrir se trunca la cola del último segmento
+ * si quedó a medio escribir por una caída del pod. Un segmento cuya cabecera no es
+ * de este formato o de esta versión no se trunca ni se sobrescribe: se aparta con
+ * otro nombre y el journal sigue en un segmento nuevo.
+ */
+@Component
+@Slf4j
+public class EventJournal {
+
+    private static final int MAGIC = 0x504A4C31; // "PJL1"
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String QUARANTINE_SUFFIX = ".quarantined";
+
+    @Value("${ai.finance.journal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ai.finance.journal.dir:data/journal}")
+    private String directory = "data/journal";
+
+    @Value("${ai.finance.journal.segment-size-bytes:67108864}")
+    private long segmentSizeBytes = 64L * 1024 * 1024;
+
+    @Value("${ai.finance.journal.fsync:false}")
+    private boolean fsync;
+
+    private final CRC32 crc = new CRC32();
+    private Path dir;
+    private FileChannel channel;
+    private long currentSegment;
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (!enabled) {
+            log.info("Journal local deshabilitado");
+            return;
+        }
+        dir = Paths.get(directory);
+        Files.createDirectories(dir);
+
+        List<Long> segments = listSegments();
+        long lastSegment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        boolean lastIncomplete = false;
+        for (Long segment : List.copyOf(segments)) {
+            Header header = header(segmentPath(segment));
+            if (header == Header.VALID) {
+                continue;
+            }
+            if (header == Header.INCOMPLETE && segment == lastSegment) {
+                // El pod cayó al crear el segmento, antes de escribir la cabecera
+                lastIncomplete = true;
+                continue;
+            }
+            quarantine(segment, header);
+            segments.remove(segment);
+        }
+
+        if (segments.isEmpty() || segments.get(segments.size() - 1) != lastSegment) {
+            // Los números de segmento no se reutilizan: un snapshot puede apuntar al apartado
+            openNewSegment(lastSegment + 1);
+        } else {
+            currentSegment = lastSegment;
+            channel = FileChannel.open(segmentPath(currentSegment), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (lastIncomplete) {
+                channel.truncate(0);
+                writeSegmentHeader();
+            } else {
+                long validBytes = recover(segmentPath(currentSegment));
+                if (channel.size() > validBytes) {
+                    log.warn("Truncando cola corrupta del segmento {}: {} -> {} bytes", currentSegment, channel.size(), validBytes);
+                    channel.truncate(validBytes);
+                }
+            }
+            channel.position(channel.size());
+        }
+        log.info("Journal local abierto en {} (segmento actual: {})", dir.toAbsolutePath(), currentSegment);
+    }
+
+    public boolean isEnabled() {
+        return channel != null;
+    }
+
+    public synchronized JournalPosition append(byte[] payload) {
+        if (channel == null) {
+            return null;
+        }
+        try {
+            if (channel.size() > SEGMENT_HEADER_BYTES
+                    && channel.size() + RECORD_HEADER_BYTES + payload.length > segmentSizeBytes) {
+                rotate();
+            }
+            crc.reset();
+            crc.update(payload);
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+            buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+            return new JournalPosition(currentSegment, channel.position());
+        } catch (IOException e) {
+            log.error("Error al escribir en el journal local", e);
+            return null;
+        }
+    }
+
+    public synchronized JournalPosition position() {
+        if (channel == null) {
+            return JournalPosition.START;
+        }
+        try {
+            return new JournalPosition(currentSegment, channel.position());
+        } catch (IOException e) {
+            return new JournalPosition(currentSegment, 0);
+        }
+    }
+
+    /**
+     * Reproduce en orden todos los registros válidos a partir de la posición indicada.
+     * El consumidor recibe la posición final de cada registro junto con su payload.
+     */
+    public long replay(JournalPosition from, BiConsumer<JournalPosition, byte[]> consumer) throws IOException {
+        if (dir == null) {
+            return 0;
+        }
+        long replayed = 0;
+        for (Long segment : listSegments()) {
+            if (segment < from.segment()) {
+                continue;
+            }
+            long startOffset = segment == from.segment() ? from.offset() : 0;
+            replayed += replaySegment(segment, startOffset, consumer);
+        }
+        return replayed;
+    }
+
+    /**
+     * Elimina los segmentos completos anteriores al indicado (ya cubiertos por un snapshot).
+     */
+    public synchronized void deleteSegmentsBefore(long segment) {
+        if (dir == null) {
+            return;
+        }
+        try {
+            for (Long existing : listSegments()) {
+                if (existing < segment && existing != currentSegment) {
+                    Files.deleteIfExists(segmentPath(existing));
+                    log.info("Segmento de journal {} eliminado", existing);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("No se pudieron eliminar segmentos antiguos del journal", e);
+        }
+    }
+
+    public synchronized void rotate() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        channel.force(true);
+        channel.close();
+        openNewSegment(currentSegment + 1);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(true);
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Error al cerrar el journal local", e);
+        } finally {
+            channel = null;
+        }
+    }
+
+    private long replaySegment(long segment, long startOffset, BiConsumer<JournalPosition, byte[]> consumer) throws IOException {
+        Path path = segmentPath(segment);
+        long replayed = 0;
+        try (InputStream raw = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 16))) {
+            try {
+                int magic = in.readInt();
+                int version = in.readInt();
+                if (magic != MAGIC || version != VERSION) {
+                    log.warn("Segmento de journal {} con cabecera inválida o versión {} desconocida, se omite", segment, version);
+                    return 0;
+                }
+            } catch (EOFException eof) {
+                return 0;
+            }
+            long offset = SEGMENT_HEADER_BYTES;
+            if (startOffset > offset) {
+                in.skipNBytes(startOffset - offset);
+                offset = startOffset;
+            }
+            CRC32 checksum = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException eof) {
+                    break;
+                }
+                int expectedCrc = in.readInt();
+                if (length < 0 || length > segmentSizeBytes) {
+                    log.warn("Registro con longitud inválida en segmento {} offset {}", segment, offset);
+                    break;
+                }
+                byte[] payload = in.readNBytes(length);
+                if (payload.length < length) {
+                    break;
+                }
+                checksum.reset();
+                checksum.update(payload);
+                if ((int) checksum.getValue() != expectedCrc) {
+                    log.warn("Checksum inválido en segmento {} offset {}, se detiene la reproducción del segmento", segment, offset);
+                    break;
+                }
+                offset += RECORD_HEADER_BYTES + length;
+                consumer.accept(new JournalPosition(segment, offset), payload);
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Bytes válidos de un segmento con cabecera ya comprobada.
+     */
+    private long recover(Path path) throws IOException {
+        long valid = SEGMENT_HEADER_BYTES;
+        try (InputStream raw = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 16))) {
+            in.skipNBytes(SEGMENT_HEADER_BYTES);
+            CRC32 checksum = new CRC32();
+            while (true) {
+                int length = in.readInt();
+                int expectedCrc = in.readInt();
+                if (length < 0 || length > segmentSizeBytes) {
+                    break;
+                }
+                byte[] payload = in.readNBytes(length);
+                if (payload.length < length) {
+                    break;
+                }
+                checksum.reset();
+                checksum.update(payload);
+                if ((int) checksum.getValue() != expectedCrc) {
+                    break;
+                }
+                valid += RECORD_HEADER_BYTES + length;
+            }
+        } catch (EOFException eof) {
+            // Fin del segmento: lo leído hasta aquí es válido
+        }
+        return valid;
+    }
+
+    private static Header header(Path path) throws IOException {
+        try (InputStream raw = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(raw)) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION ? Header.VALID : Header.UNKNOWN;
+        } catch (EOFException eof) {
+            return Header.INCOMPLETE;
+        }
+    }
+
+    /**
+     * Renombra el segmento para que no se reproduzca ni se sobrescriba. Si no se puede
+     * apartar, el journal no se abre.
+     */
+    private void quarantine(long segment, Header header) throws IOException {
+        Path path = segmentPath(segment);
+        Path target = path.resolveSibling(path.getFileName() + QUARANTINE_SUFFIX);
+        Files.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+        log.error("Segmento de journal {} con cabecera {}: se aparta como {} y no se reproduce", segment,
+            header == Header.INCOMPLETE ? "incompleta" : "de otro formato o versión", target.getFileName());
+    }
+
+    private void openNewSegment(long segment) throws IOException {
+        currentSegment = segment;
+        channel = FileChannel.open(segmentPath(segment),
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        writeSegmentHeader();
+    }
+
+    private void writeSegmentHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        channel.position(0);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                .forEach(name -> segments.add(Long.parseLong(
+                    name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))));
+        }
+        segments.sort(Long::compare);
+        return segments;
+    }
+
+    private Path segmentPath(long segment) {
+        return dir.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private enum Header {
+        VALID, INCOMPLETE, UNKNOWN
+    }
+}
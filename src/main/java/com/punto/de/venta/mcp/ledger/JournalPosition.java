@@ -0,0 +1,12 @@
+package com.punto.de.venta.mcp.ledger;
+
+public record JournalPosition(long segment, long offset) implements Comparable<JournalPosition> {
+
+    public static final JournalPosition START = new JournalPosition(0, 0);
+
+    @Override
+    public int compareTo(JournalPosition other) {
+        int bySegment = Long.compare(segment, other.segment);
+        return bySegment != 0 ? bySegment : Long.compare(offset, other.offset);
+    }
+}
@@ -0,0 +1,26 @@
+package com.punto.de.venta.mcp.ledger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerEvent {
+
+    public enum Op { UPSERT, DELETE, SYNC }
+
+    private Op op;
+    private LedgerKind kind;
+    private Long userId;
+    private Long entityId;
+    private JsonNode data;
+    private LocalDate syncedThrough;
+    private Boolean fullSync;
+    private Instant recordedAt;
+}
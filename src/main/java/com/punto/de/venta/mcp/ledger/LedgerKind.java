@@ -0,0 +1,106 @@
+package com.punto.de.venta.mcp.ledger;
+
+import com.punto.de.venta.mcp.model.Budget;
+import com.punto.de.venta.mcp.model.CreditCard;
+import com.punto.de.venta.mcp.model.Transaction;
+import com.punto.de.venta.mcp.model.TransactionCategory;
+import com.punto.de.venta.mcp.model.User;
+
+public enum LedgerKind {
+
+    TRANSACTION(Transaction.class) {
+        @Override
+        Long idOf(Object entity) {
+            return ((Transaction) entity).getId();
+        }
+
+        @Override
+        User userOf(Object entity) {
+            return ((Transaction) entity).getUser();
+        }
+
+        @Override
+        Object copyOf(Object entity) {
+            Transaction t = (Transaction) entity;
+            return new Transaction(t.getId(), t.getUser(), t.getType(), t.getDescription(), t.getTransactionCategory(),
+                t.getAmount(), t.getTransactionDate(), t.getRecurringRef(), t.getCreditCardId(), t.getSource(),
+                t.getMetadata(), t.getCreatedAt());
+        }
+    },
+    BUDGET(Budget.class) {
+        @Override
+        Long idOf(Object entity) {
+            return ((Budget) entity).getId();
+        }
+
+        @Override
+        User userOf(Object entity) {
+            return ((Budget) entity).getUser();
+        }
+
+        @Override
+        Object copyOf(Object entity) {
+            Budget b = (Budget) entity;
+            return new Budget(b.getId(), b.getUser(), b.getTransactionCategory(), b.getAmountLimit(), b.getPeriod(),
+                b.getStartDate(), b.getEndDate(), b.getMetadata(), b.getCreatedAt());
+        }
+    },
+    CREDIT_CARD(CreditCard.class) {
+        @Override
+        Long idOf(Object entity) {
+            return ((CreditCard) entity).getId();
+        }
+
+        @Override
+        User userOf(Object entity) {
+            return ((CreditCard) entity).getUser();
+        }
+
+        @Override
+        Object copyOf(Object entity) {
+            CreditCard c = (CreditCard) entity;
+            return new CreditCard(c.getId(), c.getUser(), c.getCardName(), c.getLastFourDigits(), c.getCutOffDay(),
+                c.getPaymentDueDay(), c.getCreditLimit(), c.getCurrentBalance(), c.getMetadata(), c.getCreatedAt(),
+                c.getUpdatedAt());
+        }
+    },
+    CATEGORY(TransactionCategory.class) {
+        @Override
+        Long idOf(Object entity) {
+            return ((TransactionCategory) entity).getId();
+        }
+
+        @Override
+        User userOf(Object entity) {
+            return ((TransactionCategory) entity).getUser();
+        }
+
+        @Override
+        Object copyOf(Object entity) {
+            TransactionCategory c = (TransactionCategory) entity;
+            return new TransactionCategory(c.getId(), c.getUser(), c.getCategoryName(), c.getParentCategory(),
+                c.getCreatedAt(), c.getUpdatedAt());
+        }
+    };
+
+    private final Class<?> entityClass;
+
+    LedgerKind(Class<?> entityClass) {
+        this.entityClass = entityClass;
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    abstract Long idOf(Object entity);
+
+    abstract User userOf(Object entity);
+
+    abstract Object copyOf(Object entity);
+
+    Long userIdOf(Object entity) {
+        User user = userOf(entity);
+        return user != null ? user.getId() : null;
+    }
+}
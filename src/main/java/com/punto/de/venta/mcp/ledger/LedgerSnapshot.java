@@ -0,0 +1,489 @@
+package com.punto.de.venta.mcp.ledger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punto.de.venta.mcp.model.Transaction;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Snapshot binario de los ledgers por usuario, pensado para mapearse en memoria y
+ * consultarse sin deserializar.
+ *
+ * Formato (big-endian):
+ * <pre>
+ * cabecera (96 bytes)   magic, versión, posición del journal, conteos y offsets de sección
+ * índice de usuarios    56 bytes por usuario, ordenado por userId
+ * columnas              ids long[N] | epochDay int[N] | amountCents long[N] | type byte[N]
+ * índice de dueños      20 bytes por entidad (kind, id, userId), ordenado por kind e id
+ * blobs                 JSON por usuario con todas sus entidades, solo para materializar
+ * </pre>
+ * Las transacciones de cada usuario ocupan un rango contiguo de filas ordenado por fecha.
+ */
+@Slf4j
+class LedgerSnapshot {
+
+    static final int MAGIC = 0x504C5331; // "PLS1"
+    static final int CURRENT_VERSION = 1;
+
+    private static final int HEADER_BYTES = 96;
+    private static final int USER_ENTRY_BYTES = 56;
+    private static final int OWNER_ENTRY_BYTES = 20;
+    private static final int TX_ROW_BYTES = 8 + 4 + 8 + 1;
+
+    private static final int FLAG_INEXACT_AMOUNTS = 1;
+    private static final long NONE = Long.MIN_VALUE;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final byte TYPE_OTHER = 0;
+    private static final byte TYPE_INCOME = 1;
+    private static final byte TYPE_EXPENSE = 2;
+
+    private final MappedByteBuffer buffer;
+    private final JournalPosition position;
+    private final int userCount;
+    private final int txCount;
+    private final int ownerCount;
+    private final long userIndexOffset;
+    private final long txOffset;
+    private final long ownerOffset;
+
+    private LedgerSnapshot(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = new JournalPosition(buffer.getLong(8), buffer.getLong(16));
+        this.userCount = buffer.getInt(32);
+        this.txCount = buffer.getInt(36);
+        this.ownerCount = buffer.getInt(40);
+        this.userIndexOffset = buffer.getLong(48);
+        this.txOffset = buffer.getLong(56);
+        this.ownerOffset = buffer.getLong(64);
+    }
+
+    /**
+     * Mapea el snapshot. Devuelve {@code null} si no existe, está truncado o es de una
+     * versión de formato desconocida: en ese caso se reconstruye desde el journal y la API.
+     */
+    static LedgerSnapshot open(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                log.warn("Snapshot {} con tamaño inválido ({} bytes), se ignora", path, size);
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC) {
+                log.warn("Snapshot {} sin cabecera válida, se ignora", path);
+                return null;
+            }
+            int version = buffer.getInt(4);
+            if (version != CURRENT_VERSION) {
+                log.warn("Versión de snapshot {} no soportada (esperada {}), se ignora", version, CURRENT_VERSION);
+                return null;
+            }
+            if (buffer.getLong(80) != size) {
+                log.warn("Snapshot {} incompleto, se ignora", path);
+                return null;
+            }
+            return new LedgerSnapshot(buffer);
+        } catch (IOException e) {
+            log.warn("No se pudo mapear el snapshot {}", path, e);
+            return null;
+        }
+    }
+
+    JournalPosition position() {
+        return position;
+    }
+
+    int userCount() {
+        return userCount;
+    }
+
+    Long userIdAt(int index) {
+        return buffer.getLong(userEntry(index));
+    }
+
+    boolean contains(Long userId) {
+        return indexOf(userId) >= 0;
+    }
+
+    LocalDate syncedThrough(Long userId) {
+        int index = indexOf(userId);
+        if (index < 0) {
+            return null;
+        }
+        long epochDay = buffer.getLong(userEntry(index) + 32);
+        return epochDay == NONE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    Instant lastSync(Long userId) {
+        int index = indexOf(userId);
+        return index < 0 ? null : instantAt(userEntry(index) + 40);
+    }
+
+    Instant lastFullSync(Long userId) {
+        int index = indexOf(userId);
+        return index < 0 ? null : instantAt(userEntry(index) + 48);
+    }
+
+    /**
+     * Suma en sitio sobre las columnas mapeadas. Devuelve {@code null} si el usuario no
+     * está en el snapshot o si la suma no puede resolverse sin materializar.
+     */
+    BigDecimal sumAmount(Long userId, String type, LocalDate startDate, LocalDate endDate) {
+        int index = indexOf(userId);
+        byte code = typeCode(type);
+        if (index < 0 || code == TYPE_OTHER) {
+            return null;
+        }
+        int entry = userEntry(index);
+        if ((buffer.getInt(entry + 28) & FLAG_INEXACT_AMOUNTS) != 0) {
+            return null;
+        }
+        int start = buffer.getInt(entry + 8);
+        int end = start + buffer.getInt(entry + 12);
+        long from = startDate.toEpochDay();
+        long to = endDate.toEpochDay();
+
+        int lo = start;
+        int hi = end;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (dayAt(mid) < from) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        long cents = 0;
+        for (int row = lo; row < end && dayAt(row) <= to; row++) {
+            if (typeAt(row) == code) {
+                cents += centsAt(row);
+            }
+        }
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * Busca el usuario dueño de una entidad sin materializar nada.
+     */
+    Long ownerOf(LedgerKind kind, Long id) {
+        int lo = 0;
+        int hi = ownerCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int at = (int) (ownerOffset + (long) mid * OWNER_ENTRY_BYTES);
+            int cmp = Integer.compare(buffer.getInt(at), kind.ordinal());
+            if (cmp == 0) {
+                cmp = Long.compare(buffer.getLong(at + 4), id);
+            }
+            if (cmp == 0) {
+                return buffer.getLong(at + 12);
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Materializa el estado completo de un usuario a partir de su blob.
+     */
+    UserImage read(Long userId, ObjectMapper objectMapper) throws IOException {
+        int index = indexOf(userId);
+        if (index < 0) {
+            return null;
+        }
+        int entry = userEntry(index);
+        JsonNode root = objectMapper.readTree(blob(entry));
+        Map<LedgerKind, List<Object>> entities = new EnumMap<>(LedgerKind.class);
+        for (LedgerKind kind : LedgerKind.values()) {
+            List<Object> list = new ArrayList<>();
+            JsonNode nodes = root.get(kind.name());
+            if (nodes != null) {
+                for (JsonNode node : nodes) {
+                    list.add(objectMapper.treeToValue(node, kind.getEntityClass()));
+                }
+            }
+            entities.put(kind, list);
+        }
+        return new UserImage(userId, entities, syncedThrough(userId), lastSync(userId), lastFullSync(userId));
+    }
+
+    /**
+     * Escribe un snapshot nuevo de forma atómica (archivo temporal + rename). Los usuarios
+     * que no están en {@code images} se copian tal cual desde {@code previous}.
+     */
+    static void write(Path target, JournalPosition position, List<UserImage> images, LedgerSnapshot previous,
+                      ObjectMapper objectMapper) throws IOException {
+        List<UserRecord> records = new ArrayList<>();
+        List<long[]> owners = new ArrayList<>();
+        Set<Long> written = new HashSet<>();
+        for (UserImage image : images) {
+            records.add(UserRecord.of(image, objectMapper, owners));
+            written.add(image.userId());
+        }
+        if (previous != null) {
+            Set<Long> copied = new HashSet<>();
+            for (int i = 0; i < previous.userCount; i++) {
+                Long userId = previous.userIdAt(i);
+                if (!written.contains(userId)) {
+                    records.add(previous.copyRecord(i));
+                    copied.add(userId);
+                }
+            }
+            for (int i = 0; i < previous.ownerCount; i++) {
+                int at = (int) (previous.ownerOffset + (long) i * OWNER_ENTRY_BYTES);
+                long owner = previous.buffer.getLong(at + 12);
+                if (copied.contains(owner)) {
+                    owners.add(new long[]{previous.buffer.getInt(at), previous.buffer.getLong(at + 4), owner});
+                }
+            }
+        }
+        records.sort(Comparator.comparingLong(UserRecord::userId));
+        owners.sort(Comparator.<long[]>comparingLong(o -> o[0]).thenComparingLong(o -> o[1]));
+
+        long rows = 0;
+        long blobBytes = 0;
+        for (UserRecord record : records) {
+            rows += record.ids.length;
+            blobBytes += record.blob.length;
+        }
+        long userIndexOffset = HEADER_BYTES;
+        long txOffset = userIndexOffset + (long) records.size() * USER_ENTRY_BYTES;
+        long ownerOffset = txOffset + rows * TX_ROW_BYTES;
+        long blobOffset = ownerOffset + (long) owners.size() * OWNER_ENTRY_BYTES;
+        long fileLength = blobOffset + blobBytes;
+        if (fileLength > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot demasiado grande para mapearse: " + fileLength + " bytes");
+        }
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream raw = Channels.newOutputStream(channel);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(raw, 1 << 16));
+
+            out.writeInt(MAGIC);
+            out.writeInt(CURRENT_VERSION);
+            out.writeLong(position.segment());
+            out.writeLong(position.offset());
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(records.size());
+            out.writeInt((int) rows);
+            out.writeInt(owners.size());
+            out.writeInt(0);
+            out.writeLong(userIndexOffset);
+            out.writeLong(txOffset);
+            out.writeLong(ownerOffset);
+            out.writeLong(blobOffset);
+            out.writeLong(fileLength);
+            out.writeLong(0);
+
+            int rowStart = 0;
+            long blobStart = blobOffset;
+            for (UserRecord record : records) {
+                out.writeLong(record.userId);
+                out.writeInt(rowStart);
+                out.writeInt(record.ids.length);
+                out.writeLong(blobStart);
+                out.writeInt(record.blob.length);
+                out.writeInt(record.flags);
+                out.writeLong(record.syncedThrough);
+                out.writeLong(record.lastSync);
+                out.writeLong(record.lastFullSync);
+                rowStart += record.ids.length;
+                blobStart += record.blob.length;
+            }
+            for (UserRecord record : records) {
+                for (long id : record.ids) {
+                    out.writeLong(id);
+                }
+            }
+            for (UserRecord record : records) {
+                for (int day : record.days) {
+                    out.writeInt(day);
+                }
+            }
+            for (UserRecord record : records) {
+                for (long cents : record.cents) {
+                    out.writeLong(cents);
+                }
+            }
+            for (UserRecord record : records) {
+                out.write(record.types);
+            }
+            for (long[] owner : owners) {
+                out.writeInt((int) owner[0]);
+                out.writeLong(owner[1]);
+                out.writeLong(owner[2]);
+            }
+            for (UserRecord record : records) {
+                out.write(record.blob);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private UserRecord copyRecord(int index) {
+        int entry = userEntry(index);
+        int start = buffer.getInt(entry + 8);
+        int count = buffer.getInt(entry + 12);
+        long[] ids = new long[count];
+        int[] days = new int[count];
+        long[] cents = new long[count];
+        byte[] types = new byte[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = idAt(start + i);
+            days[i] = dayAt(start + i);
+            cents[i] = centsAt(start + i);
+            types[i] = typeAt(start + i);
+        }
+        return new UserRecord(buffer.getLong(entry), ids, days, cents, types, blob(entry),
+            buffer.getInt(entry + 28), buffer.getLong(entry + 32),
+            buffer.getLong(entry + 40), buffer.getLong(entry + 48));
+    }
+
+    private int indexOf(Long userId) {
+        if (userId == null) {
+            return -1;
+        }
+        int lo = 0;
+        int hi = userCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long value = buffer.getLong(userEntry(mid));
+            if (value < userId) {
+                lo = mid + 1;
+            } else if (value > userId) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int userEntry(int index) {
+        return (int) (userIndexOffset + (long) index * USER_ENTRY_BYTES);
+    }
+
+    private long idAt(int row) {
+        return buffer.getLong((int) (txOffset + 8L * row));
+    }
+
+    private int dayAt(int row) {
+        return buffer.getInt((int) (txOffset + 8L * txCount + 4L * row));
+    }
+
+    private long centsAt(int row) {
+        return buffer.getLong((int) (txOffset + 12L * txCount + 8L * row));
+    }
+
+    private byte typeAt(int row) {
+        return buffer.get((int) (txOffset + 20L * txCount + row));
+    }
+
+    private byte[] blob(int entry) {
+        long offset = buffer.getLong(entry + 16);
+        int length = buffer.getInt(entry + 24);
+        byte[] bytes = new byte[length];
+        buffer.get((int) offset, bytes);
+        return bytes;
+    }
+
+    private Instant instantAt(int at) {
+        long millis = buffer.getLong(at);
+        return millis == NONE ? null : Instant.ofEpochMilli(millis);
+    }
+
+    private static byte typeCode(String type) {
+        if ("INCOME".equals(type)) {
+            return TYPE_INCOME;
+        }
+        if ("EXPENSE".equals(type)) {
+            return TYPE_EXPENSE;
+        }
+        return TYPE_OTHER;
+    }
+
+    private record UserRecord(long userId, long[] ids, int[] days, long[] cents, byte[] types, byte[] blob,
+                              int flags, long syncedThrough, long lastSync, long lastFullSync) {
+
+        static UserRecord of(UserImage image, ObjectMapper objectMapper, List<long[]> owners) throws IOException {
+            Map<String, List<Object>> document = new LinkedHashMap<>();
+            for (Map.Entry<LedgerKind, List<Object>> entry : image.entities().entrySet()) {
+                document.put(entry.getKey().name(), entry.getValue());
+                for (Object entity : entry.getValue()) {
+                    Long id = entry.getKey().idOf(entity);
+                    if (id != null) {
+                        owners.add(new long[]{entry.getKey().ordinal(), id, image.userId()});
+                    }
+                }
+            }
+
+            List<Transaction> transactions = new ArrayList<>();
+            for (Object entity : image.entities().getOrDefault(LedgerKind.TRANSACTION, List.of())) {
+                Transaction t = (Transaction) entity;
+                if (t.getId() != null) {
+                    transactions.add(t);
+                }
+            }
+            transactions.sort(UserLedger.BY_DATE_AND_ID);
+            int count = transactions.size();
+            long[] ids = new long[count];
+            int[] days = new int[count];
+            long[] cents = new long[count];
+            byte[] types = new byte[count];
+            int flags = 0;
+            for (int i = 0; i < count; i++) {
+                Transaction t = transactions.get(i);
+                ids[i] = t.getId();
+                days[i] = t.getTransactionDate() != null ? (int) t.getTransactionDate().toEpochDay() : NO_DATE;
+                types[i] = typeCode(t.getType());
+                if (t.getAmount() != null) {
+                    try {
+                        cents[i] = t.getAmount().setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+                    } catch (ArithmeticException e) {
+                        flags |= FLAG_INEXACT_AMOUNTS;
+                    }
+                }
+            }
+            return new UserRecord(image.userId(), ids, days, cents, types, objectMapper.writeValueAsBytes(document),
+                flags,
+                image.syncedThrough() != null ? image.syncedThrough().toEpochDay() : NONE,
+                image.lastSync() != null ? image.lastSync().toEpochMilli() : NONE,
+                image.lastFullSync() != null ? image.lastFullSync().toEpochMilli() : NONE);
+        }
+    }
+}
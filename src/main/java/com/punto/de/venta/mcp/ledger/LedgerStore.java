@@ -0,0 +1,416 @@
+package com.punto.de.venta.mcp.ledger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punto.de.venta.mcp.model.Transaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ledgers por usuario reconstruidos desde el journal local. Los servicios le
+ * informan de todo lo que leen o escriben contra ai-finance-rest-api; solo los
+ * cambios reales se anexan al journal. Periódicamente se compacta todo en un
+ * snapshot mapeado en memoria; los usuarios que solo están en el snapshot se
+ * materializan la primera vez que se tocan.
+ */
+@Component
+@Slf4j
+public class LedgerStore {
+
+    public static final LocalDate OPEN_END = LocalDate.of(9999, 12, 31);
+
+    private final EventJournal journal;
+    private final ObjectMapper objectMapper;
+    private final Map<Long, UserLedger> ledgers = new ConcurrentHashMap<>();
+    private final Map<LedgerKind, Map<Long, Long>> owners = new EnumMap<>(LedgerKind.class);
+
+    @Value("${ai.finance.ledger.delta-overlap-days:35}")
+    private int deltaOverlapDays = 35;
+
+    @Value("${ai.finance.ledger.full-sync-interval:PT6H}")
+    private Duration fullSyncInterval = Duration.ofHours(6);
+
+    @Value("${ai.finance.ledger.max-staleness:PT2M}")
+    private Duration maxStaleness = Duration.ofMinutes(2);
+
+    @Value("${ai.finance.snapshot.enabled:false}")
+    private boolean snapshotEnabled;
+
+    @Value("${ai.finance.snapshot.path:data/snapshot/ledger.snap}")
+    private String snapshotPath = "data/snapshot/ledger.snap";
+
+    @Value("${ai.finance.snapshot.interval:PT15M}")
+    private Duration snapshotInterval = Duration.ofMinutes(15);
+
+    private final Object snapshotLock = new Object();
+    private volatile LedgerSnapshot snapshot;
+    private ScheduledExecutorService snapshotScheduler;
+
+    public LedgerStore(EventJournal journal, ObjectMapper objectMapper) {
+        this.journal = journal;
+        this.objectMapper = objectMapper;
+        for (LedgerKind kind : LedgerKind.values()) {
+            owners.put(kind, new ConcurrentHashMap<>());
+        }
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        if (!journal.isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        JournalPosition from = JournalPosition.START;
+        if (snapshotEnabled) {
+            snapshot = LedgerSnapshot.open(Paths.get(snapshotPath));
+            if (snapshot != null) {
+                from = snapshot.position();
+                log.info("Snapshot de ledgers mapeado: {} usuarios, journal desde {}", snapshot.userCount(), from);
+            }
+        }
+        try {
+            long replayed = journal.replay(from, (position, payload) -> applyPayload(payload));
+            log.info("Ledgers reconstruidos: {} eventos de journal reproducidos, {} usuarios materializados en {} ms",
+                replayed, ledgers.size(), Duration.ofNanos(System.nanoTime() - start).toMillis());
+        } catch (Exception e) {
+            log.error("Error al reproducir el journal local, se continúa con ledgers vacíos", e);
+        }
+        if (snapshotEnabled) {
+            snapshotScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "ledger-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = snapshotInterval.toMillis();
+            snapshotScheduler.scheduleWithFixedDelay(this::writeSnapshotQuietly, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+            writeSnapshotQuietly();
+        }
+    }
+
+    /**
+     * Compacta el estado actual en un snapshot nuevo y elimina los segmentos de journal
+     * que ya quedan cubiertos. El snapshot se escribe antes de borrar nada.
+     */
+    public void writeSnapshot() throws IOException {
+        if (!journal.isEnabled()) {
+            return;
+        }
+        synchronized (snapshotLock) {
+            long start = System.nanoTime();
+            journal.rotate();
+            JournalPosition position = journal.position();
+            List<UserImage> images = new ArrayList<>(ledgers.size());
+            for (UserLedger ledger : ledgers.values()) {
+                images.add(ledger.image());
+            }
+            Path path = Paths.get(snapshotPath);
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            LedgerSnapshot.write(path, position, images, snapshot, objectMapper);
+            LedgerSnapshot written = LedgerSnapshot.open(path);
+            if (written == null) {
+                log.warn("El snapshot recién escrito no pudo abrirse, se conservan los segmentos del journal");
+                return;
+            }
+            snapshot = written;
+            journal.deleteSegmentsBefore(position.segment());
+            log.info("Snapshot de ledgers escrito: {} usuarios en {} ms", written.userCount(),
+                Duration.ofNanos(System.nanoTime() - start).toMillis());
+        }
+    }
+
+    private void writeSnapshotQuietly() {
+        try {
+            writeSnapshot();
+        } catch (Exception e) {
+            log.error("Error al escribir el snapshot de ledgers", e);
+        }
+    }
+
+    public void record(LedgerKind kind, Object entity) {
+        if (entity == null) {
+            return;
+        }
+        Long userId = kind.userIdOf(entity);
+        Long id = kind.idOf(entity);
+        if (userId == null || id == null) {
+            return;
+        }
+        UserLedger ledger = ledger(userId);
+        if (ledger.put(kind, id, entity)) {
+            owners.get(kind).put(id, userId);
+            append(new LedgerEvent(LedgerEvent.Op.UPSERT, kind, userId, id, objectMapper.valueToTree(entity),
+                null, null, Instant.now()));
+        }
+    }
+
+    public void recordAll(LedgerKind kind, Collection<?> entities) {
+        if (entities == null) {
+            return;
+        }
+        for (Object entity : entities) {
+            record(kind, entity);
+        }
+    }
+
+    /**
+     * Usuario dueño de una entidad que el ledger conoce, o {@code null}.
+     */
+    public Long ownerOf(LedgerKind kind, Long id) {
+        Long userId = owners.get(kind).get(id);
+        LedgerSnapshot current = snapshot;
+        return userId == null && current != null ? current.ownerOf(kind, id) : userId;
+    }
+
+    public void remove(LedgerKind kind, Long id) {
+        Long userId = owners.get(kind).remove(id);
+        LedgerSnapshot current = snapshot;
+        if (userId == null && current != null) {
+            userId = current.ownerOf(kind, id);
+        }
+        if (userId == null) {
+            return;
+        }
+        if (ledger(userId).remove(kind, id)) {
+            append(new LedgerEvent(LedgerEvent.Op.DELETE, kind, userId, id, null, null, null, Instant.now()));
+        }
+    }
+
+    /**
+     * Sustituye el contenido conocido de un usuario por la lista completa devuelta
+     * por la API (presupuestos, tarjetas, categorías), registrando también las bajas.
+     */
+    public void replaceAll(LedgerKind kind, Long userId, Collection<?> fetched) {
+        if (fetched == null) {
+            return;
+        }
+        reconcile(kind, userId, null, fetched);
+    }
+
+    /**
+     * Devuelve la fecha desde la que basta pedir transacciones para ponerse al día,
+     * o {@code null} si hace falta una sincronización completa.
+     */
+    public LocalDate transactionsDeltaStart(Long userId) {
+        UserLedger ledger = ledgers.get(userId);
+        LedgerSnapshot current = snapshot;
+        LocalDate syncedThrough;
+        Instant lastFullSync;
+        if (ledger != null) {
+            syncedThrough = ledger.getSyncedThrough();
+            lastFullSync = ledger.getLastFullSync();
+        } else if (current != null && current.contains(userId)) {
+            syncedThrough = current.syncedThrough(userId);
+            lastFullSync = current.lastFullSync(userId);
+        } else {
+            return null;
+        }
+        if (syncedThrough == null || lastFullSync == null
+                || lastFullSync.plus(fullSyncInterval).isBefore(Instant.now())) {
+            return null;
+        }
+        return syncedThrough.minusDays(deltaOverlapDays);
+    }
+
+    /**
+     * Aplica el resultado de una sincronización (completa si {@code from == null},
+     * incremental desde {@code from} en otro caso) y devuelve el historial completo.
+     */
+    public List<Transaction> syncTransactions(Long userId, LocalDate from, List<Transaction> fetched) {
+        applyTransactionsSync(userId, from, fetched);
+        return ledger(userId).sortedTransactions();
+    }
+
+    /**
+     * Como {@link #syncTransactions} pero sin copiar el historial, para quien después
+     * pagina con {@link #transactionsPage}.
+     */
+    public void applyTransactionsSync(Long userId, LocalDate from, List<Transaction> fetched) {
+        UserLedger ledger = ledger(userId);
+        if (fetched != null) {
+            reconcile(LedgerKind.TRANSACTION, userId, from, fetched);
+            LocalDate today = LocalDate.now();
+            Instant now = Instant.now();
+            boolean fullSync = from == null;
+            ledger.markSynced(today, now, fullSync);
+            append(new LedgerEvent(LedgerEvent.Op.SYNC, LedgerKind.TRANSACTION, userId, null, null,
+                today, fullSync, now));
+        }
+    }
+
+    /**
+     * Hasta {@code max} transacciones del rango en orden de fecha e id, posteriores a
+     * {@code (afterDate, afterId)} si se indica, leídas del índice ordenado del ledger.
+     */
+    public List<Transaction> transactionsPage(Long userId, LocalDate startDate, LocalDate endDate, String type,
+                                              LocalDate afterDate, Long afterId, int max) {
+        LocalDate from = afterDate != null && afterDate.isAfter(startDate) ? afterDate : startDate;
+        return ledger(userId).transactionsPage(from, endDate, type, afterDate, afterId, max);
+    }
+
+    /**
+     * Suma del ledger si es fiable sin consultar la API: el rango termina antes del tramo
+     * que relee la sincronización incremental, o la última sincronización es reciente.
+     * Así un snapshot cargado al arrancar sigue respondiendo por los meses ya cerrados.
+     */
+    public Optional<BigDecimal> freshSum(Long userId, String type, LocalDate startDate, LocalDate endDate) {
+        UserLedger ledger = ledgers.get(userId);
+        boolean settled = isSettled(userId, endDate);
+        if (ledger != null) {
+            if (!settled && isStale(ledger.getLastSync())) {
+                return Optional.empty();
+            }
+            return Optional.of(ledger.sumAmount(type, startDate, endDate));
+        }
+        // Usuario aún no materializado: se suma directamente sobre las columnas del snapshot
+        LedgerSnapshot current = snapshot;
+        if (current == null || (!settled && isStale(current.lastSync(userId)))) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(current.sumAmount(userId, type, startDate, endDate));
+    }
+
+    /**
+     * Suma del ledger local sin comprobar su antigüedad, para contrastarla con la API.
+     */
+    public BigDecimal localSum(Long userId, String type, LocalDate startDate, LocalDate endDate) {
+        return ledger(userId).sumAmount(type, startDate, endDate);
+    }
+
+    public <T> List<T> values(LedgerKind kind, Long userId) {
+        UserLedger ledger = ledgers.get(userId);
+        LedgerSnapshot current = snapshot;
+        if (ledger == null && current != null && current.contains(userId)) {
+            ledger = ledger(userId);
+        }
+        return ledger != null ? ledger.values(kind) : List.of();
+    }
+
+    /**
+     * {@code true} si el rango queda por completo antes de la marca de sincronización menos
+     * el solape: esas fechas solo cambian con una sincronización completa, que
+     * {@link #transactionsDeltaStart} exige pasado {@code fullSyncInterval}.
+     */
+    private boolean isSettled(Long userId, LocalDate endDate) {
+        LocalDate deltaStart = transactionsDeltaStart(userId);
+        return deltaStart != null && endDate != null && endDate.isBefore(deltaStart);
+    }
+
+    private boolean isStale(Instant lastSync) {
+        return lastSync == null || lastSync.plus(maxStaleness).isBefore(Instant.now());
+    }
+
+    private void reconcile(LedgerKind kind, Long userId, LocalDate from, Collection<?> fetched) {
+        UserLedger ledger = ledger(userId);
+        Set<Long> stale = new HashSet<>(ledger.idsInWindow(kind, from));
+        for (Object entity : fetched) {
+            Long id = kind.idOf(entity);
+            if (id == null) {
+                continue;
+            }
+            stale.remove(id);
+            if (ledger.put(kind, id, entity)) {
+                owners.get(kind).put(id, userId);
+                append(new LedgerEvent(LedgerEvent.Op.UPSERT, kind, userId, id, objectMapper.valueToTree(entity),
+                    null, null, Instant.now()));
+            }
+        }
+        for (Long id : stale) {
+            if (ledger.remove(kind, id)) {
+                owners.get(kind).remove(id);
+                append(new LedgerEvent(LedgerEvent.Op.DELETE, kind, userId, id, null, null, null, Instant.now()));
+            }
+        }
+    }
+
+    private void applyPayload(byte[] payload) {
+        try {
+            apply(objectMapper.readValue(payload, LedgerEvent.class));
+        } catch (Exception e) {
+            log.warn("Evento de journal ilegible, se omite: {}", e.getMessage());
+        }
+    }
+
+    void apply(LedgerEvent event) throws Exception {
+        UserLedger ledger = ledger(event.getUserId());
+        switch (event.getOp()) {
+            case UPSERT -> {
+                Object entity = objectMapper.treeToValue(event.getData(), event.getKind().getEntityClass());
+                ledger.put(event.getKind(), event.getEntityId(), entity);
+                owners.get(event.getKind()).put(event.getEntityId(), event.getUserId());
+            }
+            case DELETE -> {
+                ledger.remove(event.getKind(), event.getEntityId());
+                owners.get(event.getKind()).remove(event.getEntityId());
+            }
+            case SYNC -> ledger.markSynced(event.getSyncedThrough(), event.getRecordedAt(),
+                Boolean.TRUE.equals(event.getFullSync()));
+        }
+    }
+
+    UserLedger ledger(Long userId) {
+        return ledgers.computeIfAbsent(userId, this::materialize);
+    }
+
+    private UserLedger materialize(Long userId) {
+        UserLedger ledger = new UserLedger(userId);
+        LedgerSnapshot current = snapshot;
+        if (current != null && current.contains(userId)) {
+            try {
+                UserImage image = current.read(userId, objectMapper);
+                ledger.restore(image);
+                for (Map.Entry<LedgerKind, List<Object>> entry : image.entities().entrySet()) {
+                    for (Object entity : entry.getValue()) {
+                        Long id = entry.getKey().idOf(entity);
+                        if (id != null) {
+                            owners.get(entry.getKey()).put(id, userId);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("No se pudo materializar el usuario {} desde el snapshot, se sincronizará completo", userId, e);
+            }
+        }
+        return ledger;
+    }
+
+    private void append(LedgerEvent event) {
+        if (!journal.isEnabled()) {
+            return;
+        }
+        try {
+            journal.append(objectMapper.writeValueAsBytes(event));
+        } catch (Exception e) {
+            log.warn("No se pudo serializar el evento de ledger {}", event.getOp(), e);
+        }
+    }
+}
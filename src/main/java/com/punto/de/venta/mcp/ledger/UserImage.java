@@ -0,0 +1,16 @@
+package com.punto.de.venta.mcp.ledger;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copia consistente del estado de un {@link UserLedger} para escribirla en un snapshot.
+ */
+record UserImage(Long userId,
+                 Map<LedgerKind, List<Object>> entities,
+                 LocalDate syncedThrough,
+                 Instant lastSync,
+                 Instant lastFullSync) {
+}
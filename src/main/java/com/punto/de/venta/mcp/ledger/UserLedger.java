@@ -0,0 +1,214 @@
+package com.punto.de.venta.mcp.ledger;
+
+import com.punto.de.venta.mcp.model.Transaction;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Estado en memoria de un usuario: entidades conocidas por tipo, acumulados
+ * diarios de transacciones por tipo (INCOME/EXPENSE) para sumar rangos sin
+ * volver a recorrer el historial, y las transacciones ordenadas por fecha e id
+ * para paginarlas sin ordenar todo en cada página.
+ */
+class UserLedger {
+
+    static final Comparator<Transaction> BY_DATE_AND_ID = Comparator
+        .comparing(Transaction::getTransactionDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparing(Transaction::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final Long userId;
+    private final Map<LedgerKind, Map<Long, Object>> entities = new EnumMap<>(LedgerKind.class);
+    private final Map<String, TreeMap<LocalDate, BigDecimal>> dailyTotals = new HashMap<>();
+    private final NavigableSet<Transaction> byDate = new TreeSet<>(BY_DATE_AND_ID);
+
+    private LocalDate syncedThrough;
+    private Instant lastSync;
+    private Instant lastFullSync;
+
+    UserLedger(Long userId) {
+        this.userId = userId;
+        for (LedgerKind kind : LedgerKind.values()) {
+            entities.put(kind, new LinkedHashMap<>());
+        }
+    }
+
+    Long getUserId() {
+        return userId;
+    }
+
+    synchronized boolean put(LedgerKind kind, Long id, Object entity) {
+        Object previous = entities.get(kind).get(id);
+        if (Objects.equals(previous, entity)) {
+            return false;
+        }
+        Object copy = kind.copyOf(entity);
+        entities.get(kind).put(id, copy);
+        if (kind == LedgerKind.TRANSACTION) {
+            if (previous != null) {
+                addToRollup((Transaction) previous, true);
+                byDate.remove(previous);
+            }
+            addToRollup((Transaction) copy, false);
+            byDate.add((Transaction) copy);
+        }
+        return true;
+    }
+
+    synchronized boolean remove(LedgerKind kind, Long id) {
+        Object previous = entities.get(kind).remove(id);
+        if (previous instanceof Transaction t) {
+            addToRollup(t, true);
+            byDate.remove(t);
+        }
+        return previous != null;
+    }
+
+    synchronized Object get(LedgerKind kind, Long id) {
+        Object entity = entities.get(kind).get(id);
+        return entity != null ? kind.copyOf(entity) : null;
+    }
+
+    synchronized int size(LedgerKind kind) {
+        return entities.get(kind).size();
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized <T> List<T> values(LedgerKind kind) {
+        List<T> copies = new ArrayList<>(entities.get(kind).size());
+        for (Object entity : entities.get(kind).values()) {
+            copies.add((T) kind.copyOf(entity));
+        }
+        return copies;
+    }
+
+    synchronized List<Transaction> sortedTransactions() {
+        List<Transaction> transactions = new ArrayList<>(byDate.size());
+        for (Transaction t : byDate) {
+            transactions.add((Transaction) LedgerKind.TRANSACTION.copyOf(t));
+        }
+        return transactions;
+    }
+
+    /**
+     * Hasta {@code max} transacciones de {@code [from, endDate]} en orden de fecha e id,
+     * posteriores a {@code (afterDate, afterId)} si se indica. Se recorre el índice
+     * ordenado desde la posición pedida y solo se copian las filas devueltas.
+     */
+    synchronized List<Transaction> transactionsPage(LocalDate from, LocalDate endDate, String type,
+                                                    LocalDate afterDate, Long afterId, int max) {
+        Transaction position = new Transaction();
+        boolean exclusive = afterDate != null && afterId != null && afterDate.equals(from);
+        position.setTransactionDate(from);
+        position.setId(exclusive ? afterId : null);
+        List<Transaction> page = new ArrayList<>(Math.min(max, 64));
+        for (Transaction t : byDate.tailSet(position, !exclusive)) {
+            if (page.size() >= max || t.getTransactionDate().isAfter(endDate)) {
+                break;
+            }
+            if (type == null || type.equals(t.getType())) {
+                page.add((Transaction) LedgerKind.TRANSACTION.copyOf(t));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Ids de las entidades dentro de la ventana de sincronización. Para transacciones
+     * la ventana es por fecha; {@code from == null} significa todo el historial.
+     */
+    synchronized Set<Long> idsInWindow(LedgerKind kind, LocalDate from) {
+        Set<Long> ids = new HashSet<>();
+        for (Map.Entry<Long, Object> entry : entities.get(kind).entrySet()) {
+            if (from == null) {
+                ids.add(entry.getKey());
+            } else if (entry.getValue() instanceof Transaction t
+                    && t.getTransactionDate() != null && !t.getTransactionDate().isBefore(from)) {
+                ids.add(entry.getKey());
+            }
+        }
+        return ids;
+    }
+
+    synchronized BigDecimal sumAmount(String type, LocalDate startDate, LocalDate endDate) {
+        TreeMap<LocalDate, BigDecimal> totals = dailyTotals.get(type);
+        if (totals == null) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal sum = BigDecimal.ZERO;
+        for (BigDecimal daily : totals.subMap(startDate, true, endDate, true).values()) {
+            sum = sum.add(daily);
+        }
+        return sum;
+    }
+
+    synchronized void markSynced(LocalDate syncedThrough, Instant at, boolean fullSync) {
+        this.syncedThrough = syncedThrough;
+        this.lastSync = at;
+        if (fullSync) {
+            this.lastFullSync = at;
+        }
+    }
+
+    synchronized UserImage image() {
+        Map<LedgerKind, List<Object>> copies = new EnumMap<>(LedgerKind.class);
+        for (LedgerKind kind : LedgerKind.values()) {
+            copies.put(kind, values(kind));
+        }
+        return new UserImage(userId, copies, syncedThrough, lastSync, lastFullSync);
+    }
+
+    synchronized void restore(UserImage image) {
+        for (Map.Entry<LedgerKind, List<Object>> entry : image.entities().entrySet()) {
+            for (Object entity : entry.getValue()) {
+                Long id = entry.getKey().idOf(entity);
+                if (id != null) {
+                    put(entry.getKey(), id, entity);
+                }
+            }
+        }
+        this.syncedThrough = image.syncedThrough();
+        this.lastSync = image.lastSync();
+        this.lastFullSync = image.lastFullSync();
+    }
+
+    synchronized LocalDate getSyncedThrough() {
+        return syncedThrough;
+    }
+
+    synchronized Instant getLastSync() {
+        return lastSync;
+    }
+
+    synchronized Instant getLastFullSync() {
+        return lastFullSync;
+    }
+
+    private void addToRollup(Transaction t, boolean subtract) {
+        if (t.getType() == null || t.getTransactionDate() == null || t.getAmount() == null) {
+            return;
+        }
+        TreeMap<LocalDate, BigDecimal> totals = dailyTotals.computeIfAbsent(t.getType(), k -> new TreeMap<>());
+        BigDecimal delta = subtract ? t.getAmount().negate() : t.getAmount();
+        BigDecimal updated = totals.getOrDefault(t.getTransactionDate(), BigDecimal.ZERO).add(delta);
+        if (updated.signum() == 0) {
+            totals.remove(t.getTransactionDate());
+        } else {
+            totals.put(t.getTransactionDate(), updated);
+        }
+    }
+}
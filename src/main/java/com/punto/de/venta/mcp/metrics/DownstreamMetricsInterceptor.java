@@ -0,0 +1,99 @@
+package com.punto.de.venta.mcp.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Mide cada llamada de RestTemplate a la API de finanzas con el timer
+ * {@code mcp.downstream.duration}, etiquetado por servicio, endpoint normalizado,
+ * método, estado HTTP y la tool que originó la llamada.
+ */
+public class DownstreamMetricsInterceptor implements ClientHttpRequestInterceptor {
+
+    /**
+     * Segmentos fijos de las rutas de la API, además del recurso que sigue a {@code /api}.
+     */
+    private static final Set<String> RUTAS = Set.of("batch", "category", "credit-card", "date-range", "email",
+        "exists", "parent", "phone", "search", "status", "sum", "transaction", "type", "user");
+    private static final Pattern RECURSO = Pattern.compile("[a-z]+(-[a-z]+)*");
+
+    private final MeterRegistry registry;
+
+    public DownstreamMetricsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        ToolInvocationContext context = ToolInvocationContext.current();
+        if (context != null) {
+            context.incrementDownstreamCalls();
+        }
+        long start = System.nanoTime();
+        String status = "IO_ERROR";
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            status = String.valueOf(response.getStatusCode().value());
+            return response;
+        } finally {
+            URI uri = request.getURI();
+            String endpoint = normalize(uri.getPath());
+            Timer.builder("mcp.downstream.duration")
+                .description("Duración de las llamadas a la API de finanzas")
+                .tag("service", service(endpoint))
+                .tag("endpoint", endpoint)
+                .tag("method", request.getMethod().name())
+                .tag("status", status)
+                .tag("tool", context != null ? context.getToolName() : ToolInvocationContext.NO_TOOL)
+                .register(registry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Deja solo los segmentos fijos de la ruta y reemplaza el resto (ids, fechas, teléfonos,
+     * correos, nombres de categoría o tarjeta) por {@code {id}}: el endpoint no dispara la
+     * cardinalidad de las etiquetas ni expone datos del usuario. Un segmento fijo que no esté
+     * en {@link #RUTAS} también sale como {@code {id}}, que es lo seguro.
+     */
+    public static String normalize(String path) {
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+        StringBuilder normalized = new StringBuilder(path.length());
+        String previous = null;
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            boolean fijo = segment.equals("api") || RUTAS.contains(segment)
+                || ("api".equals(previous) && RECURSO.matcher(segment).matches());
+            normalized.append('/').append(fijo ? segment : "{id}");
+            previous = segment;
+        }
+        return normalized.length() == 0 ? "/" : normalized.toString();
+    }
+
+    /**
+     * Nombre del recurso de la API: el segmento que sigue a {@code /api} o, si no hay, el primero.
+     */
+    static String service(String endpoint) {
+        String[] segments = endpoint.split("/");
+        for (int i = 1; i < segments.length; i++) {
+            if (segments[i].equals("api") && i + 1 < segments.length) {
+                return segments[i + 1];
+            }
+        }
+        return segments.length > 1 ? segments[1] : "unknown";
+    }
+}
@@ -0,0 +1,124 @@
+package com.punto.de.venta.mcp.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorador de {@link ToolCallback} que mide cada invocación:
+ * <ul>
+ *   <li>{@code mcp.tool.duration}: timer por tool y resultado; el histograma de percentiles se activa en la configuración.</li>
+ *   <li>{@code mcp.tool.outcome}: contador por tool y resultado ({@code success}, {@code error}
+ *       cuando la tool devuelve un texto "Error..." y {@code exception} cuando lanza).</li>
+ *   <li>{@code mcp.tool.downstream.calls}: llamadas HTTP a la API hechas por invocación.</li>
+ * </ul>
+ */
+public class InstrumentedToolCallback implements ToolCallback {
+
+    static final String OUTCOME_SUCCESS = "success";
+    static final String OUTCOME_ERROR = "error";
+    static final String OUTCOME_EXCEPTION = "exception";
+
+    private final ToolCallback delegate;
+    private final MeterRegistry registry;
+    private final String toolName;
+
+    private final Timer successTimer;
+    private final Timer errorTimer;
+    private final Timer exceptionTimer;
+    private final Counter successCounter;
+    private final Counter errorCounter;
+    private final DistributionSummary downstreamCalls;
+
+    public InstrumentedToolCallback(ToolCallback delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.registry = registry;
+        this.toolName = delegate.getToolDefinition().name();
+        this.successTimer = timer(OUTCOME_SUCCESS);
+        this.errorTimer = timer(OUTCOME_ERROR);
+        this.exceptionTimer = timer(OUTCOME_EXCEPTION);
+        this.successCounter = counter(OUTCOME_SUCCESS, "none");
+        this.errorCounter = counter(OUTCOME_ERROR, "none");
+        this.downstreamCalls = DistributionSummary.builder("mcp.tool.downstream.calls")
+            .description("Llamadas a la API hechas por cada invocación de tool")
+            .tag("tool", toolName)
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(registry);
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        ToolInvocationContext previous = ToolInvocationContext.current();
+        ToolInvocationContext context = ToolInvocationContext.open(toolName);
+        long start = System.nanoTime();
+        try {
+            String result = toolContext != null ? delegate.call(toolInput, toolContext) : delegate.call(toolInput);
+            boolean error = isErrorResult(result);
+            (error ? errorTimer : successTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            (error ? errorCounter : successCounter).increment();
+            return result;
+        } catch (RuntimeException e) {
+            exceptionTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            counter(OUTCOME_EXCEPTION, e.getClass().getSimpleName()).increment();
+            throw e;
+        } finally {
+            downstreamCalls.record(context.getDownstreamCalls());
+            ToolInvocationContext.restore(previous);
+        }
+    }
+
+    public ToolCallback getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Las tools serializan su texto de respuesta como JSON, así que un resultado de error
+     * puede llegar como {@code "Error..."} entre comillas.
+     */
+    static boolean isErrorResult(String result) {
+        if (result == null) {
+            return false;
+        }
+        int start = result.startsWith("\"") ? 1 : 0;
+        return result.startsWith("Error", start);
+    }
+
+    private Timer timer(String outcome) {
+        return Timer.builder("mcp.tool.duration")
+            .description("Duración de las invocaciones de tools MCP")
+            .tag("tool", toolName)
+            .tag("outcome", outcome)
+            .register(registry);
+    }
+
+    private Counter counter(String outcome, String exception) {
+        return Counter.builder("mcp.tool.outcome")
+            .description("Resultado de las invocaciones de tools MCP")
+            .tag("tool", toolName)
+            .tag("outcome", outcome)
+            .tag("exception", exception)
+            .register(registry);
+    }
+}
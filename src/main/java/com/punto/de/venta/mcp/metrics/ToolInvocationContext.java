@@ -0,0 +1,81 @@
+package com.punto.de.venta.mcp.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Datos de la invocación de tool en curso en el hilo actual. Lo abre
+ * {@link InstrumentedToolCallback} y lo consultan el interceptor de RestTemplate y los
+ * executors internos, que lo propagan a sus hilos con {@link #wrap(Runnable)}.
+ */
+public final class ToolInvocationContext {
+
+    public static final String NO_TOOL = "none";
+
+    private static final ThreadLocal<ToolInvocationContext> CURRENT = new ThreadLocal<>();
+
+    private final String toolName;
+    private final AtomicInteger downstreamCalls = new AtomicInteger();
+
+    private ToolInvocationContext(String toolName) {
+        this.toolName = toolName;
+    }
+
+    public static ToolInvocationContext open(String toolName) {
+        ToolInvocationContext context = new ToolInvocationContext(toolName);
+        CURRENT.set(context);
+        return context;
+    }
+
+    /**
+     * Restaura el contexto que había antes de {@link #open(String)}; una tool puede
+     * invocarse desde otra y al terminar debe volver a contar para la exterior.
+     */
+    public static void restore(ToolInvocationContext previous) {
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    public static ToolInvocationContext current() {
+        return CURRENT.get();
+    }
+
+    public static String currentToolName() {
+        ToolInvocationContext context = CURRENT.get();
+        return context != null ? context.toolName : NO_TOOL;
+    }
+
+    /**
+     * Envuelve la tarea para que se ejecute con el contexto del hilo que la envía,
+     * de modo que las llamadas hechas desde el pool cuenten para la tool que las originó.
+     */
+    public static Runnable wrap(Runnable task) {
+        ToolInvocationContext context = CURRENT.get();
+        if (context == null) {
+            return task;
+        }
+        return () -> {
+            ToolInvocationContext previous = CURRENT.get();
+            CURRENT.set(context);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    public String getToolName() {
+        return toolName;
+    }
+
+    public int getDownstreamCalls() {
+        return downstreamCalls.get();
+    }
+
+    void incrementDownstreamCalls() {
+        downstreamCalls.incrementAndGet();
+    }
+}
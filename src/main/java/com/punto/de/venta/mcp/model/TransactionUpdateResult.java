@@ -0,0 +1,18 @@
+package com.punto.de.venta.mcp.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionUpdateResult {
+    private Long id;
+    private Transaction transaction;
+    private String error;
+
+    public boolean isSuccess() {
+        return error == null && transaction != null;
+    }
+}
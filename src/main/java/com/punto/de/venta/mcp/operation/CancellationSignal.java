@@ -0,0 +1,39 @@
+package com.punto.de.venta.mcp.operation;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Aviso del transporte de que el cliente ya no espera la respuesta, por ejemplo porque se
+ * desconectó. El transporte HTTP streamable lo pasa en el {@code ToolContext} bajo
+ * {@link #TOOL_CONTEXT_KEY} y {@link OperationToolCallback} cancela con él la operación.
+ */
+public final class CancellationSignal {
+
+    public static final String TOOL_CONTEXT_KEY = "cancellationSignal";
+
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private volatile Runnable action;
+
+    public void cancel() {
+        if (cancelled.compareAndSet(false, true)) {
+            Runnable current = action;
+            if (current != null) {
+                current.run();
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Registra la acción a ejecutar al cancelar; si ya se canceló se ejecuta en el momento.
+     */
+    void onCancel(Runnable action) {
+        this.action = action;
+        if (cancelled.get()) {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.punto.de.venta.mcp.operation;
+
+/**
+ * Se lanzó desde una tool cuya operación fue cancelada por el cliente.
+ */
+public class OperationCancelledException extends RuntimeException {
+
+    public OperationCancelledException(String operationId) {
+        super("La operación " + operationId + " fue cancelada");
+    }
+}
@@ -0,0 +1,140 @@
+package com.punto.de.venta.mcp.operation;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Invocación de tool en curso: permite informar avance al cliente MCP y consultar si se
+ * pidió cancelarla. La tool la obtiene con {@link #current()}; fuera de una invocación
+ * se devuelve una instancia inerte, así que el código de servicios puede usarla siempre.
+ * Una invocación hecha dentro de otra (las de un lote) queda cancelada si se cancela esa.
+ */
+@Slf4j
+public final class OperationHandle {
+
+    private static final long MIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final ThreadLocal<OperationHandle> CURRENT = new ThreadLocal<>();
+    private static final OperationHandle NONE = new OperationHandle(null, null, null, null, null);
+
+    private final String id;
+    private final String toolName;
+    private final String numeroTelefono;
+    private final ProgressListener listener;
+    private final OperationHandle parent;
+    private final Instant startedAt = Instant.now();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final AtomicLong lastNotification = new AtomicLong(System.nanoTime() - MIN_INTERVAL_NANOS);
+    private volatile String lastProgress;
+
+    OperationHandle(String id, String toolName, String numeroTelefono, ProgressListener listener, OperationHandle parent) {
+        this.id = id;
+        this.toolName = toolName;
+        this.numeroTelefono = numeroTelefono;
+        this.listener = listener;
+        this.parent = parent;
+    }
+
+    public static OperationHandle current() {
+        OperationHandle handle = CURRENT.get();
+        return handle != null ? handle : NONE;
+    }
+
+    static OperationHandle bind(OperationHandle handle) {
+        OperationHandle previous = CURRENT.get();
+        CURRENT.set(handle);
+        return previous;
+    }
+
+    static void restore(OperationHandle previous) {
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Envuelve la tarea para que vea la operación del hilo que la envía y respete su cancelación.
+     */
+    public static Runnable wrap(Runnable task) {
+        OperationHandle handle = CURRENT.get();
+        if (handle == null) {
+            return task;
+        }
+        return () -> {
+            OperationHandle previous = bind(handle);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * Informa el avance. Las notificaciones se limitan a una cada medio segundo, salvo la
+     * que marca el final ({@code done == total}). {@code total} negativo significa desconocido.
+     */
+    public void progress(long done, long total, String message) {
+        if (id == null) {
+            return;
+        }
+        lastProgress = total >= 0 ? done + "/" + total + " " + message : done + " " + message;
+        long now = System.nanoTime();
+        long last = lastNotification.get();
+        boolean finished = total >= 0 && done >= total;
+        if (!finished && now - last < MIN_INTERVAL_NANOS) {
+            return;
+        }
+        if (!lastNotification.compareAndSet(last, now) && !finished) {
+            return;
+        }
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onProgress(done, total, String.format("Operación %s (%s): %s. Para detenerla usa cancelarOperacion con id %s",
+                id, toolName, lastProgress, id));
+        } catch (Exception e) {
+            log.debug("No se pudo enviar el avance de la operación {}: {}", id, e.getMessage());
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get() || (parent != null && parent.isCancelled());
+    }
+
+    public void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new OperationCancelledException(id);
+        }
+    }
+
+    boolean cancel() {
+        return cancelled.compareAndSet(false, true);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getToolName() {
+        return toolName;
+    }
+
+    public String getNumeroTelefono() {
+        return numeroTelefono;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public String getLastProgress() {
+        return lastProgress;
+    }
+}
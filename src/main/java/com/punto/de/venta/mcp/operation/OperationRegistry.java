@@ -0,0 +1,59 @@
+package com.punto.de.venta.mcp.operation;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Operaciones en curso, para poder cancelarlas por id desde otra invocación.
+ */
+@Component
+public class OperationRegistry {
+
+    private final ConcurrentHashMap<String, OperationHandle> running = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param parent operación dentro de la que se hace esta invocación, o {@code null}
+     */
+    OperationHandle start(String toolName, String numeroTelefono, ProgressListener listener, OperationHandle parent) {
+        String id = Long.toString(sequence.incrementAndGet(), 36);
+        OperationHandle handle = new OperationHandle(id, toolName, numeroTelefono, listener, parent);
+        running.put(id, handle);
+        return handle;
+    }
+
+    void finish(OperationHandle handle) {
+        running.remove(handle.getId(), handle);
+    }
+
+    /**
+     * Marca la operación como cancelada si existe y pertenece al usuario. Las llamadas a
+     * la API que ya estaban en vuelo terminan; las pendientes ya no se hacen.
+     */
+    public boolean cancel(String id, String numeroTelefono) {
+        OperationHandle handle = running.get(id);
+        if (handle == null || !owns(handle, numeroTelefono)) {
+            return false;
+        }
+        handle.cancel();
+        return true;
+    }
+
+    public List<OperationHandle> runningFor(String numeroTelefono) {
+        List<OperationHandle> operations = new ArrayList<>();
+        for (OperationHandle handle : running.values()) {
+            if (owns(handle, numeroTelefono)) {
+                operations.add(handle);
+            }
+        }
+        return operations;
+    }
+
+    private boolean owns(OperationHandle handle, String numeroTelefono) {
+        return numeroTelefono != null && numeroTelefono.trim().equals(handle.getNumeroTelefono());
+    }
+}
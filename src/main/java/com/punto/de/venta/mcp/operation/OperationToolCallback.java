@@ -0,0 +1,103 @@
+package com.punto.de.venta.mcp.operation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.modelcontextprotocol.server.McpSyncServerExchange;
+import io.modelcontextprotocol.spec.McpSchema;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.mcp.McpToolUtils;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+/**
+ * Decorador que registra cada invocación como operación cancelable y la deja disponible
+ * para la tool mediante {@link OperationHandle#current()}, junto con el destino de sus
+ * notificaciones de avance según el transporte por el que llegó.
+ */
+public class OperationToolCallback implements ToolCallback {
+
+    private static final String PHONE_PARAM = "numeroTelefono";
+    private static final String PROGRESS_LOGGER = "progress";
+
+    private final ToolCallback delegate;
+    private final OperationRegistry registry;
+    private final ObjectMapper objectMapper;
+    private final String toolName;
+
+    public OperationToolCallback(ToolCallback delegate, OperationRegistry registry, ObjectMapper objectMapper) {
+        this.delegate = delegate;
+        this.registry = registry;
+        this.objectMapper = objectMapper;
+        this.toolName = delegate.getToolDefinition().name();
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        // En un lote el hilo ya tiene la operación del lote: cancelarla detiene también esta
+        OperationHandle parent = OperationHandle.current();
+        OperationHandle handle = registry.start(toolName, numeroTelefono(toolInput), progressListener(toolContext),
+            parent.getId() != null ? parent : null);
+        if (toolContext != null && toolContext.getContext() != null
+                && toolContext.getContext().get(CancellationSignal.TOOL_CONTEXT_KEY) instanceof CancellationSignal signal) {
+            signal.onCancel(handle::cancel);
+        }
+        OperationHandle previous = OperationHandle.bind(handle);
+        try {
+            return toolContext != null ? delegate.call(toolInput, toolContext) : delegate.call(toolInput);
+        } catch (OperationCancelledException e) {
+            return "Error: " + e.getMessage();
+        } finally {
+            OperationHandle.restore(previous);
+            registry.finish(handle);
+        }
+    }
+
+    private String numeroTelefono(String toolInput) {
+        if (toolInput == null || !toolInput.contains(PHONE_PARAM)) {
+            return null;
+        }
+        try {
+            JsonNode phone = objectMapper.readTree(toolInput).get(PHONE_PARAM);
+            return phone != null && !phone.isNull() ? phone.asText().trim() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Con SSE el avance sale como notificación de log por el exchange de la sesión, porque el
+     * SDK no expone notificaciones de progreso; el transporte HTTP streamable trae su propio destino.
+     */
+    private static ProgressListener progressListener(ToolContext toolContext) {
+        if (toolContext == null || toolContext.getContext() == null) {
+            return null;
+        }
+        if (toolContext.getContext().get(ProgressListener.TOOL_CONTEXT_KEY) instanceof ProgressListener listener) {
+            return listener;
+        }
+        if (toolContext.getContext().get(McpToolUtils.TOOL_CONTEXT_MCP_EXCHANGE_KEY) instanceof McpSyncServerExchange exchange) {
+            return (done, total, message) -> exchange.loggingNotification(McpSchema.LoggingMessageNotification.builder()
+                .level(McpSchema.LoggingLevel.INFO)
+                .logger(PROGRESS_LOGGER)
+                .data(message)
+                .build());
+        }
+        return null;
+    }
+}
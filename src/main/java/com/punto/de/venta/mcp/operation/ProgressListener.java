@@ -0,0 +1,17 @@
+package com.punto.de.venta.mcp.operation;
+
+/**
+ * Destino de las notificaciones de avance de una operación. Con SSE se envían por el
+ * exchange MCP de la sesión; el transporte HTTP streamable pasa el suyo en el
+ * {@code ToolContext} bajo {@link #TOOL_CONTEXT_KEY}.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    String TOOL_CONTEXT_KEY = "progressListener";
+
+    /**
+     * @param total negativo si se desconoce
+     */
+    void onProgress(long done, long total, String message);
+}
@@ -0,0 +1,26 @@
+package com.punto.de.venta.mcp.output;
+
+import java.util.Locale;
+
+public enum OutputFormat {
+    TEXTO,
+    JSON;
+
+    /**
+     * Interpreta el formato pedido por el cliente; devuelve {@code null} si viene vacío o no se reconoce.
+     */
+    public static OutputFormat parse(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        String normalized = value.trim().toUpperCase(Locale.ROOT);
+        if (normalized.equals("TEXT")) {
+            return TEXTO;
+        }
+        try {
+            return valueOf(normalized);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
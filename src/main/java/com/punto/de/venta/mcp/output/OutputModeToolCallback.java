@@ -0,0 +1,219 @@
+package com.punto.de.venta.mcp.output;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+/**
+ * Decorador que añade a las tools con salida estructurada el parámetro opcional
+ * {@code formatoSalida} (TEXTO o JSON). Si la invocación no lo indica se usa la preferencia
+ * del usuario; un valor desconocido se rechaza. En modo JSON, la tool publica su resultado
+ * con {@link ToolOutput#structured(Object)} y se devuelve ese objeto serializado de forma
+ * compacta. Las demás tools no anuncian el parámetro y siempre responden en texto.
+ *
+ * <p>También añade {@code maxCaracteres} y {@code maxElementos}, que forman el
+ * {@link ResultBudget} de la invocación. Un texto que lo excede se recorta aquí.
+ * {@code maxElementos} solo lo anuncian las tools que devuelven listados.
+ */
+@Slf4j
+public class OutputModeToolCallback implements ToolCallback {
+
+    public static final String FORMAT_PARAM = "formatoSalida";
+    public static final String MAX_CHARS_PARAM = "maxCaracteres";
+    public static final String MAX_ITEMS_PARAM = "maxElementos";
+
+    private static final String PHONE_PARAM = "numeroTelefono";
+
+    private final ToolCallback delegate;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+    private final OutputPreferences preferences;
+    private final boolean estructurada;
+    private final ToolDefinition toolDefinition;
+
+    public OutputModeToolCallback(ToolCallback delegate, ObjectMapper objectMapper, OutputPreferences preferences) {
+        this(delegate, objectMapper, preferences, true);
+    }
+
+    /**
+     * @param estructurada si la tool publica salida con {@link ToolOutput#structured(Object)};
+     *                     se asume que entonces devuelve un listado
+     */
+    public OutputModeToolCallback(ToolCallback delegate, ObjectMapper objectMapper, OutputPreferences preferences,
+                                  boolean estructurada) {
+        this(delegate, objectMapper, preferences, estructurada, estructurada);
+    }
+
+    /**
+     * @param estructurada si la tool publica salida con {@link ToolOutput#structured(Object)}
+     * @param listado      si la tool devuelve una colección que acota con {@link ResultBudget#elementos(int)}
+     */
+    public OutputModeToolCallback(ToolCallback delegate, ObjectMapper objectMapper, OutputPreferences preferences,
+                                  boolean estructurada, boolean listado) {
+        this.delegate = delegate;
+        this.objectMapper = objectMapper;
+        this.writer = compactWriter(objectMapper);
+        this.preferences = preferences;
+        this.estructurada = estructurada;
+        this.toolDefinition = withOutputParams(delegate.getToolDefinition(), objectMapper, estructurada, listado);
+    }
+
+    /**
+     * Writer compartido: sin nulos, sin indentación y con fechas ISO. Se construye una vez
+     * y cachea los serializadores de cada tipo de resultado.
+     */
+    public static ObjectWriter compactWriter(ObjectMapper objectMapper) {
+        return objectMapper.copy()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(SerializationFeature.INDENT_OUTPUT)
+            .writer();
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return toolDefinition;
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        String input = toolInput;
+        OutputFormat format = null;
+        ResultBudget budget = ResultBudget.SIN_LIMITE;
+        // Solo se analiza la entrada si puede cambiar el formato o traer presupuesto; el caso común pasa directo
+        if (toolInput != null && (toolInput.contains(FORMAT_PARAM) || toolInput.contains("\"max") || (estructurada && !preferences.isEmpty()))) {
+            try {
+                JsonNode node = objectMapper.readTree(toolInput);
+                if (node instanceof ObjectNode arguments) {
+                    JsonNode requested = arguments.remove(FORMAT_PARAM);
+                    JsonNode maxChars = arguments.remove(MAX_CHARS_PARAM);
+                    JsonNode maxItems = arguments.remove(MAX_ITEMS_PARAM);
+                    if (requested != null || maxChars != null || maxItems != null) {
+                        input = objectMapper.writeValueAsString(arguments);
+                    }
+                    // Sin salida estructurada el formato se ignora: el lote lo propaga a todas sus tools
+                    if (estructurada && requested != null && !requested.isNull() && !requested.asText().isBlank()) {
+                        format = OutputFormat.parse(requested.asText());
+                        if (format == null) {
+                            return "Error: formatoSalida no válido: " + requested.asText() + ". Usa TEXTO o JSON.";
+                        }
+                    }
+                    if (estructurada && format == null && arguments.hasNonNull(PHONE_PARAM)) {
+                        format = preferences.get(arguments.get(PHONE_PARAM).asText());
+                    }
+                    budget = new ResultBudget(maxChars != null ? maxChars.asInt() : 0, maxItems != null ? maxItems.asInt() : 0);
+                }
+            } catch (JsonProcessingException e) {
+                // La entrada inválida la reporta la propia tool
+            }
+        }
+
+        if (format != OutputFormat.JSON && !budget.isLimitado()) {
+            return invoke(input, toolContext);
+        }
+
+        ToolOutput.Invocation previous = ToolOutput.begin(format != null ? format : OutputFormat.TEXTO, budget);
+        String text;
+        Object structured;
+        try {
+            text = invoke(input, toolContext);
+        } finally {
+            structured = ToolOutput.end(previous);
+        }
+        if (format != OutputFormat.JSON || structured == null) {
+            return recortar(text, budget);
+        }
+        try {
+            return writer.writeValueAsString(structured);
+        } catch (JsonProcessingException e) {
+            log.error("Error al serializar el resultado de {}", toolDefinition.name(), e);
+            return text;
+        }
+    }
+
+    private String invoke(String input, ToolContext toolContext) {
+        return toolContext != null ? delegate.call(input, toolContext) : delegate.call(input);
+    }
+
+    /**
+     * Las tools devuelven su texto serializado como cadena JSON; se recorta el texto, pero
+     * el límite se mide sobre lo que se envía. Como el escapado (saltos de línea, comillas)
+     * alarga el texto, se recorta de nuevo por el exceso hasta que la forma codificada cabe.
+     */
+    private String recortar(String result, ResultBudget budget) {
+        int max = budget.maxCaracteres();
+        if (result == null || max <= 0 || result.length() <= max) {
+            return result;
+        }
+        if (!result.startsWith("\"")) {
+            return budget.recortar(result);
+        }
+        try {
+            String texto = objectMapper.readValue(result, String.class);
+            int limite = max;
+            while (true) {
+                String recortado = limite > 0 ? new ResultBudget(limite, 0).recortar(texto) : "";
+                String codificado = objectMapper.writeValueAsString(recortado);
+                if (codificado.length() <= max || limite <= 0) {
+                    return codificado;
+                }
+                limite -= codificado.length() - max;
+            }
+        } catch (JsonProcessingException e) {
+            return result;
+        }
+    }
+
+    private static ToolDefinition withOutputParams(ToolDefinition definition, ObjectMapper objectMapper,
+                                                   boolean estructurada, boolean listado) {
+        try {
+            JsonNode schema = objectMapper.readTree(definition.inputSchema());
+            if (!(schema instanceof ObjectNode root)) {
+                return definition;
+            }
+            ObjectNode properties = root.has("properties") && root.get("properties") instanceof ObjectNode existing
+                ? existing : root.putObject("properties");
+            if (estructurada) {
+                ObjectNode param = properties.putObject(FORMAT_PARAM);
+                param.put("type", "string");
+                param.putArray("enum").add(OutputFormat.TEXTO.name()).add(OutputFormat.JSON.name());
+                param.put("description", "Formato de la respuesta: TEXTO (por defecto) o JSON compacto");
+            }
+            properties.putObject(MAX_CHARS_PARAM)
+                .put("type", "integer")
+                .put("description", "Máximo de caracteres de la respuesta; lo que no quepa se resume");
+            if (listado) {
+                properties.putObject(MAX_ITEMS_PARAM)
+                    .put("type", "integer")
+                    .put("description", "Máximo de elementos a listar; el resto se resume con totales");
+            }
+            return ToolDefinition.builder()
+                .name(definition.name())
+                .description(definition.description())
+                .inputSchema(objectMapper.writeValueAsString(root))
+                .build();
+        } catch (JsonProcessingException e) {
+            log.warn("No se pudo ampliar el esquema de {}: {}", definition.name(), e.getMessage());
+            return definition;
+        }
+    }
+}
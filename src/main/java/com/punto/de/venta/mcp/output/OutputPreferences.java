@@ -0,0 +1,34 @@
+package com.punto.de.venta.mcp.output;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Formato de salida elegido por cada usuario con {@code configurarFormatoSalida}. Se aplica
+ * a las invocaciones que no indican {@code formatoSalida} explícitamente.
+ */
+@Component
+public class OutputPreferences {
+
+    private final ConcurrentHashMap<String, OutputFormat> formats = new ConcurrentHashMap<>();
+
+    public void set(String numeroTelefono, OutputFormat format) {
+        if (format == OutputFormat.TEXTO) {
+            formats.remove(numeroTelefono.trim());
+        } else {
+            formats.put(numeroTelefono.trim(), format);
+        }
+    }
+
+    public OutputFormat get(String numeroTelefono) {
+        if (numeroTelefono == null || formats.isEmpty()) {
+            return OutputFormat.TEXTO;
+        }
+        return formats.getOrDefault(numeroTelefono.trim(), OutputFormat.TEXTO);
+    }
+
+    public boolean isEmpty() {
+        return formats.isEmpty();
+    }
+}
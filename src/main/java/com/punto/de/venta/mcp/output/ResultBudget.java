@@ -0,0 +1,74 @@
+package com.punto.de.venta.mcp.output;
+
+/**
+ * Presupuesto de respuesta pedido por el cliente con {@code maxCaracteres} y {@code maxElementos}
+ * (0 = sin límite). Las tools que lo conocen lo consultan con {@link ToolOutput#budget()} mientras
+ * arman el resultado y resumen el resto con totales; a las demás {@link OutputModeToolCallback}
+ * les recorta el texto al final.
+ */
+public record ResultBudget(int maxCaracteres, int maxElementos) {
+
+    public static final ResultBudget SIN_LIMITE = new ResultBudget(0, 0);
+
+    /**
+     * Espacio que se guarda para la línea final que resume lo omitido; con presupuestos muy
+     * chicos se limita a la mitad.
+     */
+    static final int RESERVA_RESUMEN = 200;
+
+    private static final String AVISO = "%n[Respuesta recortada: se omitieron %d caracteres. Usa filtros o maxElementos para acotarla.]";
+    private static final String AVISO_CORTO = "%n[+%d caracteres]";
+
+    public ResultBudget {
+        maxCaracteres = Math.max(0, maxCaracteres);
+        maxElementos = Math.max(0, maxElementos);
+    }
+
+    public boolean isLimitado() {
+        return maxCaracteres > 0 || maxElementos > 0;
+    }
+
+    /**
+     * Cantidad de elementos a mostrar cuando la tool mostraría {@code porDefecto}.
+     */
+    public int elementos(int porDefecto) {
+        return maxElementos > 0 ? Math.min(maxElementos, porDefecto) : porDefecto;
+    }
+
+    /**
+     * Indica si se puede agregar {@code linea} al resultado dejando sitio para el resumen final.
+     */
+    public boolean cabe(CharSequence resultado, CharSequence linea) {
+        return maxCaracteres <= 0 || resultado.length() + linea.length() + reserva() <= maxCaracteres;
+    }
+
+    /**
+     * Último recurso para las tools que no respetan el presupuesto: corta en el último salto
+     * de línea que cabe y avisa cuánto se omitió, sin pasarse de {@code maxCaracteres}. Si el
+     * aviso ocupa más de la mitad del presupuesto se usa uno corto, y si ni ese cabe se corta
+     * sin aviso.
+     */
+    String recortar(String texto) {
+        if (maxCaracteres <= 0 || texto == null || texto.length() <= maxCaracteres) {
+            return texto;
+        }
+        // Lo omitido nunca pasa de texto.length(), así que el aviso con ese valor es el más largo posible
+        String formato = AVISO;
+        if (String.format(formato, texto.length()).length() > maxCaracteres / 2) {
+            formato = AVISO_CORTO;
+        }
+        int limite = maxCaracteres - String.format(formato, texto.length()).length();
+        if (limite < 0) {
+            return texto.substring(0, maxCaracteres);
+        }
+        int corte = texto.lastIndexOf('\n', limite);
+        if (corte <= 0) {
+            corte = limite;
+        }
+        return texto.substring(0, corte) + String.format(formato, texto.length() - corte);
+    }
+
+    private int reserva() {
+        return Math.min(RESERVA_RESUMEN, maxCaracteres / 2);
+    }
+}
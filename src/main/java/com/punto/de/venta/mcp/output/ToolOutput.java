@@ -0,0 +1,63 @@
+package com.punto.de.venta.mcp.output;
+
+/**
+ * Canal entre una tool y {@link OutputModeToolCallback}. Cuando la invocación pidió JSON,
+ * la tool publica su resultado con {@link #structured(Object)} en lugar de armar el texto,
+ * y el decorador lo serializa directamente. También expone el {@link ResultBudget} pedido.
+ */
+public final class ToolOutput {
+
+    private static final ThreadLocal<Invocation> CURRENT = new ThreadLocal<>();
+
+    private ToolOutput() {
+    }
+
+    public static boolean isJson() {
+        Invocation invocation = CURRENT.get();
+        return invocation != null && invocation.format == OutputFormat.JSON;
+    }
+
+    public static ResultBudget budget() {
+        Invocation invocation = CURRENT.get();
+        return invocation != null ? invocation.budget : ResultBudget.SIN_LIMITE;
+    }
+
+    /**
+     * Publica el resultado estructurado de la invocación en curso. El texto devuelto solo
+     * se usa si nadie recoge el resultado (por ejemplo, al llamar a la tool directamente).
+     */
+    public static String structured(Object result) {
+        Invocation invocation = CURRENT.get();
+        if (invocation != null) {
+            invocation.result = result;
+        }
+        return "";
+    }
+
+    static Invocation begin(OutputFormat format, ResultBudget budget) {
+        Invocation previous = CURRENT.get();
+        CURRENT.set(new Invocation(format, budget));
+        return previous;
+    }
+
+    static Object end(Invocation previous) {
+        Invocation finished = CURRENT.get();
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+        return finished != null ? finished.result : null;
+    }
+
+    static final class Invocation {
+        private final OutputFormat format;
+        private final ResultBudget budget;
+        private Object result;
+
+        private Invocation(OutputFormat format, ResultBudget budget) {
+            this.format = format;
+            this.budget = budget;
+        }
+    }
+}
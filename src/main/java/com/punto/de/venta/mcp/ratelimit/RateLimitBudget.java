@@ -0,0 +1,23 @@
+package com.punto.de.venta.mcp.ratelimit;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Presupuesto de un token bucket: {@code capacity} es la ráfaga máxima y
+ * {@code refillPerMinute} el ritmo sostenido.
+ */
+@Data
+@NoArgsConstructor
+public class RateLimitBudget {
+
+    private int capacity = 30;
+    private double refillPerMinute = 60;
+
+    static RateLimitBudget of(int capacity, double refillPerMinute) {
+        RateLimitBudget budget = new RateLimitBudget();
+        budget.setCapacity(capacity);
+        budget.setRefillPerMinute(refillPerMinute);
+        return budget;
+    }
+}
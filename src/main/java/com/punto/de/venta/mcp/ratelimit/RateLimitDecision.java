@@ -0,0 +1,10 @@
+package com.punto.de.venta.mcp.ratelimit;
+
+/**
+ * Resultado de {@link RateLimiter#acquire}. Si no se permite, {@code ambito} indica qué
+ * límite se agotó ({@code usuario} o {@code cliente}) y {@code tipo} si era de lectura o escritura.
+ */
+public record RateLimitDecision(boolean permitido, String ambito, String tipo, long reintentarEnSegundos) {
+
+    static final RateLimitDecision PERMITIDO = new RateLimitDecision(true, null, null, 0);
+}
@@ -0,0 +1,29 @@
+package com.punto.de.venta.mcp.ratelimit;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuración de {@code mcp.rate-limit}: presupuestos de lectura y escritura por usuario
+ * ({@code numeroTelefono}) y por cliente (sesión MCP). Las tools de {@code writeTools} gastan
+ * el presupuesto de escritura, el resto el de lectura, y las de {@code exemptTools} no se limitan.
+ */
+@Component
+@ConfigurationProperties(prefix = "mcp.rate-limit")
+@Data
+@NoArgsConstructor
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+    private RateLimitBudget userRead = RateLimitBudget.of(30, 60);
+    private RateLimitBudget userWrite = RateLimitBudget.of(10, 20);
+    private RateLimitBudget clientRead = RateLimitBudget.of(60, 180);
+    private RateLimitBudget clientWrite = RateLimitBudget.of(20, 60);
+    private List<String> writeTools = new ArrayList<>();
+    private List<String> exemptTools = new ArrayList<>();
+}
@@ -0,0 +1,120 @@
+package com.punto.de.venta.mcp.ratelimit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.punto.de.venta.mcp.output.OutputFormat;
+import com.punto.de.venta.mcp.output.OutputModeToolCallback;
+import com.punto.de.venta.mcp.output.OutputPreferences;
+import io.modelcontextprotocol.server.McpSyncServerExchange;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.mcp.McpToolUtils;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+/**
+ * Decorador que pasa cada invocación por el {@link RateLimiter} antes de que ocupe turno en
+ * la admisión. El rechazo se devuelve como "Error: ..." con el tiempo de reintento o, si la
+ * invocación pidió JSON, como un objeto {@link RateLimitDecision}.
+ */
+@Slf4j
+public class RateLimitToolCallback implements ToolCallback {
+
+    /**
+     * Clave del cliente en el {@code ToolContext} para transportes que la conocen directamente.
+     */
+    public static final String CLIENT_KEY = "rateLimitClient";
+
+    private static final String PHONE_PARAM = "numeroTelefono";
+
+    private final ToolCallback delegate;
+    private final RateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+    private final OutputPreferences preferences;
+    private final String toolName;
+
+    public RateLimitToolCallback(ToolCallback delegate, RateLimiter rateLimiter, ObjectMapper objectMapper,
+                                 OutputPreferences preferences) {
+        this.delegate = delegate;
+        this.rateLimiter = rateLimiter;
+        this.objectMapper = objectMapper;
+        this.writer = OutputModeToolCallback.compactWriter(objectMapper);
+        this.preferences = preferences;
+        this.toolName = delegate.getToolDefinition().name();
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        JsonNode arguments = arguments(toolInput);
+        String numeroTelefono = arguments.hasNonNull(PHONE_PARAM) ? arguments.get(PHONE_PARAM).asText().trim() : null;
+        RateLimitDecision decision = rateLimiter.acquire(toolName, numeroTelefono, cliente(toolContext));
+        if (!decision.permitido()) {
+            return rejected(decision, arguments, numeroTelefono);
+        }
+        return toolContext != null ? delegate.call(toolInput, toolContext) : delegate.call(toolInput);
+    }
+
+    private String rejected(RateLimitDecision decision, JsonNode arguments, String numeroTelefono) {
+        OutputFormat format = arguments.hasNonNull(OutputModeToolCallback.FORMAT_PARAM)
+            ? OutputFormat.parse(arguments.get(OutputModeToolCallback.FORMAT_PARAM).asText())
+            : preferences.get(numeroTelefono);
+        if (format == OutputFormat.JSON) {
+            try {
+                return writer.writeValueAsString(decision);
+            } catch (Exception e) {
+                log.error("Error al serializar el rechazo de {}", toolName, e);
+            }
+        }
+        String quien = RateLimiter.USUARIO.equals(decision.ambito()) ? "este usuario" : "esta sesión";
+        return String.format("Error: Demasiadas solicitudes de %s para %s. Intenta de nuevo en %d segundos.",
+            decision.tipo(), quien, decision.reintentarEnSegundos());
+    }
+
+    private JsonNode arguments(String toolInput) {
+        if (toolInput == null || toolInput.isBlank()) {
+            return objectMapper.createObjectNode();
+        }
+        try {
+            return objectMapper.readTree(toolInput);
+        } catch (Exception e) {
+            // La entrada inválida la reporta la propia tool
+            return objectMapper.createObjectNode();
+        }
+    }
+
+    /**
+     * Con SSE el SDK no expone el id de la sesión, pero deserializa {@code clientInfo} una sola
+     * vez al inicializarla y lo comparte con todos sus exchanges: su identidad distingue la sesión.
+     */
+    private static String cliente(ToolContext toolContext) {
+        if (toolContext == null || toolContext.getContext() == null) {
+            return null;
+        }
+        if (toolContext.getContext().get(CLIENT_KEY) instanceof String cliente) {
+            return cliente;
+        }
+        if (toolContext.getContext().get(McpToolUtils.TOOL_CONTEXT_MCP_EXCHANGE_KEY) instanceof McpSyncServerExchange exchange
+                && exchange.getClientInfo() != null) {
+            return exchange.getClientInfo().name() + "#" + Integer.toHexString(System.identityHashCode(exchange.getClientInfo()));
+        }
+        return null;
+    }
+}
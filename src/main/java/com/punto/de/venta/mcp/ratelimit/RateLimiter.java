@@ -0,0 +1,170 @@
+package com.punto.de.venta.mcp.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Limita el ritmo de invocaciones con un token bucket por usuario y otro por cliente, con
+ * presupuestos separados para lectura y escritura. Una invocación debe obtener token de
+ * ambos; si el del cliente la rechaza se devuelve el del usuario.
+ *
+ * <p>Métricas: {@code mcp.ratelimit.decisions} por tool, resultado y límite agotado, y los
+ * gauges {@code mcp.ratelimit.buckets} y {@code mcp.ratelimit.buckets.exhausted} por ámbito y tipo.
+ */
+@Component
+@Slf4j
+public class RateLimiter {
+
+    static final String USUARIO = "usuario";
+    static final String CLIENTE = "cliente";
+    static final String LECTURA = "lectura";
+    static final String ESCRITURA = "escritura";
+
+    private static final int SWEEP_INTERVAL = 4096;
+
+    private final RateLimitProperties properties;
+    private final MeterRegistry registry;
+    private final LongSupplier nanoClock;
+    private final Set<String> writeTools;
+    private final Set<String> exemptTools;
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong acquisitions = new AtomicLong();
+
+    @Autowired
+    public RateLimiter(RateLimitProperties properties, MeterRegistry registry) {
+        this(properties, registry, System::nanoTime);
+    }
+
+    RateLimiter(RateLimitProperties properties, MeterRegistry registry, LongSupplier nanoClock) {
+        this.properties = properties;
+        this.registry = registry;
+        this.nanoClock = nanoClock;
+        this.writeTools = trimmed(properties.getWriteTools());
+        this.exemptTools = trimmed(properties.getExemptTools());
+        for (String ambito : new String[]{USUARIO, CLIENTE}) {
+            for (String tipo : new String[]{LECTURA, ESCRITURA}) {
+                String prefix = prefix(ambito, tipo);
+                Gauge.builder("mcp.ratelimit.buckets", this, limiter -> limiter.count(prefix, false))
+                    .description("Buckets de rate limiting activos")
+                    .tag("scope", ambito)
+                    .tag("kind", tipo)
+                    .register(registry);
+                Gauge.builder("mcp.ratelimit.buckets.exhausted", this, limiter -> limiter.count(prefix, true))
+                    .description("Buckets de rate limiting sin tokens disponibles")
+                    .tag("scope", ambito)
+                    .tag("kind", tipo)
+                    .register(registry);
+            }
+        }
+    }
+
+    /**
+     * Consume un token de cada límite aplicable. {@code numeroTelefono} y {@code cliente}
+     * pueden ser nulos si la invocación no los trae; ese límite entonces no se aplica.
+     */
+    public RateLimitDecision acquire(String toolName, String numeroTelefono, String cliente) {
+        if (!properties.isEnabled() || exemptTools.contains(toolName)) {
+            return RateLimitDecision.PERMITIDO;
+        }
+        String tipo = writeTools.contains(toolName) ? ESCRITURA : LECTURA;
+        long now = nanoClock.getAsLong();
+
+        TokenBucket usuario = numeroTelefono != null ? bucket(USUARIO, tipo, numeroTelefono, now) : null;
+        if (usuario != null) {
+            long wait = usuario.tryAcquire(now);
+            if (wait > 0) {
+                return rejected(toolName, USUARIO, tipo, wait);
+            }
+        }
+        if (cliente != null) {
+            long wait = bucket(CLIENTE, tipo, cliente, now).tryAcquire(now);
+            if (wait > 0) {
+                if (usuario != null) {
+                    usuario.refund(now);
+                }
+                return rejected(toolName, CLIENTE, tipo, wait);
+            }
+        }
+
+        decisions(toolName, "allowed", "none").increment();
+        if (acquisitions.incrementAndGet() % SWEEP_INTERVAL == 0) {
+            sweep(now);
+        }
+        return RateLimitDecision.PERMITIDO;
+    }
+
+    int size() {
+        return buckets.size();
+    }
+
+    private TokenBucket bucket(String ambito, String tipo, String id, long now) {
+        return buckets.computeIfAbsent(prefix(ambito, tipo) + id, key -> new TokenBucket(budget(ambito, tipo), now));
+    }
+
+    private RateLimitBudget budget(String ambito, String tipo) {
+        if (USUARIO.equals(ambito)) {
+            return ESCRITURA.equals(tipo) ? properties.getUserWrite() : properties.getUserRead();
+        }
+        return ESCRITURA.equals(tipo) ? properties.getClientWrite() : properties.getClientRead();
+    }
+
+    private RateLimitDecision rejected(String toolName, String ambito, String tipo, long waitNanos) {
+        long seconds = Math.max(1, (long) Math.ceil(waitNanos / 1e9));
+        decisions(toolName, "rejected", ambito).increment();
+        log.warn("Límite de {} por {} agotado para {}; reintento en {} s", tipo, ambito, toolName, seconds);
+        return new RateLimitDecision(false, ambito, tipo, seconds);
+    }
+
+    /**
+     * Un bucket lleno equivale a uno nuevo, así que quitarlo no cambia ningún límite y evita
+     * acumular uno por cada usuario o sesión que pasó alguna vez.
+     */
+    private void sweep(long now) {
+        int before = buckets.size();
+        buckets.entrySet().removeIf(entry -> entry.getValue().isFull(now));
+        log.debug("Rate limiting: {} buckets inactivos eliminados, quedan {}", before - buckets.size(), buckets.size());
+    }
+
+    private double count(String prefix, boolean exhausted) {
+        long now = nanoClock.getAsLong();
+        int count = 0;
+        for (Map.Entry<String, TokenBucket> entry : buckets.entrySet()) {
+            if (entry.getKey().startsWith(prefix) && (!exhausted || entry.getValue().available(now) < 1)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Counter decisions(String toolName, String outcome, String ambito) {
+        return Counter.builder("mcp.ratelimit.decisions")
+            .description("Decisiones del rate limiting de tools")
+            .tag("tool", toolName)
+            .tag("outcome", outcome)
+            .tag("scope", ambito)
+            .register(registry);
+    }
+
+    private static String prefix(String ambito, String tipo) {
+        return ambito + ":" + tipo + ":";
+    }
+
+    private static Set<String> trimmed(Iterable<String> names) {
+        Set<String> result = new HashSet<>();
+        for (String name : names) {
+            result.add(name.trim());
+        }
+        return result;
+    }
+}
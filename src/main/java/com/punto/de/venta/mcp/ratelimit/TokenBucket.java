@@ -0,0 +1,66 @@
+package com.punto.de.venta.mcp.ratelimit;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Token bucket sin bloqueos: el estado (tokens y momento de la última actualización) es
+ * inmutable y se reemplaza con compare-and-set. Los tokens se reponen de forma perezosa
+ * al consultarlo, así que un bucket inactivo no cuesta nada.
+ */
+final class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final AtomicReference<State> state;
+
+    TokenBucket(RateLimitBudget budget, long now) {
+        this.capacity = budget.getCapacity();
+        this.tokensPerNano = budget.getRefillPerMinute() / 60e9;
+        this.state = new AtomicReference<>(new State(capacity, now));
+    }
+
+    /**
+     * Toma un token. Devuelve 0 si lo obtuvo, o los nanosegundos que faltan para que haya uno.
+     */
+    long tryAcquire(long now) {
+        while (true) {
+            State current = state.get();
+            double tokens = available(current, now);
+            if (tokens < 1) {
+                return tokensPerNano > 0 ? (long) Math.ceil((1 - tokens) / tokensPerNano) : Long.MAX_VALUE;
+            }
+            if (state.compareAndSet(current, new State(tokens - 1, Math.max(now, current.updatedAt)))) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Devuelve un token tomado cuando otro límite de la misma invocación la rechazó.
+     */
+    void refund(long now) {
+        while (true) {
+            State current = state.get();
+            double tokens = Math.min(capacity, available(current, now) + 1);
+            if (state.compareAndSet(current, new State(tokens, Math.max(now, current.updatedAt)))) {
+                return;
+            }
+        }
+    }
+
+    double available(long now) {
+        return available(state.get(), now);
+    }
+
+    boolean isFull(long now) {
+        return available(now) >= capacity;
+    }
+
+    private double available(State current, long now) {
+        long elapsed = Math.max(0, now - current.updatedAt);
+        return Math.min(capacity, current.tokens + elapsed * tokensPerNano);
+    }
+
+    private record State(double tokens, long updatedAt) {
+    }
+}
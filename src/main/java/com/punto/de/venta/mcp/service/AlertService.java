@@ -4,11 +4,13 @@ import com.punto.de.venta.mcp.model.Alert;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +21,12 @@ public class AlertService {
     @Value("${ai.finance.api.alerts.url:http://localhost:8080/api/alerts}")
     private String alertsApiUrl;
     
+    @Value("${ai.finance.api.verify-updates:false}")
+    private boolean verifyUpdates;
+    
+    @Value("${ai.finance.api.alerts.batch-enabled:false}")
+    private boolean batchEnabled;
+    
     private final RestTemplate restTemplate;
     
     public AlertService(RestTemplate restTemplate) {
@@ -76,10 +84,55 @@ public class AlertService {
         return restTemplate.postForObject(alertsApiUrl, alert, Alert.class);
     }
     
+    public boolean isBatchEnabled() {
+        return batchEnabled;
+    }
+
+    /**
+     * Crea varias alertas en una sola llamada si el backend soporta el endpoint batch;
+     * si no, las crea una por una dejando {@code null} en la posición de las que fallen.
+     */
+    public List<Alert> createAlerts(List<Alert> alerts) {
+        log.info("Creando {} alertas (batch: {})", alerts.size(), batchEnabled);
+        if (batchEnabled) {
+            ResponseEntity<List<Alert>> response = restTemplate.exchange(
+                alertsApiUrl + "/batch",
+                HttpMethod.POST,
+                new HttpEntity<>(alerts),
+                new ParameterizedTypeReference<List<Alert>>() {}
+            );
+            return response.getBody();
+        }
+        List<Alert> created = new ArrayList<>(alerts.size());
+        for (Alert alert : alerts) {
+            try {
+                created.add(createAlert(alert));
+            } catch (Exception e) {
+                log.error("Error al crear alerta: {}", alert.getAlertType(), e);
+                created.add(null);
+            }
+        }
+        return created;
+    }
+    
     public Alert updateAlert(Long id, Alert alert) {
         log.info("Actualizando alerta con ID: {}", id);
-        restTemplate.put(alertsApiUrl + "/{id}", alert, id);
-        return getAlertById(id).orElse(null);
+        ResponseEntity<Alert> response = restTemplate.exchange(
+            alertsApiUrl + "/{id}",
+            HttpMethod.PUT,
+            new HttpEntity<>(alert),
+            Alert.class,
+            id
+        );
+        if (verifyUpdates) {
+            return getAlertById(id).orElse(null);
+        }
+        Alert updated = response.getBody();
+        if (updated == null) {
+            alert.setId(id);
+            updated = alert;
+        }
+        return updated;
     }
     
     public boolean deleteAlert(Long id) {
@@ -0,0 +1,403 @@
+package com.punto.de.venta.mcp.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punto.de.venta.mcp.model.Alert;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Cola write-behind para la creación de alertas. Si está habilitada, la tool recibe
+ * de inmediato la alerta con un ID provisional (negativo) y el envío a la API se hace
+ * por lotes, al llegar a {@code batch-size} o cada {@code flush-interval}. Lo que no
+ * se pudo enviar al apagar el pod se guarda en disco y se reencola al arrancar.
+ *
+ * <p>Tras un envío fallido los siguientes se espacian con backoff exponencial hasta
+ * {@code max-backoff}. Cada alerta cuenta sus intentos: las que la API rechaza con un 4xx
+ * (salvo 408 y 429) o que agotan {@code max-attempts} se apartan en {@code dead-letter-file}
+ * en lugar de volver a la cabeza de la cola y bloquear a las demás. Si la API no responde
+ * no se gasta ningún intento: la cola espera a que vuelva.
+ */
+@Service
+@Slf4j
+public class AlertWriteBehindQueue {
+
+    @Value("${ai.finance.alerts.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ai.finance.alerts.write-behind.batch-size:50}")
+    private int batchSize = 50;
+
+    @Value("${ai.finance.alerts.write-behind.flush-interval:PT2S}")
+    private Duration flushInterval = Duration.ofSeconds(2);
+
+    @Value("${ai.finance.alerts.write-behind.max-backoff:PT5M}")
+    private Duration maxBackoff = Duration.ofMinutes(5);
+
+    @Value("${ai.finance.alerts.write-behind.max-attempts:10}")
+    private int maxAttempts = 10;
+
+    @Value("${ai.finance.alerts.write-behind.max-pending:10000}")
+    private int maxPending = 10000;
+
+    @Value("${ai.finance.alerts.write-behind.spill-file:data/alerts/pending-alerts.json}")
+    private String spillFile = "data/alerts/pending-alerts.json";
+
+    @Value("${ai.finance.alerts.write-behind.dead-letter-file:data/alerts/dead-letter-alerts.ndjson}")
+    private String deadLetterFile = "data/alerts/dead-letter-alerts.ndjson";
+
+    private final AlertService alertService;
+    private final ObjectMapper objectMapper;
+    private final LongSupplier nanoClock;
+    private final AtomicLong provisionalIds = new AtomicLong();
+    private final Object flushLock = new Object();
+    private BlockingDeque<Pendiente> pending;
+    private ScheduledExecutorService scheduler;
+    private int fallosSeguidos;
+    private volatile long proximoEnvio;
+
+    @Autowired
+    public AlertWriteBehindQueue(AlertService alertService, ObjectMapper objectMapper) {
+        this(alertService, objectMapper, System::nanoTime);
+    }
+
+    AlertWriteBehindQueue(AlertService alertService, ObjectMapper objectMapper, LongSupplier nanoClock) {
+        this.alertService = alertService;
+        this.objectMapper = objectMapper;
+        this.nanoClock = nanoClock;
+        this.proximoEnvio = nanoClock.getAsLong();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        pending = new LinkedBlockingDeque<>(maxPending);
+        reloadSpill();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "alert-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = flushInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, period, period, TimeUnit.MILLISECONDS);
+        log.info("Cola write-behind de alertas habilitada (lote: {}, intervalo: {}, intentos: {})",
+            batchSize, flushInterval, maxAttempts);
+    }
+
+    /**
+     * Encola la alerta y devuelve una copia con ID provisional. Si la cola está
+     * deshabilitada o llena, la alerta se crea de forma síncrona.
+     */
+    public Alert submit(Alert alert) {
+        if (!enabled) {
+            return alertService.createAlert(alert);
+        }
+        alert.setId(null);
+        Pendiente pendiente = new Pendiente(-provisionalIds.incrementAndGet(), 0, alert);
+        if (!pending.offerLast(pendiente)) {
+            log.warn("Cola de alertas llena ({} pendientes), se crea la alerta de forma síncrona", pending.size());
+            return alertService.createAlert(alert);
+        }
+        if (pending.size() >= batchSize) {
+            scheduler.execute(this::flushQuietly);
+        }
+        return pendiente.conId();
+    }
+
+    public static boolean isProvisional(Alert alert) {
+        return alert.getId() != null && alert.getId() < 0;
+    }
+
+    /**
+     * Alertas de un usuario que siguen pendientes de envío, con su ID provisional.
+     */
+    public List<Alert> pendingFor(Long userId) {
+        List<Alert> result = new ArrayList<>();
+        if (pending == null) {
+            return result;
+        }
+        for (Pendiente pendiente : pending) {
+            Alert alert = pendiente.alerta();
+            if (alert.getUser() != null && Objects.equals(alert.getUser().getId(), userId)) {
+                result.add(pendiente.conId());
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return pending != null ? pending.size() : 0;
+    }
+
+    /**
+     * Envía lo pendiente sin esperar al backoff. Se detiene en el primer lote con fallos
+     * para no insistir contra una API caída; lo no enviado vuelve a la cabeza de la cola.
+     */
+    public int flush() {
+        if (pending == null) {
+            return 0;
+        }
+        synchronized (flushLock) {
+            int sent = 0;
+            while (!pending.isEmpty()) {
+                List<Pendiente> batch = new ArrayList<>(batchSize);
+                pending.drainTo(batch, batchSize);
+                List<Pendiente> reintentar = new ArrayList<>();
+                sent += enviar(batch, reintentar);
+                if (!reintentar.isEmpty()) {
+                    requeue(reintentar);
+                    aplazar();
+                    return sent;
+                }
+            }
+            fallosSeguidos = 0;
+            proximoEnvio = nanoClock.getAsLong();
+            return sent;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        flushQuietly(true);
+        spill();
+    }
+
+    void flushQuietly() {
+        flushQuietly(false);
+    }
+
+    private void flushQuietly(boolean ignorarBackoff) {
+        if (!ignorarBackoff && nanoClock.getAsLong() - proximoEnvio < 0) {
+            return;
+        }
+        try {
+            int sent = flush();
+            if (sent > 0) {
+                log.info("Enviadas {} alertas encoladas, pendientes: {}", sent, pending.size());
+            }
+        } catch (Exception e) {
+            log.error("Error al vaciar la cola de alertas", e);
+        }
+    }
+
+    /**
+     * Envía un lote y deja en {@code reintentar} lo que debe volver a la cola. Devuelve
+     * cuántas alertas se crearon.
+     */
+    private int enviar(List<Pendiente> batch, List<Pendiente> reintentar) {
+        if (!alertService.isBatchEnabled()) {
+            // Sin endpoint batch se envían una a una para clasificar el error de cada alerta
+            return enviarUnaAUna(batch, reintentar);
+        }
+        List<Alert> created;
+        try {
+            List<Alert> alerts = new ArrayList<>(batch.size());
+            for (Pendiente pendiente : batch) {
+                alerts.add(pendiente.alerta());
+            }
+            created = alertService.createAlerts(alerts);
+        } catch (Exception e) {
+            if (batch.size() > 1 && esRechazo(e)) {
+                // El rechazo del lote no dice qué alerta lo causó: se envían una a una
+                return enviarUnaAUna(batch, reintentar);
+            }
+            log.warn("No se pudo enviar un lote de {} alertas, se reintentará: {}", batch.size(), e.getMessage());
+            for (Pendiente pendiente : batch) {
+                fallar(pendiente, e, reintentar);
+            }
+            return 0;
+        }
+        int sent = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (created == null || i >= created.size() || created.get(i) == null) {
+                fallar(batch.get(i), null, reintentar);
+            } else {
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+    /**
+     * Envía las alertas de una en una. Si la API no responde se deja de intentar con el
+     * resto del lote: todas vuelven a la cola sin gastar intentos.
+     */
+    private int enviarUnaAUna(List<Pendiente> batch, List<Pendiente> reintentar) {
+        int sent = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Pendiente pendiente = batch.get(i);
+            try {
+                if (alertService.createAlert(pendiente.alerta()) != null) {
+                    sent++;
+                } else {
+                    fallar(pendiente, null, reintentar);
+                }
+            } catch (Exception e) {
+                if (esCaida(e)) {
+                    log.warn("API de alertas no disponible, se reintentarán {} alertas: {}", batch.size() - i, e.getMessage());
+                    reintentar.addAll(batch.subList(i, batch.size()));
+                    return sent;
+                }
+                fallar(pendiente, e, reintentar);
+            }
+        }
+        return sent;
+    }
+
+    private void fallar(Pendiente pendiente, Exception causa, List<Pendiente> reintentar) {
+        if (causa != null && esCaida(causa)) {
+            reintentar.add(pendiente);
+            return;
+        }
+        Pendiente siguiente = pendiente.conIntento();
+        if (causa != null && esRechazo(causa)) {
+            apartar(siguiente, "rechazada por la API: " + causa.getMessage());
+        } else if (siguiente.intentos() >= maxAttempts) {
+            apartar(siguiente, "sin éxito tras " + siguiente.intentos() + " intentos"
+                + (causa != null ? ": " + causa.getMessage() : ""));
+        } else {
+            reintentar.add(siguiente);
+        }
+    }
+
+    /**
+     * Un 4xx no se arregla reintentando la misma alerta, salvo timeout (408) o exceso de
+     * peticiones (429).
+     */
+    private static boolean esRechazo(Exception e) {
+        if (!(e instanceof HttpClientErrorException clientError)) {
+            return false;
+        }
+        int status = clientError.getStatusCode().value();
+        return status != 408 && status != 429;
+    }
+
+    /**
+     * La API no respondió (conexión rechazada, timeout): no dice nada de la alerta, así
+     * que no cuenta como intento; el backoff espacia los reintentos.
+     */
+    private static boolean esCaida(Exception e) {
+        return e instanceof ResourceAccessException;
+    }
+
+    private void aplazar() {
+        fallosSeguidos++;
+        long espera = flushInterval.toNanos() << Math.min(fallosSeguidos - 1, 20);
+        proximoEnvio = nanoClock.getAsLong() + Math.min(espera, maxBackoff.toNanos());
+    }
+
+    private void requeue(List<Pendiente> pendientes) {
+        for (int i = pendientes.size() - 1; i >= 0; i--) {
+            if (!pending.offerFirst(pendientes.get(i))) {
+                apartar(pendientes.get(i), "cola de alertas llena");
+            }
+        }
+    }
+
+    private void apartar(Pendiente pendiente, String motivo) {
+        Alert alert = pendiente.alerta();
+        Long userId = alert.getUser() != null ? alert.getUser().getId() : null;
+        log.error("Se aparta la alerta {} del usuario {} ({})", alert.getAlertType(), userId, motivo);
+        Path path = Paths.get(deadLetterFile);
+        try {
+            if (path.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(path.toAbsolutePath().getParent());
+            }
+            String linea = objectMapper.writeValueAsString(new Apartada(pendiente.intentos(), motivo, alert)) + "\n";
+            Files.writeString(path, linea, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.error("No se pudo guardar la alerta apartada en {}", path.toAbsolutePath(), e);
+        }
+    }
+
+    private void spill() {
+        List<Pendiente> remaining = new ArrayList<>();
+        pending.drainTo(remaining);
+        Path path = Paths.get(spillFile);
+        try {
+            if (remaining.isEmpty()) {
+                Files.deleteIfExists(path);
+                return;
+            }
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            objectMapper.writeValue(temp.toFile(), remaining);
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.info("Guardadas en disco {} alertas pendientes en {}", remaining.size(), path.toAbsolutePath());
+        } catch (IOException e) {
+            log.error("No se pudieron guardar en disco {} alertas pendientes", remaining.size(), e);
+        }
+    }
+
+    private void reloadSpill() {
+        Path path = Paths.get(spillFile);
+        if (!Files.isRegularFile(path)) {
+            return;
+        }
+        try {
+            List<Pendiente> pendientes = objectMapper.readValue(path.toFile(), new TypeReference<List<Pendiente>>() {});
+            for (Pendiente pendiente : pendientes) {
+                // Los IDs provisionales nuevos no deben repetir los ya entregados
+                provisionalIds.accumulateAndGet(-pendiente.idProvisional(), Math::max);
+                pending.offerLast(pendiente);
+            }
+            Files.delete(path);
+            log.info("Reencoladas {} alertas pendientes desde {}", pendientes.size(), path.toAbsolutePath());
+        } catch (IOException e) {
+            log.error("No se pudieron recuperar las alertas pendientes de {}", path.toAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Alerta en cola con el ID provisional que se devolvió al encolarla y los envíos
+     * fallidos que lleva.
+     */
+    record Pendiente(long idProvisional, int intentos, Alert alerta) {
+
+        Pendiente conIntento() {
+            return new Pendiente(idProvisional, intentos + 1, alerta);
+        }
+
+        Alert conId() {
+            return new Alert(idProvisional, alerta.getUser(), alerta.getAlertType(), alerta.getMessage(),
+                alerta.getStatus(), alerta.getScheduledAt(), alerta.getMetadata(), alerta.getCreatedAt());
+        }
+    }
+
+    /**
+     * Línea del archivo de alertas apartadas.
+     */
+    record Apartada(int intentos, String motivo, Alert alerta) {
+    }
+}
@@ -1,9 +1,12 @@
 package com.punto.de.venta.mcp.service;
 
+import com.punto.de.venta.mcp.ledger.LedgerKind;
+import com.punto.de.venta.mcp.ledger.LedgerStore;
 import com.punto.de.venta.mcp.model.Budget;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -19,10 +22,15 @@ public class BudgetService {
     @Value("${ai.finance.api.budgets.url:http://localhost:8080/api/budgets}")
     private String budgetsApiUrl;
     
+    @Value("${ai.finance.api.verify-updates:false}")
+    private boolean verifyUpdates;
+    
     private final RestTemplate restTemplate;
+    private final LedgerStore ledgerStore;
     
-    public BudgetService(RestTemplate restTemplate) {
+    public BudgetService(RestTemplate restTemplate, LedgerStore ledgerStore) {
         this.restTemplate = restTemplate;
+        this.ledgerStore = ledgerStore;
     }
     
     public List<Budget> getAllBudgets() {
@@ -40,6 +48,7 @@ public class BudgetService {
         log.info("Obteniendo presupuesto con ID: {} desde: {}", id, budgetsApiUrl);
         try {
             Budget budget = restTemplate.getForObject(budgetsApiUrl + "/{id}", Budget.class, id);
+            ledgerStore.record(LedgerKind.BUDGET, budget);
             return Optional.ofNullable(budget);
         } catch (Exception e) {
             log.error("Error al obtener presupuesto con ID: {}", id, e);
@@ -56,6 +65,7 @@ public class BudgetService {
             new ParameterizedTypeReference<List<Budget>>() {},
             userId
         );
+        ledgerStore.replaceAll(LedgerKind.BUDGET, userId, response.getBody());
         return response.getBody();
     }
     
@@ -68,24 +78,43 @@ public class BudgetService {
             new ParameterizedTypeReference<List<Budget>>() {},
             userId, category
         );
+        ledgerStore.recordAll(LedgerKind.BUDGET, response.getBody());
         return response.getBody();
     }
     
     public Budget createBudget(Budget budget) {
         log.info("Creando nuevo presupuesto para categoría: {}", budget.getTransactionCategory().getCategoryName());
-        return restTemplate.postForObject(budgetsApiUrl, budget, Budget.class);
+        Budget created = restTemplate.postForObject(budgetsApiUrl, budget, Budget.class);
+        ledgerStore.record(LedgerKind.BUDGET, created);
+        return created;
     }
     
     public Budget updateBudget(Long id, Budget budget) {
         log.info("Actualizando presupuesto con ID: {}", id);
-        restTemplate.put(budgetsApiUrl + "/{id}", budget, id);
-        return getBudgetById(id).orElse(null);
+        ResponseEntity<Budget> response = restTemplate.exchange(
+            budgetsApiUrl + "/{id}",
+            HttpMethod.PUT,
+            new HttpEntity<>(budget),
+            Budget.class,
+            id
+        );
+        if (verifyUpdates) {
+            return getBudgetById(id).orElse(null);
+        }
+        Budget updated = response.getBody();
+        if (updated == null) {
+            budget.setId(id);
+            updated = budget;
+        }
+        ledgerStore.record(LedgerKind.BUDGET, updated);
+        return updated;
     }
     
     public boolean deleteBudget(Long id) {
         log.info("Eliminando presupuesto con ID: {}", id);
         try {
             restTemplate.delete(budgetsApiUrl + "/{id}", id);
+            ledgerStore.remove(LedgerKind.BUDGET, id);
             return true;
         } catch (Exception e) {
             log.error("Error al eliminar presupuesto con ID: {}", id, e);
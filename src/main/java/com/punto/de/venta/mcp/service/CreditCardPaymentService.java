@@ -4,6 +4,7 @@ import com.punto.de.venta.mcp.model.CreditCardPayment;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -20,6 +21,9 @@ public class CreditCardPaymentService {
     @Value("${ai.finance.api.credit-card-payments.url:http://localhost:8080/api/credit-card-payments}")
     private String creditCardPaymentsApiUrl;
     
+    @Value("${ai.finance.api.verify-updates:false}")
+    private boolean verifyUpdates;
+    
     private final RestTemplate restTemplate;
     
     public CreditCardPaymentService(RestTemplate restTemplate) {
@@ -91,8 +95,22 @@ public class CreditCardPaymentService {
     
     public CreditCardPayment updateCreditCardPayment(Long id, CreditCardPayment payment) {
         log.info("Actualizando pago de tarjeta de crédito con ID: {}", id);
-        restTemplate.put(creditCardPaymentsApiUrl + "/{id}", payment, id);
-        return getCreditCardPaymentById(id).orElse(null);
+        ResponseEntity<CreditCardPayment> response = restTemplate.exchange(
+            creditCardPaymentsApiUrl + "/{id}",
+            HttpMethod.PUT,
+            new HttpEntity<>(payment),
+            CreditCardPayment.class,
+            id
+        );
+        if (verifyUpdates) {
+            return getCreditCardPaymentById(id).orElse(null);
+        }
+        CreditCardPayment updated = response.getBody();
+        if (updated == null) {
+            payment.setId(id);
+            updated = payment;
+        }
+        return updated;
     }
     
     public boolean deleteCreditCardPayment(Long id) {
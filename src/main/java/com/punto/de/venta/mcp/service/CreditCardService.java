@@ -1,9 +1,12 @@
 package com.punto.de.venta.mcp.service;
 
+import com.punto.de.venta.mcp.ledger.LedgerKind;
+import com.punto.de.venta.mcp.ledger.LedgerStore;
 import com.punto.de.venta.mcp.model.CreditCard;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -19,10 +22,15 @@ public class CreditCardService {
     @Value("${ai.finance.api.credit-cards.url:http://localhost:8080/api/credit-cards}")
     private String creditCardsApiUrl;
     
+    @Value("${ai.finance.api.verify-updates:false}")
+    private boolean verifyUpdates;
+    
     private final RestTemplate restTemplate;
+    private final LedgerStore ledgerStore;
     
-    public CreditCardService(RestTemplate restTemplate) {
+    public CreditCardService(RestTemplate restTemplate, LedgerStore ledgerStore) {
         this.restTemplate = restTemplate;
+        this.ledgerStore = ledgerStore;
     }
     
     public List<CreditCard> getAllCreditCards() {
@@ -40,6 +48,7 @@ public class CreditCardService {
         log.info("Obteniendo tarjeta de crédito con ID: {} desde: {}", id, creditCardsApiUrl);
         try {
             CreditCard creditCard = restTemplate.getForObject(creditCardsApiUrl + "/{id}", CreditCard.class, id);
+            ledgerStore.record(LedgerKind.CREDIT_CARD, creditCard);
             return Optional.ofNullable(creditCard);
         } catch (Exception e) {
             log.error("Error al obtener tarjeta de crédito con ID: {}", id, e);
@@ -56,6 +65,7 @@ public class CreditCardService {
             new ParameterizedTypeReference<List<CreditCard>>() {},
             userId
         );
+        ledgerStore.replaceAll(LedgerKind.CREDIT_CARD, userId, response.getBody());
         return response.getBody();
     }
     
@@ -68,24 +78,43 @@ public class CreditCardService {
             new ParameterizedTypeReference<List<CreditCard>>() {},
             userId, cardName
         );
+        ledgerStore.recordAll(LedgerKind.CREDIT_CARD, response.getBody());
         return response.getBody();
     }
     
     public CreditCard createCreditCard(CreditCard creditCard) {
         log.info("Creando nueva tarjeta de crédito: {}", creditCard.getCardName());
-        return restTemplate.postForObject(creditCardsApiUrl, creditCard, CreditCard.class);
+        CreditCard created = restTemplate.postForObject(creditCardsApiUrl, creditCard, CreditCard.class);
+        ledgerStore.record(LedgerKind.CREDIT_CARD, created);
+        return created;
     }
     
     public CreditCard updateCreditCard(Long id, CreditCard creditCard) {
         log.info("Actualizando tarjeta de crédito con ID: {}", id);
-        restTemplate.put(creditCardsApiUrl + "/{id}", creditCard, id);
-        return getCreditCardById(id).orElse(null);
+        ResponseEntity<CreditCard> response = restTemplate.exchange(
+            creditCardsApiUrl + "/{id}",
+            HttpMethod.PUT,
+            new HttpEntity<>(creditCard),
+            CreditCard.class,
+            id
+        );
+        if (verifyUpdates) {
+            return getCreditCardById(id).orElse(null);
+        }
+        CreditCard updated = response.getBody();
+        if (updated == null) {
+            creditCard.setId(id);
+            updated = creditCard;
+        }
+        ledgerStore.record(LedgerKind.CREDIT_CARD, updated);
+        return updated;
     }
     
     public boolean deleteCreditCard(Long id) {
         log.info("Eliminando tarjeta de crédito con ID: {}", id);
         try {
             restTemplate.delete(creditCardsApiUrl + "/{id}", id);
+            ledgerStore.remove(LedgerKind.CREDIT_CARD, id);
             return true;
         } catch (Exception e) {
             log.error("Error al eliminar tarjeta de crédito con ID: {}", id, e);
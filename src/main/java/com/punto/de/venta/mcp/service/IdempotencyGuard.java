@@ -0,0 +1,165 @@
+package com.punto.de.venta.mcp.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Suprime escrituras duplicadas cuando el cliente reintenta una tool por timeout.
+ * La clave se deriva del nombre de la tool, el usuario y los argumentos normalizados;
+ * dentro de la ventana configurada un reintento recibe el resultado original (o espera
+ * a que termine la llamada original si sigue en curso) sin volver a llamar a la API.
+ * Los resultados de error no se recuerdan para que el reintento pueda ejecutarse.
+ *
+ * <p>La ventana cuenta desde que termina la llamada original y debe cubrir solo el
+ * horizonte de reintentos del cliente: pasado ese tiempo, dos registros iguales son dos
+ * gastos legítimos (dos cafés de la misma cantidad el mismo día), no un reintento.
+ */
+@Service
+@Slf4j
+public class IdempotencyGuard {
+
+    private static final int SWEEP_EVERY = 256;
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?");
+
+    @Value("${ai.finance.idempotency.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${ai.finance.idempotency.window:PT2M}")
+    private Duration window = Duration.ofMinutes(2);
+
+    private final ConcurrentHashMap<String, Entry> recentWrites = new ConcurrentHashMap<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final LongSupplier nanoClock;
+
+    @Autowired
+    public IdempotencyGuard() {
+        this(System::nanoTime);
+    }
+
+    IdempotencyGuard(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    public String execute(String toolName, String numeroTelefono, Supplier<String> action, Object... args) {
+        if (!enabled) {
+            return action.get();
+        }
+        if (calls.incrementAndGet() % SWEEP_EVERY == 0) {
+            sweep();
+        }
+        String key = key(toolName, numeroTelefono, args);
+        Entry entry = new Entry(new CompletableFuture<>());
+        while (true) {
+            Entry existing = recentWrites.putIfAbsent(key, entry);
+            if (existing == null) {
+                break;
+            }
+            if (!isExpired(existing)) {
+                log.info("Reintento de {} detectado para usuario: {}, se devuelve el resultado original", toolName, numeroTelefono);
+                return await(existing);
+            }
+            if (recentWrites.replace(key, existing, entry)) {
+                break;
+            }
+        }
+
+        try {
+            String result = action.get();
+            entry.completedAt = nanoClock.getAsLong();
+            entry.result.complete(result);
+            if (result == null || result.startsWith("Error")) {
+                recentWrites.remove(key, entry);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            entry.completedAt = nanoClock.getAsLong();
+            entry.result.completeExceptionally(e);
+            recentWrites.remove(key, entry);
+            throw e;
+        }
+    }
+
+    /**
+     * Resultado de la llamada original. Si falló, el reintento recibe la misma excepción y
+     * no la {@link CompletionException} que la envuelve.
+     */
+    private static String await(Entry existing) {
+        try {
+            return existing.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Una llamada en curso no caduca: la ventana empieza cuando termina.
+     */
+    private boolean isExpired(Entry entry) {
+        long completedAt = entry.completedAt;
+        return entry.result.isDone() && nanoClock.getAsLong() - completedAt > window.toNanos();
+    }
+
+    private void sweep() {
+        recentWrites.entrySet().removeIf(e -> isExpired(e.getValue()));
+    }
+
+    static String key(String toolName, String numeroTelefono, Object... args) {
+        StringBuilder raw = new StringBuilder(toolName).append('\u0000').append(normalize(numeroTelefono));
+        for (Object arg : args) {
+            raw.append('\u0000').append(normalize(arg));
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(raw.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            return raw.toString();
+        }
+    }
+
+    private static String normalize(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof BigDecimal decimal) {
+            return decimal.stripTrailingZeros().toPlainString();
+        }
+        String text = value.toString().trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        if (text.equals("null")) {
+            return "";
+        }
+        if (NUMBER.matcher(text).matches()) {
+            return new BigDecimal(text).stripTrailingZeros().toPlainString();
+        }
+        return text;
+    }
+
+    private static final class Entry {
+
+        private final CompletableFuture<String> result;
+        private volatile long completedAt;
+
+        private Entry(CompletableFuture<String> result) {
+            this.result = result;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.punto.de.venta.mcp.model.Loan;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -19,6 +20,9 @@ public class LoanService {
     @Value("${ai.finance.api.loans.url:http://localhost:8080/api/loans}")
     private String loansApiUrl;
     
+    @Value("${ai.finance.api.verify-updates:false}")
+    private boolean verifyUpdates;
+    
     private final RestTemplate restTemplate;
     
     public LoanService(RestTemplate restTemplate) {
@@ -66,8 +70,22 @@ public class LoanService {
     
     public Loan updateLoan(Long id, Loan loan) {
         log.info("Actualizando préstamo con ID: {}", id);
-        restTemplate.put(loansApiUrl + "/{id}", loan, id);
-        return getLoanById(id).orElse(null);
+        ResponseEntity<Loan> response = restTemplate.exchange(
+            loansApiUrl + "/{id}",
+            HttpMethod.PUT,
+            new HttpEntity<>(loan),
+            Loan.class,
+            id
+        );
+        if (verifyUpdates) {
+            return getLoanById(id).orElse(null);
+        }
+        Loan updated = response.getBody();
+        if (updated == null) {
+            loan.setId(String.valueOf(id));
+            updated = loan;
+        }
+        return updated;
     }
     
     public boolean deleteLoan(Long id) {
@@ -4,6 +4,7 @@ import com.punto.de.venta.mcp.model.RecurringTransaction;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -19,6 +20,9 @@ public class RecurringTransactionService {
     @Value("${ai.finance.api.recurring-transactions.url:http://localhost:8080/api/recurring-transactions}")
     private String recurringTransactionsApiUrl;
     
+    @Value("${ai.finance.api.verify-updates:false}")
+    private boolean verifyUpdates;
+    
     private final RestTemplate restTemplate;
     
     public RecurringTransactionService(RestTemplate restTemplate) {
@@ -78,8 +82,22 @@ public class RecurringTransactionService {
     
     public RecurringTransaction updateRecurringTransaction(Long id, RecurringTransaction recurringTransaction) {
         log.info("Actualizando transacción recurrente con ID: {}", id);
-        restTemplate.put(recurringTransactionsApiUrl + "/{id}", recurringTransaction, id);
-        return getRecurringTransactionById(id).orElse(null);
+        ResponseEntity<RecurringTransaction> response = restTemplate.exchange(
+            recurringTransactionsApiUrl + "/{id}",
+            HttpMethod.PUT,
+            new HttpEntity<>(recurringTransaction),
+            RecurringTransaction.class,
+            id
+        );
+        if (verifyUpdates) {
+            return getRecurringTransactionById(id).orElse(null);
+        }
+        RecurringTransaction updated = response.getBody();
+        if (updated == null) {
+            recurringTransaction.setId(id);
+            updated = recurringTransaction;
+        }
+        return updated;
     }
     
     public boolean deleteRecurringTransaction(Long id) {
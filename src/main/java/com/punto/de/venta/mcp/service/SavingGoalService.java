@@ -4,6 +4,7 @@ import com.punto.de.venta.mcp.model.SavingGoal;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -19,6 +20,9 @@ public class SavingGoalService {
     @Value("${ai.finance.api.saving-goals.url:http://localhost:8080/api/saving-goals}")
     private String savingGoalsApiUrl;
     
+    @Value("${ai.finance.api.verify-updates:false}")
+    private boolean verifyUpdates;
+    
     private final RestTemplate restTemplate;
     
     public SavingGoalService(RestTemplate restTemplate) {
@@ -66,8 +70,22 @@ public class SavingGoalService {
     
     public SavingGoal updateSavingGoal(Long id, SavingGoal savingGoal) {
         log.info("Actualizando meta de ahorro con ID: {}", id);
-        restTemplate.put(savingGoalsApiUrl + "/{id}", savingGoal, id);
-        return getSavingGoalById(id).orElse(null);
+        ResponseEntity<SavingGoal> response = restTemplate.exchange(
+            savingGoalsApiUrl + "/{id}",
+            HttpMethod.PUT,
+            new HttpEntity<>(savingGoal),
+            SavingGoal.class,
+            id
+        );
+        if (verifyUpdates) {
+            return getSavingGoalById(id).orElse(null);
+        }
+        SavingGoal updated = response.getBody();
+        if (updated == null) {
+            savingGoal.setId(id);
+            updated = savingGoal;
+        }
+        return updated;
     }
     
     public boolean deleteSavingGoal(Long id) {
@@ -1,9 +1,12 @@
 package com.punto.de.venta.mcp.service;
 
+import com.punto.de.venta.mcp.ledger.LedgerKind;
+import com.punto.de.venta.mcp.ledger.LedgerStore;
 import com.punto.de.venta.mcp.model.TransactionCategory;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -19,10 +22,15 @@ public class TransactionCategoryService {
     @Value("${ai.finance.api.transaction-categories.url:http://localhost:8080/api/transaction-categories}")
     private String transactionCategoriesApiUrl;
     
+    @Value("${ai.finance.api.verify-updates:false}")
+    private boolean verifyUpdates;
+    
     private final RestTemplate restTemplate;
+    private final LedgerStore ledgerStore;
     
-    public TransactionCategoryService(RestTemplate restTemplate) {
+    public TransactionCategoryService(RestTemplate restTemplate, LedgerStore ledgerStore) {
         this.restTemplate = restTemplate;
+        this.ledgerStore = ledgerStore;
     }
     
     public List<TransactionCategory> getAllTransactionCategories() {
@@ -40,6 +48,7 @@ public class TransactionCategoryService {
         log.info("Obteniendo categoría de transacción con ID: {} desde: {}", id, transactionCategoriesApiUrl);
         try {
             TransactionCategory category = restTemplate.getForObject(transactionCategoriesApiUrl + "/{id}", TransactionCategory.class, id);
+            ledgerStore.record(LedgerKind.CATEGORY, category);
             return Optional.ofNullable(category);
         } catch (Exception e) {
             log.error("Error al obtener categoría de transacción con ID: {}", id, e);
@@ -56,6 +65,7 @@ public class TransactionCategoryService {
             new ParameterizedTypeReference<List<TransactionCategory>>() {},
             userId
         );
+        ledgerStore.replaceAll(LedgerKind.CATEGORY, userId, response.getBody());
         return response.getBody();
     }
     
@@ -68,6 +78,7 @@ public class TransactionCategoryService {
             new ParameterizedTypeReference<List<TransactionCategory>>() {},
             userId, categoryName
         );
+        ledgerStore.recordAll(LedgerKind.CATEGORY, response.getBody());
         return response.getBody();
     }
     
@@ -80,24 +91,43 @@ public class TransactionCategoryService {
             new ParameterizedTypeReference<List<TransactionCategory>>() {},
             parentCategoryId
         );
+        ledgerStore.recordAll(LedgerKind.CATEGORY, response.getBody());
         return response.getBody();
     }
     
     public TransactionCategory createTransactionCategory(TransactionCategory category) {
         log.info("Creando nueva categoría de transacción: {}", category.getCategoryName());
-        return restTemplate.postForObject(transactionCategoriesApiUrl, category, TransactionCategory.class);
+        TransactionCategory created = restTemplate.postForObject(transactionCategoriesApiUrl, category, TransactionCategory.class);
+        ledgerStore.record(LedgerKind.CATEGORY, created);
+        return created;
     }
     
     public TransactionCategory updateTransactionCategory(Long id, TransactionCategory category) {
         log.info("Actualizando categoría de transacción con ID: {}", id);
-        restTemplate.put(transactionCategoriesApiUrl + "/{id}", category, id);
-        return getTransactionCategoryById(id).orElse(null);
+        ResponseEntity<TransactionCategory> response = restTemplate.exchange(
+            transactionCategoriesApiUrl + "/{id}",
+            HttpMethod.PUT,
+            new HttpEntity<>(category),
+            TransactionCategory.class,
+            id
+        );
+        if (verifyUpdates) {
+            return getTransactionCategoryById(id).orElse(null);
+        }
+        TransactionCategory updated = response.getBody();
+        if (updated == null) {
+            category.setId(id);
+            updated = category;
+        }
+        ledgerStore.record(LedgerKind.CATEGORY, updated);
+        return updated;
     }
     
     public boolean deleteTransactionCategory(Long id) {
         log.info("Eliminando categoría de transacción con ID: {}", id);
         try {
             restTemplate.delete(transactionCategoriesApiUrl + "/{id}", id);
+            ledgerStore.remove(LedgerKind.CATEGORY, id);
             return true;
         } catch (Exception e) {
             log.error("Error al eliminar categoría de transacción con ID: {}", id, e);
@@ -0,0 +1,11 @@
+package com.punto.de.venta.mcp.service;
+
+import com.punto.de.venta.mcp.model.Transaction;
+
+/**
+ * Se publica después de cada escritura de transacciones hecha por {@link TransactionService}.
+ * En las altas {@code created} es la transacción creada; en cambios y bajas es {@code null}.
+ * {@code userId} es {@code null} si no se sabe de qué usuario era la transacción.
+ */
+public record TransactionChangedEvent(Long userId, Transaction created) {
+}
@@ -1,30 +1,81 @@
 package com.punto.de.venta.mcp.service;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punto.de.venta.mcp.context.RequestDataContext;
+import com.punto.de.venta.mcp.ledger.LedgerKind;
+import com.punto.de.venta.mcp.ledger.LedgerStore;
 import com.punto.de.venta.mcp.model.Transaction;
+import com.punto.de.venta.mcp.model.TransactionUpdateResult;
+import com.punto.de.venta.mcp.operation.OperationHandle;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpEntity;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
 
 @Service
 @Slf4j
 public class TransactionService {
     
+    private static final List<String> HISTORY_TYPES = List.of("EXPENSE", "INCOME");
+    private static final LocalDate HISTORY_START = LocalDate.of(1900, 1, 1);
+    /**
+     * Días de la primera ventana que se pide a la API al paginar sin ledger.
+     */
+    private static final long PAGE_WINDOW_DAYS = 31;
+    private static final Comparator<Transaction> PAGE_ORDER = Comparator
+        .comparing(Transaction::getTransactionDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparing(Transaction::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+    
     @Value("${ai.finance.api.transactions.url:http://localhost:8080/api/transactions}")
     private String transactionsApiUrl;
     
+    @Value("${ai.finance.api.verify-updates:false}")
+    private boolean verifyUpdates;
+    
+    @Value("${ai.finance.api.transactions.batch-enabled:false}")
+    private boolean batchEnabled;
+    
+    @Value("${ai.finance.api.transactions.batch-size:200}")
+    private int batchSize;
+    
     private final RestTemplate restTemplate;
+    private final LedgerStore ledgerStore;
+    private final ExecutorService bulkExecutor;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher events;
     
-    public TransactionService(RestTemplate restTemplate) {
+    public TransactionService(RestTemplate restTemplate, LedgerStore ledgerStore,
+                              @Qualifier("bulkExecutor") ExecutorService bulkExecutor, ObjectMapper objectMapper,
+                              ApplicationEventPublisher events) {
         this.restTemplate = restTemplate;
+        this.ledgerStore = ledgerStore;
+        this.bulkExecutor = bulkExecutor;
+        this.objectMapper = objectMapper;
+        this.events = events;
     }
     
     public List<Transaction> getAllTransactions() {
@@ -42,6 +93,7 @@ public class TransactionService {
         log.info("Obteniendo transacción con ID: {} desde: {}", id, transactionsApiUrl);
         try {
             Transaction transaction = restTemplate.getForObject(transactionsApiUrl + "/{id}", Transaction.class, id);
+            ledgerStore.record(LedgerKind.TRANSACTION, transaction);
             return Optional.ofNullable(transaction);
         } catch (Exception e) {
             log.error("Error al obtener transacción con ID: {}", id, e);
@@ -50,6 +102,29 @@ public class TransactionService {
     }
     
     public List<Transaction> getTransactionsByUserId(Long userId) {
+        LocalDate deltaStart = syncableDeltaStart(userId);
+        if (deltaStart != null) {
+            // Sincronización incremental: el resto del historial ya está en el ledger local
+            List<Transaction> delta = getTransactionsByUserIdAndDateRange(userId, deltaStart, LedgerStore.OPEN_END);
+            return ledgerStore.syncTransactions(userId, deltaStart, delta);
+        }
+        return fetchAllTransactions(userId);
+    }
+
+    /**
+     * Fecha desde la que basta una sincronización incremental, o {@code null} si hace
+     * falta la completa porque el ledger no la admite o el historial anterior cambió.
+     */
+    private LocalDate syncableDeltaStart(Long userId) {
+        LocalDate deltaStart = ledgerStore.transactionsDeltaStart(userId);
+        if (deltaStart != null && !historyUnchanged(userId, deltaStart)) {
+            log.info("El historial anterior a {} del usuario {} cambió en la API, se sincroniza completo", deltaStart, userId);
+            return null;
+        }
+        return deltaStart;
+    }
+
+    private List<Transaction> fetchAllTransactions(Long userId) {
         log.info("Obteniendo transacciones para usuario: {} desde: {}", userId, transactionsApiUrl);
         ResponseEntity<List<Transaction>> response = restTemplate.exchange(
             transactionsApiUrl + "/user/{userId}",
@@ -58,7 +133,36 @@ public class TransactionService {
             new ParameterizedTypeReference<List<Transaction>>() {},
             userId
         );
-        return response.getBody();
+        List<Transaction> transactions = response.getBody();
+        ledgerStore.applyTransactionsSync(userId, null, transactions);
+        return transactions;
+    }
+    
+    /**
+     * La sincronización incremental solo relee desde {@code deltaStart}; un alta, baja o
+     * cambio de monto con fecha anterior hecho por otro cliente no aparecería hasta la
+     * próxima sincronización completa. Se detecta comparando por tipo la suma de la API
+     * para ese tramo con la del ledger local, que son dos consultas pequeñas.
+     */
+    private boolean historyUnchanged(Long userId, LocalDate deltaStart) {
+        LocalDate end = deltaStart.minusDays(1);
+        try {
+            for (String type : HISTORY_TYPES) {
+                BigDecimal remote = restTemplate.getForObject(
+                    transactionsApiUrl + "/user/{userId}/sum?type={type}&startDate={startDate}&endDate={endDate}",
+                    BigDecimal.class,
+                    userId, type, HISTORY_START, end
+                );
+                BigDecimal local = ledgerStore.localSum(userId, type, HISTORY_START, end);
+                if ((remote != null ? remote : BigDecimal.ZERO).compareTo(local) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            log.warn("No se pudo contrastar el historial del usuario {} con la API: {}", userId, e.getMessage());
+            return false;
+        }
     }
     
     public List<Transaction> getTransactionsByUserIdAndType(Long userId, String type) {
@@ -70,6 +174,7 @@ public class TransactionService {
             new ParameterizedTypeReference<List<Transaction>>() {},
             userId, type
         );
+        ledgerStore.recordAll(LedgerKind.TRANSACTION, response.getBody());
         return response.getBody();
     }
     
@@ -82,6 +187,7 @@ public class TransactionService {
             new ParameterizedTypeReference<List<Transaction>>() {},
             userId, categoryId
         );
+        ledgerStore.recordAll(LedgerKind.TRANSACTION, response.getBody());
         return response.getBody();
     }
     
@@ -94,10 +200,111 @@ public class TransactionService {
             new ParameterizedTypeReference<List<Transaction>>() {},
             userId, startDate, endDate
         );
+        ledgerStore.recordAll(LedgerKind.TRANSACTION, response.getBody());
         return response.getBody();
     }
     
+    /**
+     * Devuelve hasta {@code limit + 1} transacciones del rango ordenadas por fecha e id,
+     * posteriores a la posición {@code (afterDate, afterId)} si se indica. Si el ledger
+     * local admite sincronización incremental se pone al día y se pagina sobre su índice
+     * ordenado; si no, se pide a la API una ventana de fechas desde la posición del cursor
+     * que se duplica hasta reunir la página o llegar al final del rango.
+     */
+    public List<Transaction> getTransactionsPage(Long userId, LocalDate startDate, LocalDate endDate, String type,
+                                                 LocalDate afterDate, Long afterId, int limit) {
+        if (ledgerStore.transactionsDeltaStart(userId) != null) {
+            LocalDate deltaStart = syncableDeltaStart(userId);
+            if (deltaStart != null) {
+                ledgerStore.applyTransactionsSync(userId, deltaStart,
+                    getTransactionsByUserIdAndDateRange(userId, deltaStart, LedgerStore.OPEN_END));
+            } else {
+                fetchAllTransactions(userId);
+            }
+            return ledgerStore.transactionsPage(userId, startDate, endDate, type, afterDate, afterId, limit + 1);
+        }
+
+        LocalDate from = afterDate != null && afterDate.isAfter(startDate) ? afterDate : startDate;
+        List<Transaction> page = new ArrayList<>();
+        LocalDate windowStart = from;
+        long windowDays = PAGE_WINDOW_DAYS;
+        while (!windowStart.isAfter(endDate)) {
+            LocalDate windowEnd = ChronoUnit.DAYS.between(windowStart, endDate) < windowDays
+                ? endDate : windowStart.plusDays(windowDays - 1);
+            List<Transaction> window = new ArrayList<>(getTransactionsByUserIdAndDateRange(userId, windowStart, windowEnd));
+            window.sort(PAGE_ORDER);
+            for (Transaction t : window) {
+                LocalDate date = t.getTransactionDate();
+                if (date == null || date.isBefore(windowStart) || date.isAfter(windowEnd)) {
+                    continue;
+                }
+                if (type != null && !type.equals(t.getType())) {
+                    continue;
+                }
+                if (afterDate != null && date.equals(afterDate) && afterId != null
+                        && (t.getId() == null || t.getId() <= afterId)) {
+                    continue;
+                }
+                page.add(t);
+                if (page.size() > limit) {
+                    return page;
+                }
+            }
+            windowStart = windowEnd.plusDays(1);
+            windowDays *= 2;
+        }
+        return page;
+    }
+
+    /**
+     * Recorre las transacciones del rango leyendo la respuesta de la API como stream, sin
+     * materializar la lista completa. El consumidor devuelve {@code false} para detener la
+     * lectura. Devuelve cuántas transacciones se entregaron.
+     */
+    public long streamTransactionsByUserIdAndDateRange(Long userId, LocalDate startDate, LocalDate endDate,
+                                                       Predicate<Transaction> consumer) {
+        log.info("Leyendo en streaming transacciones para usuario: {} en rango de fechas: {} - {} desde: {}", userId, startDate, endDate, transactionsApiUrl);
+        // El cuerpo se consume en streaming: no debe guardarse en el contexto de la petición
+        RequestDataContext previous = RequestDataContext.suspend();
+        try {
+            return stream(userId, startDate, endDate, consumer);
+        } finally {
+            RequestDataContext.restore(previous);
+        }
+    }
+    
+    private long stream(Long userId, LocalDate startDate, LocalDate endDate, Predicate<Transaction> consumer) {
+        Long delivered = restTemplate.execute(
+            transactionsApiUrl + "/user/{userId}/date-range?startDate={startDate}&endDate={endDate}",
+            HttpMethod.GET,
+            request -> request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON)),
+            response -> {
+                long count = 0;
+                try (JsonParser parser = objectMapper.getFactory().createParser(response.getBody())) {
+                    if (parser.nextToken() != JsonToken.START_ARRAY) {
+                        return count;
+                    }
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        Transaction transaction = objectMapper.readValue(parser, Transaction.class);
+                        count++;
+                        if (!consumer.test(transaction)) {
+                            break;
+                        }
+                    }
+                }
+                return count;
+            },
+            userId, startDate, endDate
+        );
+        return delivered != null ? delivered : 0;
+    }
+    
     public BigDecimal getSumAmountByUserIdAndTypeAndDateRange(Long userId, String type, LocalDate startDate, LocalDate endDate) {
+        Optional<BigDecimal> local = ledgerStore.freshSum(userId, type, startDate, endDate);
+        if (local.isPresent()) {
+            log.debug("Suma de transacciones para usuario: {} resuelta desde el ledger local", userId);
+            return local.get();
+        }
         log.info("Calculando suma de transacciones para usuario: {} con tipo: {} en rango: {} - {} desde: {}", userId, type, startDate, endDate, transactionsApiUrl);
         try {
             BigDecimal sum = restTemplate.getForObject(
@@ -114,23 +321,175 @@ public class TransactionService {
     
     public Transaction createTransaction(Transaction transaction) {
         log.info("Creando nueva transacción: {}", transaction.getDescription());
-        return restTemplate.postForObject(transactionsApiUrl, transaction, Transaction.class);
+        Transaction created = restTemplate.postForObject(transactionsApiUrl, transaction, Transaction.class);
+        ledgerStore.record(LedgerKind.TRANSACTION, created);
+        if (created != null) {
+            events.publishEvent(new TransactionChangedEvent(userIdOf(created, transaction), created));
+        }
+        return created;
     }
     
     public Transaction updateTransaction(Long id, Transaction transaction) {
         log.info("Actualizando transacción con ID: {}", id);
-        restTemplate.put(transactionsApiUrl + "/{id}", transaction, id);
-        return getTransactionById(id).orElse(null);
+        ResponseEntity<Transaction> response = restTemplate.exchange(
+            transactionsApiUrl + "/{id}",
+            HttpMethod.PUT,
+            new HttpEntity<>(transaction),
+            Transaction.class,
+            id
+        );
+        Long userId = userIdOf(transaction, response.getBody());
+        if (userId == null) {
+            userId = ledgerStore.ownerOf(LedgerKind.TRANSACTION, id);
+        }
+        if (verifyUpdates) {
+            Transaction verified = getTransactionById(id).orElse(null);
+            events.publishEvent(new TransactionChangedEvent(userId, null));
+            return verified;
+        }
+        Transaction updated = response.getBody();
+        if (updated == null) {
+            // La API no devolvió cuerpo: se usa la entidad enviada, que ya es el estado completo
+            transaction.setId(id);
+            updated = transaction;
+        }
+        ledgerStore.record(LedgerKind.TRANSACTION, updated);
+        events.publishEvent(new TransactionChangedEvent(userId, null));
+        return updated;
+    }
+    
+    /**
+     * Crea varias transacciones en paralelo con concurrencia acotada por el executor de
+     * bulk. Devuelve la transacción creada en la misma posición, o {@code null} si falló.
+     */
+    public List<Transaction> createTransactions(List<Transaction> transactions) {
+        log.info("Creando {} transacciones en bloque", transactions.size());
+        List<CompletableFuture<Transaction>> futures = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                if (OperationHandle.current().isCancelled()) {
+                    return null;
+                }
+                try {
+                    return createTransaction(transaction);
+                } catch (Exception e) {
+                    log.error("Error al crear transacción: {}", transaction.getDescription(), e);
+                    return null;
+                }
+            }, bulkExecutor));
+        }
+        List<Transaction> created = new ArrayList<>(transactions.size());
+        for (CompletableFuture<Transaction> future : futures) {
+            created.add(future.join());
+        }
+        return created;
+    }
+    
+    /**
+     * Actualiza varias transacciones y devuelve un resultado por fila, en el mismo orden.
+     * Usa el endpoint batch si el backend lo soporta; si no, lanza las actualizaciones
+     * individuales en paralelo con concurrencia acotada por el executor de bulk.
+     */
+    public List<TransactionUpdateResult> updateTransactions(List<Transaction> transactions) {
+        log.info("Actualizando {} transacciones en bloque (batch: {})", transactions.size(), batchEnabled);
+        List<TransactionUpdateResult> results = new ArrayList<>(transactions.size());
+        OperationHandle operation = OperationHandle.current();
+        AtomicInteger done = new AtomicInteger();
+        IntConsumer rowsDone = rows -> operation.progress(done.addAndGet(rows), transactions.size(), "transacciones actualizadas");
+        for (int from = 0; from < transactions.size(); from += batchSize) {
+            List<Transaction> chunk = transactions.subList(from, Math.min(from + batchSize, transactions.size()));
+            results.addAll(batchEnabled ? updateBatch(chunk, rowsDone) : updateInParallel(chunk, rowsDone));
+        }
+        Set<Long> usuarios = new HashSet<>();
+        for (TransactionUpdateResult result : results) {
+            if (result.isSuccess()) {
+                ledgerStore.record(LedgerKind.TRANSACTION, result.getTransaction());
+                Long userId = userIdOf(result.getTransaction(), null);
+                usuarios.add(userId != null ? userId : ledgerStore.ownerOf(LedgerKind.TRANSACTION, result.getTransaction().getId()));
+            }
+        }
+        // Las filas que fueron por el endpoint batch no pasaron por updateTransaction
+        for (Long userId : usuarios) {
+            events.publishEvent(new TransactionChangedEvent(userId, null));
+        }
+        return results;
+    }
+    
+    private List<TransactionUpdateResult> updateBatch(List<Transaction> chunk, IntConsumer rowsDone) {
+        if (OperationHandle.current().isCancelled()) {
+            return updateInParallel(chunk, rowsDone);
+        }
+        try {
+            ResponseEntity<List<TransactionUpdateResult>> response = restTemplate.exchange(
+                transactionsApiUrl + "/batch",
+                HttpMethod.PUT,
+                new HttpEntity<>(chunk),
+                new ParameterizedTypeReference<List<TransactionUpdateResult>>() {}
+            );
+            List<TransactionUpdateResult> body = response.getBody();
+            if (body != null && body.size() == chunk.size()) {
+                rowsDone.accept(chunk.size());
+                return body;
+            }
+            log.warn("Respuesta batch inesperada ({} resultados para {} filas), se actualiza fila por fila",
+                body != null ? body.size() : 0, chunk.size());
+        } catch (Exception e) {
+            log.warn("Error en actualización batch de {} transacciones, se actualiza fila por fila: {}", chunk.size(), e.getMessage());
+        }
+        return updateInParallel(chunk, rowsDone);
+    }
+    
+    private List<TransactionUpdateResult> updateInParallel(List<Transaction> chunk, IntConsumer rowsDone) {
+        List<CompletableFuture<TransactionUpdateResult>> futures = new ArrayList<>(chunk.size());
+        for (Transaction transaction : chunk) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                TransactionUpdateResult result = updateRow(transaction);
+                rowsDone.accept(1);
+                return result;
+            }, bulkExecutor));
+        }
+        List<TransactionUpdateResult> results = new ArrayList<>(chunk.size());
+        for (CompletableFuture<TransactionUpdateResult> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+    
+    private TransactionUpdateResult updateRow(Transaction transaction) {
+        // Con la operación cancelada las filas que quedan en cola ya no llaman a la API
+        if (OperationHandle.current().isCancelled()) {
+            return new TransactionUpdateResult(transaction.getId(), null, "Operación cancelada");
+        }
+        try {
+            Transaction updated = updateTransaction(transaction.getId(), transaction);
+            if (updated == null) {
+                return new TransactionUpdateResult(transaction.getId(), null, "No se pudo confirmar la actualización");
+            }
+            return new TransactionUpdateResult(transaction.getId(), updated, null);
+        } catch (Exception e) {
+            log.error("Error al actualizar transacción con ID: {}", transaction.getId(), e);
+            return new TransactionUpdateResult(transaction.getId(), null, e.getMessage());
+        }
     }
     
     public boolean deleteTransaction(Long id) {
         log.info("Eliminando transacción con ID: {}", id);
         try {
+            Long userId = ledgerStore.ownerOf(LedgerKind.TRANSACTION, id);
             restTemplate.delete(transactionsApiUrl + "/{id}", id);
+            ledgerStore.remove(LedgerKind.TRANSACTION, id);
+            events.publishEvent(new TransactionChangedEvent(userId, null));
             return true;
         } catch (Exception e) {
             log.error("Error al eliminar transacción con ID: {}", id, e);
             return false;
         }
     }
+    
+    private static Long userIdOf(Transaction primary, Transaction fallback) {
+        if (primary != null && primary.getUser() != null && primary.getUser().getId() != null) {
+            return primary.getUser().getId();
+        }
+        return fallback != null && fallback.getUser() != null ? fallback.getUser().getId() : null;
+    }
 }
@@ -4,6 +4,7 @@ import com.punto.de.venta.mcp.model.User;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -19,6 +20,9 @@ public class UserService {
     @Value("${ai.finance.api.users.url:http://localhost:8080/api/users}")
     private String usersApiUrl;
     
+    @Value("${ai.finance.api.verify-updates:false}")
+    private boolean verifyUpdates;
+    
     private final RestTemplate restTemplate;
     
     public UserService(RestTemplate restTemplate) {
@@ -76,8 +80,22 @@ public class UserService {
     
     public User updateUser(Long id, User user) {
         log.info("Actualizando usuario con ID: {}", id);
-        restTemplate.put(usersApiUrl + "/{id}", user, id);
-        return getUserById(id).orElse(null);
+        ResponseEntity<User> response = restTemplate.exchange(
+            usersApiUrl + "/{id}",
+            HttpMethod.PUT,
+            new HttpEntity<>(user),
+            User.class,
+            id
+        );
+        if (verifyUpdates) {
+            return getUserById(id).orElse(null);
+        }
+        User updated = response.getBody();
+        if (updated == null) {
+            user.setId(id);
+            updated = user;
+        }
+        return updated;
     }
     
     public boolean deleteUser(Long id) {
@@ -0,0 +1,39 @@
+package com.punto.de.venta.mcp.session;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro local, suficiente con una sola réplica: solo conoce las sesiones propias y
+ * nunca reenvía.
+ */
+public class InMemorySessionRegistry implements SessionRegistry {
+
+    private final String selfAddress;
+    private final Set<String> local = ConcurrentHashMap.newKeySet();
+
+    public InMemorySessionRegistry(String selfAddress) {
+        this.selfAddress = selfAddress;
+    }
+
+    @Override
+    public void register(String sessionId) {
+        local.add(sessionId);
+    }
+
+    @Override
+    public void unregister(String sessionId) {
+        local.remove(sessionId);
+    }
+
+    @Override
+    public boolean isLocal(String sessionId) {
+        return local.contains(sessionId);
+    }
+
+    @Override
+    public Optional<String> ownerOf(String sessionId) {
+        return local.contains(sessionId) ? Optional.of(selfAddress) : Optional.empty();
+    }
+}
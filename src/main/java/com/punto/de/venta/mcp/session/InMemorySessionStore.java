@@ -0,0 +1,51 @@
+package com.punto.de.venta.mcp.session;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link SessionStore} en memoria del proceso. No se comparte entre réplicas: sirve como
+ * sustituto local del almacén real en pruebas y en desarrollo.
+ */
+public class InMemorySessionStore implements SessionStore {
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Clock clock;
+
+    public InMemorySessionStore() {
+        this(Clock.systemUTC());
+    }
+
+    public InMemorySessionStore(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public void put(String key, String value, Duration ttl) {
+        entries.put(key, new Entry(value, clock.instant().plus(ttl)));
+    }
+
+    @Override
+    public Optional<String> get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (!entry.expiresAt().isAfter(clock.instant())) {
+            entries.remove(key, entry);
+            return Optional.empty();
+        }
+        return Optional.of(entry.value());
+    }
+
+    @Override
+    public void remove(String key, String value) {
+        entries.computeIfPresent(key, (k, entry) -> entry.value().equals(value) ? null : entry);
+    }
+
+    private record Entry(String value, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,24 @@
+package com.punto.de.venta.mcp.session;
+
+import java.util.Optional;
+
+/**
+ * Qué réplica tiene abierto el stream SSE de cada sesión MCP. Los POST a
+ * {@code /mcp/messages} que llegan a otra réplica se reenvían a la dueña.
+ */
+public interface SessionRegistry {
+
+    /**
+     * Registra una sesión cuyo stream SSE está abierto en esta réplica.
+     */
+    void register(String sessionId);
+
+    void unregister(String sessionId);
+
+    boolean isLocal(String sessionId);
+
+    /**
+     * Dirección base de la réplica dueña de la sesión, si se conoce.
+     */
+    Optional<String> ownerOf(String sessionId);
+}
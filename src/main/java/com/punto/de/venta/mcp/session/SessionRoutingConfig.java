@@ -0,0 +1,42 @@
+package com.punto.de.venta.mcp.session;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+
+@Configuration
+@Slf4j
+public class SessionRoutingConfig {
+
+    /**
+     * Con un {@link SessionStore} disponible las sesiones se publican para todas las réplicas;
+     * sin él el registro es local y el servidor debe correr con una sola réplica.
+     */
+    @Bean
+    public SessionRegistry sessionRegistry(ObjectProvider<SessionStore> sessionStore,
+                                           @Value("${mcp.session.advertised-address:http://localhost:${server.port:8080}}") String advertisedAddress,
+                                           @Value("${mcp.session.ttl:PT2M}") Duration ttl) {
+        SessionStore store = sessionStore.getIfAvailable();
+        if (store == null) {
+            log.info("Registro de sesiones MCP local: no hay SessionStore compartido");
+            return new InMemorySessionRegistry(advertisedAddress);
+        }
+        StoreSessionRegistry registry = new StoreSessionRegistry(store, advertisedAddress, ttl);
+        registry.start();
+        return registry;
+    }
+
+    @Bean
+    public SessionRoutingFilter sessionRoutingFilter(SessionRegistry sessionRegistry,
+                                                     WebClient.Builder webClientBuilder,
+                                                     @Value("${mcp.session.advertised-address:http://localhost:${server.port:8080}}") String advertisedAddress,
+                                                     @Value("${spring.ai.mcp.server.sse-endpoint:/sse}") String sseEndpoint,
+                                                     @Value("${spring.ai.mcp.server.sse-message-endpoint:/mcp/message}") String messageEndpoint) {
+        return new SessionRoutingFilter(sessionRegistry, webClientBuilder.build(), advertisedAddress, sseEndpoint, messageEndpoint);
+    }
+}
@@ -0,0 +1,151 @@
+package com.punto.de.venta.mcp.session;
+
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Enruta el transporte SSE entre réplicas. Al abrirse un stream SSE toma el id de sesión
+ * del evento {@code endpoint} que envía el SDK y lo registra como propio; al cerrarse lo
+ * quita. Un POST de mensajes cuya sesión pertenece a otra réplica se reenvía a ella y su
+ * respuesta se devuelve tal cual.
+ */
+@Slf4j
+public class SessionRoutingFilter implements WebFilter, Ordered {
+
+    static final String FORWARDED_HEADER = "X-Mcp-Forwarded-By";
+    private static final Pattern SESSION_ID = Pattern.compile("sessionId=([A-Za-z0-9-]+)");
+
+    private final SessionRegistry registry;
+    private final WebClient webClient;
+    private final String selfAddress;
+    private final String sseEndpoint;
+    private final String messageEndpoint;
+
+    public SessionRoutingFilter(SessionRegistry registry, WebClient webClient, String selfAddress,
+                                String sseEndpoint, String messageEndpoint) {
+        this.registry = registry;
+        this.webClient = webClient;
+        this.selfAddress = selfAddress;
+        this.sseEndpoint = sseEndpoint;
+        this.messageEndpoint = messageEndpoint;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().value();
+        if (HttpMethod.GET.equals(request.getMethod()) && path.equals(sseEndpoint)) {
+            return chain.filter(exchange.mutate().response(new SessionCapturingResponse(exchange.getResponse())).build());
+        }
+        if (!HttpMethod.POST.equals(request.getMethod()) || !path.equals(messageEndpoint)) {
+            return chain.filter(exchange);
+        }
+
+        String sessionId = request.getQueryParams().getFirst("sessionId");
+        // Un mensaje ya reenviado se atiende aquí siempre, para no rebotar entre réplicas
+        if (sessionId == null || registry.isLocal(sessionId) || request.getHeaders().getFirst(FORWARDED_HEADER) != null) {
+            return chain.filter(exchange);
+        }
+        Optional<String> owner = registry.ownerOf(sessionId);
+        if (owner.isEmpty() || owner.get().equals(selfAddress)) {
+            return chain.filter(exchange);
+        }
+        return forward(exchange, owner.get());
+    }
+
+    private Mono<Void> forward(ServerWebExchange exchange, String owner) {
+        ServerHttpRequest request = exchange.getRequest();
+        ServerHttpResponse response = exchange.getResponse();
+        URI target = URI.create(owner + request.getURI().getRawPath() + "?" + request.getURI().getRawQuery());
+        log.debug("Reenviando mensaje MCP a la réplica {}", owner);
+        return webClient.post()
+            .uri(target)
+            .headers(headers -> {
+                headers.putAll(request.getHeaders());
+                headers.remove(HttpHeaders.HOST);
+                headers.remove(HttpHeaders.TRANSFER_ENCODING);
+                headers.set(FORWARDED_HEADER, selfAddress);
+            })
+            .body(BodyInserters.fromDataBuffers(request.getBody()))
+            .exchangeToMono(upstream -> {
+                response.setStatusCode(upstream.statusCode());
+                response.getHeaders().putAll(upstream.headers().asHttpHeaders());
+                return response.writeWith(upstream.bodyToFlux(DataBuffer.class));
+            })
+            .onErrorResume(e -> {
+                log.warn("No se pudo reenviar el mensaje MCP a {}: {}", owner, e.getMessage());
+                response.setStatusCode(HttpStatus.BAD_GATEWAY);
+                return response.setComplete();
+            });
+    }
+
+    /**
+     * Observa los primeros bytes del stream SSE hasta encontrar el id de sesión y lo
+     * desregistra cuando el stream termina, por cierre o por desconexión del cliente.
+     */
+    private final class SessionCapturingResponse extends ServerHttpResponseDecorator {
+
+        private final AtomicReference<String> sessionId = new AtomicReference<>();
+
+        private SessionCapturingResponse(ServerHttpResponse delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return super.writeWith(Flux.<DataBuffer>from(body).doOnNext(this::capture))
+                .doFinally(signal -> release());
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return super.writeAndFlushWith(Flux.<Publisher<? extends DataBuffer>>from(body)
+                    .map(chunk -> Flux.<DataBuffer>from(chunk).doOnNext(this::capture)))
+                .doFinally(signal -> release());
+        }
+
+        private void capture(DataBuffer buffer) {
+            if (sessionId.get() != null) {
+                return;
+            }
+            Matcher matcher = SESSION_ID.matcher(buffer.toString(buffer.readPosition(), buffer.readableByteCount(), StandardCharsets.UTF_8));
+            if (matcher.find() && sessionId.compareAndSet(null, matcher.group(1))) {
+                registry.register(matcher.group(1));
+            }
+        }
+
+        private void release() {
+            String id = sessionId.getAndSet(null);
+            if (id != null) {
+                registry.unregister(id);
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.punto.de.venta.mcp.session;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Almacén clave-valor compartido entre réplicas con expiración por entrada, sobre el que
+ * trabaja {@link StoreSessionRegistry}. Basta con exponer un bean de este tipo (por ejemplo
+ * sobre Redis) para activar el registro compartido.
+ */
+public interface SessionStore {
+
+    void put(String key, String value, Duration ttl);
+
+    Optional<String> get(String key);
+
+    /**
+     * Borra la clave solo si todavía tiene ese valor, para no quitar la sesión que otra
+     * réplica haya registrado después.
+     */
+    void remove(String key, String value);
+}
@@ -0,0 +1,94 @@
+package com.punto.de.venta.mcp.session;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registro compartido sobre un {@link SessionStore}. Cada sesión se publica con expiración
+ * y la réplica dueña la renueva periódicamente mientras el stream siga abierto; si el pod
+ * muere, sus sesiones caducan solas.
+ */
+@Slf4j
+public class StoreSessionRegistry implements SessionRegistry {
+
+    static final String KEY_PREFIX = "mcp:session:";
+
+    private final SessionStore store;
+    private final String selfAddress;
+    private final Duration ttl;
+    private final Set<String> local = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService scheduler;
+
+    public StoreSessionRegistry(SessionStore store, String selfAddress, Duration ttl) {
+        this.store = store;
+        this.selfAddress = selfAddress;
+        this.ttl = ttl;
+    }
+
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mcp-session-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, ttl.toMillis() / 3);
+        scheduler.scheduleWithFixedDelay(this::refresh, period, period, TimeUnit.MILLISECONDS);
+        log.info("Registro compartido de sesiones MCP activo para {} (expiración: {})", selfAddress, ttl);
+    }
+
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        for (String sessionId : local) {
+            unregister(sessionId);
+        }
+    }
+
+    @Override
+    public void register(String sessionId) {
+        local.add(sessionId);
+        store.put(KEY_PREFIX + sessionId, selfAddress, ttl);
+    }
+
+    @Override
+    public void unregister(String sessionId) {
+        local.remove(sessionId);
+        try {
+            store.remove(KEY_PREFIX + sessionId, selfAddress);
+        } catch (Exception e) {
+            // Si el almacén no responde, la entrada caduca por sí sola
+            log.warn("No se pudo quitar la sesión {} del registro: {}", sessionId, e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isLocal(String sessionId) {
+        return local.contains(sessionId);
+    }
+
+    @Override
+    public Optional<String> ownerOf(String sessionId) {
+        if (local.contains(sessionId)) {
+            return Optional.of(selfAddress);
+        }
+        return store.get(KEY_PREFIX + sessionId);
+    }
+
+    void refresh() {
+        for (String sessionId : local) {
+            try {
+                store.put(KEY_PREFIX + sessionId, selfAddress, ttl);
+            } catch (Exception e) {
+                log.warn("No se pudo renovar la sesión {}: {}", sessionId, e.getMessage());
+            }
+        }
+    }
+}
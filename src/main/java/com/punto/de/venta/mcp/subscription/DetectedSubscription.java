@@ -0,0 +1,15 @@
+package com.punto.de.venta.mcp.subscription;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Serie de cargos periódicos de un comercio. {@code regularidad} es la fracción de intervalos
+ * que cayeron en la ventana del periodo; {@code vinculada} indica que algún cargo viene de una
+ * transacción recurrente registrada.
+ */
+public record DetectedSubscription(String comercio, String clave, Periodicity periodicidad, int cargos,
+                                   BigDecimal monto, BigDecimal montoMensual, LocalDate primerCargo,
+                                   LocalDate ultimoCargo, LocalDate proximoCargo, boolean activa,
+                                   double regularidad, boolean vinculada) {
+}
@@ -0,0 +1,70 @@
+package com.punto.de.venta.mcp.subscription;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+
+/**
+ * Periodos que se buscan en los intervalos entre cargos, cada uno con su ventana de
+ * tolerancia en días. Las ventanas no se traslapan: un intervalo cae a lo más en una.
+ */
+public enum Periodicity {
+    WEEKLY("semanal", 7, 6, 8),
+    BIWEEKLY("quincenal", 14, 12, 16),
+    MONTHLY("mensual", 30, 27, 33),
+    BIMONTHLY("bimestral", 61, 56, 66),
+    QUARTERLY("trimestral", 91, 84, 98),
+    YEARLY("anual", 365, 355, 375);
+
+    private static final BigDecimal DIAS_POR_MES = new BigDecimal("30.4375");
+
+    private final String etiqueta;
+    private final int dias;
+    private final int minimo;
+    private final int maximo;
+
+    Periodicity(String etiqueta, int dias, int minimo, int maximo) {
+        this.etiqueta = etiqueta;
+        this.dias = dias;
+        this.minimo = minimo;
+        this.maximo = maximo;
+    }
+
+    /**
+     * Periodo cuya ventana contiene {@code intervalo} días, o {@code null}.
+     */
+    static Periodicity of(int intervalo) {
+        for (Periodicity p : values()) {
+            if (intervalo >= p.minimo && intervalo <= p.maximo) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    public LocalDate next(LocalDate ultimo) {
+        return switch (this) {
+            case WEEKLY -> ultimo.plusWeeks(1);
+            case BIWEEKLY -> ultimo.plusWeeks(2);
+            case MONTHLY -> ultimo.plusMonths(1);
+            case BIMONTHLY -> ultimo.plusMonths(2);
+            case QUARTERLY -> ultimo.plusMonths(3);
+            case YEARLY -> ultimo.plusYears(1);
+        };
+    }
+
+    public BigDecimal monthly(BigDecimal monto) {
+        return monto.multiply(DIAS_POR_MES).divide(BigDecimal.valueOf(dias), 2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Días sin cargo tras los que la suscripción se da por cancelada.
+     */
+    int maxGap() {
+        return maximo;
+    }
+
+    public String getEtiqueta() {
+        return etiqueta;
+    }
+}
@@ -0,0 +1,175 @@
+package com.punto.de.venta.mcp.subscription;
+
+import com.punto.de.venta.mcp.model.Transaction;
+import com.punto.de.venta.mcp.text.TextNormalizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detecta suscripciones en los gastos de un usuario sin que las haya declarado. Agrupa los
+ * cargos por comercio ({@link TextNormalizer#merchantKey}) y, dentro de cada comercio, por
+ * banda de monto; luego arma el histograma de intervalos entre cargos de cada serie sobre
+ * las ventanas de {@link Periodicity} y se queda con el periodo dominante.
+ *
+ * <p>Espera las transacciones ordenadas por fecha, como las devuelve el ledger, y las recorre
+ * una sola vez; si llegan desordenadas se ordena una copia.
+ */
+@Component
+@Slf4j
+public class SubscriptionDetector {
+
+    @Value("${ai.finance.subscriptions.min-charges:3}")
+    private int minCargos = 3;
+
+    @Value("${ai.finance.subscriptions.amount-tolerance:0.15}")
+    private double toleranciaMonto = 0.15;
+
+    @Value("${ai.finance.subscriptions.min-regularity:0.75}")
+    private double minRegularidad = 0.75;
+
+    public List<DetectedSubscription> detect(List<Transaction> transacciones, LocalDate hoy) {
+        long inicio = System.nanoTime();
+        Map<String, List<Serie>> porComercio = new HashMap<>();
+        for (Transaction t : ordenadas(transacciones)) {
+            if (!"EXPENSE".equals(t.getType()) || t.getAmount() == null || t.getAmount().signum() <= 0
+                || t.getTransactionDate() == null) {
+                continue;
+            }
+            String clave = TextNormalizer.merchantKey(t.getDescription());
+            if (clave.isEmpty()) {
+                continue;
+            }
+            long centavos = t.getAmount().movePointRight(2).longValue();
+            List<Serie> series = porComercio.computeIfAbsent(clave, k -> new ArrayList<>(2));
+            Serie serie = null;
+            for (Serie s : series) {
+                if (s.admite(centavos, toleranciaMonto)) {
+                    serie = s;
+                    break;
+                }
+            }
+            if (serie == null) {
+                serie = new Serie(clave);
+                series.add(serie);
+            }
+            serie.add((int) t.getTransactionDate().toEpochDay(), centavos, t);
+        }
+
+        List<DetectedSubscription> detectadas = new ArrayList<>();
+        for (List<Serie> series : porComercio.values()) {
+            for (Serie serie : series) {
+                DetectedSubscription suscripcion = serie.cargos >= minCargos ? evaluar(serie, hoy) : null;
+                if (suscripcion != null) {
+                    detectadas.add(suscripcion);
+                }
+            }
+        }
+        detectadas.sort(Comparator.comparing(DetectedSubscription::montoMensual).reversed());
+        log.debug("Detectadas {} suscripciones en {} transacciones ({} comercios) en {} ms", detectadas.size(),
+            transacciones.size(), porComercio.size(), (System.nanoTime() - inicio) / 1_000_000);
+        return detectadas;
+    }
+
+    /**
+     * Histograma de intervalos de la serie sobre las ventanas de cada periodo. Los cargos del
+     * mismo día (duplicados o divididos) no cuentan como intervalo.
+     */
+    private DetectedSubscription evaluar(Serie serie, LocalDate hoy) {
+        Periodicity[] periodos = Periodicity.values();
+        int[] histograma = new int[periodos.length];
+        int intervalos = 0;
+        for (int i = 1; i < serie.cargos; i++) {
+            int intervalo = serie.dias[i] - serie.dias[i - 1];
+            if (intervalo == 0) {
+                continue;
+            }
+            intervalos++;
+            Periodicity p = Periodicity.of(intervalo);
+            if (p != null) {
+                histograma[p.ordinal()]++;
+            }
+        }
+        int mejor = 0;
+        for (int i = 1; i < histograma.length; i++) {
+            if (histograma[i] > histograma[mejor]) {
+                mejor = i;
+            }
+        }
+        if (intervalos == 0 || histograma[mejor] < minCargos - 1) {
+            return null;
+        }
+        double regularidad = (double) histograma[mejor] / intervalos;
+        if (regularidad < minRegularidad) {
+            return null;
+        }
+        Periodicity periodo = periodos[mejor];
+        LocalDate primero = LocalDate.ofEpochDay(serie.dias[0]);
+        LocalDate ultimo = LocalDate.ofEpochDay(serie.dias[serie.cargos - 1]);
+        // El precio vigente es el del último cargo: las suscripciones suben de precio
+        BigDecimal monto = BigDecimal.valueOf(serie.ultimoMonto, 2);
+        boolean activa = !hoy.isAfter(ultimo.plusDays(periodo.maxGap()));
+        return new DetectedSubscription(serie.comercio, serie.clave, periodo, serie.cargos, monto,
+            periodo.monthly(monto), primero, ultimo, periodo.next(ultimo), activa, regularidad, serie.vinculada);
+    }
+
+    private static List<Transaction> ordenadas(List<Transaction> transacciones) {
+        LocalDate anterior = null;
+        for (Transaction t : transacciones) {
+            LocalDate fecha = t.getTransactionDate();
+            if (fecha != null) {
+                if (anterior != null && fecha.isBefore(anterior)) {
+                    List<Transaction> copia = new ArrayList<>(transacciones);
+                    copia.sort(Comparator.comparing(Transaction::getTransactionDate, Comparator.nullsFirst(Comparator.naturalOrder())));
+                    return copia;
+                }
+                anterior = fecha;
+            }
+        }
+        return transacciones;
+    }
+
+    /**
+     * Cargos de un comercio dentro de una banda de monto: la banda sigue a la media de la serie,
+     * así un aumento de precio moderado no parte la serie en dos.
+     */
+    private static final class Serie {
+
+        private final String clave;
+        private String comercio;
+        private int[] dias = new int[8];
+        private int cargos;
+        private long suma;
+        private long ultimoMonto;
+        private boolean vinculada;
+
+        private Serie(String clave) {
+            this.clave = clave;
+        }
+
+        private boolean admite(long centavos, double tolerancia) {
+            double media = (double) suma / cargos;
+            return Math.abs(centavos - media) <= media * tolerancia;
+        }
+
+        private void add(int dia, long centavos, Transaction t) {
+            if (cargos == dias.length) {
+                dias = Arrays.copyOf(dias, cargos * 2);
+            }
+            dias[cargos++] = dia;
+            suma += centavos;
+            ultimoMonto = centavos;
+            comercio = t.getDescription().trim();
+            vinculada |= t.getRecurringRef() != null;
+        }
+    }
+}
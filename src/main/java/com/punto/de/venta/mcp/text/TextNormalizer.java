@@ -0,0 +1,91 @@
+package com.punto.de.venta.mcp.text;
+
+import java.text.Normalizer;
+import java.util.Set;
+
+/**
+ * Normalización de descripciones de movimientos: minúsculas, sin acentos y solo letras y
+ * dígitos separados por un espacio. Las descripciones suelen ser ASCII, así que la
+ * descomposición Unicode solo se hace cuando aparece un carácter que la necesita.
+ */
+public final class TextNormalizer {
+
+    /**
+     * Palabras que los bancos agregan alrededor del nombre del comercio.
+     */
+    private static final Set<String> RUIDO = Set.of(
+        "pago", "cargo", "compra", "cobro", "domiciliado", "domiciliacion", "recurrente", "suscripcion",
+        "payment", "purchase", "pos", "tdc", "tdd", "ref", "www", "com", "mx", "sa", "de", "cv", "inc", "llc", "ltd");
+
+    private static final int MAX_PALABRAS_COMERCIO = 3;
+
+    private TextNormalizer() {
+    }
+
+    public static String fold(String texto) {
+        if (texto == null || texto.isEmpty()) {
+            return "";
+        }
+        String fuente = esAscii(texto) ? texto : Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(fuente.length());
+        boolean espacio = false;
+        for (int i = 0; i < fuente.length(); i++) {
+            char c = fuente.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (espacio && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(Character.toLowerCase(c));
+                espacio = false;
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                espacio = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Clave del comercio: las primeras palabras de la descripción normalizada, sin las que
+     * llevan dígitos (referencias, fechas, terminaciones de tarjeta) ni las de {@link #RUIDO}.
+     * Así "NETFLIX.COM 12/03 REF 88812" y "Pago Netflix" comparten la clave {@code netflix}.
+     */
+    public static String merchantKey(String descripcion) {
+        String normalizada = fold(descripcion);
+        StringBuilder clave = new StringBuilder();
+        int palabras = 0;
+        int inicio = 0;
+        while (inicio < normalizada.length() && palabras < MAX_PALABRAS_COMERCIO) {
+            int fin = normalizada.indexOf(' ', inicio);
+            if (fin < 0) {
+                fin = normalizada.length();
+            }
+            String palabra = normalizada.substring(inicio, fin);
+            if (!tieneDigito(palabra) && !RUIDO.contains(palabra)) {
+                if (palabras++ > 0) {
+                    clave.append(' ');
+                }
+                clave.append(palabra);
+            }
+            inicio = fin + 1;
+        }
+        return clave.toString();
+    }
+
+    private static boolean esAscii(String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean tieneDigito(String palabra) {
+        for (int i = 0; i < palabra.length(); i++) {
+            if (Character.isDigit(palabra.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,9 +1,14 @@
 package com.punto.de.venta.mcp.tools;
 
+import com.punto.de.venta.mcp.anomaly.SpendingAnomaly;
+import com.punto.de.venta.mcp.anomaly.SpendingAnomalyDetector;
+import com.punto.de.venta.mcp.anomaly.SpendingProfile;
 import com.punto.de.venta.mcp.model.Alert;
 import com.punto.de.venta.mcp.model.User;
 import com.punto.de.venta.mcp.service.AlertService;
+import com.punto.de.venta.mcp.service.AlertWriteBehindQueue;
 import com.punto.de.venta.mcp.service.UserService;
+import com.punto.de.venta.mcp.output.ToolOutput;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
@@ -11,6 +16,7 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.time.LocalDate;
@@ -21,11 +27,16 @@ import java.math.BigDecimal;
 public class AlertTools {
     
     private final AlertService alertService;
+    private final AlertWriteBehindQueue alertQueue;
     private final UserService userService;
+    private final SpendingAnomalyDetector anomalyDetector;
     
-    public AlertTools(AlertService alertService, UserService userService) {
+    public AlertTools(AlertService alertService, AlertWriteBehindQueue alertQueue, UserService userService,
+                      SpendingAnomalyDetector anomalyDetector) {
         this.alertService = alertService;
+        this.alertQueue = alertQueue;
         this.userService = userService;
+        this.anomalyDetector = anomalyDetector;
     }
     
     @Tool(name = "crearAlerta", description = "Crea una alerta personalizada para el usuario. Requiere el número de teléfono del usuario.")
@@ -63,9 +74,9 @@ public class AlertTools {
             alert.setStatus("PENDING");
             alert.setScheduledAt(parseDateTime(fechaProgramada));
             
-            Alert savedAlert = alertService.createAlert(alert);
+            Alert savedAlert = alertQueue.submit(alert);
             return String.format("Alerta creada exitosamente - ID: %s, Tipo: %s, Mensaje: %s, Programada para: %s", 
-                savedAlert.getId(), savedAlert.getAlertType(), savedAlert.getMessage(), 
+                describirId(savedAlert), savedAlert.getAlertType(), savedAlert.getMessage(), 
                 savedAlert.getScheduledAt());
         } catch (Exception e) {
             log.error("Error al crear alerta", e);
@@ -73,9 +84,10 @@ public class AlertTools {
         }
     }
     
-    @Tool(name = "listarAlertas", description = "Lista todas las alertas de un usuario. Requiere el número de teléfono del usuario.")
-    public String listarAlertas(@ToolParam String numeroTelefono) {
-        log.info("Listando alertas para usuario: {}", numeroTelefono);
+    @Tool(name = "listarAlertas", description = "Lista las alertas de un usuario por páginas. Requiere el número de teléfono del usuario. Opcionalmente el tamaño de página y el cursor devuelto por la página anterior.")
+    public String listarAlertas(@ToolParam String numeroTelefono, @ToolParam(required = false) String cursor,
+                                @ToolParam(required = false) Integer tamanoPagina) {
+        log.info("Listando alertas para usuario: {} (cursor: {})", numeroTelefono, cursor);
         
         if (numeroTelefono == null || numeroTelefono.trim().isEmpty()) {
             return "Error: El número de teléfono no puede estar vacío";
@@ -90,24 +102,37 @@ public class AlertTools {
             
             User user = userOpt.get();
             
-            List<Alert> alerts = alertService.getAlertsByUserId(user.getId());
+            List<Alert> alerts = new ArrayList<>(alertService.getAlertsByUserId(user.getId()));
+            alerts.addAll(alertQueue.pendingFor(user.getId()));
+            
+            String scope = PageCursor.scope("listarAlertas", user.getId());
+            PageCursor.Page<Alert> page = PageCursor.byId(alerts, Alert::getId, cursor, scope, PageCursor.pageSize(tamanoPagina));
+            if (ToolOutput.isJson()) {
+                return ToolOutput.structured(JsonViews.Pagina.of(page, JsonViews.ALERTA, alerts.size(), null));
+            }
             
             if (alerts.isEmpty()) {
                 return "No tienes alertas configuradas";
             }
+            if (page.items().isEmpty()) {
+                return "No hay más alertas";
+            }
             
             StringBuilder result = new StringBuilder();
-            result.append("Alertas configuradas:\n");
+            result.append(String.format("Alertas configuradas (%d en total):\n", alerts.size()));
             
-            for (Alert alert : alerts) {
+            for (Alert alert : page.items()) {
                 result.append(String.format("- %s: %s (Estado: %s)\n", 
                     alert.getAlertType(), alert.getMessage(), alert.getStatus()));
                 if (alert.getScheduledAt() != null) {
                     result.append(String.format("  Programada para: %s\n", alert.getScheduledAt()));
                 }
             }
+            PageCursor.appendFooter(result, page);
             
             return result.toString();
+        } catch (IllegalArgumentException e) {
+            return "Error: " + e.getMessage();
         } catch (Exception e) {
             log.error("Error al listar alertas", e);
             return "Error al listar las alertas: " + e.getMessage();
@@ -143,27 +168,23 @@ public class AlertTools {
             alert.setStatus("PENDING");
             alert.setScheduledAt(LocalDateTime.now());
             
-            Alert savedAlert = alertService.createAlert(alert);
+            Alert savedAlert = alertQueue.submit(alert);
             return String.format("Alerta de presupuesto excedido creada - ID: %s, Categoría: %s", 
-                savedAlert.getId(), categoria);
+                describirId(savedAlert), categoria);
         } catch (Exception e) {
             log.error("Error al crear alerta de presupuesto excedido", e);
             return "Error al crear la alerta de presupuesto excedido: " + e.getMessage();
         }
     }
     
-    @Tool(name = "detectarGastoInusual", description = "Detecta y alerta si hay un gasto mucho mayor al promedio. Requiere el número de teléfono del usuario.")
-    public String detectarGastoInusual(@ToolParam String numeroTelefono, @ToolParam BigDecimal umbral) {
+    @Tool(name = "detectarGastoInusual", description = "Muestra los gastos inusuales detectados al registrarlos (muy por encima de lo habitual en su categoría) y el perfil de gasto por categoría. Requiere el número de teléfono del usuario. Opcionalmente un monto mínimo para listar.")
+    public String detectarGastoInusual(@ToolParam String numeroTelefono, @ToolParam(required = false) BigDecimal umbral) {
         log.info("Detectando gastos inusuales para usuario: {} - Umbral: {}", numeroTelefono, umbral);
         
         if (numeroTelefono == null || numeroTelefono.trim().isEmpty()) {
             return "Error: El número de teléfono no puede estar vacío";
         }
         
-        if (umbral == null || umbral.compareTo(BigDecimal.ZERO) <= 0) {
-            umbral = BigDecimal.valueOf(1000); // Umbral por defecto
-        }
-        
         try {
             // Obtener usuario por teléfono
             Optional<User> userOpt = userService.getUserByPhone(numeroTelefono.trim());
@@ -173,18 +194,31 @@ public class AlertTools {
             
             User user = userOpt.get();
             
-            // Crear alerta de gasto inusual
-            Alert alert = new Alert();
-            alert.setUser(user);
-            alert.setAlertType("GASTO_INUSUAL");
-            alert.setMessage(String.format("Se detectó un gasto inusual mayor a %s %s. Revisa si es correcto.", 
-                umbral, user.getCurrency()));
-            alert.setStatus("PENDING");
-            alert.setScheduledAt(LocalDateTime.now());
+            // Las alertas ya se crearon al registrar cada gasto; aquí solo se consulta el detector
+            SpendingProfile perfil = anomalyDetector.profile(user.getId());
+            List<SpendingAnomaly> inusuales = perfil.recientes().stream()
+                .filter(a -> umbral == null || a.monto().compareTo(umbral) >= 0)
+                .toList();
             
-            Alert savedAlert = alertService.createAlert(alert);
-            return String.format("Alerta de gasto inusual creada - ID: %s, Umbral: %s %s", 
-                savedAlert.getId(), umbral, user.getCurrency());
+            StringBuilder result = new StringBuilder();
+            if (inusuales.isEmpty()) {
+                result.append("No se detectaron gastos inusuales recientes.\n");
+            } else {
+                result.append(String.format("Gastos inusuales recientes (%d):\n", inusuales.size()));
+                for (SpendingAnomaly a : inusuales) {
+                    result.append(String.format("- %s: %s %s en %s (%s); lo habitual es %s, el 95%% de los gastos queda bajo %s\n",
+                        a.fecha(), a.monto(), user.getCurrency(), a.categoria(), a.descripcion(), a.media(), a.cuantil()));
+                }
+            }
+            
+            if (!perfil.categorias().isEmpty()) {
+                result.append("\nPerfil de gasto por categoría:\n");
+                for (SpendingProfile.Categoria c : perfil.categorias()) {
+                    result.append(String.format("- %s: %d gastos, media %s, media reciente %s, percentil 95 %s %s\n",
+                        c.nombre(), c.muestras(), c.media(), c.mediaReciente(), c.cuantil(), user.getCurrency()));
+                }
+            }
+            return result.toString();
         } catch (Exception e) {
             log.error("Error al detectar gasto inusual", e);
             return "Error al detectar gasto inusual: " + e.getMessage();
@@ -220,14 +254,21 @@ public class AlertTools {
             alert.setStatus("PENDING");
             alert.setScheduledAt(LocalDateTime.now());
             
-            Alert savedAlert = alertService.createAlert(alert);
-            return String.format("Sugerencias de ahorro creadas - ID: %s", savedAlert.getId());
+            Alert savedAlert = alertQueue.submit(alert);
+            return String.format("Sugerencias de ahorro creadas - ID: %s", describirId(savedAlert));
         } catch (Exception e) {
             log.error("Error al sugerir oportunidades de ahorro", e);
             return "Error al sugerir oportunidades de ahorro: " + e.getMessage();
         }
     }
     
+    private String describirId(Alert alert) {
+        if (AlertWriteBehindQueue.isProvisional(alert)) {
+            return alert.getId() + " (provisional, pendiente de envío)";
+        }
+        return String.valueOf(alert.getId());
+    }
+    
     private LocalDateTime parseDateTime(String dateTimeStr) {
         if (dateTimeStr == null || dateTimeStr.trim().isEmpty()) {
             return LocalDateTime.now();
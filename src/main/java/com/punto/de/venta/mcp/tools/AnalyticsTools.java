@@ -1,40 +1,76 @@
 package com.punto.de.venta.mcp.tools;
 
+import com.punto.de.venta.mcp.forecast.CashFlowProjection;
+import com.punto.de.venta.mcp.forecast.MonteCarloSimulator;
+import com.punto.de.venta.mcp.forecast.RecurringScheduleEngine;
+import com.punto.de.venta.mcp.forecast.ScheduleExpansion;
+import com.punto.de.venta.mcp.forecast.SimulationResult;
+import com.punto.de.venta.mcp.forecast.SpendingDistribution;
+import com.punto.de.venta.mcp.operation.OperationCancelledException;
 import com.punto.de.venta.mcp.model.Transaction;
 import com.punto.de.venta.mcp.model.Loan;
 import com.punto.de.venta.mcp.model.User;
 import com.punto.de.venta.mcp.service.TransactionService;
 import com.punto.de.venta.mcp.service.LoanService;
+import com.punto.de.venta.mcp.service.RecurringTransactionService;
 import com.punto.de.venta.mcp.service.UserService;
+import com.punto.de.venta.mcp.output.ResultBudget;
+import com.punto.de.venta.mcp.output.ToolOutput;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class AnalyticsTools {
     
+    private static final int MAX_MESES_PROYECCION = 360;
+    
+    @Value("${ai.finance.simulation.history-days:180}")
+    private int simulationHistoryDays;
+    
+    @Value("${ai.finance.simulation.default-paths:2000}")
+    private int simulationDefaultPaths;
+    
+    @Value("${ai.finance.simulation.max-paths:20000}")
+    private int simulationMaxPaths;
+    
+    @Value("${ai.finance.simulation.max-steps:60000000}")
+    private long simulationMaxSteps;
+    
     private final TransactionService transactionService;
     private final LoanService loanService;
     private final UserService userService;
+    private final RecurringTransactionService recurringTransactionService;
+    private final RecurringScheduleEngine scheduleEngine;
+    private final MonteCarloSimulator monteCarloSimulator;
     
-    public AnalyticsTools(TransactionService transactionService, LoanService loanService, UserService userService) {
+    public AnalyticsTools(TransactionService transactionService, LoanService loanService, UserService userService,
+                          RecurringTransactionService recurringTransactionService, RecurringScheduleEngine scheduleEngine,
+                          MonteCarloSimulator monteCarloSimulator) {
         this.transactionService = transactionService;
         this.loanService = loanService;
         this.userService = userService;
+        this.recurringTransactionService = recurringTransactionService;
+        this.scheduleEngine = scheduleEngine;
+        this.monteCarloSimulator = monteCarloSimulator;
     }
     
-    @Tool(name = "forecastCashFlow", description = "Proyecta el flujo de efectivo a futuro considerando ingresos/gastos programados. Requiere el número de teléfono del usuario y meses a proyectar.")
+    @Tool(name = "forecastCashFlow", description = "Proyecta el flujo de efectivo a futuro considerando ingresos/gastos programados con su frecuencia y fechas, y los pagos de préstamos. Requiere el número de teléfono del usuario y meses a proyectar.")
     public String forecastCashFlow(@ToolParam String numeroTelefono, @ToolParam Integer mesesProyeccion) {
         log.info("Proyectando flujo de efectivo para usuario: {} - Meses: {}", numeroTelefono, mesesProyeccion);
         
@@ -45,6 +81,7 @@ public class AnalyticsTools {
         if (mesesProyeccion == null || mesesProyeccion <= 0) {
             mesesProyeccion = 3; // Por defecto 3 meses
         }
+        mesesProyeccion = Math.min(mesesProyeccion, MAX_MESES_PROYECCION);
         
         try {
             Optional<User> userOpt = userService.getUserByPhone(numeroTelefono.trim());
@@ -55,50 +92,45 @@ public class AnalyticsTools {
             User user = userOpt.get();
             LocalDate fechaActual = LocalDate.now();
             
-            // Obtener saldo actual (últimos 3 meses de transacciones)
-            LocalDate inicioCalculo = fechaActual.minusMonths(3);
-            BigDecimal ingresosRecientes = transactionService.getSumAmountByUserIdAndTypeAndDateRange(
-                user.getId(), "INCOME", inicioCalculo, fechaActual);
-            BigDecimal gastosRecientes = transactionService.getSumAmountByUserIdAndTypeAndDateRange(
-                user.getId(), "EXPENSE", inicioCalculo, fechaActual);
-            BigDecimal saldoActual = ingresosRecientes.subtract(gastosRecientes);
-            
-            // Calcular ingresos y gastos recurrentes mensuales
-            List<Transaction> transaccionesRecurrentes = transactionService.getTransactionsByUserId(user.getId());
-            BigDecimal ingresosRecurrentesMensuales = transaccionesRecurrentes.stream()
-                .filter(t -> "INCOME".equals(t.getType()) && t.getRecurringRef() != null)
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            BigDecimal gastosRecurrentesMensuales = transaccionesRecurrentes.stream()
-                .filter(t -> "EXPENSE".equals(t.getType()) && t.getRecurringRef() != null)
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+            List<Transaction> transacciones = transactionService.getTransactionsByUserId(user.getId());
+            BigDecimal saldoActual = saldoActual(transacciones, fechaActual);
             
-            // Calcular pagos de préstamos mensuales
+            // Ocurrencias reales de cada recurrencia según su frecuencia y vigencia, y pagos de préstamos en su día
+            LocalDate finProyeccion = fechaActual.plusMonths(mesesProyeccion);
+            ScheduleExpansion programadas = scheduleEngine.expand(user.getId(),
+                recurringTransactionService.getRecurringTransactionsByUserId(user.getId()), fechaActual, finProyeccion);
             List<Loan> prestamos = loanService.getLoansByUserId(user.getId());
-            BigDecimal pagosPrestamosMensuales = prestamos.stream()
-                .map(Loan::getMonthlyPayment)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+            CashFlowProjection proyeccion = scheduleEngine.project(CashFlowProjection.aCentavos(saldoActual),
+                programadas, prestamos, fechaActual, finProyeccion);
             
             // Proyectar flujo de efectivo
             StringBuilder result = new StringBuilder();
             result.append(String.format("Proyección de flujo de efectivo para %d meses:\n", mesesProyeccion));
             result.append(String.format("Saldo actual: %s %s\n", saldoActual, user.getCurrency()));
-            result.append(String.format("Ingresos recurrentes mensuales: %s %s\n", ingresosRecurrentesMensuales, user.getCurrency()));
-            result.append(String.format("Gastos recurrentes mensuales: %s %s\n", gastosRecurrentesMensuales, user.getCurrency()));
-            result.append(String.format("Pagos de préstamos mensuales: %s %s\n", pagosPrestamosMensuales, user.getCurrency()));
-            
-            BigDecimal flujoNetoMensual = ingresosRecurrentesMensuales.subtract(gastosRecurrentesMensuales).subtract(pagosPrestamosMensuales);
+            result.append(String.format("Ingresos programados (promedio mensual): %s %s\n",
+                promedioMensual(proyeccion.getIngresos(), mesesProyeccion), user.getCurrency()));
+            result.append(String.format("Gastos programados (promedio mensual): %s %s\n",
+                promedioMensual(proyeccion.getGastos(), mesesProyeccion), user.getCurrency()));
+            result.append(String.format("Pagos de préstamos (promedio mensual): %s %s\n",
+                promedioMensual(proyeccion.getPagosPrestamos(), mesesProyeccion), user.getCurrency()));
+            
+            long flujoNeto = proyeccion.getIngresos() - proyeccion.getGastos() - proyeccion.getPagosPrestamos();
+            BigDecimal flujoNetoMensual = promedioMensual(flujoNeto, mesesProyeccion);
             result.append(String.format("Flujo neto mensual: %s %s\n\n", flujoNetoMensual, user.getCurrency()));
             
-            BigDecimal saldoProyectado = saldoActual;
             for (int i = 1; i <= mesesProyeccion; i++) {
-                saldoProyectado = saldoProyectado.add(flujoNetoMensual);
                 LocalDate fechaProyeccion = fechaActual.plusMonths(i);
                 result.append(String.format("Mes %d (%s): %s %s\n", 
                     i, fechaProyeccion.format(DateTimeFormatter.ofPattern("MMM yyyy")), 
-                    saldoProyectado, user.getCurrency()));
+                    CashFlowProjection.aMonto(proyeccion.saldoAl(fechaProyeccion)), user.getCurrency()));
+            }
+            
+            LocalDate diaMinimo = proyeccion.diaSaldoMinimo();
+            result.append(String.format("\nSaldo mínimo: %s %s el %s\n",
+                CashFlowProjection.aMonto(proyeccion.saldoAl(diaMinimo)), user.getCurrency(), diaMinimo));
+            LocalDate primerNegativo = proyeccion.primerDiaNegativo();
+            if (primerNegativo != null) {
+                result.append(String.format("⚠️ El saldo queda en negativo a partir del %s\n", primerNegativo));
             }
             
             if (flujoNetoMensual.compareTo(BigDecimal.ZERO) < 0) {
@@ -114,6 +146,89 @@ public class AnalyticsTools {
         }
     }
     
+    @Tool(name = "simularFlujoEfectivo", description = "Simula miles de escenarios del saldo diario combinando el gasto histórico por categoría con los ingresos/gastos programados y los pagos de préstamos. Devuelve la probabilidad de quedar en negativo antes del próximo ingreso y bandas de percentiles del saldo. Requiere el número de teléfono del usuario; opcionalmente días a simular (máximo 365), número de escenarios y semilla para repetir la simulación.")
+    public String simularFlujoEfectivo(@ToolParam String numeroTelefono, @ToolParam(required = false) Integer diasHorizonte,
+                                       @ToolParam(required = false) Integer escenarios, @ToolParam(required = false) Long semilla) {
+        log.info("Simulando flujo de efectivo para usuario: {} - Días: {}, Escenarios: {}", numeroTelefono, diasHorizonte, escenarios);
+        
+        if (numeroTelefono == null || numeroTelefono.trim().isEmpty()) {
+            return "Error: El número de teléfono no puede estar vacío";
+        }
+        int dias = diasHorizonte == null || diasHorizonte <= 0 ? 90 : Math.max(7, Math.min(diasHorizonte, 365));
+        
+        try {
+            Optional<User> userOpt = userService.getUserByPhone(numeroTelefono.trim());
+            if (userOpt.isEmpty()) {
+                return "Error: No se encontró usuario con el número de teléfono: " + numeroTelefono;
+            }
+            
+            User user = userOpt.get();
+            LocalDate fechaActual = LocalDate.now();
+            LocalDate fin = fechaActual.plusDays(dias - 1);
+            
+            List<Transaction> transacciones = transactionService.getTransactionsByUserId(user.getId());
+            BigDecimal saldoActual = saldoActual(transacciones, fechaActual);
+            ScheduleExpansion programadas = scheduleEngine.expand(user.getId(),
+                recurringTransactionService.getRecurringTransactionsByUserId(user.getId()), fechaActual, fin);
+            CashFlowProjection base = scheduleEngine.project(CashFlowProjection.aCentavos(saldoActual),
+                programadas, loanService.getLoansByUserId(user.getId()), fechaActual, fin);
+            SpendingDistribution distribucion = SpendingDistribution.from(transacciones,
+                fechaActual.minusDays(simulationHistoryDays), fechaActual);
+            
+            int pedidos = escenarios == null || escenarios <= 0 ? simulationDefaultPaths : Math.min(escenarios, simulationMaxPaths);
+            long pasosPorEscenario = (long) dias * Math.max(1, distribucion.categorias());
+            int trayectorias = trayectorias(pedidos, pasosPorEscenario, simulationMaxSteps);
+            if (trayectorias == 0) {
+                return "Error: La simulación excede el límite de cálculo; reduce los días a simular";
+            }
+            long seed = semilla != null ? semilla : System.nanoTime();
+            
+            LocalDate proximoIngreso = programadas.proximoIngreso(fechaActual);
+            int diaIngreso = proximoIngreso != null && !proximoIngreso.isAfter(fin)
+                ? (int) ChronoUnit.DAYS.between(fechaActual, proximoIngreso) : -1;
+            SimulationResult resultado = monteCarloSimulator.simulate(base, distribucion, trayectorias, seed,
+                cortesSimulacion(fechaActual, dias, diaIngreso), diaIngreso);
+            
+            StringBuilder result = new StringBuilder();
+            result.append(String.format("🎲 SIMULACIÓN DE FLUJO DE EFECTIVO (%d días, %d escenarios)\n", dias, resultado.trayectorias()));
+            result.append("==================================================\n");
+            result.append(String.format("Saldo actual: %s %s\n", saldoActual, user.getCurrency()));
+            result.append(String.format("Movimiento diario no programado promedio: %s %s\n",
+                CashFlowProjection.aMonto(distribucion.mediaDiaria()), user.getCurrency()));
+            if (resultado.trayectorias() < pedidos) {
+                result.append(String.format("(Se simularon %d de %d escenarios para respetar el tiempo de respuesta)\n",
+                    resultado.trayectorias(), pedidos));
+            }
+            result.append('\n');
+            
+            if (resultado.proximoIngreso() != null) {
+                result.append(String.format("Probabilidad de saldo negativo antes del próximo ingreso (%s): %.1f%%\n",
+                    resultado.proximoIngreso(), resultado.probabilidadNegativoAntesDePago() * 100));
+            } else {
+                result.append("No hay ingresos programados dentro del horizonte\n");
+            }
+            result.append(String.format("Probabilidad de saldo negativo en algún momento del horizonte: %.1f%%\n\n",
+                resultado.probabilidadNegativo() * 100));
+            
+            result.append("📊 SALDO PROYECTADO (P10 / P25 / mediana / P75 / P90)\n");
+            result.append("------------------------------------------------\n");
+            for (SimulationResult.Banda banda : resultado.bandas()) {
+                result.append(String.format("%s: %s / %s / %s / %s / %s %s\n", banda.fecha(),
+                    CashFlowProjection.aMonto(banda.p10()), CashFlowProjection.aMonto(banda.p25()),
+                    CashFlowProjection.aMonto(banda.p50()), CashFlowProjection.aMonto(banda.p75()),
+                    CashFlowProjection.aMonto(banda.p90()), user.getCurrency()));
+            }
+            result.append(String.format("\nSemilla: %d (úsala para repetir esta simulación)", seed));
+            
+            return result.toString();
+        } catch (OperationCancelledException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error al simular flujo de efectivo", e);
+            return "Error al simular el flujo de efectivo: " + e.getMessage();
+        }
+    }
+    
     @Tool(name = "comparePeriodSpending", description = "Compara gastos entre periodos (mes vs mes, quincena vs quincena). Requiere el número de teléfono del usuario.")
     public String comparePeriodSpending(@ToolParam String numeroTelefono, @ToolParam String periodo1, 
                                        @ToolParam String periodo2, @ToolParam String tipoComparacion) {
@@ -332,15 +447,29 @@ public class AnalyticsTools {
             if (gastosPorCategoria.isEmpty()) {
                 result.append("No hay gastos registrados en este mes\n");
             } else {
-                gastosPorCategoria.entrySet().stream()
-                    .sorted((e1, e2) -> e2.getValue().compareTo(e1.getValue()))
-                    .forEach(entry -> {
-                        BigDecimal porcentaje = gastosMes.compareTo(BigDecimal.ZERO) > 0 ?
-                            entry.getValue().multiply(BigDecimal.valueOf(100)).divide(gastosMes, 1, RoundingMode.HALF_UP) :
-                            BigDecimal.ZERO;
-                        result.append(String.format("%s: %s %s (%.1f%%)\n", 
-                            entry.getKey(), entry.getValue(), user.getCurrency(), porcentaje));
-                    });
+                // Con presupuesto se muestran las categorías mayores y el resto se agrupa en una línea
+                ResultBudget budget = ToolOutput.budget();
+                TopN<Map.Entry<String, BigDecimal>> categorias = new TopN<>(budget.elementos(gastosPorCategoria.size()),
+                    Map.Entry.comparingByValue(), Map.Entry::getValue);
+                gastosPorCategoria.entrySet().forEach(categorias::add);
+                
+                int mostradas = 0;
+                BigDecimal sumaMostradas = BigDecimal.ZERO;
+                for (Map.Entry<String, BigDecimal> entry : categorias.mejores()) {
+                    String linea = String.format("%s: %s %s (%.1f%%)\n", 
+                        entry.getKey(), entry.getValue(), user.getCurrency(), porcentaje(entry.getValue(), gastosMes));
+                    if (!budget.cabe(result, linea)) {
+                        break;
+                    }
+                    result.append(linea);
+                    mostradas++;
+                    sumaMostradas = sumaMostradas.add(entry.getValue());
+                }
+                if (categorias.total() > mostradas) {
+                    BigDecimal resto = categorias.sumaTotal().subtract(sumaMostradas);
+                    result.append(String.format("Otras %d categorías: %s %s (%.1f%%)\n", 
+                        categorias.total() - mostradas, resto, user.getCurrency(), porcentaje(resto, gastosMes)));
+                }
             }
             
             result.append("\n💡 RECOMENDACIONES\n");
@@ -362,4 +491,67 @@ public class AnalyticsTools {
             return "Error al generar el reporte mensual: " + e.getMessage();
         }
     }
+    
+    /**
+     * Escenarios a simular: los pedidos, recortados al final para que escenarios × días ×
+     * categorías no pase de {@code maxSteps} y la latencia quede acotada. Devuelve 0 si ni
+     * un escenario cabe.
+     */
+    static int trayectorias(int pedidos, long pasosPorEscenario, long maxSteps) {
+        return (int) Math.min(Math.max(1, pedidos), maxSteps / Math.max(1, pasosPorEscenario));
+    }
+
+    /**
+     * Saldo de partida de las proyecciones: neto de los últimos 3 meses de transacciones.
+     */
+    private BigDecimal saldoActual(List<Transaction> transacciones, LocalDate fechaActual) {
+        LocalDate inicioCalculo = fechaActual.minusMonths(3);
+        return sumarEnRango(transacciones, "INCOME", inicioCalculo, fechaActual)
+            .subtract(sumarEnRango(transacciones, "EXPENSE", inicioCalculo, fechaActual));
+    }
+    
+    /**
+     * Días en que se reportan bandas: cada semana en horizontes cortos y cada mes en los largos,
+     * más el día anterior al próximo ingreso y el último día.
+     */
+    private int[] cortesSimulacion(LocalDate fechaActual, int dias, int diaIngreso) {
+        TreeSet<Integer> cortes = new TreeSet<>();
+        if (dias <= 56) {
+            for (int d = 6; d < dias; d += 7) {
+                cortes.add(d);
+            }
+        } else {
+            for (int m = 1; ; m++) {
+                int d = (int) ChronoUnit.DAYS.between(fechaActual, fechaActual.plusMonths(m)) - 1;
+                if (d >= dias) {
+                    break;
+                }
+                cortes.add(d);
+            }
+        }
+        if (diaIngreso > 0) {
+            cortes.add(diaIngreso - 1);
+        }
+        cortes.add(dias - 1);
+        return cortes.stream().mapToInt(Integer::intValue).toArray();
+    }
+    
+    private BigDecimal promedioMensual(long centavos, int meses) {
+        return CashFlowProjection.aMonto(centavos).divide(BigDecimal.valueOf(meses), 2, RoundingMode.HALF_UP);
+    }
+    
+    private BigDecimal porcentaje(BigDecimal monto, BigDecimal total) {
+        return total.compareTo(BigDecimal.ZERO) > 0
+            ? monto.multiply(BigDecimal.valueOf(100)).divide(total, 1, RoundingMode.HALF_UP)
+            : BigDecimal.ZERO;
+    }
+    
+    private BigDecimal sumarEnRango(List<Transaction> transacciones, String tipo, LocalDate inicio, LocalDate fin) {
+        return transacciones.stream()
+            .filter(t -> tipo.equals(t.getType()) && t.getTransactionDate() != null)
+            .filter(t -> !t.getTransactionDate().isBefore(inicio) && !t.getTransactionDate().isAfter(fin))
+            .map(Transaction::getAmount)
+            .filter(Objects::nonNull)
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
 }
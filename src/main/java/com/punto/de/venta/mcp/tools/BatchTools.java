@@ -0,0 +1,229 @@
+package com.punto.de.venta.mcp.tools;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.punto.de.venta.mcp.context.RequestDataContext;
+import com.punto.de.venta.mcp.operation.OperationHandle;
+import com.punto.de.venta.mcp.output.OutputModeToolCallback;
+import com.punto.de.venta.mcp.output.ToolOutput;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+@Service
+@Slf4j
+public class BatchTools {
+
+    public static final String TOOL_NAME = "ejecutarHerramientas";
+    private static final String PHONE_PARAM = "numeroTelefono";
+
+    @Value("${ai.finance.batch.max-invocations:8}")
+    private int maxInvocations;
+
+    private final ExecutorService batchExecutor;
+    private final ObjectMapper objectMapper;
+    private volatile Map<String, ToolCallback> tools = Map.of();
+
+    public BatchTools(@Qualifier("batchExecutor") ExecutorService batchExecutor, ObjectMapper objectMapper) {
+        this.batchExecutor = batchExecutor;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Registra las tools que se pueden invocar dentro de un lote. Se llama al armar la lista
+     * de tools, que a su vez incluye a esta, con las tools ya decoradas: cada invocación del
+     * lote pasa por el rate limiting y la admisión de su propia tool.
+     */
+    public void register(List<ToolCallback> callbacks) {
+        Map<String, ToolCallback> byName = new LinkedHashMap<>();
+        for (ToolCallback callback : callbacks) {
+            String name = callback.getToolDefinition().name();
+            if (!TOOL_NAME.equals(name)) {
+                byName.put(name, callback);
+            }
+        }
+        this.tools = Map.copyOf(byName);
+    }
+
+    @Tool(name = TOOL_NAME, description = "Ejecuta en paralelo varias herramientas para un mismo usuario y devuelve todos los resultados juntos. Los datos que consultan varias de ellas (usuario, transacciones, presupuestos, tarjetas) se leen una sola vez. Requiere el número de teléfono del usuario, que se agrega automáticamente a los argumentos de cada herramienta.")
+    public String ejecutarHerramientas(@ToolParam String numeroTelefono,
+                                       @ToolParam(description = "Arreglo JSON de invocaciones, cada una con la forma {\"herramienta\": \"obtenerPresupuestos\", \"argumentos\": {...}}") String invocaciones,
+                                       ToolContext toolContext) {
+        log.info("Ejecutando lote de herramientas para usuario: {}", numeroTelefono);
+
+        if (numeroTelefono == null || numeroTelefono.trim().isEmpty()) {
+            return "Error: El número de teléfono no puede estar vacío";
+        }
+        if (invocaciones == null || invocaciones.trim().isEmpty()) {
+            return "Error: Las invocaciones no pueden estar vacías";
+        }
+
+        List<Invocacion> lote;
+        try {
+            lote = parsearInvocaciones(numeroTelefono.trim(), invocaciones);
+        } catch (IllegalArgumentException e) {
+            return "Error: " + e.getMessage();
+        }
+
+        // Normalmente el decorador ya abrió el contexto de la invocación y las del lote heredan ese mismo
+        boolean propio = RequestDataContext.current() == null;
+        RequestDataContext previous = propio ? RequestDataContext.open() : null;
+        RequestDataContext datos = RequestDataContext.current();
+        try {
+            OperationHandle operacion = OperationHandle.current();
+            List<CompletableFuture<String>> futures = new ArrayList<>(lote.size());
+            for (Invocacion invocacion : lote) {
+                futures.add(CompletableFuture.supplyAsync(() -> ejecutar(invocacion, operacion, toolContext), batchExecutor));
+            }
+            List<Resultado> resultados = new ArrayList<>(lote.size());
+            for (int i = 0; i < lote.size(); i++) {
+                String salida = futures.get(i).join();
+                resultados.add(new Resultado(lote.get(i).herramienta(), !esError(salida), salida));
+            }
+            log.info("Lote de {} herramientas completado: {} lecturas a la API, {} reutilizadas",
+                lote.size(), datos.getFetches(), datos.getHits());
+
+            if (ToolOutput.isJson()) {
+                return ToolOutput.structured(resultadosJson(resultados));
+            }
+            return formatear(resultados, datos);
+        } finally {
+            if (propio) {
+                RequestDataContext.restore(previous);
+            }
+        }
+    }
+
+    private List<Invocacion> parsearInvocaciones(String numeroTelefono, String invocaciones) {
+        JsonNode raiz;
+        try {
+            raiz = objectMapper.readTree(invocaciones);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Las invocaciones deben ser un arreglo JSON válido");
+        }
+        if (raiz == null || !raiz.isArray() || raiz.isEmpty()) {
+            throw new IllegalArgumentException("Las invocaciones deben ser un arreglo JSON con al menos un elemento");
+        }
+        if (raiz.size() > maxInvocations) {
+            throw new IllegalArgumentException("Un lote admite como máximo " + maxInvocations + " invocaciones");
+        }
+
+        boolean json = ToolOutput.isJson();
+        List<Invocacion> lote = new ArrayList<>(raiz.size());
+        for (JsonNode nodo : raiz) {
+            String herramienta = nodo.path("herramienta").asText("").trim();
+            if (herramienta.equals(TOOL_NAME)) {
+                throw new IllegalArgumentException("Un lote no puede incluir otra llamada a " + TOOL_NAME);
+            }
+            if (!tools.containsKey(herramienta)) {
+                throw new IllegalArgumentException("Herramienta desconocida: '" + herramienta + "'");
+            }
+            JsonNode argumentos = nodo.get("argumentos");
+            if (argumentos != null && !argumentos.isNull() && !argumentos.isObject()) {
+                throw new IllegalArgumentException("Los argumentos de " + herramienta + " deben ser un objeto JSON");
+            }
+            ObjectNode entrada = argumentos != null && argumentos.isObject()
+                ? ((ObjectNode) argumentos).deepCopy() : objectMapper.createObjectNode();
+
+            // Todas las invocaciones son del mismo usuario
+            JsonNode telefono = entrada.get(PHONE_PARAM);
+            if (telefono != null && !telefono.isNull() && !numeroTelefono.equals(telefono.asText().trim())) {
+                throw new IllegalArgumentException("La invocación de " + herramienta + " es de otro número de teléfono");
+            }
+            entrada.put(PHONE_PARAM, numeroTelefono);
+            if (json && !entrada.has(OutputModeToolCallback.FORMAT_PARAM)) {
+                entrada.put(OutputModeToolCallback.FORMAT_PARAM, "JSON");
+            }
+            lote.add(new Invocacion(herramienta, entrada.toString()));
+        }
+        return lote;
+    }
+
+    private String ejecutar(Invocacion invocacion, OperationHandle operacion, ToolContext toolContext) {
+        if (operacion.isCancelled()) {
+            return "Error: La operación " + operacion.getId() + " fue cancelada";
+        }
+        try {
+            ToolCallback tool = tools.get(invocacion.herramienta());
+            return texto(toolContext != null ? tool.call(invocacion.entrada(), toolContext) : tool.call(invocacion.entrada()));
+        } catch (Exception e) {
+            log.error("Error al ejecutar {} dentro del lote", invocacion.herramienta(), e);
+            return "Error al ejecutar " + invocacion.herramienta() + ": " + e.getMessage();
+        }
+    }
+
+    /**
+     * Las tools que devuelven texto lo entregan como cadena JSON; aquí se desenvuelve para
+     * no anidar comillas escapadas en el resultado del lote.
+     */
+    private String texto(String salida) {
+        if (salida == null || !salida.startsWith("\"")) {
+            return salida;
+        }
+        try {
+            return objectMapper.readValue(salida, String.class);
+        } catch (Exception e) {
+            return salida;
+        }
+    }
+
+    private static boolean esError(String salida) {
+        return salida == null || salida.startsWith("Error");
+    }
+
+    private String formatear(List<Resultado> resultados, RequestDataContext datos) {
+        StringBuilder result = new StringBuilder();
+        result.append("📦 RESULTADOS DEL LOTE\n");
+        result.append("=====================\n");
+        for (int i = 0; i < resultados.size(); i++) {
+            Resultado resultado = resultados.get(i);
+            result.append(String.format("\n%d. %s%s\n", i + 1, resultado.herramienta(), resultado.ok() ? "" : " ⚠️"));
+            result.append(resultado.salida()).append('\n');
+        }
+        result.append(String.format("\n📊 Consultas a la API: %d (%d reutilizadas dentro del lote)",
+            datos.getFetches(), datos.getHits()));
+        return result.toString();
+    }
+
+    private List<Map<String, Object>> resultadosJson(List<Resultado> resultados) {
+        List<Map<String, Object>> filas = new ArrayList<>(resultados.size());
+        for (Resultado resultado : resultados) {
+            Map<String, Object> fila = new LinkedHashMap<>();
+            fila.put("herramienta", resultado.herramienta());
+            fila.put("ok", resultado.ok());
+            fila.put("resultado", salidaJson(resultado.salida()));
+            filas.add(fila);
+        }
+        return filas;
+    }
+
+    private Object salidaJson(String salida) {
+        if (salida != null && (salida.startsWith("{") || salida.startsWith("["))) {
+            try {
+                return objectMapper.readTree(salida);
+            } catch (Exception e) {
+                return salida;
+            }
+        }
+        return salida;
+    }
+
+    private record Invocacion(String herramienta, String entrada) {
+    }
+
+    private record Resultado(String herramienta, boolean ok, String salida) {
+    }
+}
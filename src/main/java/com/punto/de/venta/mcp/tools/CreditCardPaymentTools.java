@@ -7,9 +7,11 @@ import com.punto.de.venta.mcp.model.TransactionCategory;
 import com.punto.de.venta.mcp.model.User;
 import com.punto.de.venta.mcp.service.CreditCardPaymentService;
 import com.punto.de.venta.mcp.service.CreditCardService;
+import com.punto.de.venta.mcp.service.IdempotencyGuard;
 import com.punto.de.venta.mcp.service.TransactionCategoryService;
 import com.punto.de.venta.mcp.service.TransactionService;
 import com.punto.de.venta.mcp.service.UserService;
+import com.punto.de.venta.mcp.output.ToolOutput;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
@@ -29,22 +31,31 @@ public class CreditCardPaymentTools {
     private final TransactionService transactionService;
     private final TransactionCategoryService transactionCategoryService;
     private final UserService userService;
+    private final IdempotencyGuard idempotencyGuard;
     
     public CreditCardPaymentTools(CreditCardPaymentService creditCardPaymentService,
                                 CreditCardService creditCardService,
                                 TransactionService transactionService,
                                 TransactionCategoryService transactionCategoryService,
-                                UserService userService) {
+                                UserService userService,
+                                IdempotencyGuard idempotencyGuard) {
         this.creditCardPaymentService = creditCardPaymentService;
         this.creditCardService = creditCardService;
         this.transactionService = transactionService;
         this.transactionCategoryService = transactionCategoryService;
         this.userService = userService;
+        this.idempotencyGuard = idempotencyGuard;
     }
     
     @Tool(name = "agregarPagoTarjetaCredito", description = "Registra un pago hacia la tarjeta de crédito. Requiere el número de teléfono del usuario, ID de la tarjeta, monto, fecha de pago (opcional), método de pago (opcional) y notas (opcional).")
     public String agregarPagoTarjetaCredito(@ToolParam String numeroTelefono, @ToolParam Long creditCardId, @ToolParam String amount, 
                                            @ToolParam String paymentDate, @ToolParam String paymentMethod, @ToolParam String notes) {
+        return idempotencyGuard.execute("agregarPagoTarjetaCredito", numeroTelefono,
+            () -> procesarPagoTarjetaCredito(numeroTelefono, creditCardId, amount, paymentDate, paymentMethod, notes),
+            creditCardId, amount, paymentDate, paymentMethod, notes);
+    }
+    
+    private String procesarPagoTarjetaCredito(String numeroTelefono, Long creditCardId, String amount, String paymentDate, String paymentMethod, String notes) {
         log.info("Agregando pago de tarjeta de crédito para usuario: {} tarjeta: {} por monto: {}", numeroTelefono, creditCardId, amount);
         
         if (numeroTelefono == null || numeroTelefono.trim().isEmpty()) {
@@ -139,9 +150,10 @@ public class CreditCardPaymentTools {
         }
     }
     
-    @Tool(name = "listarPagosTarjetaCredito", description = "Lista pagos hechos a una tarjeta en un periodo específico. Requiere el número de teléfono del usuario, ID de la tarjeta, fecha de inicio (opcional) y fecha de fin (opcional) en formato YYYY-MM-DD.")
-    public String listarPagosTarjetaCredito(@ToolParam String numeroTelefono, @ToolParam Long creditCardId, @ToolParam String startDate, @ToolParam String endDate) {
-        log.info("Listando pagos de tarjeta de crédito para usuario: {} tarjeta: {} en rango: {} - {}", numeroTelefono, creditCardId, startDate, endDate);
+    @Tool(name = "listarPagosTarjetaCredito", description = "Lista por páginas los pagos hechos a una tarjeta en un periodo específico. Requiere el número de teléfono del usuario, ID de la tarjeta, fecha de inicio (opcional) y fecha de fin (opcional) en formato YYYY-MM-DD. Opcionalmente el tamaño de página y el cursor devuelto por la página anterior.")
+    public String listarPagosTarjetaCredito(@ToolParam String numeroTelefono, @ToolParam Long creditCardId, @ToolParam String startDate, @ToolParam String endDate,
+                                            @ToolParam(required = false) String cursor, @ToolParam(required = false) Integer tamanoPagina) {
+        log.info("Listando pagos de tarjeta de crédito para usuario: {} tarjeta: {} en rango: {} - {} (cursor: {})", numeroTelefono, creditCardId, startDate, endDate, cursor);
         
         if (numeroTelefono == null || numeroTelefono.trim().isEmpty()) {
             return "Error: El número de teléfono no puede estar vacío";
@@ -194,20 +206,35 @@ public class CreditCardPaymentTools {
                 .map(CreditCardPayment::getAmountPaid)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
             
+            String scope = PageCursor.scope("listarPagosTarjetaCredito", creditCardId, startDate, endDate);
+            PageCursor.Page<CreditCardPayment> page = PageCursor.byId(payments, CreditCardPayment::getId, cursor, scope,
+                PageCursor.pageSize(tamanoPagina));
+            if (ToolOutput.isJson()) {
+                return ToolOutput.structured(JsonViews.Pagina.of(page, JsonViews.PAGO, payments.size(), null));
+            }
+
+            // Un cursor de la última página no deja pagos por mostrar
+            if (page.items().isEmpty()) {
+                return "No hay más pagos para esta tarjeta";
+            }
+
             StringBuilder result = new StringBuilder();
             result.append(String.format("Pagos de tarjeta %s (****%s):\n\n", 
                 creditCard.get().getCardName(), creditCard.get().getLastFourDigits()));
             
-            for (CreditCardPayment payment : payments) {
+            for (CreditCardPayment payment : page.items()) {
                 result.append(String.format("- Fecha: %s, Monto: %s\n", 
                     payment.getPaymentDate(), payment.getAmountPaid()));
             }
             
             result.append(String.format("\nTotal de pagos: %d\n", payments.size()));
             result.append(String.format("Monto total pagado: %s", totalPaid));
+            PageCursor.appendFooter(result, page);
             
             return result.toString();
             
+        } catch (IllegalArgumentException e) {
+            return "Error: " + e.getMessage();
         } catch (Exception e) {
             log.error("Error al listar pagos de tarjeta de crédito", e);
             return "Error al listar pagos de tarjeta de crédito: " + e.getMessage();
@@ -5,6 +5,7 @@ import com.punto.de.venta.mcp.service.CreditCardService;
 import com.punto.de.venta.mcp.service.UserService;
 
 
+import com.punto.de.venta.mcp.output.ToolOutput;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
@@ -109,9 +110,10 @@ public class CreditCardTools {
         }
     }
     
-    @Tool(name = "listarTarjetasCredito", description = "Lista todas las tarjetas de crédito registradas para un usuario. Requiere el número de teléfono del usuario.")
-    public String listarTarjetasCredito(@ToolParam String numeroTelefono) {
-        log.info("Listando tarjetas de crédito para usuario: {}", numeroTelefono);
+    @Tool(name = "listarTarjetasCredito", description = "Lista por páginas las tarjetas de crédito registradas para un usuario. Requiere el número de teléfono del usuario. Opcionalmente el tamaño de página y el cursor devuelto por la página anterior.")
+    public String listarTarjetasCredito(@ToolParam String numeroTelefono, @ToolParam(required = false) String cursor,
+                                        @ToolParam(required = false) Integer tamanoPagina) {
+        log.info("Listando tarjetas de crédito para usuario: {} (cursor: {})", numeroTelefono, cursor);
         
         if (numeroTelefono == null || numeroTelefono.trim().isEmpty()) {
             return "Error: El número de teléfono no puede estar vacío";
@@ -130,19 +132,29 @@ public class CreditCardTools {
                 return "No tienes tarjetas de crédito registradas";
             }
             
+            String scope = PageCursor.scope("listarTarjetasCredito", userOpt.get().getId());
+            PageCursor.Page<CreditCard> page = PageCursor.byId(creditCards, CreditCard::getId, cursor, scope,
+                PageCursor.pageSize(tamanoPagina));
+            if (ToolOutput.isJson()) {
+                return ToolOutput.structured(JsonViews.Pagina.of(page, JsonViews.TARJETA, creditCards.size(), null));
+            }
+            
             StringBuilder result = new StringBuilder();
             result.append("Tarjetas de crédito registradas:\n");
             
-            for (CreditCard card : creditCards) {
+            for (CreditCard card : page.items()) {
                 result.append(String.format("- %s (****%s) - Límite: %s\n", 
                     card.getCardName(), card.getLastFourDigits(), 
                     card.getCreditLimit() != null ? card.getCreditLimit() : "No definido"));
             }
             
             result.append(String.format("\nTotal de tarjetas: %d", creditCards.size()));
+            PageCursor.appendFooter(result, page);
             
             return result.toString();
             
+        } catch (IllegalArgumentException e) {
+            return "Error: " + e.getMessage();
         } catch (Exception e) {
             log.error("Error al listar tarjetas de crédito", e);
             return "Error al listar tarjetas de crédito: " + e.getMessage();
@@ -1,11 +1,16 @@
 package com.punto.de.venta.mcp.tools;
 
+import com.punto.de.venta.mcp.anomaly.SpendingAnomaly;
+import com.punto.de.venta.mcp.anomaly.SpendingAnomalyDetector;
 import com.punto.de.venta.mcp.model.Transaction;
 import com.punto.de.venta.mcp.model.TransactionCategory;
 import com.punto.de.venta.mcp.model.User;
+import com.punto.de.venta.mcp.service.IdempotencyGuard;
 import com.punto.de.venta.mcp.service.TransactionService;
 import com.punto.de.venta.mcp.service.TransactionCategoryService;
 import com.punto.de.venta.mcp.service.UserService;
+import com.punto.de.venta.mcp.output.ResultBudget;
+import com.punto.de.venta.mcp.output.ToolOutput;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
@@ -14,6 +19,7 @@ import org.springframework.web.client.RestTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,14 +31,19 @@ public class CurrencyTools {
     private final TransactionCategoryService transactionCategoryService;
     private final UserService userService;
     private final RestTemplate restTemplate;
+    private final IdempotencyGuard idempotencyGuard;
+    private final SpendingAnomalyDetector anomalyDetector;
     
     private static final String RATES_API_URL = "https://ratesdb.com/api/v1/rates";
     
-    public CurrencyTools(TransactionService transactionService, TransactionCategoryService transactionCategoryService, UserService userService, RestTemplate restTemplate) {
+    public CurrencyTools(TransactionService transactionService, TransactionCategoryService transactionCategoryService, UserService userService, RestTemplate restTemplate, IdempotencyGuard idempotencyGuard,
+                         SpendingAnomalyDetector anomalyDetector) {
         this.transactionService = transactionService;
         this.transactionCategoryService = transactionCategoryService;
         this.userService = userService;
         this.restTemplate = restTemplate;
+        this.idempotencyGuard = idempotencyGuard;
+        this.anomalyDetector = anomalyDetector;
     }
     
     @Tool(name = "currencyConversion", description = "Convierte montos entre diferentes monedas usando tasas actuales. Requiere monto, moneda origen y moneda destino.")
@@ -80,6 +91,12 @@ public class CurrencyTools {
                                                       @ToolParam String monedaExtranjera, 
                                                       @ToolParam String fecha, 
                                                       @ToolParam String tipo) {
+        return idempotencyGuard.execute("registrarTransaccionMonedaExtranjera", numeroTelefono,
+            () -> procesarTransaccionMonedaExtranjera(numeroTelefono, descripcion, monto, monedaExtranjera, fecha, tipo),
+            descripcion, monto, monedaExtranjera, fecha, tipo);
+    }
+    
+    private String procesarTransaccionMonedaExtranjera(String numeroTelefono, String descripcion, BigDecimal monto, String monedaExtranjera, String fecha, String tipo) {
         log.info("Registrando transacción en moneda extranjera para usuario: {} - {} {} {} - {}", 
                 numeroTelefono, descripcion, monto, monedaExtranjera, tipo);
         
@@ -139,6 +156,7 @@ public class CurrencyTools {
             transaction.setSource("MANUAL");
             
             Transaction savedTransaction = transactionService.createTransaction(transaction);
+            Optional<SpendingAnomaly> inusual = anomalyDetector.observe(user, savedTransaction);
             
             return String.format("Transacción registrada exitosamente:\n" +
                 "ID: %s\n" +
@@ -149,7 +167,9 @@ public class CurrencyTools {
                 savedTransaction.getId(), savedTransaction.getDescription(),
                 monto, monedaExtranjera.toUpperCase(),
                 montoConvertido, monedaLocal,
-                monedaExtranjera.toUpperCase(), tasaCambio, monedaLocal);
+                monedaExtranjera.toUpperCase(), tasaCambio, monedaLocal)
+                + inusual.map(a -> String.format("\nAviso: es un gasto inusual en %s (lo habitual es %s %s); se creó una alerta.",
+                    a.categoria(), a.media(), monedaLocal)).orElse("");
         } catch (Exception e) {
             log.error("Error al registrar transacción en moneda extranjera", e);
             return "Error al registrar la transacción: " + e.getMessage();
@@ -202,41 +222,47 @@ public class CurrencyTools {
             
             User user = userOpt.get();
             
-            // Obtener transacciones de moneda extranjera
-            List<Transaction> transacciones = transactionService.getTransactionsByUserId(user.getId());
-            
-            List<Transaction> transaccionesMonedaExtranjera = transacciones.stream()
-                .filter(t -> t.getTransactionCategory() != null && 
-                           "Moneda Extranjera".equals(t.getTransactionCategory().getCategoryName()))
-                .collect(java.util.stream.Collectors.toList());
+            // Una sola pasada: total y conteo de todas, y solo las más recientes para mostrar
+            ResultBudget budget = ToolOutput.budget();
+            TopN<Transaction> recientes = new TopN<>(budget.elementos(10),
+                Comparator.comparing(Transaction::getTransactionDate, Comparator.nullsFirst(Comparator.naturalOrder())),
+                Transaction::getAmount);
+            for (Transaction t : transactionService.getTransactionsByUserId(user.getId())) {
+                if (t.getTransactionCategory() != null && "Moneda Extranjera".equals(t.getTransactionCategory().getCategoryName())) {
+                    recientes.add(t);
+                }
+            }
             
-            if (transaccionesMonedaExtranjera.isEmpty()) {
+            if (recientes.total() == 0) {
                 return "No tienes transacciones en moneda extranjera registradas";
             }
             
-            BigDecimal totalMonedaExtranjera = transaccionesMonedaExtranjera.stream()
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
             StringBuilder result = new StringBuilder();
             result.append("🌍 ANÁLISIS DE GASTOS EN MONEDA EXTRANJERA\n");
             result.append("========================================\n\n");
             result.append(String.format("Total gastos en moneda extranjera: %s %s\n", 
-                totalMonedaExtranjera, user.getCurrency()));
-            result.append(String.format("Número de transacciones: %d\n\n", transaccionesMonedaExtranjera.size()));
+                recientes.sumaTotal(), user.getCurrency()));
+            result.append(String.format("Número de transacciones: %d\n\n", recientes.total()));
             
             result.append("📋 ÚLTIMAS TRANSACCIONES:\n");
             result.append("------------------------\n");
             
-            transaccionesMonedaExtranjera.stream()
-                .limit(10)
-                .forEach(t -> {
-                    result.append(String.format("• %s: %s %s (%s)\n", 
-                        t.getTransactionDate(), t.getAmount(), user.getCurrency(), t.getDescription()));
-                });
+            int mostradas = 0;
+            BigDecimal sumaMostradas = BigDecimal.ZERO;
+            for (Transaction t : recientes.mejores()) {
+                String linea = String.format("• %s: %s %s (%s)\n", 
+                    t.getTransactionDate(), t.getAmount(), user.getCurrency(), t.getDescription());
+                if (!budget.cabe(result, linea)) {
+                    break;
+                }
+                result.append(linea);
+                mostradas++;
+                sumaMostradas = sumaMostradas.add(recientes.monto(t));
+            }
             
-            if (transaccionesMonedaExtranjera.size() > 10) {
-                result.append(String.format("\n... y %d transacciones más", transaccionesMonedaExtranjera.size() - 10));
+            if (recientes.total() > mostradas) {
+                result.append(String.format("\n... y %d transacciones más por %s %s", recientes.total() - mostradas,
+                    recientes.sumaTotal().subtract(sumaMostradas), user.getCurrency()));
             }
             
             return result.toString();
@@ -0,0 +1,168 @@
+package com.punto.de.venta.mcp.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punto.de.venta.mcp.exporter.TransactionExportWriter;
+import com.punto.de.venta.mcp.model.Transaction;
+import com.punto.de.venta.mcp.model.User;
+import com.punto.de.venta.mcp.service.TransactionService;
+import com.punto.de.venta.mcp.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Optional;
+
+@Service
+@Slf4j
+public class ExportTools {
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @Value("${ai.finance.export.dir:data/exports}")
+    private String exportDir;
+
+    @Value("${ai.finance.export.chunk-rows:500}")
+    private int chunkRows;
+
+    private final TransactionService transactionService;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+
+    public ExportTools(TransactionService transactionService, UserService userService, ObjectMapper objectMapper) {
+        this.transactionService = transactionService;
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Tool(name = "exportarTransacciones", description = "Exporta el historial de transacciones de un usuario en formato NDJSON o CSV. Con destino ARCHIVO escribe todo el historial en un archivo del servidor; con destino FRAGMENTO (por defecto) devuelve un bloque de filas y el cursor para pedir el siguiente. Requiere el número de teléfono del usuario; las fechas son opcionales.")
+    public String exportarTransacciones(@ToolParam String numeroTelefono, @ToolParam String formato,
+                                        @ToolParam String fechaInicio, @ToolParam String fechaFin,
+                                        @ToolParam String destino, @ToolParam String cursor) {
+        log.info("Exportando transacciones para usuario: {} - Formato: {}, Destino: {}, Cursor: {}",
+                numeroTelefono, formato, destino, cursor);
+
+        if (numeroTelefono == null || numeroTelefono.trim().isEmpty()) {
+            return "Error: El número de teléfono no puede estar vacío";
+        }
+
+        try {
+            Optional<User> userOpt = userService.getUserByPhone(numeroTelefono.trim());
+            if (userOpt.isEmpty()) {
+                return "Error: No se encontró usuario con el número de teléfono: " + numeroTelefono;
+            }
+
+            User user = userOpt.get();
+            LocalDate startDate = parseDate(fechaInicio, LocalDate.of(1900, 1, 1));
+            LocalDate endDate = parseDate(fechaFin, LocalDate.now());
+
+            if (destino != null && destino.trim().equalsIgnoreCase("ARCHIVO")) {
+                return exportarArchivo(user, formato, startDate, endDate);
+            }
+            return exportarFragmento(user, formato, startDate, endDate, cursor);
+        } catch (IllegalArgumentException e) {
+            return "Error: " + e.getMessage();
+        } catch (Exception e) {
+            log.error("Error al exportar transacciones", e);
+            return "Error al exportar las transacciones: " + e.getMessage();
+        }
+    }
+
+    private String exportarArchivo(User user, String formato, LocalDate startDate, LocalDate endDate) throws IOException {
+        Path dir = Paths.get(exportDir).toAbsolutePath();
+        Files.createDirectories(dir);
+        String nombre = String.format("transacciones-%d-%s.%s", user.getId(),
+            LocalDateTime.now().format(FILE_TIMESTAMP), TransactionExportWriter.extension(formato));
+        Path archivo = dir.resolve(nombre);
+        Path temporal = dir.resolve(nombre + ".tmp");
+
+        long filas;
+        try (BufferedWriter out = Files.newBufferedWriter(temporal, StandardCharsets.UTF_8)) {
+            TransactionExportWriter writer = TransactionExportWriter.create(formato, out, objectMapper);
+            writer.writeHeader();
+            filas = transactionService.streamTransactionsByUserIdAndDateRange(user.getId(), startDate, endDate, t -> {
+                try {
+                    writer.write(t);
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        }
+        Files.move(temporal, archivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        return String.format("Exportación completada - %d transacciones (%s a %s)\nArchivo: %s\nTamaño: %d bytes",
+            filas, startDate, endDate, archivo, Files.size(archivo));
+    }
+
+    /**
+     * Un bloque de {@code chunk-rows} filas en orden de fecha e id. El cursor es la clave de
+     * la última fila entregada, así cada bloque solo lee desde su fecha en lugar de recorrer
+     * de nuevo todo lo ya exportado.
+     */
+    private String exportarFragmento(User user, String formato, LocalDate startDate, LocalDate endDate, String cursor) throws IOException {
+        String nombreFormato = formato == null || formato.isBlank() ? "NDJSON" : formato.trim().toUpperCase(Locale.ROOT);
+        String scope = PageCursor.scope("exportarTransacciones", user.getId(), startDate, endDate, nombreFormato);
+        String[] after = PageCursor.decode(cursor, scope);
+        LocalDate afterDate = after != null ? PageCursor.parseDate(after[0]) : null;
+        Long afterId = after != null ? PageCursor.parseId(after[1]) : null;
+
+        PageCursor.Page<Transaction> page = PageCursor.fromLookahead(
+            transactionService.getTransactionsPage(user.getId(), startDate, endDate, null, afterDate, afterId, chunkRows),
+            chunkRows, scope, t -> new String[]{t.getTransactionDate().toString(), String.valueOf(t.getId())});
+
+        StringWriter buffer = new StringWriter();
+        TransactionExportWriter writer = TransactionExportWriter.create(formato, buffer, objectMapper);
+        if (after == null) {
+            writer.writeHeader();
+        }
+        for (Transaction t : page.items()) {
+            writer.write(t);
+        }
+        writer.flush();
+
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("Exportación %s - %d filas\n", nombreFormato, page.items().size()));
+        result.append(page.hasMore()
+            ? String.format("Siguiente cursor: %s\n", page.nextCursor())
+            : "Fin de la exportación\n");
+        result.append("---\n");
+        result.append(buffer);
+        return result.toString();
+    }
+
+    private LocalDate parseDate(String dateStr, LocalDate defaultDate) {
+        if (dateStr == null || dateStr.trim().isEmpty()) {
+            return defaultDate;
+        }
+
+        String[] formats = {"yyyy-MM-dd", "dd/MM/yyyy", "MM/dd/yyyy"};
+        for (String format : formats) {
+            try {
+                return LocalDate.parse(dateStr.trim(), DateTimeFormatter.ofPattern(format));
+            } catch (Exception ignored) {
+                // Continuar con el siguiente formato
+            }
+        }
+        log.warn("No se pudo parsear la fecha: {}, usando {}", dateStr, defaultDate);
+        return defaultDate;
+    }
+}
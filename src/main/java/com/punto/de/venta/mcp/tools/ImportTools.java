@@ -0,0 +1,375 @@
+package com.punto.de.venta.mcp.tools;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punto.de.venta.mcp.importer.StatementFormatException;
+import com.punto.de.venta.mcp.importer.StatementReader;
+import com.punto.de.venta.mcp.importer.StatementRecord;
+import com.punto.de.venta.mcp.model.Transaction;
+import com.punto.de.venta.mcp.model.TransactionCategory;
+import com.punto.de.venta.mcp.model.User;
+import com.punto.de.venta.mcp.operation.OperationHandle;
+import com.punto.de.venta.mcp.service.TransactionCategoryService;
+import com.punto.de.venta.mcp.service.TransactionService;
+import com.punto.de.venta.mcp.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+@Service
+@Slf4j
+public class ImportTools {
+
+    private static final int MAX_ERRORES_REPORTADOS = 10;
+    private static final String EXTERNAL_ID = "externalId";
+
+    @Value("${ai.finance.import.base-dir:data/imports}")
+    private String baseDir;
+
+    @Value("${ai.finance.import.batch-size:100}")
+    private int batchSize;
+
+    private final TransactionService transactionService;
+    private final TransactionCategoryService transactionCategoryService;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+
+    public ImportTools(TransactionService transactionService, TransactionCategoryService transactionCategoryService,
+                       UserService userService, ObjectMapper objectMapper) {
+        this.transactionService = transactionService;
+        this.transactionCategoryService = transactionCategoryService;
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Tool(name = "importarMovimientosBancarios", description = "Importa movimientos desde un estado de cuenta bancario en formato CSV u OFX, desde un archivo local o desde el contenido en línea. Omite los movimientos que ya estén registrados. Requiere el número de teléfono del usuario.")
+    public String importarMovimientosBancarios(@ToolParam String numeroTelefono, @ToolParam String formato,
+                                               @ToolParam String rutaArchivo, @ToolParam String contenido,
+                                               @ToolParam String categoriaPorDefecto) {
+        log.info("Importando movimientos bancarios para usuario: {} - Formato: {}, Archivo: {}",
+                numeroTelefono, formato, rutaArchivo);
+
+        if (numeroTelefono == null || numeroTelefono.trim().isEmpty()) {
+            return "Error: El número de teléfono no puede estar vacío";
+        }
+
+        boolean tieneArchivo = rutaArchivo != null && !rutaArchivo.trim().isEmpty();
+        boolean tieneContenido = contenido != null && !contenido.trim().isEmpty();
+        if (!tieneArchivo && !tieneContenido) {
+            return "Error: Debe indicar la ruta del archivo o el contenido del estado de cuenta";
+        }
+
+        try {
+            Optional<User> userOpt = userService.getUserByPhone(numeroTelefono.trim());
+            if (userOpt.isEmpty()) {
+                return "Error: No se encontró usuario con el número de teléfono: " + numeroTelefono;
+            }
+
+            User user = userOpt.get();
+
+            Reader source;
+            if (tieneArchivo) {
+                Path archivo = resolverArchivo(rutaArchivo.trim());
+                if (archivo == null) {
+                    return "Error: El archivo debe estar dentro del directorio de importación: " + Paths.get(baseDir).toAbsolutePath();
+                }
+                if (!Files.isRegularFile(archivo)) {
+                    return "Error: No se encontró el archivo: " + rutaArchivo;
+                }
+                source = Files.newBufferedReader(archivo, StandardCharsets.UTF_8);
+            } else {
+                source = new StringReader(contenido);
+            }
+
+            try (Reader input = source; StatementReader reader = StatementReader.open(formato, input)) {
+                return importar(reader, user, categoriaPorDefecto);
+            }
+        } catch (IllegalArgumentException | StatementFormatException e) {
+            return "Error: " + e.getMessage();
+        } catch (Exception e) {
+            log.error("Error al importar movimientos bancarios", e);
+            return "Error al importar los movimientos: " + e.getMessage();
+        }
+    }
+
+    private String importar(StatementReader reader, User user, String categoriaPorDefecto) throws IOException {
+        Map<String, TransactionCategory> categorias = cargarCategorias(user.getId());
+        String categoriaDefecto = categoriaPorDefecto != null && !categoriaPorDefecto.trim().isEmpty()
+            ? categoriaPorDefecto.trim() : "General";
+
+        long leidos = 0;
+        long importados = 0;
+        long duplicados = 0;
+        long fallidos = 0;
+        BigDecimal totalIngresos = BigDecimal.ZERO;
+        BigDecimal totalGastos = BigDecimal.ZERO;
+        List<String> errores = new ArrayList<>();
+        List<StatementRecord> pendientes = new ArrayList<>(batchSize);
+        List<Transaction> lote = new ArrayList<>(batchSize);
+        // Veces que apareció en el archivo cada movimiento sin referencia; crece con el archivo, no con el historial
+        Map<String, Integer> ocurrencias = new HashMap<>();
+        OperationHandle operacion = OperationHandle.current();
+
+        while (!operacion.isCancelled()) {
+            StatementRecord record;
+            try {
+                record = reader.next();
+            } catch (StatementFormatException e) {
+                fallidos++;
+                agregarError(errores, e.getMessage());
+                continue;
+            }
+            if (record == null) {
+                break;
+            }
+            leidos++;
+            pendientes.add(record);
+
+            if (pendientes.size() >= batchSize) {
+                List<StatementRecord> nuevos = descartarDuplicados(pendientes, user.getId(), ocurrencias);
+                duplicados += pendientes.size() - nuevos.size();
+                pendientes.clear();
+                for (StatementRecord nuevo : nuevos) {
+                    lote.add(aTransaccion(nuevo, user, categorias, categoriaDefecto));
+                }
+                long[] resultado = enviarLote(lote, errores);
+                importados += resultado[0];
+                fallidos += resultado[1];
+                totalIngresos = totalIngresos.add(sumar(lote, "INCOME"));
+                totalGastos = totalGastos.add(sumar(lote, "EXPENSE"));
+                lote.clear();
+                operacion.progress(leidos, -1, "movimientos leídos");
+            }
+        }
+        if (!pendientes.isEmpty() && !operacion.isCancelled()) {
+            List<StatementRecord> nuevos = descartarDuplicados(pendientes, user.getId(), ocurrencias);
+            duplicados += pendientes.size() - nuevos.size();
+            for (StatementRecord nuevo : nuevos) {
+                lote.add(aTransaccion(nuevo, user, categorias, categoriaDefecto));
+            }
+        }
+        if (!lote.isEmpty() && !operacion.isCancelled()) {
+            long[] resultado = enviarLote(lote, errores);
+            importados += resultado[0];
+            fallidos += resultado[1];
+            totalIngresos = totalIngresos.add(sumar(lote, "INCOME"));
+            totalGastos = totalGastos.add(sumar(lote, "EXPENSE"));
+        }
+
+        StringBuilder result = new StringBuilder();
+        result.append("📥 IMPORTACIÓN DE MOVIMIENTOS\n");
+        result.append("============================\n\n");
+        if (operacion.isCancelled()) {
+            result.append("⏹️ Importación cancelada: los movimientos ya importados se conservan\n\n");
+        }
+        result.append(String.format("Movimientos leídos: %d\n", leidos));
+        result.append(String.format("Importados: %d\n", importados));
+        result.append(String.format("Duplicados omitidos: %d\n", duplicados));
+        result.append(String.format("Con error: %d\n", fallidos));
+        result.append(String.format("Total ingresos importados: %s %s\n", totalIngresos, user.getCurrency()));
+        result.append(String.format("Total gastos importados: %s %s\n", totalGastos, user.getCurrency()));
+        if (!errores.isEmpty()) {
+            result.append("\n⚠️ Errores:\n");
+            for (String error : errores) {
+                result.append("- ").append(error).append("\n");
+            }
+            if (fallidos > errores.size()) {
+                result.append(String.format("... y %d más\n", fallidos - errores.size()));
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Devuelve los movimientos del lote que no están registrados. Solo se consultan las
+     * transacciones existentes en el rango de fechas del lote y se cuentan las que coinciden
+     * con alguna de sus claves, así la memoria depende del lote y no del historial.
+     *
+     * <p>Un movimiento con referencia del banco (FITID o columna de referencia) es duplicado
+     * si ya hay una transacción con esa referencia. Sin referencia se compara fecha, monto,
+     * tipo y descripción contando ocurrencias: la k-ésima aparición en el archivo es duplicada
+     * solo si ya hay al menos k transacciones iguales, así dos cargos idénticos el mismo día
+     * se importan ambos. El conteo incluye lo importado por lotes anteriores de este archivo,
+     * que son justamente sus primeras apariciones.
+     */
+    private List<StatementRecord> descartarDuplicados(List<StatementRecord> pendientes, Long userId,
+                                                      Map<String, Integer> ocurrencias) {
+        LocalDate desde = pendientes.get(0).date();
+        LocalDate hasta = desde;
+        Map<String, Integer> existentes = new HashMap<>();
+        Set<String> referencias = new HashSet<>();
+        for (StatementRecord record : pendientes) {
+            desde = record.date().isBefore(desde) ? record.date() : desde;
+            hasta = record.date().isAfter(hasta) ? record.date() : hasta;
+            if (record.externalId() != null) {
+                referencias.add(record.externalId());
+            } else {
+                existentes.put(claveDuplicado(record.date(), record.amount(), record.type(), record.description()), 0);
+            }
+        }
+
+        Set<String> registradas = new HashSet<>();
+        transactionService.streamTransactionsByUserIdAndDateRange(userId, desde, hasta, t -> {
+            existentes.computeIfPresent(claveDuplicado(t.getTransactionDate(), t.getAmount(), t.getType(), t.getDescription()),
+                (clave, n) -> n + 1);
+            if (!referencias.isEmpty()) {
+                String referencia = referenciaExterna(t.getMetadata());
+                if (referencia != null && referencias.contains(referencia)) {
+                    registradas.add(referencia);
+                }
+            }
+            return true;
+        });
+
+        List<StatementRecord> nuevos = new ArrayList<>(pendientes.size());
+        for (StatementRecord record : pendientes) {
+            if (record.externalId() != null) {
+                // También descarta la misma referencia repetida dentro del lote
+                if (registradas.add(record.externalId())) {
+                    nuevos.add(record);
+                }
+                continue;
+            }
+            String clave = claveDuplicado(record.date(), record.amount(), record.type(), record.description());
+            if (ocurrencias.merge(clave, 1, Integer::sum) > existentes.get(clave)) {
+                nuevos.add(record);
+            }
+        }
+        return nuevos;
+    }
+
+    private Transaction aTransaccion(StatementRecord record, User user, Map<String, TransactionCategory> categorias,
+                                     String categoriaDefecto) {
+        String nombreCategoria = record.category() != null ? record.category() : categoriaDefecto;
+        Transaction transaction = new Transaction();
+        transaction.setUser(user);
+        transaction.setType(record.type());
+        transaction.setDescription(record.description());
+        transaction.setAmount(record.amount());
+        transaction.setTransactionCategory(resolverCategoria(categorias, nombreCategoria, user.getId()));
+        transaction.setTransactionDate(record.date());
+        transaction.setSource("IMPORT");
+        if (record.externalId() != null) {
+            transaction.setMetadata(objectMapper.createObjectNode().put(EXTERNAL_ID, record.externalId()).toString());
+        }
+        return transaction;
+    }
+
+    private String referenciaExterna(String metadata) {
+        if (metadata == null || !metadata.contains(EXTERNAL_ID)) {
+            return null;
+        }
+        try {
+            JsonNode referencia = objectMapper.readTree(metadata).get(EXTERNAL_ID);
+            return referencia != null && referencia.isTextual() ? referencia.asText() : null;
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Crea el lote con concurrencia acotada. Deja en el lote solo las transacciones creadas
+     * y devuelve {importadas, fallidas}.
+     */
+    private long[] enviarLote(List<Transaction> lote, List<String> errores) {
+        List<Transaction> creadas = transactionService.createTransactions(lote);
+        boolean cancelada = OperationHandle.current().isCancelled();
+        long fallidas = 0;
+        for (int i = creadas.size() - 1; i >= 0; i--) {
+            if (creadas.get(i) == null && cancelada) {
+                // Con la operación cancelada un null puede ser una fila que ya no se envió
+                lote.remove(i);
+            } else if (creadas.get(i) == null) {
+                fallidas++;
+                agregarError(errores, "No se pudo crear: " + lote.get(i).getDescription() + " (" + lote.get(i).getTransactionDate() + ")");
+                lote.remove(i);
+            }
+        }
+        return new long[]{lote.size(), fallidas};
+    }
+
+    private BigDecimal sumar(List<Transaction> transacciones, String tipo) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (Transaction t : transacciones) {
+            if (tipo.equals(t.getType())) {
+                total = total.add(t.getAmount());
+            }
+        }
+        return total;
+    }
+
+    private void agregarError(List<String> errores, String error) {
+        if (errores.size() < MAX_ERRORES_REPORTADOS) {
+            errores.add(error);
+        }
+    }
+
+    private Map<String, TransactionCategory> cargarCategorias(Long userId) {
+        Map<String, TransactionCategory> categorias = new HashMap<>();
+        List<TransactionCategory> existentes = transactionCategoryService.getTransactionCategoriesByUserId(userId);
+        if (existentes != null) {
+            for (TransactionCategory categoria : existentes) {
+                if (categoria.getCategoryName() != null) {
+                    categorias.putIfAbsent(categoria.getCategoryName().trim().toLowerCase(Locale.ROOT), categoria);
+                }
+            }
+        }
+        return categorias;
+    }
+
+    private TransactionCategory resolverCategoria(Map<String, TransactionCategory> categorias, String nombre, Long userId) {
+        String clave = nombre.trim().toLowerCase(Locale.ROOT);
+        TransactionCategory categoria = categorias.get(clave);
+        if (categoria != null) {
+            return categoria;
+        }
+        try {
+            TransactionCategory nuevaCategoria = new TransactionCategory();
+            User user = new User();
+            user.setId(userId);
+            nuevaCategoria.setUser(user);
+            nuevaCategoria.setCategoryName(nombre.trim());
+            categoria = transactionCategoryService.createTransactionCategory(nuevaCategoria);
+        } catch (Exception e) {
+            log.error("Error al crear categoría: {}", nombre, e);
+            categoria = categorias.get("general");
+        }
+        // Se recuerda también el fallo para no reintentar la creación en cada fila
+        categorias.put(clave, categoria);
+        return categoria;
+    }
+
+    private Path resolverArchivo(String rutaArchivo) {
+        Path base = Paths.get(baseDir).toAbsolutePath().normalize();
+        Path archivo = base.resolve(rutaArchivo).normalize();
+        return archivo.startsWith(base) ? archivo : null;
+    }
+
+    private String claveDuplicado(LocalDate fecha, BigDecimal monto, String tipo, String descripcion) {
+        String montoNormalizado = monto != null ? monto.stripTrailingZeros().toPlainString() : "";
+        String descripcionNormalizada = descripcion != null
+            ? descripcion.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT) : "";
+        return fecha + "|" + montoNormalizado + "|" + tipo + "|" + descripcionNormalizada;
+    }
+}
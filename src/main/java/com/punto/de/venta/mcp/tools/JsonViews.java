@@ -0,0 +1,126 @@
+package com.punto.de.venta.mcp.tools;
+
+import com.punto.de.venta.mcp.model.Alert;
+import com.punto.de.venta.mcp.model.CreditCard;
+import com.punto.de.venta.mcp.model.CreditCardPayment;
+import com.punto.de.venta.mcp.model.RecurringTransaction;
+import com.punto.de.venta.mcp.model.Transaction;
+import com.punto.de.venta.mcp.model.TransactionCategory;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Páginas compactas que devuelven las tools de listado en modo JSON: solo los campos que
+ * muestra la versión en texto, sin el usuario ni los metadatos anidados. Cada fila es un
+ * arreglo en el orden de {@code columnas}, para no repetir los nombres de campo, y las
+ * columnas con el mismo valor en todas las filas (el tipo al filtrar por tipo, la categoría,
+ * la frecuencia) salen una sola vez en {@code comunes} en lugar de repetirse en cada fila.
+ */
+final class JsonViews {
+
+    static final Vista<Transaction> TRANSACCION = new Vista<>(
+        List.of("id", "fecha", "tipo", "descripcion", "categoria", "monto"),
+        t -> new Object[]{t.getId(), textoFecha(t.getTransactionDate()), t.getType(), t.getDescription(),
+            nombreCategoria(t.getTransactionCategory()), t.getAmount()});
+
+    static final Vista<Alert> ALERTA = new Vista<>(
+        List.of("id", "tipo", "mensaje", "estado", "programadaPara"),
+        a -> new Object[]{a.getId(), a.getAlertType(), a.getMessage(), a.getStatus(),
+            a.getScheduledAt() != null ? a.getScheduledAt().toString() : null});
+
+    static final Vista<CreditCard> TARJETA = new Vista<>(
+        List.of("id", "nombre", "ultimosDigitos", "limite", "saldo", "diaCorte", "diaPago"),
+        c -> new Object[]{c.getId(), c.getCardName(), c.getLastFourDigits(), c.getCreditLimit(),
+            c.getCurrentBalance(), c.getCutOffDay(), c.getPaymentDueDay()});
+
+    static final Vista<CreditCardPayment> PAGO = new Vista<>(
+        List.of("id", "fecha", "monto"),
+        p -> new Object[]{p.getId(), textoFecha(p.getPaymentDate()), p.getAmountPaid()});
+
+    static final Vista<RecurringTransaction> RECURRENTE = new Vista<>(
+        List.of("id", "tipo", "descripcion", "categoria", "monto", "frecuencia"),
+        r -> new Object[]{r.getId(), r.getType(), r.getDescription(), nombreCategoria(r.getTransactionCategory()),
+            r.getAmount(), r.getFrequency()});
+
+    private JsonViews() {
+    }
+
+    /**
+     * Columnas de un listado y cómo se arma la fila de cada elemento. La primera columna es
+     * siempre el id, que nunca se agrupa en {@code comunes}.
+     */
+    record Vista<S>(List<String> columnas, Function<S, Object[]> fila) {
+    }
+
+    /**
+     * Una columna que no está en {@code columnas} ni en {@code comunes} es nula en todas las filas.
+     */
+    record Pagina(List<String> columnas, Map<String, Object> comunes, List<Object[]> filas, Integer total,
+                  String moneda, String siguienteCursor) {
+
+        static <S> Pagina of(PageCursor.Page<S> page, Vista<S> vista, Integer total, String moneda) {
+            List<Object[]> filas = new ArrayList<>(page.items().size());
+            for (S item : page.items()) {
+                filas.add(vista.fila().apply(item));
+            }
+            List<String> columnas = vista.columnas();
+            if (filas.size() < 2) {
+                return new Pagina(columnas, null, filas, total, moneda, page.nextCursor());
+            }
+
+            Map<String, Object> comunes = new LinkedHashMap<>();
+            int[] variables = new int[columnas.size()];
+            int quedan = 0;
+            variables[quedan++] = 0;
+            for (int c = 1; c < columnas.size(); c++) {
+                if (!constante(filas, c)) {
+                    variables[quedan++] = c;
+                } else if (filas.get(0)[c] != null) {
+                    comunes.put(columnas.get(c), filas.get(0)[c]);
+                }
+            }
+            if (quedan == columnas.size()) {
+                return new Pagina(columnas, null, filas, total, moneda, page.nextCursor());
+            }
+
+            List<String> visibles = new ArrayList<>(quedan);
+            for (int i = 0; i < quedan; i++) {
+                visibles.add(columnas.get(variables[i]));
+            }
+            filas.replaceAll(fila -> {
+                Object[] reducida = new Object[visibles.size()];
+                for (int i = 0; i < reducida.length; i++) {
+                    reducida[i] = fila[variables[i]];
+                }
+                return reducida;
+            });
+            return new Pagina(visibles, comunes.isEmpty() ? null : comunes, filas, total, moneda, page.nextCursor());
+        }
+
+        private static boolean constante(List<Object[]> filas, int columna) {
+            Object primero = filas.get(0)[columna];
+            for (int i = 1; i < filas.size(); i++) {
+                if (!Objects.equals(primero, filas.get(i)[columna])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Las fechas van como texto ISO: es lo mismo que produciría el módulo de java.time, sin su coste por fila
+    private static String textoFecha(LocalDate date) {
+        return date != null ? date.toString() : null;
+    }
+
+    private static String nombreCategoria(TransactionCategory category) {
+        return category != null ? category.getCategoryName() : null;
+    }
+}
@@ -0,0 +1,71 @@
+package com.punto.de.venta.mcp.tools;
+
+import com.punto.de.venta.mcp.operation.OperationHandle;
+import com.punto.de.venta.mcp.operation.OperationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+@Service
+@Slf4j
+public class OperationTools {
+
+    private final OperationRegistry operationRegistry;
+
+    public OperationTools(OperationRegistry operationRegistry) {
+        this.operationRegistry = operationRegistry;
+    }
+
+    @Tool(name = "cancelarOperacion", description = "Cancela una operación larga en curso (categorización, agrupación o importación) usando el id que aparece en sus notificaciones de avance. Requiere el número de teléfono del usuario.")
+    public String cancelarOperacion(@ToolParam String numeroTelefono, @ToolParam String operacionId) {
+        log.info("Cancelando operación {} para usuario: {}", operacionId, numeroTelefono);
+
+        if (numeroTelefono == null || numeroTelefono.trim().isEmpty()) {
+            return "Error: El número de teléfono no puede estar vacío";
+        }
+        if (operacionId == null || operacionId.trim().isEmpty()) {
+            return "Error: El id de la operación no puede estar vacío";
+        }
+
+        if (!operationRegistry.cancel(operacionId.trim(), numeroTelefono)) {
+            return "Error: No hay una operación en curso con id " + operacionId + " para este usuario";
+        }
+        return "Operación " + operacionId.trim() + " cancelada. Las llamadas pendientes ya no se realizarán";
+    }
+
+    @Tool(name = "listarOperacionesEnCurso", description = "Lista las operaciones en curso de un usuario con su último avance. Requiere el número de teléfono del usuario.")
+    public String listarOperacionesEnCurso(@ToolParam String numeroTelefono) {
+        log.info("Listando operaciones en curso para usuario: {}", numeroTelefono);
+
+        if (numeroTelefono == null || numeroTelefono.trim().isEmpty()) {
+            return "Error: El número de teléfono no puede estar vacío";
+        }
+
+        List<OperationHandle> operations = operationRegistry.runningFor(numeroTelefono);
+        StringBuilder result = new StringBuilder();
+        for (OperationHandle operation : operations) {
+            // La propia consulta también está registrada como operación
+            if (operation == OperationHandle.current()) {
+                continue;
+            }
+            result.append("- ").append(operation.getId()).append(": ").append(operation.getToolName())
+                .append(" (").append(Duration.between(operation.getStartedAt(), Instant.now()).toSeconds()).append(" s)");
+            if (operation.getLastProgress() != null) {
+                result.append(" - ").append(operation.getLastProgress());
+            }
+            if (operation.isCancelled()) {
+                result.append(" [cancelando]");
+            }
+            result.append('\n');
+        }
+        if (result.length() == 0) {
+            return "No hay operaciones en curso";
+        }
+        return "Operaciones en curso:\n" + result;
+    }
+}
@@ -1,15 +1,23 @@
 package com.punto.de.venta.mcp.tools;
 
+import com.punto.de.venta.mcp.categorization.CategorizationEngine;
+import com.punto.de.venta.mcp.categorization.CategoryRule;
+import com.punto.de.venta.mcp.categorization.KeywordAutomaton;
 import com.punto.de.venta.mcp.model.Transaction;
 import com.punto.de.venta.mcp.model.TransactionCategory;
+import com.punto.de.venta.mcp.model.TransactionUpdateResult;
 import com.punto.de.venta.mcp.model.RecurringTransaction;
 import com.punto.de.venta.mcp.model.User;
 import com.punto.de.venta.mcp.model.Loan;
+import com.punto.de.venta.mcp.operation.OperationHandle;
 import com.punto.de.venta.mcp.service.TransactionService;
 import com.punto.de.venta.mcp.service.TransactionCategoryService;
 import com.punto.de.venta.mcp.service.RecurringTransactionService;
 import com.punto.de.venta.mcp.service.UserService;
 import com.punto.de.venta.mcp.service.LoanService;
+import com.punto.de.venta.mcp.subscription.DetectedSubscription;
+import com.punto.de.venta.mcp.subscription.SubscriptionDetector;
+import com.punto.de.venta.mcp.text.TextNormalizer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
@@ -17,11 +25,13 @@ import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Map;
 import java.util.stream.Collectors;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 
 @Service
 @Slf4j
@@ -32,13 +42,18 @@ public class OptimizationTools {
     private final RecurringTransactionService recurringTransactionService;
     private final UserService userService;
     private final LoanService loanService;
+    private final SubscriptionDetector subscriptionDetector;
+    private final CategorizationEngine categorizationEngine;
     
-    public OptimizationTools(TransactionService transactionService, TransactionCategoryService transactionCategoryService, RecurringTransactionService recurringTransactionService, UserService userService, LoanService loanService) {
+    public OptimizationTools(TransactionService transactionService, TransactionCategoryService transactionCategoryService, RecurringTransactionService recurringTransactionService, UserService userService, LoanService loanService,
+                             SubscriptionDetector subscriptionDetector, CategorizationEngine categorizationEngine) {
         this.transactionService = transactionService;
         this.transactionCategoryService = transactionCategoryService;
         this.recurringTransactionService = recurringTransactionService;
         this.userService = userService;
         this.loanService = loanService;
+        this.subscriptionDetector = subscriptionDetector;
+        this.categorizationEngine = categorizationEngine;
     }
     
     @Tool(name = "mergeSimilarTransactions", description = "Agrupa gastos similares para mejor visualización. Requiere el número de teléfono del usuario y palabras clave para agrupar.")
@@ -94,28 +109,38 @@ public class OptimizationTools {
                 return "No se encontraron transacciones que coincidan con las palabras clave: " + palabrasClave;
             }
             
-            // Actualizar categorías
-            int actualizadas = 0;
-            BigDecimal totalAgrupado = BigDecimal.ZERO;
-            
+            // Actualizar categorías en bloque
+            OperationHandle.current().throwIfCancelled();
             for (Transaction transaction : transaccionesSimilares) {
                 transaction.setTransactionCategory(category);
-                transactionService.updateTransaction(transaction.getId(), transaction);
-                actualizadas++;
-                totalAgrupado = totalAgrupado.add(transaction.getAmount());
+            }
+            List<TransactionUpdateResult> resultados = transactionService.updateTransactions(transaccionesSimilares);
+            
+            int actualizadas = 0;
+            BigDecimal totalAgrupado = BigDecimal.ZERO;
+            List<TransactionUpdateResult> fallidas = new ArrayList<>();
+            for (int i = 0; i < resultados.size(); i++) {
+                if (resultados.get(i).isSuccess()) {
+                    actualizadas++;
+                    totalAgrupado = totalAgrupado.add(transaccionesSimilares.get(i).getAmount());
+                } else {
+                    fallidas.add(resultados.get(i));
+                }
             }
             
-            return String.format("Se agruparon %d transacciones bajo la categoría '%s'\n" +
+            StringBuilder result = new StringBuilder(String.format("Se agruparon %d transacciones bajo la categoría '%s'\n" +
                 "Total agrupado: %s %s\n" +
                 "Palabras clave utilizadas: %s", 
-                actualizadas, nuevaCategoria, totalAgrupado, user.getCurrency(), palabrasClave);
+                actualizadas, nuevaCategoria, totalAgrupado, user.getCurrency(), palabrasClave));
+            appendFallidas(result, fallidas);
+            return result.toString();
         } catch (Exception e) {
             log.error("Error al agrupar transacciones similares", e);
             return "Error al agrupar las transacciones: " + e.getMessage();
         }
     }
     
-    @Tool(name = "analyzeSubscriptions", description = "Detecta gastos recurrentes y suscripciones innecesarias. Requiere el número de teléfono del usuario.")
+    @Tool(name = "analyzeSubscriptions", description = "Detecta gastos recurrentes y suscripciones innecesarias, incluidas las que el usuario no registró y aparecen como cargos periódicos en sus movimientos. Requiere el número de teléfono del usuario.")
     public String analyzeSubscriptions(@ToolParam String numeroTelefono) {
         log.info("Analizando suscripciones para usuario: {}", numeroTelefono);
         
@@ -135,8 +160,18 @@ public class OptimizationTools {
             List<RecurringTransaction> gastosRecurrentes = recurringTransactionService.getRecurringTransactionsByUserIdAndType(
                 user.getId(), "EXPENSE");
             
-            if (gastosRecurrentes.isEmpty()) {
-                return "No tienes gastos recurrentes registrados";
+            // Cargos periódicos en el historial que no corresponden a ninguna recurrencia registrada
+            Set<String> declaradas = new HashSet<>();
+            for (RecurringTransaction recurrente : gastosRecurrentes) {
+                declaradas.add(TextNormalizer.merchantKey(recurrente.getDescription()));
+            }
+            List<DetectedSubscription> noDeclaradas = subscriptionDetector
+                .detect(transactionService.getTransactionsByUserId(user.getId()), LocalDate.now()).stream()
+                .filter(d -> !d.vinculada() && !esDeclarada(d.clave(), declaradas))
+                .toList();
+            
+            if (gastosRecurrentes.isEmpty() && noDeclaradas.isEmpty()) {
+                return "No tienes gastos recurrentes registrados ni se detectaron cargos periódicos en tus movimientos";
             }
             
             // Agrupar por categoría
@@ -167,6 +202,25 @@ public class OptimizationTools {
                 result.append("\n");
             }
             
+            int activasNoDeclaradas = 0;
+            if (!noDeclaradas.isEmpty()) {
+                result.append("🔎 Cargos periódicos no registrados:\n");
+                for (DetectedSubscription detectada : noDeclaradas) {
+                    if (detectada.activa()) {
+                        activasNoDeclaradas++;
+                        totalMensual = totalMensual.add(detectada.montoMensual());
+                        result.append(String.format("  • %s: %s %s %s (%d cargos desde %s, próximo ~%s)\n",
+                            detectada.comercio(), detectada.monto(), user.getCurrency(), detectada.periodicidad().getEtiqueta(),
+                            detectada.cargos(), detectada.primerCargo(), detectada.proximoCargo()));
+                    } else {
+                        result.append(String.format("  • %s: %s %s %s, sin cargos desde %s (posiblemente cancelada)\n",
+                            detectada.comercio(), detectada.monto(), user.getCurrency(), detectada.periodicidad().getEtiqueta(),
+                            detectada.ultimoCargo()));
+                    }
+                }
+                result.append("\n");
+            }
+            
             result.append(String.format("💰 Total mensual en suscripciones: %s %s\n", totalMensual, user.getCurrency()));
             result.append(String.format("💰 Total anual en suscripciones: %s %s\n\n", 
                 totalMensual.multiply(BigDecimal.valueOf(12)), user.getCurrency()));
@@ -185,6 +239,10 @@ public class OptimizationTools {
             } else {
                 result.append("✅ Tus suscripciones están bien controladas\n");
             }
+            if (activasNoDeclaradas > 0) {
+                result.append(String.format("• Tienes %d suscripciones activas sin registrar: regístralas como gasto recurrente para incluirlas en tus proyecciones\n",
+                    activasNoDeclaradas));
+            }
             
             return result.toString();
         } catch (Exception e) {
@@ -225,69 +283,53 @@ public class OptimizationTools {
                 return "No hay transacciones pendientes de categorización automática";
             }
             
-            // Reglas de categorización automática
-            Map<String, String> reglasCategorizacion = new HashMap<>();
-            reglasCategorizacion.put("uber", "Transporte");
-            reglasCategorizacion.put("didi", "Transporte");
-            reglasCategorizacion.put("taxi", "Transporte");
-            reglasCategorizacion.put("gasolina", "Transporte");
-            reglasCategorizacion.put("estacionamiento", "Transporte");
-            reglasCategorizacion.put("netflix", "Entretenimiento");
-            reglasCategorizacion.put("spotify", "Entretenimiento");
-            reglasCategorizacion.put("youtube", "Entretenimiento");
-            reglasCategorizacion.put("amazon", "Compras");
-            reglasCategorizacion.put("walmart", "Compras");
-            reglasCategorizacion.put("soriana", "Compras");
-            reglasCategorizacion.put("restaurante", "Comida");
-            reglasCategorizacion.put("cafe", "Comida");
-            reglasCategorizacion.put("starbucks", "Comida");
-            reglasCategorizacion.put("mcdonalds", "Comida");
-            reglasCategorizacion.put("banco", "Servicios");
-            reglasCategorizacion.put("electricidad", "Servicios");
-            reglasCategorizacion.put("agua", "Servicios");
-            reglasCategorizacion.put("internet", "Servicios");
-            reglasCategorizacion.put("telefono", "Servicios");
-            reglasCategorizacion.put("farmacia", "Salud");
-            reglasCategorizacion.put("medico", "Salud");
-            reglasCategorizacion.put("hospital", "Salud");
+            // Autómata compilado con las reglas globales y las del usuario
+            KeywordAutomaton reglas = categorizationEngine.automaton(user.getId());
             
-            int categorizadas = 0;
             StringBuilder result = new StringBuilder();
             result.append("🤖 CATEGORIZACIÓN AUTOMÁTICA\n");
             result.append("==========================\n\n");
             
+            OperationHandle operacion = OperationHandle.current();
+            List<Transaction> porActualizar = new ArrayList<>();
+            int revisadas = 0;
             for (Transaction transaction : transaccionesSinCategoria) {
-                String descripcion = transaction.getDescription().toLowerCase();
-                String nombreCategoriaAsignada = null;
-                
-                // Buscar coincidencias en las reglas
-                for (Map.Entry<String, String> regla : reglasCategorizacion.entrySet()) {
-                    if (descripcion.contains(regla.getKey())) {
-                        nombreCategoriaAsignada = regla.getValue();
-                        break;
-                    }
-                }
+                operacion.throwIfCancelled();
+                operacion.progress(++revisadas, transaccionesSinCategoria.size(), "transacciones revisadas");
+                CategoryRule regla = reglas.match(transaction.getDescription());
+                String nombreCategoriaAsignada = regla != null ? regla.categoria() : null;
                 
                 if (nombreCategoriaAsignada != null) {
                     // Obtener o crear categoría
                     TransactionCategory category = getCategoryByName(nombreCategoriaAsignada, user.getId());
                     if (category != null) {
                         transaction.setTransactionCategory(category);
-                        transactionService.updateTransaction(transaction.getId(), transaction);
-                        categorizadas++;
-                        
-                        result.append(String.format("✅ %s → %s\n", 
-                            transaction.getDescription(), nombreCategoriaAsignada));
+                        porActualizar.add(transaction);
                     }
                 }
             }
             
+            int categorizadas = 0;
+            List<TransactionUpdateResult> fallidas = new ArrayList<>();
+            List<TransactionUpdateResult> resultados = transactionService.updateTransactions(porActualizar);
+            for (int i = 0; i < resultados.size(); i++) {
+                Transaction transaction = porActualizar.get(i);
+                if (resultados.get(i).isSuccess()) {
+                    categorizadas++;
+                    result.append(String.format("✅ %s → %s\n", 
+                        transaction.getDescription(), transaction.getTransactionCategory().getCategoryName()));
+                } else {
+                    fallidas.add(resultados.get(i));
+                }
+            }
+            
             result.append(String.format("\n📊 Resumen: %d de %d transacciones categorizadas automáticamente", 
                 categorizadas, transaccionesSinCategoria.size()));
             
             if (categorizadas < transaccionesSinCategoria.size()) {
                 result.append("\n💡 Las transacciones no categorizadas pueden ser revisadas manualmente");
             }
+            appendFallidas(result, fallidas);
             
             return result.toString();
         } catch (Exception e) {
@@ -296,6 +338,105 @@ public class OptimizationTools {
         }
     }
     
+    @Tool(name = "agregarReglaCategorizacion", description = "Agrega o reemplaza una regla propia de categorización automática: los gastos cuya descripción contenga la palabra clave irán a la categoría indicada. Las reglas del usuario tienen preferencia sobre las generales. Requiere el número de teléfono del usuario, la palabra clave y la categoría; opcionalmente una prioridad (mayor gana).")
+    public String agregarReglaCategorizacion(@ToolParam String numeroTelefono, @ToolParam String palabraClave,
+                                             @ToolParam String categoria, @ToolParam(required = false) Integer prioridad) {
+        log.info("Agregando regla de categorización para usuario: {} - {} → {}", numeroTelefono, palabraClave, categoria);
+        
+        if (numeroTelefono == null || numeroTelefono.trim().isEmpty()) {
+            return "Error: El número de teléfono no puede estar vacío";
+        }
+        
+        if (palabraClave == null || TextNormalizer.fold(palabraClave).isEmpty()) {
+            return "Error: La palabra clave debe tener al menos una letra o número";
+        }
+        
+        if (categoria == null || categoria.trim().isEmpty()) {
+            return "Error: La categoría no puede estar vacía";
+        }
+        
+        try {
+            Optional<User> userOpt = userService.getUserByPhone(numeroTelefono.trim());
+            if (userOpt.isEmpty()) {
+                return "Error: No se encontró usuario con el número de teléfono: " + numeroTelefono;
+            }
+            
+            User user = userOpt.get();
+            CategoryRule regla = new CategoryRule(palabraClave.trim(), categoria.trim(), prioridad != null ? prioridad : 0);
+            categorizationEngine.addUserRule(user.getId(), regla);
+            return String.format("Regla guardada: los gastos que contengan \"%s\" se categorizarán como %s (prioridad %d)",
+                regla.palabra(), regla.categoria(), regla.prioridad());
+        } catch (Exception e) {
+            log.error("Error al agregar regla de categorización", e);
+            return "Error al agregar la regla de categorización: " + e.getMessage();
+        }
+    }
+    
+    @Tool(name = "eliminarReglaCategorizacion", description = "Elimina una regla propia de categorización automática. Requiere el número de teléfono del usuario y la palabra clave de la regla.")
+    public String eliminarReglaCategorizacion(@ToolParam String numeroTelefono, @ToolParam String palabraClave) {
+        log.info("Eliminando regla de categorización para usuario: {} - {}", numeroTelefono, palabraClave);
+        
+        if (numeroTelefono == null || numeroTelefono.trim().isEmpty()) {
+            return "Error: El número de teléfono no puede estar vacío";
+        }
+        
+        if (palabraClave == null || palabraClave.trim().isEmpty()) {
+            return "Error: La palabra clave no puede estar vacía";
+        }
+        
+        try {
+            Optional<User> userOpt = userService.getUserByPhone(numeroTelefono.trim());
+            if (userOpt.isEmpty()) {
+                return "Error: No se encontró usuario con el número de teléfono: " + numeroTelefono;
+            }
+            
+            if (!categorizationEngine.removeUserRule(userOpt.get().getId(), palabraClave)) {
+                return "No tienes una regla con la palabra clave: " + palabraClave.trim();
+            }
+            return "Regla eliminada: " + palabraClave.trim();
+        } catch (Exception e) {
+            log.error("Error al eliminar regla de categorización", e);
+            return "Error al eliminar la regla de categorización: " + e.getMessage();
+        }
+    }
+    
+    @Tool(name = "listarReglasCategorizacion", description = "Lista las reglas de categorización automática: las propias del usuario y las generales. Requiere el número de teléfono del usuario.")
+    public String listarReglasCategorizacion(@ToolParam String numeroTelefono) {
+        log.info("Listando reglas de categorización para usuario: {}", numeroTelefono);
+        
+        if (numeroTelefono == null || numeroTelefono.trim().isEmpty()) {
+            return "Error: El número de teléfono no puede estar vacío";
+        }
+        
+        try {
+            Optional<User> userOpt = userService.getUserByPhone(numeroTelefono.trim());
+            if (userOpt.isEmpty()) {
+                return "Error: No se encontró usuario con el número de teléfono: " + numeroTelefono;
+            }
+            
+            List<CategoryRule> propias = categorizationEngine.userRules(userOpt.get().getId());
+            StringBuilder result = new StringBuilder();
+            if (propias.isEmpty()) {
+                result.append("No tienes reglas propias de categorización\n");
+            } else {
+                result.append(String.format("Tus reglas (%d, tienen preferencia):\n", propias.size()));
+                for (CategoryRule regla : propias) {
+                    result.append(String.format("- \"%s\" → %s (prioridad %d)\n", regla.palabra(), regla.categoria(), regla.prioridad()));
+                }
+            }
+            
+            List<CategoryRule> generales = categorizationEngine.globalRules();
+            result.append(String.format("\nReglas generales (%d):\n", generales.size()));
+            for (CategoryRule regla : generales) {
+                result.append(String.format("- \"%s\" → %s (prioridad %d)\n", regla.palabra(), regla.categoria(), regla.prioridad()));
+            }
+            return result.toString();
+        } catch (Exception e) {
+            log.error("Error al listar reglas de categorización", e);
+            return "Error al listar las reglas de categorización: " + e.getMessage();
+        }
+    }
+    
     @Tool(name = "optimizeLoanPayments", description = "Recomienda refinanciar si se detectan mejores tasas. Requiere el número de teléfono del usuario.")
     public String optimizeLoanPayments(@ToolParam String numeroTelefono, @ToolParam BigDecimal tasaReferencia) {
         log.info("Optimizando pagos de préstamos para usuario: {} - Tasa referencia: {}", numeroTelefono, tasaReferencia);
@@ -370,6 +511,16 @@ public class OptimizationTools {
         }
     }
     
+    private void appendFallidas(StringBuilder result, List<TransactionUpdateResult> fallidas) {
+        if (fallidas.isEmpty()) {
+            return;
+        }
+        result.append(String.format("\n⚠️ %d transacciones no se pudieron actualizar:\n", fallidas.size()));
+        for (TransactionUpdateResult fallida : fallidas) {
+            result.append(String.format("- ID %d: %s\n", fallida.getId(), fallida.getError()));
+        }
+    }
+    
     private TransactionCategory getCategoryByName(String nombreCategoria, Long userId) {
         if (nombreCategoria == null || nombreCategoria.trim().isEmpty()) {
             nombreCategoria = "General";
@@ -419,6 +570,19 @@ public class OptimizationTools {
         }
     }
     
+    /**
+     * Un cargo detectado está declarado si su comercio coincide con el de alguna recurrencia
+     * registrada, o uno contiene al otro ("netflix" y "netflix premium").
+     */
+    private static boolean esDeclarada(String clave, Set<String> declaradas) {
+        for (String declarada : declaradas) {
+            if (!declarada.isEmpty() && (clave.equals(declarada) || clave.contains(declarada) || declarada.contains(clave))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
     private BigDecimal calcularMontoMensual(RecurringTransaction transaction) {
         BigDecimal monto = transaction.getAmount();
         String frecuencia = transaction.getFrequency();
@@ -0,0 +1,157 @@
+package com.punto.de.venta.mcp.tools;
+
+import com.punto.de.venta.mcp.output.ResultBudget;
+import com.punto.de.venta.mcp.output.ToolOutput;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Cursores opacos para las tools de listado. El cursor guarda la clave de la última fila
+ * devuelta (paginación por keyset, estable aunque se inserten filas) y una huella de los
+ * filtros de la consulta, para rechazar cursores usados con otros parámetros.
+ */
+final class PageCursor {
+
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 200;
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * Estimación conservadora de lo que ocupa una fila en texto, para ajustar la página a {@code maxCaracteres}.
+     */
+    private static final int CHARS_PER_ROW = 120;
+
+    private PageCursor() {
+    }
+
+    record Page<T>(List<T> items, String nextCursor) {
+
+        boolean hasMore() {
+            return nextCursor != null;
+        }
+    }
+
+    /**
+     * Tamaño de página pedido, acotado además por el presupuesto de la invocación para no
+     * leer filas que no se van a mostrar.
+     */
+    static int pageSize(Integer requested) {
+        int size = requested == null || requested <= 0 ? DEFAULT_PAGE_SIZE : Math.min(requested, MAX_PAGE_SIZE);
+        ResultBudget budget = ToolOutput.budget();
+        if (budget.maxCaracteres() > 0) {
+            size = Math.min(size, Math.max(1, budget.maxCaracteres() / CHARS_PER_ROW));
+        }
+        return budget.elementos(size);
+    }
+
+    static String scope(String toolName, Object... filters) {
+        StringBuilder raw = new StringBuilder(toolName);
+        for (Object filter : filters) {
+            raw.append('\u0000').append(filter != null ? filter.toString().trim().toUpperCase() : "");
+        }
+        return Integer.toHexString(raw.toString().hashCode());
+    }
+
+    /**
+     * Devuelve la clave guardada en el cursor, o {@code null} si no se pidió cursor.
+     * Lanza {@link IllegalArgumentException} si el cursor no es válido para esta consulta.
+     */
+    static String[] decode(String cursor, String scope) {
+        if (cursor == null || cursor.trim().isEmpty()) {
+            return null;
+        }
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+        String[] parts = raw.split("\\" + SEPARATOR, -1);
+        if (parts.length < 2 || !parts[0].equals(scope)) {
+            throw new IllegalArgumentException("El cursor no corresponde a esta consulta");
+        }
+        String[] key = new String[parts.length - 1];
+        System.arraycopy(parts, 1, key, 0, key.length);
+        return key;
+    }
+
+    static String encode(String scope, String... key) {
+        String raw = scope + SEPARATOR + String.join(SEPARATOR, key);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Arma la página a partir de hasta {@code size + 1} filas ya ordenadas: la fila extra
+     * solo indica que hay más y no se devuelve.
+     */
+    static <T> Page<T> fromLookahead(List<T> rows, int size, String scope, Function<T, String[]> keyOf) {
+        if (rows.size() <= size) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = rows.subList(0, size);
+        return new Page<>(items, encode(scope, keyOf.apply(items.get(size - 1))));
+    }
+
+    /**
+     * Deja solo las primeras {@code count} filas de la página, con el cursor en la última que
+     * queda, cuando el texto no admite más. Las omitidas salen en la página siguiente.
+     */
+    static <T> Page<T> limit(Page<T> page, int count, String scope, Function<T, String[]> keyOf) {
+        if (count >= page.items().size() || count <= 0) {
+            return page;
+        }
+        List<T> items = page.items().subList(0, count);
+        return new Page<>(items, encode(scope, keyOf.apply(items.get(count - 1))));
+    }
+
+    /**
+     * Página de una lista completa ordenada por id, para las entidades que la API
+     * devuelve enteras y son pocas por usuario.
+     */
+    static <T> Page<T> byId(List<T> rows, Function<T, Long> idOf, String cursor, String scope, int size) {
+        String[] key = decode(cursor, scope);
+        Long afterId = key != null ? parseId(key[0]) : null;
+        List<T> sorted = new ArrayList<>(rows.size());
+        for (T row : rows) {
+            Long id = idOf.apply(row);
+            if (afterId == null || (id != null && id > afterId)) {
+                sorted.add(row);
+            }
+        }
+        sorted.sort(Comparator.comparing(idOf, Comparator.nullsFirst(Comparator.naturalOrder())));
+        List<T> window = sorted.subList(0, Math.min(sorted.size(), size + 1));
+        return fromLookahead(window, size, scope, row -> new String[]{Objects.toString(idOf.apply(row), "")});
+    }
+
+    static LocalDate parseDate(String value) {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+
+    static Long parseId(String value) {
+        try {
+            return value.isEmpty() ? Long.MIN_VALUE : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+
+    static void appendFooter(StringBuilder result, Page<?> page) {
+        if (page.hasMore()) {
+            result.append("\nHay más resultados. Para ver la siguiente página usa el cursor: ")
+                .append(page.nextCursor()).append('\n');
+        }
+    }
+}
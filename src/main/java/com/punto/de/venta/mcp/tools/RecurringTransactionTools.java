@@ -6,6 +6,7 @@ import com.punto.de.venta.mcp.model.User;
 import com.punto.de.venta.mcp.service.RecurringTransactionService;
 import com.punto.de.venta.mcp.service.TransactionCategoryService;
 import com.punto.de.venta.mcp.service.UserService;
+import com.punto.de.venta.mcp.output.ToolOutput;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
@@ -149,9 +150,10 @@ public class RecurringTransactionTools {
         }
     }
     
-    @Tool(name = "listarTransaccionesRecurrentes", description = "Lista las transacciones recurrentes de un usuario. Requiere número de teléfono y opcionalmente el tipo.")
-    public String listarTransaccionesRecurrentes(@ToolParam String numeroTelefono, @ToolParam String tipo) {
-        log.info("Listando transacciones recurrentes para usuario: {} tipo: {}", numeroTelefono, tipo);
+    @Tool(name = "listarTransaccionesRecurrentes", description = "Lista por páginas las transacciones recurrentes de un usuario. Requiere número de teléfono y opcionalmente el tipo, el tamaño de página y el cursor devuelto por la página anterior.")
+    public String listarTransaccionesRecurrentes(@ToolParam String numeroTelefono, @ToolParam String tipo,
+                                                 @ToolParam(required = false) String cursor, @ToolParam(required = false) Integer tamanoPagina) {
+        log.info("Listando transacciones recurrentes para usuario: {} tipo: {} (cursor: {})", numeroTelefono, tipo, cursor);
         
         if (numeroTelefono == null || numeroTelefono.trim().isEmpty()) {
             return "Error: El número de teléfono no puede estar vacío";
@@ -177,18 +179,31 @@ public class RecurringTransactionTools {
                 return "No se encontraron transacciones recurrentes";
             }
             
+            String scope = PageCursor.scope("listarTransaccionesRecurrentes", user.getId(), tipo);
+            PageCursor.Page<RecurringTransaction> page = PageCursor.byId(transactions, RecurringTransaction::getId, cursor, scope,
+                PageCursor.pageSize(tamanoPagina));
+            if (ToolOutput.isJson()) {
+                return ToolOutput.structured(JsonViews.Pagina.of(page, JsonViews.RECURRENTE, transactions.size(), user.getCurrency()));
+            }
+            if (page.items().isEmpty()) {
+                return "No hay más transacciones recurrentes";
+            }
+            
             StringBuilder result = new StringBuilder();
-            result.append("Transacciones recurrentes encontradas:\n");
+            result.append(String.format("Transacciones recurrentes encontradas (%d en total):\n", transactions.size()));
             
-            for (RecurringTransaction transaction : transactions) {
+            for (RecurringTransaction transaction : page.items()) {
                 result.append(String.format("- %s: %s (%s) - %s %s cada %s\n", 
                     transaction.getType(), transaction.getDescription(), 
                     transaction.getTransactionCategory() != null ? transaction.getTransactionCategory().getCategoryName() : "Sin categoría", 
                     transaction.getAmount(), user.getCurrency(), 
                     transaction.getFrequency()));
             }
+            PageCursor.appendFooter(result, page);
             
             return result.toString();
+        } catch (IllegalArgumentException e) {
+            return "Error: " + e.getMessage();
         } catch (Exception e) {
             log.error("Error al listar transacciones recurrentes", e);
             return "Error al listar las transacciones recurrentes: " + e.getMessage();
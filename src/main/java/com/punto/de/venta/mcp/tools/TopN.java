@@ -0,0 +1,63 @@
+package com.punto.de.venta.mcp.tools;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * Acumulador de una sola pasada: conserva los {@code n} mayores elementos según {@code orden}
+ * en un heap acotado y lleva el conteo y la suma de todos, para que la tool muestre los
+ * primeros y resuma el resto sin ordenar ni guardar la lista completa.
+ */
+final class TopN<T> {
+
+    private final int n;
+    private final Comparator<T> orden;
+    private final Function<T, BigDecimal> monto;
+    private final PriorityQueue<T> mejores;
+    private int total;
+    private BigDecimal sumaTotal = BigDecimal.ZERO;
+
+    TopN(int n, Comparator<T> orden, Function<T, BigDecimal> monto) {
+        this.n = Math.max(0, n);
+        this.orden = orden;
+        this.monto = monto;
+        this.mejores = new PriorityQueue<>(Math.max(1, Math.min(this.n, 1024)), orden);
+    }
+
+    void add(T item) {
+        total++;
+        sumaTotal = sumaTotal.add(monto(item));
+        if (mejores.size() < n) {
+            mejores.add(item);
+        } else if (n > 0 && orden.compare(item, mejores.peek()) > 0) {
+            mejores.poll();
+            mejores.add(item);
+        }
+    }
+
+    /**
+     * Los elementos conservados, del mayor al menor.
+     */
+    List<T> mejores() {
+        List<T> result = new ArrayList<>(mejores);
+        result.sort(orden.reversed());
+        return result;
+    }
+
+    int total() {
+        return total;
+    }
+
+    BigDecimal sumaTotal() {
+        return sumaTotal;
+    }
+
+    BigDecimal monto(T item) {
+        BigDecimal value = monto.apply(item);
+        return value != null ? value : BigDecimal.ZERO;
+    }
+}
@@ -1,11 +1,16 @@
 package com.punto.de.venta.mcp.tools;
 
+import com.punto.de.venta.mcp.anomaly.SpendingAnomaly;
+import com.punto.de.venta.mcp.anomaly.SpendingAnomalyDetector;
 import com.punto.de.venta.mcp.model.Transaction;
 import com.punto.de.venta.mcp.model.TransactionCategory;
 import com.punto.de.venta.mcp.model.User;
+import com.punto.de.venta.mcp.service.IdempotencyGuard;
 import com.punto.de.venta.mcp.service.TransactionService;
 import com.punto.de.venta.mcp.service.TransactionCategoryService;
 import com.punto.de.venta.mcp.service.UserService;
+import com.punto.de.venta.mcp.output.ResultBudget;
+import com.punto.de.venta.mcp.output.ToolOutput;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
@@ -16,6 +21,7 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 @Service
 @Slf4j
@@ -24,17 +30,28 @@ public class TransactionTools {
     private final TransactionService transactionService;
     private final TransactionCategoryService transactionCategoryService;
     private final UserService userService;
+    private final IdempotencyGuard idempotencyGuard;
+    private final SpendingAnomalyDetector anomalyDetector;
     
-    public TransactionTools(TransactionService transactionService, TransactionCategoryService transactionCategoryService, UserService userService) {
+    public TransactionTools(TransactionService transactionService, TransactionCategoryService transactionCategoryService, UserService userService, IdempotencyGuard idempotencyGuard,
+                            SpendingAnomalyDetector anomalyDetector) {
         this.transactionService = transactionService;
         this.transactionCategoryService = transactionCategoryService;
         this.userService = userService;
+        this.idempotencyGuard = idempotencyGuard;
+        this.anomalyDetector = anomalyDetector;
     }
     
     @Tool(name = "registrarGasto", description = "Registra un gasto único con descripción, monto y fecha. Requiere el número de teléfono del usuario.")
     public String registrarGasto(@ToolParam String numeroTelefono, @ToolParam String descripcion, 
                                 @ToolParam BigDecimal monto, @ToolParam String fecha, 
                                 @ToolParam String categoria) {
+        return idempotencyGuard.execute("registrarGasto", numeroTelefono,
+            () -> procesarGasto(numeroTelefono, descripcion, monto, fecha, categoria),
+            descripcion, monto, fecha, categoria);
+    }
+    
+    private String procesarGasto(String numeroTelefono, String descripcion, BigDecimal monto, String fecha, String categoria) {
         log.info("Registrando gasto para usuario: {} - Descripción: {}, Monto: {}, Fecha: {}", 
                 numeroTelefono, descripcion, monto, fecha);
         
@@ -76,9 +93,12 @@ public class TransactionTools {
             transaction.setSource("MANUAL");
             
             Transaction savedTransaction = transactionService.createTransaction(transaction);
+            Optional<SpendingAnomaly> inusual = anomalyDetector.observe(user, savedTransaction);
             return String.format("Gasto registrado exitosamente - ID: %s, Descripción: %s, Monto: %s %s, Fecha: %s", 
                 savedTransaction.getId(), savedTransaction.getDescription(), 
-                savedTransaction.getAmount(), user.getCurrency(), savedTransaction.getTransactionDate());
+                savedTransaction.getAmount(), user.getCurrency(), savedTransaction.getTransactionDate())
+                + inusual.map(a -> String.format("\nAviso: es un gasto inusual en %s (lo habitual es %s %s); se creó una alerta.",
+                    a.categoria(), a.media(), user.getCurrency())).orElse("");
         } catch (Exception e) {
             log.error("Error al registrar gasto", e);
             return "Error al registrar el gasto: " + e.getMessage();
@@ -89,6 +109,12 @@ public class TransactionTools {
     public String registrarIngreso(@ToolParam String numeroTelefono, @ToolParam String descripcion, 
                                   @ToolParam BigDecimal monto, @ToolParam String fecha, 
                                   @ToolParam String categoria) {
+        return idempotencyGuard.execute("registrarIngreso", numeroTelefono,
+            () -> procesarIngreso(numeroTelefono, descripcion, monto, fecha, categoria),
+            descripcion, monto, fecha, categoria);
+    }
+    
+    private String procesarIngreso(String numeroTelefono, String descripcion, BigDecimal monto, String fecha, String categoria) {
         log.info("Registrando ingreso para usuario: {} - Descripción: {}, Monto: {}, Fecha: {}", 
                 numeroTelefono, descripcion, monto, fecha);
         
@@ -139,10 +165,11 @@ public class TransactionTools {
         }
     }
     
-    @Tool(name = "listarTransacciones", description = "Lista las transacciones de un usuario en un rango de fechas. Requiere número de teléfono, fecha inicio y fecha fin.")
+    @Tool(name = "listarTransacciones", description = "Lista las transacciones de un usuario en un rango de fechas, por páginas. Requiere número de teléfono, fecha inicio y fecha fin. Opcionalmente el tipo, el tamaño de página y el cursor devuelto por la página anterior.")
     public String listarTransacciones(@ToolParam String numeroTelefono, @ToolParam String fechaInicio, 
-                                     @ToolParam String fechaFin, @ToolParam String tipo) {
-        log.info("Listando transacciones para usuario: {} en rango: {} - {}", numeroTelefono, fechaInicio, fechaFin);
+                                     @ToolParam String fechaFin, @ToolParam String tipo,
+                                     @ToolParam(required = false) String cursor, @ToolParam(required = false) Integer tamanoPagina) {
+        log.info("Listando transacciones para usuario: {} en rango: {} - {} (cursor: {})", numeroTelefono, fechaInicio, fechaFin, cursor);
         
         if (numeroTelefono == null || numeroTelefono.trim().isEmpty()) {
             return "Error: El número de teléfono no puede estar vacío";
@@ -159,28 +186,54 @@ public class TransactionTools {
             LocalDate startDate = parseDate(fechaInicio);
             LocalDate endDate = parseDate(fechaFin);
             
-            List<Transaction> transactions;
-            if (tipo != null && !tipo.trim().isEmpty()) {
-                transactions = transactionService.getTransactionsByUserIdAndType(user.getId(), tipo.trim().toUpperCase());
-            } else {
-                transactions = transactionService.getTransactionsByUserIdAndDateRange(user.getId(), startDate, endDate);
+            // El tipo se filtra sobre el rango de fechas, no en lugar de él
+            String tipoFiltro = tipo != null && !tipo.trim().isEmpty() ? tipo.trim().toUpperCase() : null;
+            int size = PageCursor.pageSize(tamanoPagina);
+            String scope = PageCursor.scope("listarTransacciones", user.getId(), startDate, endDate, tipoFiltro);
+            String[] after = PageCursor.decode(cursor, scope);
+            LocalDate afterDate = after != null ? PageCursor.parseDate(after[0]) : null;
+            Long afterId = after != null ? PageCursor.parseId(after[1]) : null;
+            
+            Function<Transaction, String[]> keyOf = t -> new String[]{t.getTransactionDate().toString(), String.valueOf(t.getId())};
+            PageCursor.Page<Transaction> page = PageCursor.fromLookahead(
+                transactionService.getTransactionsPage(user.getId(), startDate, endDate, tipoFiltro, afterDate, afterId, size),
+                size, scope, keyOf);
+            List<Transaction> transactions = page.items();
+            if (ToolOutput.isJson()) {
+                return ToolOutput.structured(JsonViews.Pagina.of(page, JsonViews.TRANSACCION, null, user.getCurrency()));
             }
             
             if (transactions.isEmpty()) {
-                return "No se encontraron transacciones en el rango de fechas especificado";
+                return after != null
+                    ? "No hay más transacciones en el rango de fechas especificado"
+                    : "No se encontraron transacciones en el rango de fechas especificado";
             }
             
             StringBuilder result = new StringBuilder();
             result.append("Transacciones encontradas:\n");
             
+            // Con maxCaracteres se corta en la última fila que cabe y el cursor continúa desde ahí
+            ResultBudget budget = ToolOutput.budget();
+            StringBuilder line = new StringBuilder();
+            int shown = 0;
             for (Transaction transaction : transactions) {
-                result.append(String.format("- %s: %s (%s) - %s %s\n", 
-                    transaction.getTransactionDate(), transaction.getDescription(), 
-                    transaction.getTransactionCategory() != null ? transaction.getTransactionCategory().getCategoryName() : "Sin categoría", 
-                    transaction.getAmount(), user.getCurrency()));
+                line.setLength(0);
+                line.append("- ").append(transaction.getTransactionDate())
+                    .append(": ").append(transaction.getDescription())
+                    .append(" (").append(transaction.getTransactionCategory() != null ? transaction.getTransactionCategory().getCategoryName() : "Sin categoría")
+                    .append(") - ").append(transaction.getAmount())
+                    .append(' ').append(user.getCurrency()).append('\n');
+                if (shown > 0 && !budget.cabe(result, line)) {
+                    break;
+                }
+                result.append(line);
+                shown++;
             }
+            PageCursor.appendFooter(result, PageCursor.limit(page, shown, scope, keyOf));
             
             return result.toString();
+        } catch (IllegalArgumentException e) {
+            return "Error: " + e.getMessage();
         } catch (Exception e) {
             log.error("Error al listar transacciones", e);
             return "Error al listar las transacciones: " + e.getMessage();
@@ -1,6 +1,8 @@
 package com.punto.de.venta.mcp.tools;
 
 import com.punto.de.venta.mcp.model.User;
+import com.punto.de.venta.mcp.output.OutputFormat;
+import com.punto.de.venta.mcp.output.OutputPreferences;
 import com.punto.de.venta.mcp.service.UserService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
@@ -14,9 +16,11 @@ import java.util.Optional;
 public class UserTools {
     
     private final UserService userService;
+    private final OutputPreferences outputPreferences;
     
-    public UserTools(UserService userService) {
+    public UserTools(UserService userService, OutputPreferences outputPreferences) {
         this.userService = userService;
+        this.outputPreferences = outputPreferences;
     }
     
     @Tool(name = "obtenerUsuarioPorTelefono", description = "Obtiene la información del usuario basándose en su número de teléfono. Útil para identificar al usuario antes de realizar operaciones financieras.")
@@ -163,4 +167,21 @@ public class UserTools {
             return "Error al crear el usuario: " + e.getMessage();
         }
     }
+    
+    @Tool(name = "configurarFormatoSalida", description = "Configura el formato de respuesta de las tools para un usuario: TEXTO (por defecto) o JSON compacto. Se aplica a las llamadas que no indiquen formatoSalida.")
+    public String configurarFormatoSalida(@ToolParam String numeroTelefono, @ToolParam String formato) {
+        log.info("Configurando formato de salida para usuario: {} - Formato: {}", numeroTelefono, formato);
+        
+        if (numeroTelefono == null || numeroTelefono.trim().isEmpty()) {
+            return "Error: El número de teléfono no puede estar vacío";
+        }
+        
+        OutputFormat outputFormat = OutputFormat.parse(formato);
+        if (outputFormat == null) {
+            return "Error: Formato no soportado: " + formato + ". Use TEXTO o JSON";
+        }
+        
+        outputPreferences.set(numeroTelefono, outputFormat);
+        return "Formato de salida configurado: " + outputFormat;
+    }
 }
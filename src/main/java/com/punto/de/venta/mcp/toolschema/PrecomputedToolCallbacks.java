@@ -0,0 +1,119 @@
+package com.punto.de.venta.mcp.toolschema;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.definition.DefaultToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+import org.springframework.ai.tool.method.MethodToolCallback;
+import org.springframework.ai.tool.support.ToolUtils;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Crea los callbacks de las tools a partir de las definiciones generadas en el build
+ * ({@link ToolDefinitionsGenerator}), sin volver a calcular los esquemas JSON. Si el archivo
+ * no existe (por ejemplo al arrancar desde el IDE) o no corresponde a una clase, esa clase
+ * se registra por reflexión como antes. Una definición corresponde si coinciden firma,
+ * nombre, descripción y la huella de los parámetros, para no anunciar un esquema viejo.
+ */
+@Component
+@Slf4j
+public class PrecomputedToolCallbacks {
+
+    static final String RESOURCE = "META-INF/mcp/tool-definitions.json";
+
+    private final Map<String, PrecomputedToolDefinition> definitions;
+    private int precomputed;
+    private int reflected;
+
+    @Autowired
+    public PrecomputedToolCallbacks(ObjectMapper objectMapper) {
+        this.definitions = load(objectMapper);
+    }
+
+    PrecomputedToolCallbacks(List<PrecomputedToolDefinition> definitions) {
+        this.definitions = new HashMap<>();
+        for (PrecomputedToolDefinition definition : definitions) {
+            this.definitions.put(definition.metodo(), definition);
+        }
+    }
+
+    public ToolCallback[] from(Object toolObject) {
+        Class<?> type = AopUtils.getTargetClass(toolObject);
+        List<ToolCallback> callbacks = new ArrayList<>();
+        for (Method method : type.getDeclaredMethods()) {
+            if (!method.isAnnotationPresent(Tool.class)) {
+                continue;
+            }
+            PrecomputedToolDefinition definition = definitions.get(PrecomputedToolDefinition.key(method));
+            if (definition == null || !matches(definition, method)) {
+                log.warn("Definiciones precalculadas desactualizadas para {}; se generan por reflexión", type.getSimpleName());
+                ToolCallback[] reflectedCallbacks = ToolCallbacks.from(toolObject);
+                reflected += reflectedCallbacks.length;
+                return reflectedCallbacks;
+            }
+            callbacks.add(MethodToolCallback.builder()
+                .toolDefinition(DefaultToolDefinition.builder()
+                    .name(definition.nombre())
+                    .description(definition.descripcion())
+                    .inputSchema(definition.esquema())
+                    .build())
+                .toolMetadata(ToolMetadata.from(method))
+                .toolMethod(method)
+                .toolObject(toolObject)
+                .toolCallResultConverter(ToolUtils.getToolCallResultConverter(method))
+                .build());
+        }
+        precomputed += callbacks.size();
+        return callbacks.toArray(new ToolCallback[0]);
+    }
+
+    public int getPrecomputed() {
+        return precomputed;
+    }
+
+    public int getReflected() {
+        return reflected;
+    }
+
+    /**
+     * Comprobación barata de que la definición corresponde a la versión compilada de la tool.
+     * Un archivo anterior a la huella no corresponde nunca.
+     */
+    private static boolean matches(PrecomputedToolDefinition definition, Method method) {
+        Tool tool = method.getAnnotation(Tool.class);
+        return (tool.name().isEmpty() || tool.name().equals(definition.nombre()))
+            && (tool.description().isEmpty() || tool.description().equals(definition.descripcion()))
+            && PrecomputedToolDefinition.huella(method).equals(definition.huella());
+    }
+
+    private static Map<String, PrecomputedToolDefinition> load(ObjectMapper objectMapper) {
+        Map<String, PrecomputedToolDefinition> byMethod = new HashMap<>();
+        try (InputStream in = PrecomputedToolCallbacks.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                log.info("No se encontró {}; las definiciones de tools se generan al arrancar", RESOURCE);
+                return byMethod;
+            }
+            List<PrecomputedToolDefinition> loaded = objectMapper.readValue(in, new TypeReference<List<PrecomputedToolDefinition>>() {});
+            for (PrecomputedToolDefinition definition : loaded) {
+                byMethod.put(definition.metodo(), definition);
+            }
+            log.info("Cargadas {} definiciones de tools generadas en el build", byMethod.size());
+        } catch (Exception e) {
+            log.warn("No se pudieron leer las definiciones de tools precalculadas: {}", e.getMessage());
+        }
+        return byMethod;
+    }
+}
@@ -0,0 +1,46 @@
+package com.punto.de.venta.mcp.toolschema;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.StringJoiner;
+
+/**
+ * Definición de una tool generada en el build. {@code metodo} identifica el método Java
+ * con su firma completa, así que cualquier cambio de parámetros invalida la entrada;
+ * {@code huella} cubre lo que cambia el esquema sin cambiar la firma.
+ */
+record PrecomputedToolDefinition(String metodo, String nombre, String descripcion, String esquema, String huella) {
+
+    static String key(Method method) {
+        StringJoiner parameters = new StringJoiner(",", "(", ")");
+        for (Class<?> type : method.getParameterTypes()) {
+            parameters.add(type.getName());
+        }
+        return method.getDeclaringClass().getName() + "#" + method.getName() + parameters;
+    }
+
+    /**
+     * SHA-256 de lo que determina el esquema de entrada: tipo genérico, nombre y anotaciones
+     * ({@code @ToolParam}, {@code @Nullable}...) de cada parámetro. Mucho más barato que
+     * generar el esquema y cambia si cambia una descripción o si un parámetro es obligatorio.
+     */
+    static String huella(Method method) {
+        StringBuilder raw = new StringBuilder();
+        for (Parameter parameter : method.getParameters()) {
+            raw.append(parameter.getParameterizedType().getTypeName()).append(' ')
+                .append(parameter.getName()).append(' ')
+                .append(Arrays.toString(parameter.getAnnotations())).append('\n');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(raw.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.punto.de.venta.mcp.toolschema;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.support.ToolDefinitions;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Genera durante el build las definiciones de todas las tools (nombre, descripción y esquema
+ * JSON de entrada) para que el servidor no tenga que calcularlas por reflexión al arrancar.
+ * La tarea {@code generateToolDefinitions} de Gradle lo ejecuta sobre las clases compiladas.
+ */
+public final class ToolDefinitionsGenerator {
+
+    static final String TOOLS_PACKAGE = "com.punto.de.venta.mcp.tools";
+
+    private ToolDefinitionsGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Uso: ToolDefinitionsGenerator <archivo de salida>");
+        }
+        List<PrecomputedToolDefinition> definitions = generate();
+        write(definitions, Path.of(args[0]));
+        System.out.printf("Generadas %d definiciones de tools en %s%n", definitions.size(), args[0]);
+    }
+
+    static List<PrecomputedToolDefinition> generate() throws ClassNotFoundException {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(Service.class));
+
+        List<PrecomputedToolDefinition> definitions = new ArrayList<>();
+        for (BeanDefinition candidate : scanner.findCandidateComponents(TOOLS_PACKAGE)) {
+            Class<?> type = Class.forName(candidate.getBeanClassName(), false, ToolDefinitionsGenerator.class.getClassLoader());
+            for (Method method : type.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(Tool.class)) {
+                    ToolDefinition definition = ToolDefinitions.from(method);
+                    definitions.add(new PrecomputedToolDefinition(PrecomputedToolDefinition.key(method),
+                        definition.name(), definition.description(), definition.inputSchema(),
+                        PrecomputedToolDefinition.huella(method)));
+                }
+            }
+        }
+        // Orden estable para que el archivo solo cambie cuando cambian las tools
+        definitions.sort(Comparator.comparing(PrecomputedToolDefinition::metodo));
+        return definitions;
+    }
+
+    private static void write(List<PrecomputedToolDefinition> definitions, Path output) throws IOException {
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output.toFile(), definitions);
+    }
+}
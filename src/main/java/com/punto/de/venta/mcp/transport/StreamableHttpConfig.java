@@ -0,0 +1,42 @@
+package com.punto.de.venta.mcp.transport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import java.util.List;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.DELETE;
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+
+@Configuration
+public class StreamableHttpConfig {
+
+    @Bean
+    public StreamableHttpTransport streamableHttpTransport(@Qualifier("findTools") List<ToolCallback> tools,
+                                                           ObjectMapper objectMapper,
+                                                           @Value("${spring.ai.mcp.server.name:pos-mcp-server}") String serverName,
+                                                           @Value("${spring.ai.mcp.server.version:0.0.1}") String serverVersion,
+                                                           @Value("${mcp.streamable-http.trusted-proxies:" + TrustedProxies.DEFAULT + "}") String trustedProxies) {
+        return new StreamableHttpTransport(tools, objectMapper, serverName, serverVersion, trustedProxies);
+    }
+
+    /**
+     * Sin sesiones no hay stream de servidor por GET ni sesión que cerrar con DELETE.
+     */
+    @Bean
+    public RouterFunction<ServerResponse> streamableHttpRoutes(StreamableHttpTransport transport,
+                                                               @Value("${mcp.streamable-http.endpoint:/mcp}") String endpoint) {
+        return RouterFunctions.route(POST(endpoint), transport::handle)
+            .andRoute(GET(endpoint), request -> ServerResponse.status(HttpStatus.METHOD_NOT_ALLOWED).header("Allow", "POST").build())
+            .andRoute(DELETE(endpoint), request -> ServerResponse.status(HttpStatus.METHOD_NOT_ALLOWED).header("Allow", "POST").build());
+    }
+}
@@ -0,0 +1,306 @@
+package com.punto.de.venta.mcp.transport;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.punto.de.venta.mcp.operation.CancellationSignal;
+import com.punto.de.venta.mcp.operation.ProgressListener;
+import com.punto.de.venta.mcp.ratelimit.RateLimitToolCallback;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transporte HTTP streamable de MCP, sin estado, junto al SSE del SDK y con las mismas
+ * tools. Cada POST lleva un mensaje JSON-RPC, o un lote, y se responde en la misma
+ * petición: con {@code application/json} si la tool termina sin informar avance, o con un
+ * stream SSE que entrega las notificaciones de avance y al final la respuesta, si el
+ * cliente lo acepta. No se abre ninguna conexión larga por cliente.
+ */
+@Slf4j
+public class StreamableHttpTransport {
+
+    static final String DEFAULT_PROTOCOL_VERSION = "2025-03-26";
+    private static final Set<String> PROTOCOL_VERSIONS = Set.of("2025-03-26", "2025-06-18");
+
+    private static final int PARSE_ERROR = -32700;
+    private static final int INVALID_REQUEST = -32600;
+    private static final int METHOD_NOT_FOUND = -32601;
+    private static final int INVALID_PARAMS = -32602;
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, ToolCallback> tools = new LinkedHashMap<>();
+    private final ObjectNode toolsList;
+    private final String serverName;
+    private final String serverVersion;
+    private final TrustedProxies trustedProxies;
+
+    public StreamableHttpTransport(List<ToolCallback> toolCallbacks, ObjectMapper objectMapper,
+                                   String serverName, String serverVersion, String trustedProxies) {
+        this.objectMapper = objectMapper;
+        this.serverName = serverName;
+        this.serverVersion = serverVersion;
+        this.trustedProxies = new TrustedProxies(trustedProxies);
+        for (ToolCallback tool : toolCallbacks) {
+            tools.put(tool.getToolDefinition().name(), tool);
+        }
+        this.toolsList = buildToolsList();
+    }
+
+    public Mono<ServerResponse> handle(ServerRequest request) {
+        boolean acceptsStream = request.headers().accept().stream()
+            .anyMatch(MediaType.TEXT_EVENT_STREAM::isCompatibleWith);
+        String cliente = cliente(request);
+        return request.bodyToMono(String.class)
+            .defaultIfEmpty("")
+            .flatMap(body -> dispatch(body, acceptsStream, cliente));
+    }
+
+    /**
+     * Sin sesiones, el cliente para el rate limiting es la dirección de origen; detrás del
+     * ingress es el último salto de {@code X-Forwarded-For} que no es un proxy de confianza.
+     */
+    private String cliente(ServerRequest request) {
+        String remote = request.remoteAddress().map(address -> address.getAddress() != null
+            ? address.getAddress().getHostAddress() : address.getHostString()).orElse(null);
+        return trustedProxies.client(remote, request.headers().header("X-Forwarded-For"));
+    }
+
+    private Mono<ServerResponse> dispatch(String body, boolean acceptsStream, String cliente) {
+        JsonNode message;
+        try {
+            message = objectMapper.readTree(body);
+        } catch (Exception e) {
+            return json(HttpStatus.BAD_REQUEST, error(null, PARSE_ERROR, "El cuerpo no es JSON válido"));
+        }
+        if (message != null && message.isArray()) {
+            return dispatchBatch(message, cliente);
+        }
+        if (message == null || !message.isObject()) {
+            return json(HttpStatus.BAD_REQUEST, error(null, INVALID_REQUEST, "Se espera un mensaje JSON-RPC o un lote de mensajes"));
+        }
+        // Notificaciones y respuestas del cliente no llevan respuesta
+        if (!expectsResponse(message)) {
+            return ServerResponse.accepted().build();
+        }
+        if (acceptsStream && "tools/call".equals(message.path("method").asText())) {
+            return streamTool(message.get("id"), message.path("params"), cliente);
+        }
+        return respond(message, null, cliente).flatMap(response -> json(HttpStatus.OK, response));
+    }
+
+    /**
+     * Lote JSON-RPC: los mensajes se atienden en orden y las respuestas vuelven juntas en
+     * un arreglo, sin stream de avance. Un lote solo de notificaciones no lleva cuerpo.
+     */
+    private Mono<ServerResponse> dispatchBatch(JsonNode batch, String cliente) {
+        if (batch.isEmpty()) {
+            return json(HttpStatus.BAD_REQUEST, error(null, INVALID_REQUEST, "El lote JSON-RPC está vacío"));
+        }
+        return Flux.fromIterable(batch)
+            .concatMap(message -> {
+                if (!message.isObject()) {
+                    return Mono.just(error(null, INVALID_REQUEST, "Cada elemento del lote debe ser un mensaje JSON-RPC"));
+                }
+                return expectsResponse(message) ? respond(message, null, cliente) : Mono.<ObjectNode>empty();
+            })
+            .collectList()
+            .flatMap(responses -> {
+                if (responses.isEmpty()) {
+                    return ServerResponse.accepted().build();
+                }
+                ArrayNode array = objectMapper.createArrayNode();
+                array.addAll(responses);
+                return json(HttpStatus.OK, array);
+            });
+    }
+
+    private static boolean expectsResponse(JsonNode message) {
+        JsonNode id = message.get("id");
+        return message.hasNonNull("method") && id != null && !id.isNull();
+    }
+
+    private Mono<ObjectNode> respond(JsonNode message, ProgressListener listener, String cliente) {
+        JsonNode id = message.get("id");
+        String method = message.path("method").asText();
+        JsonNode params = message.path("params");
+        return switch (method) {
+            case "initialize" -> Mono.just(result(id, initializeResult(params)));
+            case "ping" -> Mono.just(result(id, objectMapper.createObjectNode()));
+            case "tools/list" -> Mono.just(result(id, toolsList));
+            case "tools/call" -> callTool(id, params, listener, cliente);
+            default -> Mono.just(error(id, METHOD_NOT_FOUND, "Método no soportado: " + method));
+        };
+    }
+
+    /**
+     * El stream solo se abre con la primera notificación de avance; si la tool termina
+     * antes, la respuesta es JSON normal.
+     */
+    private Mono<ServerResponse> streamTool(JsonNode id, JsonNode params, String cliente) {
+        JsonNode progressToken = params.path("_meta").get("progressToken");
+        Sinks.Many<ServerSentEvent<String>> events = Sinks.many().unicast().onBackpressureBuffer();
+        CompletableFuture<Boolean> streaming = new CompletableFuture<>();
+        CompletableFuture<ObjectNode> response = new CompletableFuture<>();
+        ProgressListener listener = (done, total, text) -> {
+            synchronized (events) {
+                streaming.complete(true);
+                events.tryEmitNext(event(progressNotification(progressToken, done, total, text)));
+            }
+        };
+
+        Disposable call = callTool(id, params, listener, cliente).subscribe(json -> {
+            response.complete(json);
+            synchronized (events) {
+                events.tryEmitNext(event(json));
+                events.tryEmitComplete();
+                streaming.complete(false);
+            }
+        });
+
+        return Mono.fromFuture(streaming)
+            .flatMap(stream -> stream
+                ? ServerResponse.ok().contentType(MediaType.TEXT_EVENT_STREAM)
+                    .body(BodyInserters.fromServerSentEvents(events.asFlux().doOnCancel(call::dispose)))
+                : json(HttpStatus.OK, response.join()))
+            .doOnCancel(call::dispose);
+    }
+
+    /**
+     * Ejecuta la tool fuera del hilo de la petición. Si el cliente deja de esperar la
+     * respuesta se cancela su operación: las llamadas a la API en vuelo terminan y las
+     * pendientes ya no se hacen. El hilo no se interrumpe, porque interrumpir una escritura
+     * en el journal cierra su {@code FileChannel}.
+     */
+    private Mono<ObjectNode> callTool(JsonNode id, JsonNode params, ProgressListener listener, String cliente) {
+        String name = params.path("name").asText("");
+        ToolCallback tool = tools.get(name);
+        if (tool == null) {
+            return Mono.just(error(id, INVALID_PARAMS, "Herramienta desconocida: " + name));
+        }
+        String arguments = params.has("arguments") ? params.get("arguments").toString() : "{}";
+        return Mono.create(sink -> {
+            CancellationSignal cancellation = new CancellationSignal();
+            sink.onCancel(cancellation::cancel);
+            Schedulers.boundedElastic().schedule(() ->
+                sink.success(result(id, callResult(tool, arguments, toolContext(listener, cancellation, cliente)))));
+        });
+    }
+
+    /**
+     * Mismo resultado que arma el SDK para el transporte SSE: la salida de la tool como
+     * texto, o el mensaje de la excepción marcado como error.
+     */
+    private ObjectNode callResult(ToolCallback tool, String arguments, ToolContext toolContext) {
+        ObjectNode result = objectMapper.createObjectNode();
+        ArrayNode content = result.putArray("content");
+        try {
+            String output = tool.call(arguments, toolContext);
+            content.addObject().put("type", "text").put("text", output);
+            result.put("isError", false);
+        } catch (Exception e) {
+            log.error("Error al ejecutar la tool {} por HTTP streamable", tool.getToolDefinition().name(), e);
+            content.addObject().put("type", "text").put("text", e.getMessage());
+            result.put("isError", true);
+        }
+        return result;
+    }
+
+    private static ToolContext toolContext(ProgressListener listener, CancellationSignal cancellation, String cliente) {
+        Map<String, Object> context = new HashMap<>();
+        context.put(CancellationSignal.TOOL_CONTEXT_KEY, cancellation);
+        if (listener != null) {
+            context.put(ProgressListener.TOOL_CONTEXT_KEY, listener);
+        }
+        if (cliente != null) {
+            context.put(RateLimitToolCallback.CLIENT_KEY, cliente);
+        }
+        return new ToolContext(context);
+    }
+
+    private ObjectNode initializeResult(JsonNode params) {
+        String requested = params.path("protocolVersion").asText("");
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("protocolVersion", PROTOCOL_VERSIONS.contains(requested) ? requested : DEFAULT_PROTOCOL_VERSION);
+        ObjectNode capabilities = result.putObject("capabilities");
+        capabilities.putObject("tools").put("listChanged", false);
+        capabilities.putObject("logging");
+        result.putObject("serverInfo").put("name", serverName).put("version", serverVersion);
+        return result;
+    }
+
+    private ObjectNode buildToolsList() {
+        ObjectNode result = objectMapper.createObjectNode();
+        ArrayNode list = result.putArray("tools");
+        for (ToolCallback tool : tools.values()) {
+            ObjectNode entry = list.addObject();
+            entry.put("name", tool.getToolDefinition().name());
+            entry.put("description", tool.getToolDefinition().description());
+            try {
+                entry.set("inputSchema", objectMapper.readTree(tool.getToolDefinition().inputSchema()));
+            } catch (Exception e) {
+                throw new IllegalStateException("Esquema inválido para la tool " + tool.getToolDefinition().name(), e);
+            }
+        }
+        return result;
+    }
+
+    private ObjectNode progressNotification(JsonNode progressToken, long done, long total, String text) {
+        ObjectNode notification = objectMapper.createObjectNode().put("jsonrpc", "2.0");
+        if (progressToken == null || progressToken.isNull()) {
+            notification.put("method", "notifications/message");
+            notification.putObject("params").put("level", "info").put("logger", "progress").put("data", text);
+            return notification;
+        }
+        notification.put("method", "notifications/progress");
+        ObjectNode params = notification.putObject("params");
+        params.set("progressToken", progressToken);
+        params.put("progress", done);
+        if (total >= 0) {
+            params.put("total", total);
+        }
+        params.put("message", text);
+        return notification;
+    }
+
+    private ObjectNode result(JsonNode id, JsonNode result) {
+        ObjectNode response = objectMapper.createObjectNode().put("jsonrpc", "2.0");
+        response.set("id", id);
+        response.set("result", result);
+        return response;
+    }
+
+    private ObjectNode error(JsonNode id, int code, String message) {
+        ObjectNode response = objectMapper.createObjectNode().put("jsonrpc", "2.0");
+        response.set("id", id);
+        response.putObject("error").put("code", code).put("message", message);
+        return response;
+    }
+
+    private static ServerSentEvent<String> event(Object data) {
+        return ServerSentEvent.<String>builder().event("message").data(data.toString()).build();
+    }
+
+    private static Mono<ServerResponse> json(HttpStatus status, JsonNode body) {
+        return ServerResponse.status(status).contentType(MediaType.APPLICATION_JSON).bodyValue(body.toString());
+    }
+}
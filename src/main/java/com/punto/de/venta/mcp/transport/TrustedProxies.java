@@ -0,0 +1,118 @@
+package com.punto.de.venta.mcp.transport;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Proxies cuya cabecera {@code X-Forwarded-For} se acepta. Cada proxy agrega a la derecha
+ * la dirección de la que recibió la petición, así que solo los saltos agregados por proxies
+ * de confianza son fiables: el cliente es el último salto, de derecha a izquierda, que no
+ * es un proxy de confianza. Lo que haya más a la izquierda lo puede escribir el cliente.
+ */
+final class TrustedProxies {
+
+    /**
+     * Loopback y rangos privados, donde están el ingress y la red del cluster.
+     */
+    static final String DEFAULT = "127.0.0.0/8,::1/128,10.0.0.0/8,172.16.0.0/12,192.168.0.0/16,fc00::/7";
+
+    private static final Pattern IP_LITERAL = Pattern.compile("[0-9a-fA-F:.]+");
+
+    private final List<Range> ranges = new ArrayList<>();
+
+    TrustedProxies(String cidrs) {
+        if (cidrs == null) {
+            return;
+        }
+        for (String cidr : cidrs.split(",")) {
+            if (!cidr.isBlank()) {
+                ranges.add(Range.parse(cidr.trim()));
+            }
+        }
+    }
+
+    /**
+     * Dirección del cliente para una petición recibida desde {@code remote} con las
+     * cabeceras {@code X-Forwarded-For} indicadas.
+     */
+    String client(String remote, List<String> forwardedFor) {
+        if (remote == null || !isTrusted(remote)) {
+            return remote;
+        }
+        List<String> hops = new ArrayList<>();
+        for (String header : forwardedFor) {
+            for (String hop : header.split(",")) {
+                if (!hop.isBlank()) {
+                    hops.add(hop.trim());
+                }
+            }
+        }
+        for (int i = hops.size() - 1; i >= 0; i--) {
+            if (!isTrusted(hops.get(i))) {
+                return hops.get(i);
+            }
+        }
+        return hops.isEmpty() ? remote : hops.get(0);
+    }
+
+    boolean isTrusted(String address) {
+        InetAddress parsed = parse(address);
+        if (parsed == null) {
+            return false;
+        }
+        for (Range range : ranges) {
+            if (range.contains(parsed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Solo literales IP: un nombre no se resuelve por DNS.
+     */
+    private static InetAddress parse(String address) {
+        if (!IP_LITERAL.matcher(address).matches() || (address.indexOf('.') < 0 && address.indexOf(':') < 0)) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(address);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private record Range(byte[] network, int prefix) {
+
+        static Range parse(String cidr) {
+            int slash = cidr.indexOf('/');
+            InetAddress address = TrustedProxies.parse(slash >= 0 ? cidr.substring(0, slash) : cidr);
+            if (address == null) {
+                throw new IllegalArgumentException("Proxy de confianza inválido: " + cidr);
+            }
+            byte[] bytes = address.getAddress();
+            int prefix = slash >= 0 ? Integer.parseInt(cidr.substring(slash + 1)) : bytes.length * 8;
+            if (prefix < 0 || prefix > bytes.length * 8) {
+                throw new IllegalArgumentException("Proxy de confianza inválido: " + cidr);
+            }
+            return new Range(bytes, prefix);
+        }
+
+        boolean contains(InetAddress address) {
+            byte[] bytes = address.getAddress();
+            if (bytes.length != network.length) {
+                return false;
+            }
+            for (int bit = 0; bit < prefix; bit++) {
+                int mask = 0x80 >> (bit % 8);
+                if ((bytes[bit / 8] & mask) != (network[bit / 8] & mask)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.punto.de.venta.mcp.admission;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Prioridad entre grupos, cola llena y tiempo máximo de espera. El reloj es manual, así que
+ * la duración media que estima el reintento depende solo de lo que avance el test.
+ */
+class AdmissionControllerTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final List<Thread> hilos = new ArrayList<>();
+
+    @AfterEach
+    void detener() throws InterruptedException {
+        for (Thread hilo : hilos) {
+            hilo.interrupt();
+            hilo.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    @Test
+    void interactiveIsAdmittedBeforeQueuedStandardCalls() throws Exception {
+        AdmissionController controller = controller(1, Duration.ofSeconds(10), 8);
+        AdmissionController.Permit ocupado = controller.acquire("listarTransacciones");
+        List<String> admitidas = new CopyOnWriteArrayList<>();
+
+        esperarEnCola(controller, "listarTransacciones", admitidas);
+        esperarEnCola(controller, "obtenerResumenGastos", admitidas);
+        esperarEnCola(controller, "obtenerUsuarioPorTelefono", admitidas);
+
+        controller.release(ocupado);
+        esperar(() -> admitidas.size() == 3);
+        // La interactiva llegó última pero entra primero; las estándar, por orden de llegada
+        assertEquals(List.of("obtenerUsuarioPorTelefono", "listarTransacciones", "obtenerResumenGastos"), admitidas);
+    }
+
+    @Test
+    void fullQueueIsRejectedWithAnEstimatedRetry() throws Exception {
+        AdmissionController controller = controller(1, Duration.ofSeconds(10), 1);
+        // Una ejecución de 4 s fija la duración media del grupo
+        AdmissionController.Permit primera = controller.acquire("listarTransacciones");
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        controller.release(primera);
+
+        AdmissionController.Permit ocupado = controller.acquire("listarTransacciones");
+        esperarEnCola(controller, "listarTransacciones", new CopyOnWriteArrayList<>());
+
+        AdmissionRejectedException rechazo = assertThrows(AdmissionRejectedException.class,
+            () -> controller.acquire("obtenerResumenGastos"));
+        assertEquals("Grupo standard: la cola está llena", rechazo.getMessage());
+        assertEquals("standard", rechazo.getGroup());
+        // Una en cola más la rechazada, a 4 s cada una con un solo hueco
+        assertEquals(8, rechazo.getRetryAfterSeconds());
+        controller.release(ocupado);
+    }
+
+    @Test
+    void waitLongerThanMaxWaitIsRejectedAndLeavesTheQueue() throws Exception {
+        AdmissionController controller = controller(1, Duration.ofMillis(50), 1);
+        AdmissionController.Permit ocupado = controller.acquire("listarTransacciones");
+
+        AdmissionRejectedException rechazo = assertThrows(AdmissionRejectedException.class,
+            () -> controller.acquire("listarTransacciones"));
+        assertEquals("Grupo standard: se agotó el tiempo de espera", rechazo.getMessage());
+
+        // La espera vencida ya no ocupa la única plaza de la cola: la siguiente vuelve a esperar
+        assertEquals("Grupo standard: se agotó el tiempo de espera", assertThrows(AdmissionRejectedException.class,
+            () -> controller.acquire("obtenerResumenGastos")).getMessage());
+        controller.release(ocupado);
+        controller.release(controller.acquire("obtenerResumenGastos"));
+    }
+
+    private AdmissionController controller(int maxConcurrent, Duration maxWait, int maxQueue) {
+        AdmissionGroup interactive = new AdmissionGroup();
+        interactive.setPriority(0);
+        interactive.setMaxQueue(8);
+        interactive.setTools(List.of("obtenerUsuarioPorTelefono"));
+        AdmissionGroup standard = new AdmissionGroup();
+        standard.setPriority(1);
+        standard.setMaxConcurrent(maxConcurrent);
+        standard.setMaxQueue(maxQueue);
+        standard.setMaxWait(maxWait);
+
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setMaxConcurrent(maxConcurrent);
+        properties.getGroups().put("interactive", interactive);
+        properties.getGroups().put("standard", standard);
+        return new AdmissionController(properties, nanos::get);
+    }
+
+    /**
+     * Lanza una invocación que queda esperando hueco y vuelve cuando ya está en la cola. Al
+     * entrar se anota y libera el permiso enseguida.
+     */
+    private void esperarEnCola(AdmissionController controller, String tool, List<String> admitidas) throws InterruptedException {
+        Thread hilo = new Thread(() -> {
+            try {
+                AdmissionController.Permit permit = controller.acquire(tool);
+                admitidas.add(tool);
+                controller.release(permit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        hilos.add(hilo);
+        hilo.start();
+        esperar(() -> hilo.getState() == Thread.State.TIMED_WAITING);
+    }
+
+    private static void esperar(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condicion.getAsBoolean()) {
+            assertTrue(System.nanoTime() < limite, "La condición no se cumplió a tiempo");
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.punto.de.venta.mcp.anomaly;
+
+import com.punto.de.venta.mcp.model.Transaction;
+import com.punto.de.venta.mcp.model.TransactionCategory;
+import com.punto.de.venta.mcp.service.TransactionChangedEvent;
+import com.punto.de.venta.mcp.service.TransactionService;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SpendingAnomalyDetectorTest {
+
+    private static final LocalDate HOY = LocalDate.of(2026, 5, 1);
+
+    @Test
+    void p2QuantileTracksTheExactQuantile() {
+        P2Quantile p95 = new P2Quantile(0.95);
+        SplittableRandom rng = new SplittableRandom(3);
+        for (int i = 0; i < 20000; i++) {
+            p95.add(rng.nextDouble(1000));
+        }
+
+        assertTrue(Math.abs(p95.value() - 950) < 10);
+        assertEquals(20000, p95.count());
+    }
+
+    @Test
+    void flagsOnlyAmountsFarAboveTheCategoryHistory() {
+        SpendingAnomalyDetector.UserStats stats = new SpendingAnomalyDetector.UserStats(new SpendingAnomalyDetector(null, null));
+        List<Transaction> historial = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            historial.add(gasto(i + 1L, "Comida", i % 2 == 0 ? "180.00" : "220.00", HOY.minusDays(30 - i)));
+            historial.add(gasto(100 + i + 1L, "Renta", "9000.00", HOY.minusDays(30 - i)));
+        }
+
+        // La historia se carga una vez y no alerta; un gasto normal en comida tampoco
+        assertFalse(stats.observe(gasto(200L, "Comida", "210.00", HOY), () -> historial).isPresent());
+        // Un monto grande en una categoría de montos grandes no es inusual
+        assertFalse(stats.observe(gasto(201L, "Renta", "9000.00", HOY), List::of).isPresent());
+
+        Optional<SpendingAnomaly> cena = stats.observe(gasto(202L, "Comida", "1500.00", HOY), List::of);
+        assertTrue(cena.isPresent());
+        assertEquals("Comida", cena.get().categoria());
+        assertTrue(cena.get().z() > 3);
+
+        // Ya contados en la carga inicial: se ignoran
+        assertFalse(stats.observe(gasto(5L, "Comida", "5000.00", HOY), List::of).isPresent());
+
+        SpendingProfile perfil = stats.snapshot(List::of);
+        assertEquals(1, perfil.recientes().size());
+        assertEquals(2, perfil.categorias().size());
+        assertEquals(32, perfil.categorias().stream().filter(c -> c.nombre().equals("Comida")).findFirst().orElseThrow().muestras());
+    }
+
+    @Test
+    void sustainedLevelShiftStopsAlerting() {
+        SpendingAnomalyDetector.UserStats stats = new SpendingAnomalyDetector.UserStats(new SpendingAnomalyDetector(null, null));
+        List<Transaction> historial = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            historial.add(gasto(i + 1L, "Transporte", i % 2 == 0 ? "45.00" : "55.00", HOY.minusDays(40 - i)));
+        }
+        stats.snapshot(() -> historial);
+
+        // El transporte pasa a costar el triple: las primeras alertan, después es el nuevo nivel
+        int alertas = 0;
+        for (int i = 0; i < 30; i++) {
+            if (stats.observe(gasto(100 + i, "Transporte", i % 2 == 0 ? "140.00" : "160.00", HOY.plusDays(i)), List::of).isPresent()) {
+                alertas++;
+            }
+        }
+        assertTrue(alertas >= 1 && alertas < 10);
+        assertFalse(stats.observe(gasto(200L, "Transporte", "150.00", HOY.plusDays(31)), List::of).isPresent());
+    }
+
+    @Test
+    void expensesCreatedByOtherPathsAreCountedOnce() {
+        SpendingAnomalyDetector.UserStats stats = new SpendingAnomalyDetector.UserStats(new SpendingAnomalyDetector(null, null));
+        List<Transaction> historial = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            historial.add(gasto(i + 1L, "Comida", i % 2 == 0 ? "180.00" : "220.00", HOY.minusDays(30 - i)));
+        }
+        stats.snapshot(() -> historial);
+
+        // Una importación suma el gasto por evento; si la tool lo observa después, no se cuenta dos veces
+        stats.record(gasto(300L, "Comida", "1500.00", HOY));
+        stats.record(gasto(301L, "Comida", "200.00", HOY));
+        assertTrue(stats.observe(gasto(300L, "Comida", "1500.00", HOY), List::of).isPresent());
+        assertTrue(stats.observe(gasto(300L, "Comida", "1500.00", HOY), List::of).isPresent());
+
+        SpendingProfile perfil = stats.snapshot(List::of);
+        assertEquals(32, perfil.categorias().get(0).muestras());
+        assertEquals(1, perfil.recientes().size());
+    }
+
+    @Test
+    void changesDiscardTheUserStateAndCreationsFeedIt() {
+        List<Transaction> historial = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            historial.add(gasto(i + 1L, "Comida", "200.00", HOY.minusDays(30 - i)));
+        }
+        TransactionService transactionService = mock(TransactionService.class);
+        when(transactionService.getTransactionsByUserId(1L)).thenReturn(historial);
+        SpendingAnomalyDetector detector = new SpendingAnomalyDetector(transactionService, null);
+
+        detector.profile(1L);
+        detector.onTransactionChanged(new TransactionChangedEvent(1L, gasto(400L, "Comida", "210.00", HOY)));
+        assertEquals(31, detector.profile(1L).categorias().get(0).muestras());
+        verify(transactionService, times(1)).getTransactionsByUserId(1L);
+
+        // Un cambio o una baja obliga a releer la historia
+        detector.onTransactionChanged(new TransactionChangedEvent(1L, null));
+        assertEquals(30, detector.profile(1L).categorias().get(0).muestras());
+        verify(transactionService, times(2)).getTransactionsByUserId(1L);
+    }
+
+    private static Transaction gasto(long id, String categoria, String monto, LocalDate fecha) {
+        Transaction t = new Transaction();
+        t.setId(id);
+        t.setType("EXPENSE");
+        t.setDescription(categoria + " " + id);
+        t.setAmount(new BigDecimal(monto));
+        t.setTransactionDate(fecha);
+        TransactionCategory c = new TransactionCategory();
+        c.setCategoryName(categoria);
+        t.setTransactionCategory(c);
+        return t;
+    }
+}
@@ -0,0 +1,76 @@
+package com.punto.de.venta.mcp.categorization;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class KeywordAutomatonTest {
+
+    private final KeywordAutomaton predeterminadas = KeywordAutomaton.compile(CategorizationEngine.PREDETERMINADAS);
+
+    @Test
+    void matchesFoldedKeywordsAnywhereInTheDescription() {
+        assertEquals("Salud", categoria("FARMACIA GUADALAJARA SUC 123"));
+        assertEquals("Servicios", categoria("Teléfono fijo Telmex"));
+        assertEquals("Comida", categoria("Café de olla"));
+        assertEquals("Transporte", categoria("UBER *TRIP HELP.UBER.COM"));
+        assertNull(categoria("Transferencia a Juan"));
+        assertNull(categoria(null));
+    }
+
+    @Test
+    void priorityThenLengthDecideBetweenOverlappingRules() {
+        // "uber eats" es más larga que "uber" con la misma prioridad
+        assertEquals("Comida", categoria("Uber Eats pedido 8812"));
+        // "cafe" (10) gana a "hospital" (5) sin importar el orden en el texto
+        assertEquals("Comida", categoria("Hospital Ángeles cafetería"));
+        // "amazon" (20) gana a "internet" (10)
+        assertEquals("Compras", categoria("Internet Amazon"));
+    }
+
+    @Test
+    void resultDoesNotDependOnRuleOrder() {
+        List<CategoryRule> reglas = new ArrayList<>(CategorizationEngine.PREDETERMINADAS);
+        Collections.reverse(reglas);
+        KeywordAutomaton invertido = KeywordAutomaton.compile(reglas);
+
+        for (String descripcion : List.of("Uber Eats", "Hospital cafetería", "Banco agua", "Netflix Amazon", "Didi Food uber")) {
+            assertEquals(predeterminadas.match(descripcion), invertido.match(descripcion));
+        }
+    }
+
+    @Test
+    void laterRuleWithTheSameKeywordReplacesTheEarlierOne() {
+        List<CategoryRule> reglas = new ArrayList<>(CategorizationEngine.PREDETERMINADAS);
+        reglas.add(new CategoryRule("Oxxo", "Conveniencia", CategorizationEngine.PRIORIDAD_USUARIO));
+        reglas.add(new CategoryRule("AMAZON", "Libros", CategorizationEngine.PRIORIDAD_USUARIO));
+        KeywordAutomaton conUsuario = KeywordAutomaton.compile(reglas);
+
+        assertEquals("Libros", conUsuario.match("amazon.com.mx").categoria());
+        assertEquals("Conveniencia", conUsuario.match("OXXO agua").categoria());
+        assertEquals(CategorizationEngine.PREDETERMINADAS.size() + 1, conUsuario.size());
+    }
+
+    @Test
+    void findsKeywordsThatAreSuffixesOfOtherPartialMatches() {
+        KeywordAutomaton automata = KeywordAutomaton.compile(List.of(
+            new CategoryRule("he", "A", 1),
+            new CategoryRule("she", "B", 2),
+            new CategoryRule("his", "C", 3),
+            new CategoryRule("hers", "D", 4)));
+
+        assertEquals("D", automata.match("ushers").categoria());
+        assertEquals("B", automata.match("ushe").categoria());
+        assertEquals("C", automata.match("this").categoria());
+    }
+
+    private String categoria(String descripcion) {
+        CategoryRule regla = predeterminadas.match(descripcion);
+        return regla != null ? regla.categoria() : null;
+    }
+}
@@ -0,0 +1,149 @@
+package com.punto.de.venta.mcp.context;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Lecturas compartidas por {@link RequestDataInterceptor} dentro de un contexto abierto.
+ */
+class RequestDataContextTest {
+
+    private static final String CUENTAS = "http://api/api/accounts/user/1";
+
+    private final RequestDataInterceptor interceptor = new RequestDataInterceptor(new SimpleMeterRegistry());
+    private final AtomicInteger llamadas = new AtomicInteger();
+    private RequestDataContext previous;
+    private RequestDataContext context;
+
+    @BeforeEach
+    void abrir() {
+        previous = RequestDataContext.open();
+        context = RequestDataContext.current();
+    }
+
+    @AfterEach
+    void cerrar() {
+        RequestDataContext.restore(previous);
+    }
+
+    @Test
+    void concurrentGetsToTheSameUrlShareOneCall() throws Exception {
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ClientHttpRequestExecution lenta = (request, body) -> {
+            enCurso.countDown();
+            try {
+                liberar.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return respuesta(HttpStatus.OK, "v" + llamadas.incrementAndGet());
+        };
+
+        AtomicReferenceArray<String> resultados = new AtomicReferenceArray<>(2);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> primera = pool.submit(RequestDataContext.wrap(() -> leerEn(lenta, resultados, 0)));
+            enCurso.await(5, TimeUnit.SECONDS);
+            Future<?> segunda = pool.submit(RequestDataContext.wrap(() -> leerEn(lenta, resultados, 1)));
+            // La segunda ya espera la respuesta de la primera
+            long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (context.getHits() == 0 && System.nanoTime() < limite) {
+                Thread.sleep(1);
+            }
+            liberar.countDown();
+
+            primera.get(5, TimeUnit.SECONDS);
+            segunda.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals("v1", resultados.get(0));
+        assertEquals("v1", resultados.get(1));
+        assertEquals(1, llamadas.get());
+        assertEquals(1, context.getFetches());
+        assertEquals(1, context.getHits());
+    }
+
+    @Test
+    void writeBetweenReadsForcesAFreshGet() throws Exception {
+        ClientHttpRequestExecution api = (request, body) ->
+            respuesta(HttpStatus.OK, request.getMethod() + "-" + llamadas.incrementAndGet());
+
+        assertEquals("GET-1", leer(get(CUENTAS), api));
+        assertEquals("GET-1", leer(get(CUENTAS), api));
+        assertEquals("POST-2", leer(new MockClientHttpRequest(HttpMethod.POST, URI.create(CUENTAS)), api));
+        assertEquals("GET-3", leer(get(CUENTAS), api));
+        assertEquals(3, llamadas.get());
+    }
+
+    @Test
+    void readDuringAWriteIsNotKeptAfterIt() throws Exception {
+        ClientHttpRequestExecution api = (request, body) ->
+            respuesta(HttpStatus.OK, request.getMethod() + "-" + llamadas.incrementAndGet());
+        // Un GET que se cuela mientras la escritura está en curso
+        ClientHttpRequestExecution escritura = (request, body) -> {
+            leer(get(CUENTAS), api);
+            return api.execute(request, body);
+        };
+
+        assertEquals("POST-2", leer(new MockClientHttpRequest(HttpMethod.POST, URI.create(CUENTAS)), escritura));
+        assertEquals("GET-3", leer(get(CUENTAS), api));
+    }
+
+    @Test
+    void errorResponsesAreNotCached() throws Exception {
+        ClientHttpRequestExecution api = (request, body) -> llamadas.incrementAndGet() == 1
+            ? respuesta(HttpStatus.SERVICE_UNAVAILABLE, "caida")
+            : respuesta(HttpStatus.OK, "ok");
+
+        assertEquals("caida", leer(get(CUENTAS), api));
+        assertEquals("ok", leer(get(CUENTAS), api));
+        assertEquals("ok", leer(get(CUENTAS), api));
+        assertEquals(2, llamadas.get());
+    }
+
+    private String leer(MockClientHttpRequest request, ClientHttpRequestExecution execution) throws IOException {
+        try (ClientHttpResponse response = interceptor.intercept(request, new byte[0], execution)) {
+            return new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private void leerEn(ClientHttpRequestExecution execution, AtomicReferenceArray<String> resultados, int i) {
+        try {
+            resultados.set(i, leer(get(CUENTAS), execution));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MockClientHttpRequest get(String url) {
+        return new MockClientHttpRequest(HttpMethod.GET, URI.create(url));
+    }
+
+    private static ClientHttpResponse respuesta(HttpStatus status, String body) {
+        return new MockClientHttpResponse(body.getBytes(StandardCharsets.UTF_8), status);
+    }
+}
@@ -0,0 +1,79 @@
+package com.punto.de.venta.mcp.forecast;
+
+import com.punto.de.venta.mcp.model.Transaction;
+import com.punto.de.venta.mcp.model.TransactionCategory;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MonteCarloSimulatorTest {
+
+    private static final LocalDate HOY = LocalDate.of(2026, 3, 1);
+    private static final int DIAS = 30;
+    private static final int[] CORTES = {6, 13, 29};
+
+    private final RecurringScheduleEngine engine = new RecurringScheduleEngine();
+
+    @Test
+    void sameSeedGivesSameResultWithAnyParallelism() {
+        SpendingDistribution distribucion = SpendingDistribution.from(historial(), HOY.minusDays(60), HOY.minusDays(1));
+        CashFlowProjection base = base(50000);
+
+        SimulationResult secuencial = new MonteCarloSimulator(new ForkJoinPool(1)).simulate(base, distribucion, 4000, 42L, CORTES, 14);
+        SimulationResult paralelo = new MonteCarloSimulator(new ForkJoinPool(4)).simulate(base, distribucion, 4000, 42L, CORTES, 14);
+
+        assertEquals(secuencial, paralelo);
+    }
+
+    @Test
+    void bandsAndProbabilitiesFollowTheEmpiricalSpending() {
+        SpendingDistribution distribucion = SpendingDistribution.from(historial(), HOY.minusDays(60), HOY.minusDays(1));
+        // Gasto medio de 50.00 diarios: con 1000.00 el saldo rara vez se agota en 14 días y casi siempre antes de 30
+        SimulationResult resultado = new MonteCarloSimulator(new ForkJoinPool(2)).simulate(base(100000), distribucion, 2000, 7L, CORTES, 14);
+
+        SimulationResult.Banda semana = resultado.bandas().get(0);
+        assertEquals(HOY.plusDays(6), semana.fecha());
+        assertTrue(semana.p10() <= semana.p50() && semana.p50() <= semana.p90());
+        assertTrue(Math.abs(semana.p50() - (100000 - 7 * 5000)) < 5000);
+        assertTrue(resultado.probabilidadNegativoAntesDePago() < 0.1);
+        assertTrue(resultado.probabilidadNegativo() > 0.9);
+        assertEquals(HOY.plusDays(14), resultado.proximoIngreso());
+    }
+
+    private CashFlowProjection base(long saldo) {
+        LocalDate fin = HOY.plusDays(DIAS - 1);
+        return engine.project(saldo, engine.expand(null, List.of(), HOY, fin), List.of(), HOY, fin);
+    }
+
+    /**
+     * Comida cada día por 30.00 o 10.00 alternados y transporte de 90.00 cada tres días.
+     */
+    private static List<Transaction> historial() {
+        List<Transaction> transacciones = new ArrayList<>();
+        for (int d = 1; d <= 60; d++) {
+            transacciones.add(gasto("Comida", d % 2 == 0 ? "30.00" : "10.00", HOY.minusDays(d)));
+            if (d % 3 == 0) {
+                transacciones.add(gasto("Transporte", "90.00", HOY.minusDays(d)));
+            }
+        }
+        return transacciones;
+    }
+
+    private static Transaction gasto(String categoria, String monto, LocalDate fecha) {
+        Transaction t = new Transaction();
+        t.setType("EXPENSE");
+        t.setAmount(new BigDecimal(monto));
+        t.setTransactionDate(fecha);
+        TransactionCategory c = new TransactionCategory();
+        c.setCategoryName(categoria);
+        t.setTransactionCategory(c);
+        return t;
+    }
+}
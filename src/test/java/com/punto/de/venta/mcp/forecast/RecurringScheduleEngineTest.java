@@ -0,0 +1,96 @@
+package com.punto.de.venta.mcp.forecast;
+
+import com.punto.de.venta.mcp.model.Loan;
+import com.punto.de.venta.mcp.model.RecurringTransaction;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class RecurringScheduleEngineTest {
+
+    private static final LocalDate DESDE = LocalDate.of(2026, 1, 1);
+
+    private final RecurringScheduleEngine engine = new RecurringScheduleEngine();
+
+    @Test
+    void monthlyOnThe31stFollowsMonthEndAndStopsAtEndDate() {
+        RecurringTransaction renta = recurrencia(1L, "EXPENSE", "100.00", "MONTHLY", LocalDate.of(2025, 10, 31), LocalDate.of(2026, 4, 30));
+
+        ScheduleExpansion expansion = RecurringScheduleEngine.expandir(List.of(renta), DESDE, LocalDate.of(2026, 12, 31), 0);
+
+        assertEquals(10000, expansion.gastos(LocalDate.of(2026, 1, 31)));
+        assertEquals(10000, expansion.gastos(LocalDate.of(2026, 2, 28)));
+        assertEquals(10000, expansion.gastos(LocalDate.of(2026, 3, 31)));
+        assertEquals(10000, expansion.gastos(LocalDate.of(2026, 4, 30)));
+        assertEquals(0, expansion.gastos(LocalDate.of(2026, 5, 31)));
+        assertEquals(4, expansion.getOcurrencias());
+    }
+
+    @Test
+    void weeklyDailyAndYearlyExpandFromTheirStartDate() {
+        List<RecurringTransaction> recurrencias = List.of(
+            recurrencia(1L, "INCOME", "500.00", "SEMANAL", LocalDate.of(2025, 12, 26), null),
+            recurrencia(2L, "EXPENSE", "1.50", "DAILY", LocalDate.of(2026, 1, 10), LocalDate.of(2026, 1, 19)),
+            recurrencia(3L, "EXPENSE", "1200.00", "YEARLY", LocalDate.of(2024, 2, 29), null));
+
+        ScheduleExpansion expansion = RecurringScheduleEngine.expandir(recurrencias, DESDE, LocalDate.of(2026, 12, 31), 0);
+
+        assertEquals(50000, expansion.ingresos(LocalDate.of(2026, 1, 2)));
+        assertEquals(0, expansion.ingresos(LocalDate.of(2026, 1, 3)));
+        assertEquals(50000, expansion.ingresos(LocalDate.of(2026, 1, 9)));
+        assertEquals(150, expansion.gastos(LocalDate.of(2026, 1, 19)));
+        assertEquals(120000, expansion.gastos(LocalDate.of(2026, 2, 28)));
+        // 52 semanas + 10 días + 1 anual
+        assertEquals(52 + 10 + 1, expansion.getOcurrencias());
+    }
+
+    @Test
+    void projectionRunsDailyBalanceWithLoanPayments() {
+        RecurringTransaction sueldo = recurrencia(1L, "INCOME", "1000.00", "MONTHLY", LocalDate.of(2026, 1, 15), null);
+        Loan prestamo = new Loan();
+        prestamo.setMonthlyPayment(new BigDecimal("1500.00"));
+        prestamo.setPaymentDay(5);
+        LocalDate hasta = LocalDate.of(2026, 3, 31);
+
+        ScheduleExpansion expansion = engine.expand(7L, List.of(sueldo), DESDE, hasta);
+        CashFlowProjection proyeccion = engine.project(100000, expansion, List.of(prestamo), DESDE, hasta);
+
+        assertEquals(100000, proyeccion.saldoAl(LocalDate.of(2026, 1, 4)));
+        assertEquals(-50000, proyeccion.saldoAl(LocalDate.of(2026, 1, 5)));
+        assertEquals(50000, proyeccion.saldoAl(LocalDate.of(2026, 1, 15)));
+        assertEquals(LocalDate.of(2026, 1, 5), proyeccion.primerDiaNegativo());
+        assertEquals(LocalDate.of(2026, 3, 5), proyeccion.diaSaldoMinimo());
+        assertEquals(-50000, proyeccion.saldoAl(hasta));
+        assertEquals(300000, proyeccion.getIngresos());
+        assertEquals(450000, proyeccion.getPagosPrestamos());
+    }
+
+    @Test
+    void expansionIsReusedUntilRecurrencesChange() {
+        RecurringTransaction sueldo = recurrencia(1L, "INCOME", "1000.00", "MONTHLY", DESDE, null);
+
+        ScheduleExpansion primera = engine.expand(7L, List.of(sueldo), DESDE, DESDE.plusMonths(3));
+        assertSame(primera, engine.expand(7L, List.of(sueldo), DESDE.plusDays(1), DESDE.plusMonths(12)));
+
+        sueldo.setAmount(new BigDecimal("1100.00"));
+        assertNotSame(primera, engine.expand(7L, List.of(sueldo), DESDE, DESDE.plusMonths(3)));
+    }
+
+    private static RecurringTransaction recurrencia(Long id, String tipo, String monto, String frecuencia,
+                                                    LocalDate inicio, LocalDate fin) {
+        RecurringTransaction r = new RecurringTransaction();
+        r.setId(id);
+        r.setType(tipo);
+        r.setAmount(new BigDecimal(monto));
+        r.setFrequency(frecuencia);
+        r.setStartDate(inicio);
+        r.setEndDate(fin);
+        return r;
+    }
+}
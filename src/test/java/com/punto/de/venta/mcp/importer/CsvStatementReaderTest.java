@@ -0,0 +1,159 @@
+package com.punto.de.venta.mcp.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvStatementReaderTest {
+
+    @Test
+    void readsColumnsInSpanishWithQuotedFields() throws IOException {
+        List<Object> rows = readAll("""
+            Fecha,Descripción,Monto,Referencia
+            2025-03-01,"Súper, despensa",-1234.50,A1
+            2025-03-02,"Nómina \"\"marzo\"\"",15000.00,
+            """);
+
+        StatementRecord gasto = (StatementRecord) rows.get(0);
+        assertEquals(LocalDate.of(2025, 3, 1), gasto.date());
+        assertEquals("Súper, despensa", gasto.description());
+        assertEquals(new BigDecimal("1234.50"), gasto.amount());
+        assertEquals("EXPENSE", gasto.type());
+        assertEquals("A1", gasto.externalId());
+
+        StatementRecord ingreso = (StatementRecord) rows.get(1);
+        assertEquals("Nómina \"marzo\"", ingreso.description());
+        assertEquals("INCOME", ingreso.type());
+        assertNull(ingreso.externalId());
+    }
+
+    @Test
+    void commaGroupingIsLearnedFromUnambiguousAmounts() throws IOException {
+        List<Object> rows = readAll("""
+            fecha,concepto,cargo,abono
+            2025-03-01,Renta,"1,500",
+            2025-03-02,Pago,"12,345.67",
+            """);
+
+        assertEquals(new BigDecimal("1500"), ((StatementRecord) rows.get(0)).amount());
+        assertEquals(new BigDecimal("12345.67"), ((StatementRecord) rows.get(1)).amount());
+    }
+
+    @Test
+    void decimalCommaIsLearnedFromUnambiguousAmounts() throws IOException {
+        List<Object> rows = readAll("""
+            fecha;concepto;importe
+            15/03/2025;Café;-1,500
+            16/03/2025;Renta;-8.500,00
+            """);
+
+        assertEquals(new BigDecimal("1.500"), ((StatementRecord) rows.get(0)).amount());
+        assertEquals(new BigDecimal("8500.00"), ((StatementRecord) rows.get(1)).amount());
+    }
+
+    @Test
+    void ambiguousAmountWithoutConventionIsRejected() throws IOException {
+        List<Object> rows = readAll("""
+            fecha,concepto,monto
+            2025-03-01,Renta,"-1,500"
+            2025-03-02,Café,-45
+            """);
+
+        assertTrue(rows.get(0) instanceof StatementFormatException);
+        assertTrue(((Exception) rows.get(0)).getMessage().contains("Monto ambiguo"));
+        assertEquals(new BigDecimal("45"), ((StatementRecord) rows.get(1)).amount());
+    }
+
+    @Test
+    void dateOrderIsLearnedFromTheFile() throws IOException {
+        List<Object> diaMes = readAll("""
+            fecha,concepto,monto
+            03/04/2025,Luz,-10
+            25/04/2025,Agua,-20
+            """);
+        assertEquals(LocalDate.of(2025, 4, 3), ((StatementRecord) diaMes.get(0)).date());
+
+        List<Object> mesDia = readAll("""
+            date,description,amount
+            03/04/2025,Power,-10
+            04/25/2025,Water,-20
+            """);
+        assertEquals(LocalDate.of(2025, 3, 4), ((StatementRecord) mesDia.get(0)).date());
+        assertEquals(LocalDate.of(2025, 4, 25), ((StatementRecord) mesDia.get(1)).date());
+    }
+
+    @Test
+    void ambiguousOrContradictoryDatesAreRejected() throws IOException {
+        List<Object> ambigua = readAll("""
+            fecha,concepto,monto
+            03/04/2025,Luz,-10
+            """);
+        assertTrue(((Exception) ambigua.get(0)).getMessage().contains("Fecha ambigua"));
+
+        List<Object> contradictoria = readAll("""
+            fecha,concepto,monto
+            25/04/2025,Agua,-20
+            04/26/2025,Gas,-30
+            """);
+        assertTrue(contradictoria.get(0) instanceof StatementRecord);
+        assertTrue(contradictoria.get(1) instanceof StatementFormatException);
+    }
+
+    @Test
+    void malformedRowsAreReportedAndReadingContinues() throws IOException {
+        List<Object> rows = readAll("""
+            fecha,concepto,monto
+            2025-03-01,,-10
+            no es fecha,Luz,-10
+            2025-03-02,Agua,abc
+            2025-03-03,Gas,0
+
+            2025-03-04,Internet,-599
+            """);
+
+        assertEquals(5, rows.size());
+        assertTrue(((Exception) rows.get(0)).getMessage().contains("Descripción vacía"));
+        assertTrue(((Exception) rows.get(1)).getMessage().startsWith("Línea 3: Fecha inválida"));
+        assertTrue(((Exception) rows.get(2)).getMessage().contains("Monto inválido"));
+        assertTrue(((Exception) rows.get(3)).getMessage().contains("Monto en cero"));
+        assertEquals("Internet", ((StatementRecord) rows.get(4)).description());
+    }
+
+    @Test
+    void headerWithoutRequiredColumnsIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> readAll("""
+            fecha,monto
+            2025-03-01,-10
+            """));
+    }
+
+    /**
+     * Devuelve cada fila leída o la excepción que produjo.
+     */
+    static List<Object> readAll(String content) throws IOException {
+        List<Object> rows = new ArrayList<>();
+        try (StatementReader reader = StatementReader.open(null, new StringReader(content))) {
+            while (true) {
+                try {
+                    StatementRecord record = reader.next();
+                    if (record == null) {
+                        return rows;
+                    }
+                    rows.add(record);
+                } catch (StatementFormatException e) {
+                    rows.add(e);
+                }
+            }
+        }
+    }
+}
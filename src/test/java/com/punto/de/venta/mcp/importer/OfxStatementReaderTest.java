@@ -0,0 +1,86 @@
+package com.punto.de.venta.mcp.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OfxStatementReaderTest {
+
+    @Test
+    void readsSgmlTransactionsWithoutClosingTags() throws IOException {
+        List<Object> rows = CsvStatementReaderTest.readAll("""
+            OFXHEADER:100
+            DATA:OFXSGML
+
+            <OFX><BANKMSGSRSV1><STMTTRNRS><STMTRS><BANKTRANLIST>
+            <STMTTRN>
+            <TRNTYPE>DEBIT
+            <DTPOSTED>20250301120000[-6:CST]
+            <TRNAMT>-1500,50
+            <FITID>F-1
+            <NAME>OXXO &amp; CIA
+            </STMTTRN>
+            <STMTTRN>
+            <TRNTYPE>CREDIT
+            <DTPOSTED>20250302
+            <TRNAMT>1500
+            <FITID>F-2
+            <MEMO>Transferencia
+            </STMTTRN>
+            </BANKTRANLIST></STMTRS></STMTTRNRS></BANKMSGSRSV1></OFX>
+            """);
+
+        assertEquals(2, rows.size());
+        StatementRecord gasto = (StatementRecord) rows.get(0);
+        assertEquals(LocalDate.of(2025, 3, 1), gasto.date());
+        // OFX no agrupa miles: la coma es decimal
+        assertEquals(new BigDecimal("1500.50"), gasto.amount());
+        assertEquals("EXPENSE", gasto.type());
+        assertEquals("OXXO & CIA", gasto.description());
+        assertEquals("F-1", gasto.externalId());
+
+        StatementRecord ingreso = (StatementRecord) rows.get(1);
+        assertEquals("INCOME", ingreso.type());
+        assertEquals("Transferencia", ingreso.description());
+        assertEquals(new BigDecimal("1500"), ingreso.amount());
+    }
+
+    @Test
+    void readsXmlTransactions() throws IOException {
+        List<Object> rows = CsvStatementReaderTest.readAll("""
+            <?xml version="1.0"?>
+            <OFX><STMTTRN><TRNTYPE>DEBIT</TRNTYPE><DTPOSTED>20250415</DTPOSTED><TRNAMT>-89.90</TRNAMT><FITID>X9</FITID><NAME>Netflix</NAME></STMTTRN></OFX>
+            """);
+
+        assertEquals(1, rows.size());
+        StatementRecord record = (StatementRecord) rows.get(0);
+        assertEquals(new BigDecimal("89.90"), record.amount());
+        assertEquals("Netflix", record.description());
+    }
+
+    @Test
+    void malformedTransactionsAreReportedAndReadingContinues() throws IOException {
+        List<Object> rows = CsvStatementReaderTest.readAll("""
+            <OFX>
+            <STMTTRN><DTPOSTED>2025<TRNAMT>-10<NAME>Sin fecha</STMTTRN>
+            <STMTTRN><DTPOSTED>20250230<TRNAMT>-10<NAME>Fecha imposible</STMTTRN>
+            <STMTTRN><DTPOSTED>20250301<TRNAMT>diez<NAME>Monto</STMTTRN>
+            <STMTTRN><DTPOSTED>20250301<NAME>Sin monto</STMTTRN>
+            <STMTTRN><DTPOSTED>20250302<TRNAMT>-25.00<NAME>Válido</STMTTRN>
+            </OFX>
+            """);
+
+        assertEquals(5, rows.size());
+        assertTrue(((Exception) rows.get(0)).getMessage().contains("DTPOSTED inválido"));
+        assertTrue(((Exception) rows.get(1)).getMessage().contains("DTPOSTED inválido"));
+        assertTrue(((Exception) rows.get(2)).getMessage().contains("TRNAMT inválido"));
+        assertTrue(((Exception) rows.get(3)).getMessage().contains("TRNAMT vacío"));
+        assertEquals("Válido", ((StatementRecord) rows.get(4)).description());
+    }
+}
@@ -0,0 +1,133 @@
+package com.punto.de.venta.mcp.ledger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EventJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<EventJournal> journals = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        journals.forEach(EventJournal::close);
+    }
+
+    @Test
+    void replaysEveryRecordAfterReopening() throws IOException {
+        EventJournal journal = open();
+        journal.append(bytes("uno"));
+        JournalPosition afterFirst = journal.append(bytes("dos"));
+        journal.append(bytes("tres"));
+        journal.close();
+
+        EventJournal reopened = open();
+        assertEquals(List.of("uno", "dos", "tres"), replay(reopened, JournalPosition.START));
+        assertEquals(List.of("tres"), replay(reopened, afterFirst));
+    }
+
+    @Test
+    void tornTailIsTruncatedAndLaterAppendsReplay() throws IOException {
+        EventJournal journal = open();
+        journal.append(bytes("uno"));
+        journal.append(bytes("dos"));
+        journal.close();
+        // El pod cayó a mitad de un registro: cabecera completa y payload cortado
+        Path segment = onlySegment();
+        Files.write(segment, ByteBuffer.allocate(10).putInt(100).putInt(1234).put((byte) 'x').put((byte) 'y').array(),
+            StandardOpenOption.APPEND);
+
+        EventJournal reopened = open();
+        reopened.append(bytes("tres"));
+        assertEquals(List.of("uno", "dos", "tres"), replay(reopened, JournalPosition.START));
+    }
+
+    @Test
+    void corruptedRecordStopsTheReplayOfItsSegment() throws IOException {
+        EventJournal journal = open();
+        journal.append(bytes("uno"));
+        JournalPosition afterFirst = journal.append(bytes("dos"));
+        journal.close();
+        byte[] raw = Files.readAllBytes(onlySegment());
+        raw[(int) afterFirst.offset() - 1] ^= 0x7F;
+        Files.write(onlySegment(), raw);
+
+        assertEquals(List.of("uno"), replay(open(), JournalPosition.START));
+    }
+
+    @Test
+    void segmentWithUnknownHeaderIsQuarantinedInsteadOfTruncated() throws IOException {
+        EventJournal journal = open();
+        journal.append(bytes("uno"));
+        journal.close();
+        Path segment = onlySegment();
+        byte[] foreign = ByteBuffer.allocate(16).putInt(0x504A4C31).putInt(2).putLong(42).array();
+        Files.write(segment, foreign);
+
+        EventJournal reopened = open();
+        reopened.append(bytes("dos"));
+
+        Path quarantined = segment.resolveSibling(segment.getFileName() + ".quarantined");
+        assertArrayEquals(foreign, Files.readAllBytes(quarantined));
+        assertEquals(2, reopened.position().segment());
+        assertEquals(List.of("dos"), replay(reopened, JournalPosition.START));
+    }
+
+    @Test
+    void segmentLeftWithoutHeaderIsReinitialized() throws IOException {
+        EventJournal journal = open();
+        journal.append(bytes("uno"));
+        journal.rotate();
+        journal.close();
+        // El pod cayó justo después de crear el segmento 2
+        Files.write(dir.resolve("segment-000000000002.log"), new byte[3]);
+
+        EventJournal reopened = open();
+        reopened.append(bytes("dos"));
+        assertEquals(2, reopened.position().segment());
+        assertEquals(List.of("uno", "dos"), replay(reopened, JournalPosition.START));
+    }
+
+    private EventJournal open() throws IOException {
+        EventJournal journal = new EventJournal();
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "directory", dir.toString());
+        journal.open();
+        journals.add(journal);
+        return journal;
+    }
+
+    private Path onlySegment() throws IOException {
+        try (var files = Files.list(dir)) {
+            List<Path> segments = files.filter(p -> p.getFileName().toString().endsWith(".log")).toList();
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+
+    private static List<String> replay(EventJournal journal, JournalPosition from) throws IOException {
+        List<String> payloads = new ArrayList<>();
+        journal.replay(from, (position, payload) -> payloads.add(new String(payload, StandardCharsets.UTF_8)));
+        return payloads;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
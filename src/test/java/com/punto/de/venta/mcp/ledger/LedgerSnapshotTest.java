@@ -0,0 +1,140 @@
+package com.punto.de.venta.mcp.ledger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.punto.de.venta.mcp.model.Transaction;
+import com.punto.de.venta.mcp.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Formato binario del snapshot: ida y vuelta y archivos que deben ignorarse.
+ */
+class LedgerSnapshotTest {
+
+    private static final LocalDate DIA = LocalDate.of(2025, 3, 1);
+    private static final Instant SYNC = Instant.parse("2025-03-05T10:00:00Z");
+    private static final Instant FULL_SYNC = Instant.parse("2025-03-05T04:00:00Z");
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Test
+    void roundTripKeepsSumsOwnersEntitiesAndWatermarks() throws IOException {
+        Path path = dir.resolve("ledger.snap");
+        LedgerSnapshot.write(path, new JournalPosition(3, 128), List.of(
+            image(2L, transaction(3L, 2L, "EXPENSE", "7.25", DIA)),
+            image(1L,
+                transaction(2L, 1L, "INCOME", "100.00", DIA.plusDays(1)),
+                transaction(1L, 1L, "EXPENSE", "10.00", DIA),
+                transaction(4L, 1L, "EXPENSE", "5.50", DIA.plusDays(2)))), null, objectMapper);
+
+        LedgerSnapshot snapshot = LedgerSnapshot.open(path);
+        assertNotNull(snapshot);
+        assertEquals(new JournalPosition(3, 128), snapshot.position());
+        assertEquals(2, snapshot.userCount());
+        assertTrue(snapshot.contains(1L));
+        assertFalse(snapshot.contains(9L));
+        assertEquals(DIA.plusDays(4), snapshot.syncedThrough(1L));
+        assertEquals(SYNC, snapshot.lastSync(1L));
+        assertEquals(FULL_SYNC, snapshot.lastFullSync(1L));
+
+        assertEquals(0, new BigDecimal("15.50").compareTo(snapshot.sumAmount(1L, "EXPENSE", DIA, DIA.plusDays(2))));
+        assertEquals(0, new BigDecimal("10.00").compareTo(snapshot.sumAmount(1L, "EXPENSE", DIA, DIA.plusDays(1))));
+        assertEquals(0, new BigDecimal("100.00").compareTo(snapshot.sumAmount(1L, "INCOME", DIA, DIA.plusDays(30))));
+        assertEquals(2L, snapshot.ownerOf(LedgerKind.TRANSACTION, 3L));
+        assertNull(snapshot.ownerOf(LedgerKind.TRANSACTION, 99L));
+
+        UserImage read = snapshot.read(1L, objectMapper);
+        List<Long> ids = read.entities().get(LedgerKind.TRANSACTION).stream()
+            .map(t -> ((Transaction) t).getId()).sorted().toList();
+        assertEquals(List.of(1L, 2L, 4L), ids);
+        assertEquals(DIA.plusDays(4), read.syncedThrough());
+    }
+
+    @Test
+    void usersMissingFromTheNewImagesAreCopiedFromThePrevious() throws IOException {
+        Path first = dir.resolve("first.snap");
+        LedgerSnapshot.write(first, JournalPosition.START, List.of(
+            image(1L, transaction(1L, 1L, "EXPENSE", "10.00", DIA)),
+            image(2L, transaction(2L, 2L, "EXPENSE", "7.25", DIA))), null, objectMapper);
+        LedgerSnapshot previous = LedgerSnapshot.open(first);
+
+        Path second = dir.resolve("second.snap");
+        LedgerSnapshot.write(second, new JournalPosition(1, 0), List.of(
+            image(1L, transaction(1L, 1L, "EXPENSE", "12.00", DIA))), previous, objectMapper);
+
+        LedgerSnapshot snapshot = LedgerSnapshot.open(second);
+        assertEquals(2, snapshot.userCount());
+        assertEquals(0, new BigDecimal("12.00").compareTo(snapshot.sumAmount(1L, "EXPENSE", DIA, DIA)));
+        assertEquals(0, new BigDecimal("7.25").compareTo(snapshot.sumAmount(2L, "EXPENSE", DIA, DIA)));
+        assertEquals(2L, snapshot.ownerOf(LedgerKind.TRANSACTION, 2L));
+        assertEquals(SYNC, snapshot.lastSync(2L));
+    }
+
+    @Test
+    void truncatedOrForeignFilesAreIgnored() throws IOException {
+        Path path = dir.resolve("ledger.snap");
+        LedgerSnapshot.write(path, JournalPosition.START, List.of(
+            image(1L, transaction(1L, 1L, "EXPENSE", "10.00", DIA))), null, objectMapper);
+        byte[] valid = Files.readAllBytes(path);
+
+        assertNull(LedgerSnapshot.open(dir.resolve("missing.snap")));
+        assertNull(LedgerSnapshot.open(write("header-only.snap", Arrays.copyOf(valid, 40))));
+        assertNull(LedgerSnapshot.open(write("truncated.snap", Arrays.copyOf(valid, valid.length - 1))));
+
+        byte[] magic = valid.clone();
+        ByteBuffer.wrap(magic).putInt(0, 0x12345678);
+        assertNull(LedgerSnapshot.open(write("magic.snap", magic)));
+
+        byte[] version = valid.clone();
+        ByteBuffer.wrap(version).putInt(4, LedgerSnapshot.CURRENT_VERSION + 1);
+        assertNull(LedgerSnapshot.open(write("version.snap", version)));
+
+        assertNotNull(LedgerSnapshot.open(path));
+    }
+
+    private Path write(String name, byte[] bytes) throws IOException {
+        return Files.write(dir.resolve(name), bytes);
+    }
+
+    private static UserImage image(Long userId, Transaction... transactions) {
+        return new UserImage(userId, Map.of(LedgerKind.TRANSACTION, List.of((Object[]) transactions)),
+            DIA.plusDays(4), SYNC, FULL_SYNC);
+    }
+
+    private static Transaction transaction(Long id, Long userId, String type, String amount, LocalDate date) {
+        User user = new User();
+        user.setId(userId);
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setUser(user);
+        transaction.setType(type);
+        transaction.setDescription("Movimiento " + id);
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setTransactionDate(date);
+        return transaction;
+    }
+}
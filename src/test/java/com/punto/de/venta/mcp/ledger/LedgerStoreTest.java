@@ -0,0 +1,155 @@
+package com.punto.de.venta.mcp.ledger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.punto.de.venta.mcp.model.Transaction;
+import com.punto.de.venta.mcp.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reconstrucción de los ledgers al arrancar: snapshot más los eventos del journal
+ * posteriores a él.
+ */
+class LedgerStoreTest {
+
+    private static final LocalDate DIA = LocalDate.of(2025, 3, 1);
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final List<EventJournal> journals = new ArrayList<>();
+    private final List<LedgerStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        stores.forEach(LedgerStore::shutdown);
+        journals.forEach(EventJournal::close);
+    }
+
+    @Test
+    void rebuildsFromTheSnapshotPlusTheJournalTail() throws IOException {
+        LedgerStore store = store();
+        store.syncTransactions(1L, null, List.of(
+            transaction(1L, 1L, "EXPENSE", "10.00", DIA),
+            transaction(2L, 1L, "INCOME", "100.00", DIA.plusDays(1))));
+        store.syncTransactions(2L, null, List.of(transaction(3L, 2L, "EXPENSE", "7.25", DIA)));
+        store.writeSnapshot();
+
+        // Después del snapshot: un alta y una baja que solo quedan en el journal
+        store.record(LedgerKind.TRANSACTION, transaction(4L, 1L, "EXPENSE", "5.50", DIA.plusDays(2)));
+        store.remove(LedgerKind.TRANSACTION, 3L);
+        journals.get(0).close();
+
+        LedgerStore rebuilt = store();
+        assertEquals(List.of(1L, 2L, 4L), ids(rebuilt.values(LedgerKind.TRANSACTION, 1L)));
+        assertTrue(rebuilt.values(LedgerKind.TRANSACTION, 2L).isEmpty());
+        assertEquals(0, new BigDecimal("15.50").compareTo(rebuilt.localSum(1L, "EXPENSE", DIA, DIA.plusDays(30))));
+        assertEquals(1L, rebuilt.ownerOf(LedgerKind.TRANSACTION, 4L));
+        assertNotNull(rebuilt.transactionsDeltaStart(1L));
+    }
+
+    @Test
+    void rebuildsFromTheJournalAloneWithoutSnapshot() throws IOException {
+        LedgerStore store = store();
+        store.syncTransactions(1L, null, List.of(transaction(1L, 1L, "EXPENSE", "10.00", DIA)));
+        store.record(LedgerKind.TRANSACTION, transaction(1L, 1L, "EXPENSE", "12.00", DIA));
+        journals.get(0).close();
+
+        LedgerStore rebuilt = store();
+        assertEquals(0, new BigDecimal("12.00").compareTo(rebuilt.localSum(1L, "EXPENSE", DIA, DIA)));
+    }
+
+    @Test
+    void staleLedgerStillAnswersRangesBeforeTheSyncWatermark() throws IOException {
+        LedgerStore store = store();
+        store.syncTransactions(1L, null, List.of(
+            transaction(1L, 1L, "EXPENSE", "10.00", DIA),
+            transaction(2L, 1L, "EXPENSE", "4.00", LocalDate.now())));
+        store.writeSnapshot();
+        journals.get(0).close();
+
+        LedgerStore rebuilt = store();
+        // Tras el reinicio la última sincronización ya no cuenta como reciente
+        ReflectionTestUtils.setField(rebuilt, "maxStaleness", Duration.ofMinutes(-1));
+        assertEquals(0, new BigDecimal("10.00").compareTo(rebuilt.freshSum(1L, "EXPENSE", DIA, DIA.plusDays(30)).orElseThrow()));
+        assertTrue(rebuilt.freshSum(1L, "EXPENSE", DIA, LocalDate.now()).isEmpty());
+
+        // Materializado, el ledger responde igual
+        rebuilt.values(LedgerKind.TRANSACTION, 1L);
+        assertEquals(0, new BigDecimal("10.00").compareTo(rebuilt.freshSum(1L, "EXPENSE", DIA, DIA.plusDays(30)).orElseThrow()));
+        assertTrue(rebuilt.freshSum(1L, "EXPENSE", DIA, LocalDate.now()).isEmpty());
+    }
+
+    @Test
+    void pagesFollowTheDateAndIdOrderAcrossUpdates() throws IOException {
+        LedgerStore store = store();
+        store.syncTransactions(1L, null, List.of(
+            transaction(5L, 1L, "EXPENSE", "1.00", DIA),
+            transaction(2L, 1L, "INCOME", "2.00", DIA),
+            transaction(9L, 1L, "EXPENSE", "3.00", DIA.plusDays(1)),
+            transaction(1L, 1L, "EXPENSE", "4.00", DIA.plusDays(3))));
+        // Cambia de fecha: debe salir en su nueva posición
+        store.record(LedgerKind.TRANSACTION, transaction(2L, 1L, "INCOME", "2.00", DIA.plusDays(2)));
+
+        assertEquals(List.of(5L, 9L, 2L), pageIds(store.transactionsPage(1L, DIA, DIA.plusDays(30), null, null, null, 3)));
+        assertEquals(List.of(1L), pageIds(store.transactionsPage(1L, DIA, DIA.plusDays(30), null, DIA.plusDays(2), 2L, 3)));
+        assertEquals(List.of(9L, 1L), pageIds(store.transactionsPage(1L, DIA, DIA.plusDays(30), "EXPENSE", DIA, 5L, 3)));
+        assertEquals(List.of(9L, 2L), pageIds(store.transactionsPage(1L, DIA.plusDays(1), DIA.plusDays(2), null, null, null, 3)));
+        assertTrue(store.transactionsPage(1L, DIA, DIA.plusDays(30), null, DIA.plusDays(3), 1L, 3).isEmpty());
+    }
+
+    private LedgerStore store() throws IOException {
+        EventJournal journal = new EventJournal();
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "directory", dir.resolve("journal").toString());
+        journal.open();
+        journals.add(journal);
+
+        LedgerStore store = new LedgerStore(journal, objectMapper);
+        ReflectionTestUtils.setField(store, "snapshotEnabled", true);
+        ReflectionTestUtils.setField(store, "snapshotPath", dir.resolve("snapshot/ledger.snap").toString());
+        store.rebuild();
+        stores.add(store);
+        return store;
+    }
+
+    private static Transaction transaction(Long id, Long userId, String type, String amount, LocalDate date) {
+        User user = new User();
+        user.setId(userId);
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setUser(user);
+        transaction.setType(type);
+        transaction.setDescription("Movimiento " + id);
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setTransactionDate(date);
+        return transaction;
+    }
+
+    private static List<Long> pageIds(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getId).toList();
+    }
+
+    private static List<Long> ids(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getId).sorted().toList();
+    }
+}
@@ -0,0 +1,139 @@
+package com.punto.de.venta.mcp.operation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punto.de.venta.mcp.config.ExecutorConfig;
+import com.punto.de.venta.mcp.tools.BatchTools;
+import com.punto.de.venta.mcp.tools.OperationTools;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cancelación de un lote en curso con {@code cancelarOperacion}: la invocación que ya
+ * corre en el pool del lote lo ve, las que esperan en cola ya no se ejecutan y, al terminar,
+ * ninguna queda en {@code listarOperacionesEnCurso}.
+ */
+class OperationCancellationTest {
+
+    private static final String TELEFONO = "5512345678";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OperationRegistry registry = new OperationRegistry();
+    private final OperationTools operationTools = new OperationTools(registry);
+    // Un solo hilo: la segunda invocación espera en cola mientras corre la primera
+    private final ExecutorService batchExecutor = new ExecutorConfig().batchExecutor(1, 4);
+    private final CountDownLatch enCurso = new CountDownLatch(1);
+    private final CountDownLatch liberar = new CountDownLatch(1);
+    private final AtomicInteger rapidas = new AtomicInteger();
+
+    @AfterEach
+    void apagar() {
+        batchExecutor.shutdownNow();
+    }
+
+    @Test
+    void cancellingABatchStopsItsInvocations() throws Exception {
+        ToolCallback lote = lote();
+        CompletableFuture<String> resultado = CompletableFuture.supplyAsync(() -> lote.call("{\"numeroTelefono\":\"" + TELEFONO
+            + "\",\"invocaciones\":\"[{\\\"herramienta\\\":\\\"lenta\\\"},{\\\"herramienta\\\":\\\"rapida\\\"}]\"}",
+            new ToolContext(Map.of(CancellationSignal.TOOL_CONTEXT_KEY, new CancellationSignal()))));
+        assertTrue(enCurso.await(5, TimeUnit.SECONDS));
+
+        String enLista = operationTools.listarOperacionesEnCurso(TELEFONO);
+        assertTrue(enLista.contains(BatchTools.TOOL_NAME) && enLista.contains("lenta"), enLista);
+        OperationHandle operacionLote = registry.runningFor(TELEFONO).stream()
+            .filter(handle -> BatchTools.TOOL_NAME.equals(handle.getToolName()))
+            .findFirst()
+            .orElseThrow();
+        assertTrue(operationTools.cancelarOperacion(TELEFONO, operacionLote.getId()).startsWith("Operación " + operacionLote.getId() + " cancelada"));
+        liberar.countDown();
+
+        String salida = resultado.get(5, TimeUnit.SECONDS);
+        // La que corría vio la cancelación del lote y la que esperaba ya no se ejecutó
+        assertTrue(salida.contains("lenta vio la cancelación"), salida);
+        assertTrue(salida.contains("La operación " + operacionLote.getId() + " fue cancelada"), salida);
+        assertEquals(0, rapidas.get());
+
+        assertTrue(registry.runningFor(TELEFONO).isEmpty());
+        assertEquals("No hay operaciones en curso", operationTools.listarOperacionesEnCurso(TELEFONO));
+    }
+
+    @Test
+    void finishedOperationsAreNoLongerListed() {
+        ToolCallback rapida = new OperationToolCallback(tool("rapida", () -> {
+            rapidas.incrementAndGet();
+            return operationTools.listarOperacionesEnCurso(TELEFONO);
+        }), registry, objectMapper);
+
+        // Mientras corre no se lista a sí misma
+        assertEquals("No hay operaciones en curso", rapida.call("{\"numeroTelefono\":\"" + TELEFONO + "\"}"));
+        assertEquals(1, rapidas.get());
+        assertTrue(registry.runningFor(TELEFONO).isEmpty());
+        assertTrue(operationTools.cancelarOperacion(TELEFONO, "1").startsWith("Error: No hay una operación en curso"));
+    }
+
+    private ToolCallback lote() {
+        BatchTools batchTools = new BatchTools(batchExecutor, objectMapper);
+        ReflectionTestUtils.setField(batchTools, "maxInvocations", 8);
+        batchTools.register(List.of(
+            new OperationToolCallback(tool("lenta", () -> {
+                enCurso.countDown();
+                try {
+                    liberar.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return OperationHandle.current().isCancelled() ? "lenta vio la cancelación" : "lenta terminó";
+            }), registry, objectMapper),
+            new OperationToolCallback(tool("rapida", () -> {
+                rapidas.incrementAndGet();
+                return "rapida terminó";
+            }), registry, objectMapper)));
+        ToolCallback ejecutarHerramientas = Arrays.stream(ToolCallbacks.from(batchTools))
+            .filter(callback -> callback.getToolDefinition().name().equals(BatchTools.TOOL_NAME))
+            .findFirst()
+            .orElseThrow();
+        return new OperationToolCallback(ejecutarHerramientas, registry, objectMapper);
+    }
+
+    private static ToolCallback tool(String name, Supplier<String> body) {
+        ToolDefinition definition = ToolDefinition.builder()
+            .name(name)
+            .description(name)
+            .inputSchema("{\"type\":\"object\",\"properties\":{}}")
+            .build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return body.get();
+            }
+
+            @Override
+            public String call(String toolInput, ToolContext toolContext) {
+                return body.get();
+            }
+        };
+    }
+}
@@ -0,0 +1,46 @@
+package com.punto.de.venta.mcp.output;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.ToolCallback;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tiempo de CPU por llamada y tamaño de la respuesta de {@code listarTransacciones} en modo
+ * TEXTO y JSON. No corre con {@code test}: se lanza con {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class OutputModeBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(OutputModeBenchmarkTest.class);
+
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 5_000;
+
+    @Test
+    void compareTextAndJsonModes() {
+        ToolCallback tool = new OutputModeToolCallback(OutputModeToolCallbackTest.listarTransacciones(),
+            OutputModeToolCallbackTest.objectMapper(), new OutputPreferences());
+
+        String text = tool.call(OutputModeToolCallbackTest.TEXT_INPUT);
+        String json = tool.call(OutputModeToolCallbackTest.JSON_INPUT);
+        double textMicros = measure(tool, OutputModeToolCallbackTest.TEXT_INPUT);
+        double jsonMicros = measure(tool, OutputModeToolCallbackTest.JSON_INPUT);
+        log.info("TEXTO: {} us/llamada, {} bytes", String.format("%.1f", textMicros), text.getBytes(StandardCharsets.UTF_8).length);
+        log.info("JSON:  {} us/llamada, {} bytes", String.format("%.1f", jsonMicros), json.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private double measure(ToolCallback tool, String input) {
+        for (int i = 0; i < WARMUP; i++) {
+            tool.call(input);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            tool.call(input);
+        }
+        return (System.nanoTime() - start) / (double) ITERATIONS / 1_000;
+    }
+}
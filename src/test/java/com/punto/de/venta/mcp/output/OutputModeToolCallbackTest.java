@@ -0,0 +1,170 @@
+package com.punto.de.venta.mcp.output;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.punto.de.venta.mcp.anomaly.SpendingAnomalyDetector;
+import com.punto.de.venta.mcp.model.Transaction;
+import com.punto.de.venta.mcp.model.TransactionCategory;
+import com.punto.de.venta.mcp.model.User;
+import com.punto.de.venta.mcp.service.IdempotencyGuard;
+import com.punto.de.venta.mcp.service.TransactionCategoryService;
+import com.punto.de.venta.mcp.service.TransactionService;
+import com.punto.de.venta.mcp.service.UserService;
+import com.punto.de.venta.mcp.tools.TransactionTools;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Modos TEXTO y JSON de {@code listarTransacciones} sobre una página de 200 filas. Los
+ * tiempos por llamada se miden aparte en {@link OutputModeBenchmarkTest}.
+ */
+class OutputModeToolCallbackTest {
+
+    static final int ROWS = 200;
+    static final String TEXT_INPUT = "{\"numeroTelefono\":\"5512345678\",\"fechaInicio\":\"2025-01-01\",\"fechaFin\":\"2025-12-31\",\"tamanoPagina\":" + ROWS + "}";
+    static final String JSON_INPUT = "{\"numeroTelefono\":\"5512345678\",\"fechaInicio\":\"2025-01-01\",\"fechaFin\":\"2025-12-31\",\"tamanoPagina\":" + ROWS + ",\"formatoSalida\":\"JSON\"}";
+
+    private final ObjectMapper objectMapper = objectMapper();
+
+    @Test
+    void bothModesReturnTheWholePage() throws Exception {
+        ToolCallback tool = new OutputModeToolCallback(listarTransacciones(), objectMapper, new OutputPreferences());
+
+        String text = tool.call(TEXT_INPUT);
+        String json = tool.call(JSON_INPUT);
+
+        assertEquals(ROWS, text.split("Supermercado ", -1).length - 1);
+        JsonNode page = objectMapper.readTree(json);
+        assertEquals(ROWS, page.get("filas").size());
+        assertTrue(page.hasNonNull("siguienteCursor"));
+        // Tipo, categoría y monto son iguales en todas las filas y salen una sola vez
+        assertEquals(3, page.get("columnas").size());
+        assertEquals("EXPENSE", page.get("comunes").get("tipo").asText());
+        assertTrue(json.getBytes(StandardCharsets.UTF_8).length < text.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    void unknownFormatIsRejected() {
+        ToolCallback tool = new OutputModeToolCallback(listarTransacciones(), objectMapper, new OutputPreferences());
+
+        String result = tool.call(TEXT_INPUT.replace("}", ",\"formatoSalida\":\"XML\"}"));
+
+        assertTrue(result.startsWith("Error: formatoSalida no válido: XML"));
+    }
+
+    @Test
+    void onlyStructuredToolsAdvertiseTheFormat() {
+        ToolCallback estructurada = new OutputModeToolCallback(listarTransacciones(), objectMapper, new OutputPreferences(), true);
+        ToolCallback texto = new OutputModeToolCallback(listarTransacciones(), objectMapper, new OutputPreferences(), false);
+
+        assertTrue(estructurada.getToolDefinition().inputSchema().contains(OutputModeToolCallback.FORMAT_PARAM));
+        assertFalse(texto.getToolDefinition().inputSchema().contains(OutputModeToolCallback.FORMAT_PARAM));
+        assertTrue(texto.getToolDefinition().inputSchema().contains(OutputModeToolCallback.MAX_CHARS_PARAM));
+        // Sin salida estructurada el formato pedido se descarta y la respuesta es texto
+        assertTrue(texto.call(JSON_INPUT).contains("Transacciones encontradas"));
+    }
+
+    @Test
+    void onlyListingToolsAdvertiseMaxItems() {
+        ToolCallback listado = new OutputModeToolCallback(listarTransacciones(), objectMapper, new OutputPreferences(), false, true);
+        ToolCallback calculo = new OutputModeToolCallback(listarTransacciones(), objectMapper, new OutputPreferences(), false, false);
+
+        assertTrue(listado.getToolDefinition().inputSchema().contains(OutputModeToolCallback.MAX_ITEMS_PARAM));
+        assertFalse(calculo.getToolDefinition().inputSchema().contains(OutputModeToolCallback.MAX_ITEMS_PARAM));
+        assertTrue(calculo.getToolDefinition().inputSchema().contains(OutputModeToolCallback.MAX_CHARS_PARAM));
+    }
+
+    @Test
+    void trimmedTextFitsTheBudgetOnceEncoded() throws Exception {
+        // Cada salto de línea y cada comilla ocupan dos caracteres al codificarse
+        String texto = "Pago \"Supermercado\" 1,250.00\n".repeat(60);
+        ToolCallback tool = new OutputModeToolCallback(textoFijo(objectMapper.writeValueAsString(texto)),
+            objectMapper, new OutputPreferences(), false, false);
+
+        for (int max = 2; max <= texto.length() + 200; max += 7) {
+            String result = tool.call("{\"maxCaracteres\":" + max + "}");
+            assertTrue(result.length() <= max, "maxCaracteres=" + max + " devolvió " + result.length());
+            String decodificado = objectMapper.readValue(result, String.class);
+            String conservado = decodificado.contains("\n[") ? decodificado.substring(0, decodificado.lastIndexOf("\n[")) : decodificado;
+            assertTrue(texto.startsWith(conservado));
+        }
+    }
+
+    private static ToolCallback textoFijo(String result) {
+        ToolDefinition definition = ToolDefinition.builder()
+            .name("textoFijo")
+            .description("Devuelve siempre el mismo texto")
+            .inputSchema("{\"type\":\"object\",\"properties\":{}}")
+            .build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return result;
+            }
+        };
+    }
+
+    static ObjectMapper objectMapper() {
+        return new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    static ToolCallback listarTransacciones() {
+        User user = new User();
+        user.setId(1L);
+        user.setCurrency("MXN");
+        TransactionCategory category = new TransactionCategory();
+        category.setCategoryName("Comida");
+
+        List<Transaction> rows = new ArrayList<>();
+        for (int i = 0; i <= ROWS; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setId((long) i);
+            transaction.setType("EXPENSE");
+            transaction.setDescription("Supermercado " + i);
+            transaction.setAmount(new BigDecimal("123.45"));
+            transaction.setTransactionDate(LocalDate.of(2025, 1, 1).plusDays(i % 28));
+            transaction.setTransactionCategory(category);
+            rows.add(transaction);
+        }
+
+        UserService userService = mock(UserService.class);
+        when(userService.getUserByPhone("5512345678")).thenReturn(Optional.of(user));
+        TransactionService transactionService = mock(TransactionService.class);
+        when(transactionService.getTransactionsPage(eq(1L), any(), any(), any(), any(), any(), anyInt())).thenReturn(rows);
+
+        TransactionTools tools = new TransactionTools(transactionService, mock(TransactionCategoryService.class),
+            userService, mock(IdempotencyGuard.class), mock(SpendingAnomalyDetector.class));
+        return Arrays.stream(ToolCallbacks.from(tools))
+            .filter(callback -> callback.getToolDefinition().name().equals("listarTransacciones"))
+            .findFirst()
+            .orElseThrow();
+    }
+}
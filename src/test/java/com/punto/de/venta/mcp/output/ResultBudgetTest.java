@@ -0,0 +1,78 @@
+package com.punto.de.venta.mcp.output;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultBudgetTest {
+
+    private static final String LINEAS = "Supermercado 1,250.00\n".repeat(100);
+
+    @Test
+    void negativeLimitsMeanNoLimit() {
+        ResultBudget budget = new ResultBudget(-5, -1);
+
+        assertEquals(ResultBudget.SIN_LIMITE, budget);
+        assertFalse(budget.isLimitado());
+        assertEquals(10, budget.elementos(10));
+        assertTrue(budget.cabe(LINEAS, LINEAS));
+        assertSame(LINEAS, budget.recortar(LINEAS));
+    }
+
+    @Test
+    void elementosNeverExceedsWhatTheToolWouldShow() {
+        assertEquals(5, new ResultBudget(0, 5).elementos(10));
+        assertEquals(3, new ResultBudget(0, 5).elementos(3));
+    }
+
+    @Test
+    void cabeKeepsRoomForTheSummaryLine() {
+        ResultBudget grande = new ResultBudget(1000, 0);
+        assertTrue(grande.cabe("x".repeat(700), "y".repeat(100)));
+        assertFalse(grande.cabe("x".repeat(700), "y".repeat(101)));
+
+        // Con presupuestos chicos la reserva es la mitad
+        ResultBudget chico = new ResultBudget(100, 0);
+        assertTrue(chico.cabe("x".repeat(40), "y".repeat(10)));
+        assertFalse(chico.cabe("x".repeat(40), "y".repeat(11)));
+    }
+
+    @Test
+    void recortarCutsAtALineBreakAndReportsWhatWasOmitted() {
+        String recortado = new ResultBudget(1000, 0).recortar(LINEAS);
+
+        String conservado = recortado.substring(0, recortado.indexOf("\n[Respuesta recortada"));
+        assertTrue(recortado.length() <= 1000);
+        assertTrue(LINEAS.startsWith(conservado));
+        assertTrue(conservado.endsWith("1,250.00"));
+        assertTrue(recortado.endsWith("se omitieron " + (LINEAS.length() - conservado.length())
+            + " caracteres. Usa filtros o maxElementos para acotarla.]"));
+    }
+
+    @Test
+    void recortarNeverExceedsTheBudget() {
+        for (int max = 1; max <= LINEAS.length(); max++) {
+            String recortado = new ResultBudget(max, 0).recortar(LINEAS);
+            assertTrue(recortado.length() <= max, "maxCaracteres=" + max + " devolvió " + recortado.length());
+        }
+    }
+
+    @Test
+    void smallBudgetsUseTheShortNotice() {
+        String recortado = new ResultBudget(120, 0).recortar(LINEAS);
+
+        assertFalse(recortado.contains("Respuesta recortada"));
+        assertTrue(recortado.matches("(?s).*\\n\\[\\+\\d+ caracteres]"));
+        assertEquals(LINEAS.substring(0, 6), new ResultBudget(6, 0).recortar(LINEAS));
+    }
+
+    @Test
+    void textWithinTheBudgetIsUntouched() {
+        assertSame(LINEAS, new ResultBudget(LINEAS.length(), 0).recortar(LINEAS));
+        assertNull(new ResultBudget(10, 0).recortar(null));
+    }
+}
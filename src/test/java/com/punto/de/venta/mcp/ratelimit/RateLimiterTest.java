@@ -0,0 +1,115 @@
+package com.punto.de.venta.mcp.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+
+    private static final String PHONE = "5512345678";
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void burstThenRefillAtConfiguredRate() {
+        RateLimiter limiter = limiter(properties());
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.acquire("listarTransacciones", PHONE, null).permitido());
+        }
+        RateLimitDecision rejected = limiter.acquire("listarTransacciones", PHONE, null);
+        assertFalse(rejected.permitido());
+        assertEquals(RateLimiter.USUARIO, rejected.ambito());
+        assertEquals(RateLimiter.LECTURA, rejected.tipo());
+        assertEquals(1, rejected.reintentarEnSegundos());
+
+        // 60 por minuto: un token por segundo
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertTrue(limiter.acquire("listarTransacciones", PHONE, null).permitido());
+        assertFalse(limiter.acquire("listarTransacciones", PHONE, null).permitido());
+        assertEquals(1.0, registry.get("mcp.ratelimit.buckets.exhausted").tag("scope", "usuario").tag("kind", "lectura").gauge().value());
+    }
+
+    @Test
+    void writesHaveTheirOwnBudgetAndExemptToolsAreNotLimited() {
+        RateLimiter limiter = limiter(properties());
+
+        assertTrue(limiter.acquire("registrarGasto", PHONE, null).permitido());
+        RateLimitDecision rejected = limiter.acquire("registrarGasto", PHONE, null);
+        assertFalse(rejected.permitido());
+        assertEquals(RateLimiter.ESCRITURA, rejected.tipo());
+
+        assertTrue(limiter.acquire("listarTransacciones", PHONE, null).permitido());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.acquire("cancelarOperacion", PHONE, null).permitido());
+        }
+    }
+
+    @Test
+    void clientRejectionRefundsTheUserToken() {
+        RateLimitProperties properties = properties();
+        properties.setClientRead(RateLimitBudget.of(1, 60));
+        RateLimiter limiter = limiter(properties);
+
+        assertTrue(limiter.acquire("listarTransacciones", PHONE, "sesion-1").permitido());
+        RateLimitDecision rejected = limiter.acquire("listarTransacciones", PHONE, "sesion-1");
+        assertEquals(RateLimiter.CLIENTE, rejected.ambito());
+
+        // El usuario conserva los dos tokens restantes para otra sesión
+        assertTrue(limiter.acquire("listarTransacciones", PHONE, "sesion-2").permitido());
+        assertTrue(limiter.acquire("listarTransacciones", PHONE, "sesion-3").permitido());
+        assertEquals(RateLimiter.USUARIO, limiter.acquire("listarTransacciones", PHONE, "sesion-4").ambito());
+    }
+
+    @Test
+    void concurrentCallersNeverExceedTheBurst() throws InterruptedException {
+        RateLimitProperties properties = properties();
+        properties.setUserRead(RateLimitBudget.of(100, 60));
+        RateLimiter limiter = limiter(properties);
+        AtomicInteger permitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 1000; i++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (limiter.acquire("listarTransacciones", PHONE, null).permitido()) {
+                    permitted.incrementAndGet();
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(100, permitted.get());
+    }
+
+    private RateLimiter limiter(RateLimitProperties properties) {
+        return new RateLimiter(properties, registry, nanos::get);
+    }
+
+    private static RateLimitProperties properties() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setUserRead(RateLimitBudget.of(3, 60));
+        properties.setUserWrite(RateLimitBudget.of(1, 6));
+        properties.setWriteTools(List.of("registrarGasto"));
+        properties.setExemptTools(List.of("cancelarOperacion"));
+        return properties;
+    }
+}
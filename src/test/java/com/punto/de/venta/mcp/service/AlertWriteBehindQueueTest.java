@@ -0,0 +1,264 @@
+package com.punto.de.venta.mcp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.punto.de.venta.mcp.model.Alert;
+import com.punto.de.venta.mcp.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlertWriteBehindQueueTest {
+
+    private static final String RECHAZADA = "RECHAZADA";
+    private static final String FALLA = "FALLA";
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final AtomicLong nanos = new AtomicLong();
+    private final FakeAlertService api = new FakeAlertService();
+    private final List<AlertWriteBehindQueue> queues = new ArrayList<>();
+
+    @AfterEach
+    void stopSchedulers() {
+        api.caida = false;
+        queues.forEach(AlertWriteBehindQueue::shutdown);
+    }
+
+    @Test
+    void flushSendsPendingAlertsInOrderAndListsThemWithProvisionalIds() {
+        AlertWriteBehindQueue queue = queue(10);
+        queue.submit(alert(1L, "A"));
+        queue.submit(alert(2L, "B"));
+        Alert tercera = queue.submit(alert(1L, "C"));
+
+        assertEquals(-3L, tercera.getId());
+        List<Alert> delUsuario = queue.pendingFor(1L);
+        assertEquals(List.of(-1L, -3L), delUsuario.stream().map(Alert::getId).toList());
+
+        assertEquals(3, queue.flush());
+        assertEquals(List.of("A", "B", "C"), api.creadas);
+        assertTrue(queue.pendingFor(1L).isEmpty());
+    }
+
+    @Test
+    void failedBatchIsRequeuedInOrderAndRetriedAfterBackoff() {
+        AlertWriteBehindQueue queue = queue(10);
+        queue.submit(alert(1L, "A"));
+        queue.submit(alert(1L, "B"));
+        api.caida = true;
+
+        assertEquals(0, queue.flush());
+        assertEquals(2, queue.size());
+        // Con la API caída no se insiste alerta por alerta
+        assertEquals(1, api.llamadas);
+
+        // La API ya responde, pero el envío programado espera el backoff
+        api.caida = false;
+        queue.flushQuietly();
+        assertEquals(2, queue.size());
+
+        nanos.addAndGet(TimeUnit.HOURS.toNanos(1));
+        queue.flushQuietly();
+        assertEquals(0, queue.size());
+        assertEquals(List.of("A", "B"), api.creadas);
+    }
+
+    @Test
+    void outageDoesNotSpendAttempts() {
+        AlertWriteBehindQueue queue = queue(3);
+        queue.submit(alert(1L, "A"));
+        api.caida = true;
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, queue.flush());
+        }
+        assertEquals(1, queue.size());
+        assertFalse(Files.exists(dir.resolve("dead.ndjson")));
+
+        api.caida = false;
+        assertEquals(1, queue.flush());
+    }
+
+    @Test
+    void clientErrorParksTheAlertAtOnceWithoutBatchEndpoint() throws Exception {
+        AlertWriteBehindQueue queue = queue(10);
+        queue.submit(alert(1L, "A"));
+        queue.submit(alert(1L, RECHAZADA));
+        queue.submit(alert(1L, "C"));
+
+        assertEquals(2, queue.flush());
+        assertEquals(0, queue.size());
+        assertEquals(List.of("A", "C"), api.creadas);
+        String apartada = Files.readString(dir.resolve("dead.ndjson"));
+        assertTrue(apartada.contains(RECHAZADA));
+        assertTrue(apartada.contains("\"intentos\":1"));
+    }
+
+    @Test
+    void clientErrorOnTheBatchEndpointParksOnlyTheRejectedAlert() throws Exception {
+        AlertWriteBehindQueue queue = queue(10);
+        queue.submit(alert(1L, "A"));
+        queue.submit(alert(1L, RECHAZADA));
+        queue.submit(alert(1L, "C"));
+        api.batch = true;
+
+        assertEquals(2, queue.flush());
+        assertEquals(0, queue.size());
+        assertEquals(List.of("A", "C"), api.creadas);
+        List<String> apartadas = Files.readAllLines(dir.resolve("dead.ndjson"));
+        assertEquals(1, apartadas.size());
+        assertTrue(apartadas.get(0).contains(RECHAZADA));
+    }
+
+    @Test
+    void alertThatKeepsFailingIsParkedAfterMaxAttempts() throws Exception {
+        AlertWriteBehindQueue queue = queue(3);
+        queue.submit(alert(1L, "A"));
+        queue.submit(alert(1L, FALLA));
+
+        assertEquals(1, queue.flush());
+        assertEquals(1, queue.size());
+        assertEquals(0, queue.flush());
+        assertEquals(1, queue.size());
+        assertFalse(Files.exists(dir.resolve("dead.ndjson")));
+
+        assertEquals(0, queue.flush());
+        assertEquals(0, queue.size());
+        String apartada = Files.readString(dir.resolve("dead.ndjson"));
+        assertTrue(apartada.contains("\"intentos\":3"));
+    }
+
+    @Test
+    void pendingAlertsSurviveARestartWithTheirProvisionalIds() {
+        AlertWriteBehindQueue queue = queue(10);
+        queue.submit(alert(1L, "A"));
+        queue.submit(alert(1L, "B"));
+        api.caida = true;
+        queue.shutdown();
+        assertTrue(Files.exists(dir.resolve("pending.json")));
+
+        AlertWriteBehindQueue reiniciada = queue(10);
+        assertEquals(List.of(-1L, -2L), reiniciada.pendingFor(1L).stream().map(Alert::getId).toList());
+        assertEquals(-3L, reiniciada.submit(alert(1L, "C")).getId());
+
+        api.caida = false;
+        assertEquals(3, reiniciada.flush());
+        assertEquals(List.of("A", "B", "C"), api.creadas);
+    }
+
+    private AlertWriteBehindQueue queue(int maxAttempts) {
+        AlertWriteBehindQueue queue = new AlertWriteBehindQueue(api, objectMapper, nanos::get);
+        ReflectionTestUtils.setField(queue, "enabled", true);
+        ReflectionTestUtils.setField(queue, "batchSize", 50);
+        // El envío periódico no debe interferir con los que lanza el test
+        ReflectionTestUtils.setField(queue, "flushInterval", Duration.ofHours(1));
+        ReflectionTestUtils.setField(queue, "maxAttempts", maxAttempts);
+        ReflectionTestUtils.setField(queue, "spillFile", dir.resolve("pending.json").toString());
+        ReflectionTestUtils.setField(queue, "deadLetterFile", dir.resolve("dead.ndjson").toString());
+        queue.start();
+        queues.add(queue);
+        return queue;
+    }
+
+    private static Alert alert(Long userId, String type) {
+        User user = new User();
+        user.setId(userId);
+        Alert alert = new Alert();
+        alert.setUser(user);
+        alert.setAlertType(type);
+        alert.setMessage("Mensaje " + type);
+        return alert;
+    }
+
+    /**
+     * API de alertas en memoria: la alerta {@code RECHAZADA} recibe un 400 y {@code FALLA}
+     * un 503. Sin {@code batch}, {@code createAlerts} se comporta como el servicio real:
+     * crea una a una y deja {@code null} donde falla. Con {@code batch}, un lote con la
+     * alerta rechazada falla entero con 400, como el endpoint batch.
+     */
+    private static final class FakeAlertService extends AlertService {
+
+        private final List<String> creadas = new ArrayList<>();
+        private volatile boolean caida;
+        private boolean batch;
+        private int llamadas;
+        private long ids;
+
+        private FakeAlertService() {
+            super(null);
+        }
+
+        @Override
+        public boolean isBatchEnabled() {
+            return batch;
+        }
+
+        @Override
+        public synchronized Alert createAlert(Alert alert) {
+            llamadas++;
+            if (caida) {
+                throw new ResourceAccessException("Connection refused");
+            }
+            if (RECHAZADA.equals(alert.getAlertType())) {
+                throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+            }
+            if (FALLA.equals(alert.getAlertType())) {
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            creadas.add(alert.getAlertType());
+            Alert created = new Alert();
+            created.setId(++ids);
+            created.setAlertType(alert.getAlertType());
+            return created;
+        }
+
+        @Override
+        public synchronized List<Alert> createAlerts(List<Alert> alerts) {
+            List<Alert> created = new ArrayList<>();
+            if (!batch) {
+                for (Alert alert : alerts) {
+                    try {
+                        created.add(createAlert(alert));
+                    } catch (Exception e) {
+                        created.add(null);
+                    }
+                }
+                return created;
+            }
+            llamadas++;
+            if (caida) {
+                throw new ResourceAccessException("Connection refused");
+            }
+            if (alerts.stream().anyMatch(a -> RECHAZADA.equals(a.getAlertType()))) {
+                throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+            }
+            for (Alert alert : alerts) {
+                created.add(createAlert(alert));
+            }
+            return created;
+        }
+    }
+}
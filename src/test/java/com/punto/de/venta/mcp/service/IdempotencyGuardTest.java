@@ -0,0 +1,113 @@
+package com.punto.de.venta.mcp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdempotencyGuardTest {
+
+    private static final String PHONE = "5512345678";
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final IdempotencyGuard guard = new IdempotencyGuard(nanos::get);
+    private final AtomicInteger ejecuciones = new AtomicInteger();
+
+    @Test
+    void retryWithinTheWindowGetsTheOriginalResult() {
+        String original = registrar("Café ", new BigDecimal("45.50"));
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(90));
+        String reintento = registrar("café", new BigDecimal("45.5"));
+
+        assertEquals(original, reintento);
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void sameWriteAfterTheWindowIsANewWrite() {
+        registrar("Café", new BigDecimal("45.50"));
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(2) + 1);
+        registrar("Café", new BigDecimal("45.50"));
+
+        assertEquals(2, ejecuciones.get());
+    }
+
+    @Test
+    void windowStartsWhenTheOriginalCallFinishes() {
+        // La llamada original tarda más que la ventana; el reintento que llega justo después es duplicado
+        guard.execute("registrarGasto", PHONE, () -> {
+            nanos.addAndGet(TimeUnit.MINUTES.toNanos(3));
+            return "ID: " + ejecuciones.incrementAndGet();
+        }, "Café", new BigDecimal("45.50"));
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        registrar("Café", new BigDecimal("45.50"));
+
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void errorsAreNotRemembered() {
+        guard.execute("registrarGasto", PHONE, () -> "Error: API no disponible", "Café", BigDecimal.TEN);
+        assertThrows(IllegalStateException.class, () -> guard.execute("registrarGasto", PHONE, () -> {
+            throw new IllegalStateException("caída");
+        }, "Café", BigDecimal.TEN));
+
+        registrar("Café", BigDecimal.TEN);
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void concurrentRetryGetsTheOriginalExceptionUnwrapped() throws Exception {
+        CountDownLatch iniciada = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        AtomicReference<Thread> reintento = new AtomicReference<>();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> original = executor.submit(() -> guard.execute("registrarGasto", PHONE, () -> {
+                iniciada.countDown();
+                await(liberar);
+                throw new IllegalStateException("timeout de la API");
+            }, "Café", BigDecimal.TEN));
+            iniciada.await();
+            Future<String> duplicado = executor.submit(() -> {
+                reintento.set(Thread.currentThread());
+                return guard.execute("registrarGasto", PHONE, () -> "ID: " + ejecuciones.incrementAndGet(), "Café", BigDecimal.TEN);
+            });
+            // El reintento queda esperando el resultado de la llamada original
+            while (reintento.get() == null || reintento.get().getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+            liberar.countDown();
+
+            Throwable error = assertThrows(Exception.class, () -> duplicado.get(5, TimeUnit.SECONDS)).getCause();
+            assertEquals(IllegalStateException.class, error.getClass());
+            assertEquals("timeout de la API", error.getMessage());
+            assertThrows(Exception.class, () -> original.get(5, TimeUnit.SECONDS));
+            assertEquals(0, ejecuciones.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String registrar(String descripcion, BigDecimal monto) {
+        return guard.execute("registrarGasto", PHONE, () -> "ID: " + ejecuciones.incrementAndGet(), descripcion, monto);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
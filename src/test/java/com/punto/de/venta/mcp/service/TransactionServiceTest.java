@@ -0,0 +1,92 @@
+package com.punto.de.venta.mcp.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punto.de.venta.mcp.ledger.EventJournal;
+import com.punto.de.venta.mcp.ledger.LedgerStore;
+import com.punto.de.venta.mcp.model.Transaction;
+import com.punto.de.venta.mcp.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Paginación de transacciones sin ledger: solo se piden a la API ventanas de fechas
+ * desde la posición del cursor.
+ */
+class TransactionServiceTest {
+
+    private static final LocalDate INICIO = LocalDate.of(2025, 1, 1);
+    private static final LocalDate FIN = LocalDate.of(2025, 12, 31);
+
+    private final FakeTransactionService service = new FakeTransactionService();
+
+    @Test
+    void firstPageOnlyFetchesTheWindowsItNeeds() {
+        // Una transacción cada 10 días: la primera ventana de 31 días trae 4
+        List<Transaction> page = service.getTransactionsPage(1L, INICIO, FIN, null, null, null, 5);
+
+        assertEquals(6, page.size());
+        assertEquals(List.of(INICIO + ".." + INICIO.plusDays(30), INICIO.plusDays(31) + ".." + INICIO.plusDays(92)),
+            service.ventanas);
+    }
+
+    @Test
+    void nextPageStartsAtTheCursorAndSkipsRowsAlreadyShown() {
+        LocalDate afterDate = INICIO.plusDays(40);
+        List<Transaction> page = service.getTransactionsPage(1L, INICIO, FIN, null, afterDate, 5L, 2);
+
+        assertEquals(List.of(6L, 7L, 8L), page.stream().map(Transaction::getId).toList());
+        assertEquals(afterDate + ".." + afterDate.plusDays(30), service.ventanas.get(0));
+    }
+
+    @Test
+    void lastPageStopsAtTheEndOfTheRange() {
+        List<Transaction> page = service.getTransactionsPage(1L, INICIO, FIN, "INCOME", null, null, 50);
+
+        assertEquals(List.of(3L, 6L, 9L), page.stream().map(Transaction::getId).limit(3).toList());
+        assertEquals(FIN.toString(), service.ventanas.get(service.ventanas.size() - 1).split("\\.\\.")[1]);
+    }
+
+    /**
+     * API en memoria con una transacción cada 10 días del año; anota cada ventana pedida.
+     */
+    private static final class FakeTransactionService extends TransactionService {
+
+        private final List<String> ventanas = new ArrayList<>();
+
+        private FakeTransactionService() {
+            super(null, new LedgerStore(new EventJournal(), new ObjectMapper()), null, new ObjectMapper(), null);
+        }
+
+        @Override
+        public List<Transaction> getTransactionsByUserIdAndDateRange(Long userId, LocalDate startDate, LocalDate endDate) {
+            ventanas.add(startDate + ".." + endDate);
+            List<Transaction> result = new ArrayList<>();
+            // Sin orden, como la API
+            for (long id = 37; id >= 1; id--) {
+                LocalDate date = INICIO.plusDays((id - 1) * 10);
+                if (!date.isBefore(startDate) && !date.isAfter(endDate)) {
+                    result.add(transaction(id, date));
+                }
+            }
+            return result;
+        }
+    }
+
+    private static Transaction transaction(Long id, LocalDate date) {
+        User user = new User();
+        user.setId(1L);
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setUser(user);
+        transaction.setType(id % 3 == 0 ? "INCOME" : "EXPENSE");
+        transaction.setAmount(BigDecimal.TEN);
+        transaction.setTransactionDate(date);
+        return transaction;
+    }
+}
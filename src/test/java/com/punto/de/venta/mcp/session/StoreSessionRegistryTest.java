@@ -0,0 +1,88 @@
+package com.punto.de.venta.mcp.session;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Dos réplicas comparten un {@link InMemorySessionStore} como sustituto del almacén real.
+ */
+class StoreSessionRegistryTest {
+
+    private static final Duration TTL = Duration.ofMinutes(2);
+
+    private final MutableClock clock = new MutableClock();
+    private final InMemorySessionStore store = new InMemorySessionStore(clock);
+    private final StoreSessionRegistry replicaA = new StoreSessionRegistry(store, "http://10.0.0.1:8080", TTL);
+    private final StoreSessionRegistry replicaB = new StoreSessionRegistry(store, "http://10.0.0.2:8080", TTL);
+
+    @Test
+    void otherReplicaResolvesOwnerUntilStreamCloses() {
+        replicaA.register("s-1");
+
+        assertTrue(replicaA.isLocal("s-1"));
+        assertFalse(replicaB.isLocal("s-1"));
+        assertEquals(Optional.of("http://10.0.0.1:8080"), replicaB.ownerOf("s-1"));
+
+        replicaA.unregister("s-1");
+        assertEquals(Optional.empty(), replicaB.ownerOf("s-1"));
+    }
+
+    @Test
+    void sessionsExpireUnlessTheOwnerRefreshesThem() {
+        replicaA.register("s-1");
+        replicaA.register("s-2");
+        replicaA.unregister("s-2");
+
+        clock.advance(Duration.ofMinutes(1));
+        replicaA.refresh();
+        clock.advance(Duration.ofMinutes(1).plusSeconds(30));
+        assertEquals(Optional.of("http://10.0.0.1:8080"), replicaB.ownerOf("s-1"));
+
+        // Sin renovaciones (el pod murió) la sesión caduca
+        clock.advance(TTL);
+        assertEquals(Optional.empty(), replicaB.ownerOf("s-1"));
+    }
+
+    @Test
+    void staleOwnerDoesNotRemoveSessionRegisteredByAnotherReplica() {
+        replicaA.register("s-1");
+        replicaB.register("s-1");
+
+        replicaA.unregister("s-1");
+        assertEquals(Optional.of("http://10.0.0.2:8080"), replicaA.ownerOf("s-1"));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.punto.de.venta.mcp.subscription;
+
+import com.punto.de.venta.mcp.model.Transaction;
+import com.punto.de.venta.mcp.text.TextNormalizer;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SubscriptionDetectorTest {
+
+    private static final LocalDate HOY = LocalDate.of(2026, 6, 20);
+
+    private final SubscriptionDetector detector = new SubscriptionDetector();
+
+    @Test
+    void merchantKeyDropsReferencesAndBankNoise() {
+        assertEquals("netflix", TextNormalizer.merchantKey("NETFLIX.COM 12/03 REF 88812"));
+        assertEquals("netflix", TextNormalizer.merchantKey("Pago Netflix"));
+        assertEquals("cafe la nina", TextNormalizer.merchantKey("Café  La Niña #4411 Coyoacán"));
+    }
+
+    @Test
+    void findsPeriodicChargesAndIgnoresIrregularOnes() {
+        List<Transaction> transacciones = new ArrayList<>();
+        long id = 1;
+        // Netflix mensual desde 2024 con cambio de precio y descripciones distintas
+        for (int m = 0; m < 30; m++) {
+            LocalDate fecha = LocalDate.of(2024, 1, 5).plusMonths(m);
+            transacciones.add(gasto(id++, "NETFLIX.COM " + fecha.getMonthValue() + "/" + fecha.getDayOfMonth(), m < 12 ? "199.00" : "219.00", fecha));
+        }
+        // Gimnasio anual, con un día de diferencia entre años
+        transacciones.add(gasto(id++, "Smart Fit anualidad", "4990.00", LocalDate.of(2023, 7, 1)));
+        transacciones.add(gasto(id++, "Smart Fit anualidad", "4990.00", LocalDate.of(2024, 7, 2)));
+        transacciones.add(gasto(id++, "Smart Fit anualidad", "4990.00", LocalDate.of(2025, 7, 1)));
+        // Spotify semanal que se dejó de pagar
+        for (int w = 0; w < 10; w++) {
+            transacciones.add(gasto(id++, "Spotify", "35.00", LocalDate.of(2025, 1, 6).plusWeeks(w)));
+        }
+        // Súper en el mismo comercio, montos y fechas irregulares
+        int[] dias = {0, 3, 11, 12, 25, 40, 44, 58, 71, 73};
+        for (int i = 0; i < dias.length; i++) {
+            transacciones.add(gasto(id++, "Walmart Super", String.valueOf(300 + 97 * i) + ".00", LocalDate.of(2026, 1, 2).plusDays(dias[i])));
+        }
+        transacciones.sort((a, b) -> a.getTransactionDate().compareTo(b.getTransactionDate()));
+
+        Map<String, DetectedSubscription> detectadas = detector.detect(transacciones, HOY).stream()
+            .collect(Collectors.toMap(DetectedSubscription::clave, Function.identity()));
+
+        assertEquals(3, detectadas.size());
+        DetectedSubscription netflix = detectadas.get("netflix");
+        assertEquals(Periodicity.MONTHLY, netflix.periodicidad());
+        assertEquals(30, netflix.cargos());
+        assertEquals(new BigDecimal("219.00"), netflix.monto());
+        assertEquals(LocalDate.of(2026, 7, 5), netflix.proximoCargo());
+        assertTrue(netflix.activa());
+
+        DetectedSubscription gimnasio = detectadas.get("smart fit anualidad");
+        assertEquals(Periodicity.YEARLY, gimnasio.periodicidad());
+        assertEquals(new BigDecimal("416.12"), gimnasio.montoMensual());
+        assertTrue(gimnasio.activa());
+
+        DetectedSubscription spotify = detectadas.get("spotify");
+        assertEquals(Periodicity.WEEKLY, spotify.periodicidad());
+        assertFalse(spotify.activa());
+    }
+
+    @Test
+    void unsortedInputGivesTheSameResult() {
+        List<Transaction> transacciones = new ArrayList<>();
+        for (int m = 5; m >= 0; m--) {
+            transacciones.add(gasto(m, "Disney Plus", "159.00", LocalDate.of(2026, 1, 15).plusMonths(m)));
+        }
+
+        List<DetectedSubscription> detectadas = detector.detect(transacciones, HOY);
+
+        assertEquals(1, detectadas.size());
+        assertEquals(LocalDate.of(2026, 1, 15), detectadas.get(0).primerCargo());
+        assertEquals(1.0, detectadas.get(0).regularidad());
+    }
+
+    private static Transaction gasto(long id, String descripcion, String monto, LocalDate fecha) {
+        Transaction t = new Transaction();
+        t.setId(id);
+        t.setType("EXPENSE");
+        t.setDescription(descripcion);
+        t.setAmount(new BigDecimal(monto));
+        t.setTransactionDate(fecha);
+        return t;
+    }
+}
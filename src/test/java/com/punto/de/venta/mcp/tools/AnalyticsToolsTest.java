@@ -0,0 +1,32 @@
+package com.punto.de.venta.mcp.tools;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cuántos escenarios corre {@code simularFlujoEfectivo} según lo pedido y el límite de pasos.
+ */
+class AnalyticsToolsTest {
+
+    private static final long MAX_STEPS = 60_000_000L;
+
+    @Test
+    void smallRequestsAreHonoured() {
+        assertEquals(10, AnalyticsTools.trayectorias(10, 90 * 12, MAX_STEPS));
+        assertEquals(1, AnalyticsTools.trayectorias(1, 90 * 12, MAX_STEPS));
+    }
+
+    @Test
+    void stepBudgetIsAppliedLast() {
+        long pasos = 365L * 400;
+        int trayectorias = AnalyticsTools.trayectorias(20_000, pasos, MAX_STEPS);
+
+        assertEquals(410, trayectorias);
+        assertTrue(trayectorias * pasos <= MAX_STEPS);
+        // Antes se forzaban 100 escenarios aunque excedieran el límite
+        assertEquals(16, AnalyticsTools.trayectorias(2000, 365L * 10_000, MAX_STEPS));
+        assertEquals(0, AnalyticsTools.trayectorias(2000, MAX_STEPS + 1, MAX_STEPS));
+    }
+}
@@ -0,0 +1,59 @@
+package com.punto.de.venta.mcp.tools;
+
+import com.punto.de.venta.mcp.anomaly.SpendingAnomalyDetector;
+import com.punto.de.venta.mcp.model.User;
+import com.punto.de.venta.mcp.service.IdempotencyGuard;
+import com.punto.de.venta.mcp.service.TransactionCategoryService;
+import com.punto.de.venta.mcp.service.TransactionService;
+import com.punto.de.venta.mcp.service.UserService;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cursores alterados: con la huella correcta pero una clave que no se puede leer.
+ */
+class PageCursorTest {
+
+    @Test
+    void unreadableKeyIsAnInvalidCursor() {
+        assertEquals(LocalDate.of(2025, 3, 1), PageCursor.parseDate("2025-03-01"));
+        assertEquals("Cursor inválido",
+            assertThrows(IllegalArgumentException.class, () -> PageCursor.parseDate("2025-13-40")).getMessage());
+        assertEquals("Cursor inválido",
+            assertThrows(IllegalArgumentException.class, () -> PageCursor.parseId("doce")).getMessage());
+    }
+
+    @Test
+    void listarTransaccionesRejectsATamperedCursor() {
+        User user = new User();
+        user.setId(1L);
+        UserService userService = mock(UserService.class);
+        when(userService.getUserByPhone("5512345678")).thenReturn(Optional.of(user));
+        TransactionService transactionService = mock(TransactionService.class);
+        TransactionTools tools = new TransactionTools(transactionService, mock(TransactionCategoryService.class),
+            userService, mock(IdempotencyGuard.class), mock(SpendingAnomalyDetector.class));
+        String scope = PageCursor.scope("listarTransacciones", 1L,
+            LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31), null);
+
+        String fechaAlterada = tools.listarTransacciones("5512345678", "2025-01-01", "2025-12-31", null,
+            PageCursor.encode(scope, "ayer", "7"), null);
+        String idAlterado = tools.listarTransacciones("5512345678", "2025-01-01", "2025-12-31", null,
+            PageCursor.encode(scope, "2025-03-01", "siete"), null);
+
+        assertEquals("Error: Cursor inválido", fechaAlterada);
+        assertEquals("Error: Cursor inválido", idAlterado);
+        verify(transactionService, never()).getTransactionsPage(anyLong(), any(), any(), any(), any(), any(), anyInt());
+    }
+}
@@ -0,0 +1,67 @@
+package com.punto.de.venta.mcp.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TopNTest {
+
+    private static final Comparator<BigDecimal> POR_MONTO = Comparator.naturalOrder();
+
+    @Test
+    void keepsTheLargestInDescendingOrderAndTotalsEverything() {
+        TopN<BigDecimal> top = new TopN<>(3, POR_MONTO, Function.identity());
+        for (String monto : List.of("5", "40", "1", "25", "40", "3", "12")) {
+            top.add(new BigDecimal(monto));
+        }
+
+        assertEquals(List.of(new BigDecimal("40"), new BigDecimal("40"), new BigDecimal("25")), top.mejores());
+        assertEquals(7, top.total());
+        assertEquals(0, new BigDecimal("126").compareTo(top.sumaTotal()));
+    }
+
+    @Test
+    void fewerItemsThanNAreAllKept() {
+        TopN<BigDecimal> top = new TopN<>(10, POR_MONTO, Function.identity());
+        top.add(BigDecimal.ONE);
+        top.add(BigDecimal.TEN);
+
+        assertEquals(List.of(BigDecimal.TEN, BigDecimal.ONE), top.mejores());
+    }
+
+    @Test
+    void zeroOrNegativeNOnlyCounts() {
+        TopN<BigDecimal> cero = new TopN<>(0, POR_MONTO, Function.identity());
+        TopN<BigDecimal> negativo = new TopN<>(-2, POR_MONTO, Function.identity());
+        for (int i = 1; i <= 4; i++) {
+            cero.add(BigDecimal.valueOf(i));
+            negativo.add(BigDecimal.valueOf(i));
+        }
+
+        assertTrue(cero.mejores().isEmpty());
+        assertTrue(negativo.mejores().isEmpty());
+        assertEquals(4, cero.total());
+        assertEquals(0, BigDecimal.TEN.compareTo(cero.sumaTotal()));
+    }
+
+    @Test
+    void missingAmountsCountAsZero() {
+        TopN<Map.Entry<String, BigDecimal>> top = new TopN<>(2,
+            Comparator.comparing(Map.Entry::getKey), Map.Entry::getValue);
+        Map.Entry<String, BigDecimal> sinMonto = new AbstractMap.SimpleEntry<>("Sin monto", null);
+        top.add(sinMonto);
+        top.add(Map.entry("Comida", BigDecimal.ONE));
+
+        assertEquals(2, top.total());
+        assertEquals(0, BigDecimal.ONE.compareTo(top.sumaTotal()));
+        assertEquals(BigDecimal.ZERO, top.monto(sinMonto));
+    }
+}
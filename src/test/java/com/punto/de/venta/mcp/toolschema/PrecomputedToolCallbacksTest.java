@@ -0,0 +1,94 @@
+package com.punto.de.venta.mcp.toolschema;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.support.ToolDefinitions;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Cuándo se usan las definiciones generadas en el build y cuándo se vuelve a la reflexión.
+ */
+class PrecomputedToolCallbacksTest {
+
+    @Test
+    void upToDateDefinitionsAreUsedAsIs() throws Exception {
+        PrecomputedToolCallbacks callbacks = new PrecomputedToolCallbacks(List.of(generada(saludar())));
+
+        ToolCallback[] tools = callbacks.from(new SaludoTools());
+
+        assertEquals(1, callbacks.getPrecomputed());
+        assertEquals(0, callbacks.getReflected());
+        assertEquals(ToolDefinitions.from(saludar()).inputSchema(), tools[0].getToolDefinition().inputSchema());
+    }
+
+    @Test
+    void staleParameterDescriptionFallsBackToReflection() throws Exception {
+        // Generada cuando el parámetro tenía otra descripción: mismo nombre, descripción y firma
+        PrecomputedToolDefinition anterior = generada(otraDescripcion());
+        PrecomputedToolDefinition vieja = new PrecomputedToolDefinition(PrecomputedToolDefinition.key(saludar()),
+            anterior.nombre(), anterior.descripcion(), anterior.esquema(), anterior.huella());
+        PrecomputedToolCallbacks callbacks = new PrecomputedToolCallbacks(List.of(vieja));
+
+        ToolCallback[] tools = callbacks.from(new SaludoTools());
+
+        assertEquals(0, callbacks.getPrecomputed());
+        assertEquals(1, callbacks.getReflected());
+        assertEquals(ToolDefinitions.from(saludar()).inputSchema(), tools[0].getToolDefinition().inputSchema());
+        assertNotEquals(anterior.esquema(), tools[0].getToolDefinition().inputSchema());
+    }
+
+    @Test
+    void definitionsWithoutHuellaAreNeverTrusted() throws Exception {
+        PrecomputedToolDefinition actual = generada(saludar());
+        PrecomputedToolCallbacks callbacks = new PrecomputedToolCallbacks(List.of(new PrecomputedToolDefinition(
+            actual.metodo(), actual.nombre(), actual.descripcion(), actual.esquema(), null)));
+
+        callbacks.from(new SaludoTools());
+
+        assertEquals(1, callbacks.getReflected());
+    }
+
+    @Test
+    void huellaChangesWithParameterAnnotations() throws Exception {
+        assertEquals(PrecomputedToolDefinition.huella(saludar()), PrecomputedToolDefinition.huella(saludar()));
+        assertNotEquals(PrecomputedToolDefinition.huella(saludar()), PrecomputedToolDefinition.huella(otraDescripcion()));
+    }
+
+    private static Method saludar() throws NoSuchMethodException {
+        return SaludoTools.class.getDeclaredMethod("saludar", String.class);
+    }
+
+    private static Method otraDescripcion() throws NoSuchMethodException {
+        return OtraDescripcion.class.getDeclaredMethod("saludar", String.class);
+    }
+
+    private static PrecomputedToolDefinition generada(Method method) {
+        ToolDefinition definition = ToolDefinitions.from(method);
+        return new PrecomputedToolDefinition(PrecomputedToolDefinition.key(method), definition.name(),
+            definition.description(), definition.inputSchema(), PrecomputedToolDefinition.huella(method));
+    }
+
+    static class SaludoTools {
+
+        @Tool(name = "saludar", description = "Saluda a un usuario")
+        public String saludar(@ToolParam(description = "Nombre del usuario") String nombre) {
+            return "Hola " + nombre;
+        }
+    }
+
+    static class OtraDescripcion {
+
+        @Tool(name = "saludar", description = "Saluda a un usuario")
+        public String saludar(@ToolParam(description = "Nombre completo del usuario") String nombre) {
+            return "Hola " + nombre;
+        }
+    }
+}
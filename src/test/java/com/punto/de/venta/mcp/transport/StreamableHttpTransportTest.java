@@ -0,0 +1,268 @@
+package com.punto.de.venta.mcp.transport;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.punto.de.venta.mcp.operation.OperationHandle;
+import com.punto.de.venta.mcp.operation.OperationRegistry;
+import com.punto.de.venta.mcp.operation.OperationToolCallback;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.reactive.function.server.MockServerRequest;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+
+/**
+ * Métodos, códigos de error, notificaciones, lotes y cancelación del transporte HTTP
+ * streamable sobre tools en memoria.
+ */
+class StreamableHttpTransportTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OperationRegistry registry = new OperationRegistry();
+    private final CountDownLatch iniciada = new CountDownLatch(1);
+    private final CountDownLatch cancelada = new CountDownLatch(1);
+
+    private final StreamableHttpTransport transport = new StreamableHttpTransport(List.of(
+        tool("eco", input -> "Recibido " + input),
+        tool("falla", input -> {
+            throw new IllegalStateException("API no disponible");
+        }),
+        tool("conAvance", input -> {
+            OperationHandle.current().progress(1, 2, "primera mitad");
+            return "Listo";
+        }),
+        tool("lenta", input -> esperarCancelacion())), objectMapper, "pos-mcp-server", "0.0.1", TrustedProxies.DEFAULT);
+
+    private final WebTestClient client = WebTestClient
+        .bindToRouterFunction(RouterFunctions.route(POST("/mcp"), transport::handle))
+        .configureClient().responseTimeout(Duration.ofSeconds(10))
+        .build();
+
+    @Test
+    void initializeNegotiatesTheProtocolVersion() throws Exception {
+        JsonNode soportada = post("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"initialize\",\"params\":{\"protocolVersion\":\"2025-06-18\"}}");
+        JsonNode desconocida = post("{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"initialize\",\"params\":{\"protocolVersion\":\"2099-01-01\"}}");
+
+        assertEquals("2025-06-18", soportada.at("/result/protocolVersion").asText());
+        assertEquals("pos-mcp-server", soportada.at("/result/serverInfo/name").asText());
+        assertEquals(StreamableHttpTransport.DEFAULT_PROTOCOL_VERSION, desconocida.at("/result/protocolVersion").asText());
+    }
+
+    @Test
+    void pingAndToolsList() throws Exception {
+        JsonNode ping = post("{\"jsonrpc\":\"2.0\",\"id\":\"a\",\"method\":\"ping\"}");
+        JsonNode list = post("{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"tools/list\"}");
+
+        assertEquals("a", ping.get("id").asText());
+        assertTrue(ping.get("result").isEmpty());
+        assertEquals(4, list.at("/result/tools").size());
+        assertEquals("eco", list.at("/result/tools/0/name").asText());
+        assertEquals("object", list.at("/result/tools/0/inputSchema/type").asText());
+    }
+
+    @Test
+    void toolsCallReturnsTheOutputOrTheError() throws Exception {
+        JsonNode ok = post(call(1, "eco", "{\"numeroTelefono\":\"5512345678\"}"));
+        JsonNode error = post(call(2, "falla", "{}"));
+
+        assertFalse(ok.at("/result/isError").asBoolean());
+        assertEquals("Recibido {\"numeroTelefono\":\"5512345678\"}", ok.at("/result/content/0/text").asText());
+        assertTrue(error.at("/result/isError").asBoolean());
+        assertEquals("API no disponible", error.at("/result/content/0/text").asText());
+    }
+
+    @Test
+    void errorCodes() throws Exception {
+        client.post().uri("/mcp").contentType(MediaType.APPLICATION_JSON).bodyValue("{no es json")
+            .exchange()
+            .expectStatus().isBadRequest()
+            .expectBody().jsonPath("$.error.code").isEqualTo(-32700);
+        client.post().uri("/mcp").contentType(MediaType.APPLICATION_JSON).bodyValue("42")
+            .exchange()
+            .expectStatus().isBadRequest()
+            .expectBody().jsonPath("$.error.code").isEqualTo(-32600);
+
+        assertEquals(-32601, post("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"resources/list\"}").at("/error/code").asInt());
+        assertEquals(-32602, post(call(2, "noExiste", "{}")).at("/error/code").asInt());
+    }
+
+    @Test
+    void notificationsAndClientResponsesAreAccepted() {
+        client.post().uri("/mcp").contentType(MediaType.APPLICATION_JSON)
+            .bodyValue("{\"jsonrpc\":\"2.0\",\"method\":\"notifications/initialized\"}")
+            .exchange()
+            .expectStatus().isAccepted()
+            .expectBody().isEmpty();
+        client.post().uri("/mcp").contentType(MediaType.APPLICATION_JSON)
+            .bodyValue("{\"jsonrpc\":\"2.0\",\"id\":7,\"result\":{}}")
+            .exchange()
+            .expectStatus().isAccepted();
+    }
+
+    @Test
+    void batchesAnswerEveryRequestInOrder() throws Exception {
+        JsonNode responses = post("[" +
+            "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"ping\"}," +
+            "{\"jsonrpc\":\"2.0\",\"method\":\"notifications/initialized\"}," +
+            call(2, "eco", "{\"x\":1}") + "," +
+            "42," +
+            "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"prompts/list\"}]");
+
+        assertEquals(4, responses.size());
+        assertEquals(1, responses.get(0).get("id").asInt());
+        assertEquals("Recibido {\"x\":1}", responses.get(1).at("/result/content/0/text").asText());
+        assertEquals(-32600, responses.get(2).at("/error/code").asInt());
+        assertEquals(-32601, responses.get(3).at("/error/code").asInt());
+
+        client.post().uri("/mcp").contentType(MediaType.APPLICATION_JSON)
+            .bodyValue("[{\"jsonrpc\":\"2.0\",\"method\":\"notifications/initialized\"}]")
+            .exchange()
+            .expectStatus().isAccepted();
+        client.post().uri("/mcp").contentType(MediaType.APPLICATION_JSON).bodyValue("[]")
+            .exchange()
+            .expectStatus().isBadRequest()
+            .expectBody().jsonPath("$.error.code").isEqualTo(-32600);
+    }
+
+    @Test
+    void progressOpensAnSseStreamThatEndsWithTheResponse() {
+        List<String> events = client.post().uri("/mcp")
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON, MediaType.TEXT_EVENT_STREAM)
+            .bodyValue(callWithToken(1, "conAvance"))
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+            .returnResult(String.class)
+            .getResponseBody()
+            .collectList()
+            .block(Duration.ofSeconds(10));
+
+        assertEquals(2, events.size());
+        assertTrue(events.get(0).contains("\"method\":\"notifications/progress\""));
+        assertTrue(events.get(0).contains("\"progressToken\":\"t1\""));
+        assertTrue(events.get(1).contains("\"text\":\"Listo\""));
+    }
+
+    @Test
+    void withoutSseAcceptProgressIsDroppedAndTheResponseIsJson() throws Exception {
+        JsonNode response = post(callWithToken(1, "conAvance"));
+
+        assertEquals("Listo", response.at("/result/content/0/text").asText());
+    }
+
+    @Test
+    void closingTheStreamCancelsTheOperation() throws Exception {
+        List<String> first = client.post().uri("/mcp")
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.TEXT_EVENT_STREAM)
+            .bodyValue(callWithToken(1, "lenta"))
+            .exchange()
+            .returnResult(String.class)
+            .getResponseBody()
+            .take(1)
+            .collectList()
+            .block(Duration.ofSeconds(10));
+
+        assertEquals(1, first.size());
+        assertTrue(cancelada.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void disconnectBeforeAJsonResponseCancelsTheOperation() throws Exception {
+        MockServerRequest request = MockServerRequest.builder()
+            .header("Accept", MediaType.APPLICATION_JSON_VALUE)
+            .body(Mono.just(call(1, "lenta", "{}")));
+
+        Disposable exchange = transport.handle(request).subscribe();
+        assertTrue(iniciada.await(5, TimeUnit.SECONDS));
+        exchange.dispose();
+
+        assertTrue(cancelada.await(5, TimeUnit.SECONDS));
+    }
+
+    private JsonNode post(String body) throws Exception {
+        byte[] response = client.post().uri("/mcp")
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON)
+            .bodyValue(body)
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+            .expectBody().returnResult().getResponseBody();
+        return objectMapper.readTree(response);
+    }
+
+    private static String call(int id, String tool, String arguments) {
+        return "{\"jsonrpc\":\"2.0\",\"id\":" + id + ",\"method\":\"tools/call\",\"params\":{\"name\":\"" + tool
+            + "\",\"arguments\":" + arguments + "}}";
+    }
+
+    private static String callWithToken(int id, String tool) {
+        return "{\"jsonrpc\":\"2.0\",\"id\":" + id + ",\"method\":\"tools/call\",\"params\":{\"name\":\"" + tool
+            + "\",\"arguments\":{},\"_meta\":{\"progressToken\":\"t" + id + "\"}}}";
+    }
+
+    /**
+     * Informa avance para abrir el stream y espera a que el transporte cancele la operación.
+     */
+    private String esperarCancelacion() {
+        OperationHandle operacion = OperationHandle.current();
+        operacion.progress(0, -1, "esperando");
+        iniciada.countDown();
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!operacion.isCancelled() && System.nanoTime() < limite) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "Interrumpida";
+            }
+        }
+        if (operacion.isCancelled()) {
+            cancelada.countDown();
+        }
+        return "Terminada";
+    }
+
+    private ToolCallback tool(String name, Function<String, String> body) {
+        ToolDefinition definition = ToolDefinition.builder()
+            .name(name)
+            .description("Tool de prueba " + name)
+            .inputSchema("{\"type\":\"object\",\"properties\":{}}")
+            .build();
+        ToolCallback tool = new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return body.apply(toolInput);
+            }
+
+            @Override
+            public String call(String toolInput, ToolContext toolContext) {
+                return call(toolInput);
+            }
+        };
+        return new OperationToolCallback(tool, registry, objectMapper);
+    }
+}
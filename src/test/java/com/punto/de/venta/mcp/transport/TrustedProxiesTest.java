@@ -0,0 +1,44 @@
+package com.punto.de.venta.mcp.transport;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrustedProxiesTest {
+
+    private final TrustedProxies proxies = new TrustedProxies(TrustedProxies.DEFAULT);
+
+    @Test
+    void clientIsTheLastHopAddedByATrustedProxy() {
+        // El cliente escribió "1.1.1.1"; el ingress agregó la dirección real
+        assertEquals("203.0.113.7", proxies.client("10.0.3.4", List.of("1.1.1.1, 203.0.113.7")));
+        assertEquals("203.0.113.7", proxies.client("10.0.3.4", List.of("1.1.1.1", "203.0.113.7, 10.0.9.9")));
+    }
+
+    @Test
+    void headerIsIgnoredWhenTheRequestDoesNotComeFromATrustedProxy() {
+        assertEquals("198.51.100.2", proxies.client("198.51.100.2", List.of("1.1.1.1")));
+    }
+
+    @Test
+    void withoutHeaderOrUntrustedHopsTheFirstHopOrRemoteIsUsed() {
+        assertEquals("10.0.3.4", proxies.client("10.0.3.4", List.of()));
+        assertEquals("10.1.1.1", proxies.client("10.0.3.4", List.of("10.1.1.1, 192.168.0.5")));
+    }
+
+    @Test
+    void matchesCidrRangesAndIgnoresNames() {
+        assertTrue(proxies.isTrusted("172.31.255.255"));
+        assertFalse(proxies.isTrusted("172.32.0.1"));
+        assertTrue(proxies.isTrusted("fd12::1"));
+        assertFalse(proxies.isTrusted("2001:db8::1"));
+        assertFalse(proxies.isTrusted("localhost"));
+        assertTrue(new TrustedProxies("203.0.113.7").isTrusted("203.0.113.7"));
+        assertThrows(IllegalArgumentException.class, () -> new TrustedProxies("10.0.0.0/40"));
+    }
+}